@@ -28,3 +28,12 @@ mainDependencies {
    api("us.ihmc:ihmc-commons:0.30.5")
    api("us.ihmc:ihmc-interfaces:0.13.0-210804")
 }
+
+testDependencies {
+   api("us.ihmc:ihmc-commons-testing:0.30.5")
+}
+
+benchmarksDependencies {
+   api("org.openjdk.jmh:jmh-core:1.23")
+   annotationProcessor("org.openjdk.jmh:jmh-generator-annprocess:1.23")
+}
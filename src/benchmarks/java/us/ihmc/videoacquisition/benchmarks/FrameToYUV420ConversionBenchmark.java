@@ -0,0 +1,112 @@
+package us.ihmc.videoacquisition.benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+
+import org.bytedeco.javacv.Frame;
+import org.bytedeco.javacv.Java2DFrameConverter;
+
+import us.ihmc.codecs.generated.YUVPicture;
+import us.ihmc.codecs.generated.YUVPicture.YUVSubsamplingType;
+import us.ihmc.codecs.yuv.YUVPictureConverter;
+import us.ihmc.videoacquisition.source.SyntheticFrameSource;
+import us.ihmc.videoacquisition.yuv.FrameToYUV420Converter;
+import us.ihmc.videoacquisition.yuv.YUV420Image;
+
+/**
+ * Checks that the {@link FrameToYUV420Converter} produces the same planes as the former
+ * {@code Frame -> BufferedImage -> YUVPicture} path, and gives a quick comparison of their cost per
+ * frame. For measurements, see {@link ImageConversionBenchmark}.
+ */
+public class FrameToYUV420ConversionBenchmark
+{
+   private static final int[][] RESOLUTIONS = {{640, 480}, {1280, 720}, {1920, 1080}};
+   private static final int WARMUP_ITERATIONS = 50;
+   private static final int MEASURED_ITERATIONS = 200;
+   /** Maximum difference allowed between the two paths, in 8-bit levels. */
+   private static final int TOLERANCE = 2;
+
+   private final Java2DFrameConverter frameConverter = new Java2DFrameConverter();
+   private final YUVPictureConverter yuvPictureConverter = new YUVPictureConverter();
+   private final FrameToYUV420Converter directConverter = new FrameToYUV420Converter();
+
+   public void run()
+   {
+      System.out.println(String.format("%-11s %14s %14s %8s %9s", "resolution", "Java2D [ms]", "direct [ms]", "speedup", "max diff"));
+
+      for (int[] resolution : RESOLUTIONS)
+      {
+         SyntheticFrameSource source = new SyntheticFrameSource(resolution[0], resolution[1], 30.0);
+         source.start();
+         Frame frame = source.grab();
+
+         YUV420Image directImage = new YUV420Image();
+         YUV420Image java2DImage = new YUV420Image();
+
+         for (int i = 0; i < WARMUP_ITERATIONS; i++)
+         {
+            convertThroughJava2D(frame, java2DImage);
+            directConverter.convert(frame, directImage);
+         }
+
+         long start = System.nanoTime();
+         for (int i = 0; i < MEASURED_ITERATIONS; i++)
+            convertThroughJava2D(frame, java2DImage);
+         double java2DMillis = (System.nanoTime() - start) / 1.0e6 / MEASURED_ITERATIONS;
+
+         start = System.nanoTime();
+         for (int i = 0; i < MEASURED_ITERATIONS; i++)
+            directConverter.convert(frame, directImage);
+         double directMillis = (System.nanoTime() - start) / 1.0e6 / MEASURED_ITERATIONS;
+
+         int maxDifference = maxDifference(java2DImage, directImage);
+
+         System.out.println(String.format("%4dx%-6d %14.3f %14.3f %7.1fx %9d%s",
+                                          resolution[0],
+                                          resolution[1],
+                                          java2DMillis,
+                                          directMillis,
+                                          java2DMillis / directMillis,
+                                          maxDifference,
+                                          maxDifference > TOLERANCE ? "  OUT OF TOLERANCE" : ""));
+         source.stop();
+      }
+   }
+
+   private void convertThroughJava2D(Frame frame, YUV420Image yuvImageToPack)
+   {
+      BufferedImage image = frameConverter.convert(frame);
+      YUVPicture picture = yuvPictureConverter.fromBufferedImage(image, YUVSubsamplingType.YUV420);
+      yuvImageToPack.set(picture);
+      picture.delete();
+   }
+
+   private static int maxDifference(YUV420Image a, YUV420Image b)
+   {
+      int max = maxDifference(a.getY(), a.getYStride(), b.getY(), b.getYStride(), a.getWidth(), a.getHeight());
+      max = Math.max(max, maxDifference(a.getU(), a.getUStride(), b.getU(), b.getUStride(), a.getChromaWidth(), a.getChromaHeight()));
+      max = Math.max(max, maxDifference(a.getV(), a.getVStride(), b.getV(), b.getVStride(), a.getChromaWidth(), a.getChromaHeight()));
+      return max;
+   }
+
+   private static int maxDifference(ByteBuffer a, int aStride, ByteBuffer b, int bStride, int width, int height)
+   {
+      int max = 0;
+
+      for (int y = 0; y < height; y++)
+      {
+         for (int x = 0; x < width; x++)
+         {
+            int difference = Math.abs((a.get(y * aStride + x) & 0xFF) - (b.get(y * bStride + x) & 0xFF));
+            max = Math.max(max, difference);
+         }
+      }
+
+      return max;
+   }
+
+   public static void main(String[] args)
+   {
+      new FrameToYUV420ConversionBenchmark().run();
+   }
+}
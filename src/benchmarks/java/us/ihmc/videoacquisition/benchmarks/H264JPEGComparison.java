@@ -0,0 +1,168 @@
+package us.ihmc.videoacquisition.benchmarks;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bytedeco.javacv.Frame;
+
+import us.ihmc.codecs.yuv.JPEGEncoder;
+import us.ihmc.videoacquisition.codec.H264Encoder;
+import us.ihmc.videoacquisition.source.FrameSource;
+import us.ihmc.videoacquisition.source.FrameSources;
+import us.ihmc.videoacquisition.source.SyntheticFrameSource;
+import us.ihmc.videoacquisition.yuv.FrameToYUV420Converter;
+import us.ihmc.videoacquisition.yuv.YUV420Image;
+
+/**
+ * Encodes the same frames with JPEG and H.264 and reports the bytes per frame and the encode CPU
+ * time of each codec.
+ * <p>
+ * The CPU time is the one of the whole process while encoding, so that the encoder's own threads
+ * are accounted for. The conversion of the grabbed frames to YUV is not timed.
+ * </p>
+ */
+public class H264JPEGComparison
+{
+   private static final int[][] SYNTHETIC_RESOLUTIONS = {{640, 480}, {1280, 720}, {1920, 1080}};
+   private static final int WARMUP_FRAMES = 30;
+
+   private final com.sun.management.OperatingSystemMXBean operatingSystem = (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+
+   private int numberOfFrames = 300;
+   private int jpegQuality = 75;
+   private double bitrate = H264Encoder.DEFAULT_BITRATE;
+   private int keyframeInterval = H264Encoder.DEFAULT_KEYFRAME_INTERVAL;
+
+   public void run(List<FrameSource> frameSources) throws IOException
+   {
+      System.out.println(String.format("JPEG quality %d, H.264 %.2f Mbit/s with a keyframe every %d frames, %d frames",
+                                       jpegQuality,
+                                       bitrate * 1.0e-6,
+                                       keyframeInterval,
+                                       numberOfFrames));
+      System.out.println(String.format("%-11s %16s %16s %8s %16s %16s", "resolution", "JPEG [B/frame]", "H.264 [B/frame]", "ratio", "JPEG [ms CPU]", "H.264 [ms CPU]"));
+
+      for (FrameSource frameSource : frameSources)
+      {
+         frameSource.start();
+         compare(frameSource);
+         frameSource.stop();
+      }
+   }
+
+   /**
+    * Encodes each frame with both codecs in turn, so no frame has to be kept around.
+    */
+   private void compare(FrameSource frameSource) throws IOException
+   {
+      FrameToYUV420Converter converter = new FrameToYUV420Converter();
+      YUV420Image image = new YUV420Image();
+      JPEGEncoder jpegEncoder = new JPEGEncoder();
+      H264Encoder h264Encoder = new H264Encoder();
+      h264Encoder.setBitrate(bitrate);
+      h264Encoder.setKeyframeInterval(keyframeInterval);
+      h264Encoder.setFrameRate(frameSource.getFrameRate());
+
+      long jpegBytes = 0;
+      long h264Bytes = 0;
+      long jpegCPUTime = 0;
+      long h264CPUTime = 0;
+
+      for (int i = -WARMUP_FRAMES; i < numberOfFrames;)
+      {
+         Frame frame = frameSource.grab();
+         if (frame == null)
+            continue;
+
+         converter.convert(frame, image);
+
+         long start = operatingSystem.getProcessCpuTime();
+         int jpegSize = jpegEncoder.encode(image.getYUVPicture(), jpegQuality).remaining();
+         long jpegEnd = operatingSystem.getProcessCpuTime();
+         ByteBuffer accessUnit = h264Encoder.encode(image.getYUVPicture());
+         long h264End = operatingSystem.getProcessCpuTime();
+
+         if (i == -1)
+         {
+            // Restart the H.264 stream so that the measured frames start with a keyframe.
+            h264Encoder.delete();
+         }
+         else if (i >= 0)
+         {
+            jpegBytes += jpegSize;
+            h264Bytes += accessUnit.remaining();
+            jpegCPUTime += jpegEnd - start;
+            h264CPUTime += h264End - jpegEnd;
+         }
+
+         i++;
+      }
+
+      jpegEncoder.delete();
+      h264Encoder.delete();
+
+      double jpegBytesPerFrame = (double) jpegBytes / numberOfFrames;
+      double h264BytesPerFrame = (double) h264Bytes / numberOfFrames;
+      System.out.println(String.format("%4dx%-6d %16.0f %16.0f %7.1fx %16.3f %16.3f",
+                                       image.getWidth(),
+                                       image.getHeight(),
+                                       jpegBytesPerFrame,
+                                       h264BytesPerFrame,
+                                       jpegBytesPerFrame / h264BytesPerFrame,
+                                       jpegCPUTime / 1.0e6 / numberOfFrames,
+                                       h264CPUTime / 1.0e6 / numberOfFrames));
+   }
+
+   /**
+    * Usage: {@code H264JPEGComparison [(--camera <device> | --synthetic <width>x<height>@<fps> | --replay <file or directory> [fps])...]
+    * [--frames <count>] [--quality <JPEG quality>] [--bitrate <Mbit/s>] [--keyframe-interval <frames>]}
+    * <p>
+    * Without any source, compares the codecs on synthetic frames at 640x480, 720p and 1080p.
+    * </p>
+    */
+   public static void main(String[] args) throws IOException
+   {
+      H264JPEGComparison comparison = new H264JPEGComparison();
+      List<FrameSource> frameSources = new ArrayList<>();
+
+      for (int i = 0; i < args.length; i++)
+      {
+         FrameSource frameSource = FrameSources.parse(args, i);
+         if (frameSource != null)
+         {
+            frameSources.add(frameSource);
+            i += FrameSources.getArgumentCount(args, i) - 1;
+            continue;
+         }
+
+         switch (args[i])
+         {
+            case "--frames":
+               comparison.numberOfFrames = Integer.parseInt(args[++i]);
+               break;
+            case "--quality":
+               comparison.jpegQuality = Integer.parseInt(args[++i]);
+               break;
+            case "--bitrate":
+               comparison.bitrate = Double.parseDouble(args[++i]) * 1.0e6;
+               break;
+            case "--keyframe-interval":
+               comparison.keyframeInterval = Integer.parseInt(args[++i]);
+               break;
+            default:
+               throw new IllegalArgumentException("Unknown argument: " + args[i]);
+         }
+      }
+
+      if (frameSources.isEmpty())
+      {
+         for (int[] resolution : SYNTHETIC_RESOLUTIONS)
+            frameSources.add(new SyntheticFrameSource(resolution[0], resolution[1], 30.0));
+      }
+
+      comparison.run(frameSources);
+   }
+}
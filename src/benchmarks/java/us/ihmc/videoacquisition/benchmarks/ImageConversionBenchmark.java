@@ -0,0 +1,77 @@
+package us.ihmc.videoacquisition.benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.bytedeco.javacv.Frame;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import us.ihmc.codecs.generated.YUVPicture;
+import us.ihmc.codecs.generated.YUVPicture.YUVSubsamplingType;
+import us.ihmc.codecs.yuv.YUVPictureConverter;
+import us.ihmc.videoacquisition.VideoManager;
+import us.ihmc.videoacquisition.yuv.FrameToYUV420Converter;
+import us.ihmc.videoacquisition.yuv.YUV420Image;
+
+/**
+ * The image stages before encoding: scaling the camera image down, and converting it to the
+ * planes the encoders take, through {@link BufferedImage} as {@link VideoManager} does or straight
+ * from the grabbed frame as the pipeline does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ImageConversionBenchmark
+{
+   @Param({"480p", "720p", "1080p", "4K"})
+   public String resolution;
+
+   private Frame frame;
+   private BufferedImage image;
+   private final YUVPictureConverter yuvPictureConverter = new YUVPictureConverter();
+   private final FrameToYUV420Converter frameConverter = new FrameToYUV420Converter();
+   private final YUV420Image yuvImage = new YUV420Image();
+
+   @Setup
+   public void setup()
+   {
+      frame = SyntheticImages.createFrame(resolution);
+      image = SyntheticImages.createBufferedImage(resolution);
+   }
+
+   /** Scales down to half the resolution. */
+   @Benchmark
+   public BufferedImage resize()
+   {
+      return VideoManager.resize(image, image.getWidth() / 2, image.getHeight() / 2);
+   }
+
+   @Benchmark
+   public void fromBufferedImage(Blackhole blackhole)
+   {
+      YUVPicture picture = yuvPictureConverter.fromBufferedImage(image, YUVSubsamplingType.YUV420);
+      blackhole.consume(picture);
+      picture.delete();
+   }
+
+   @Benchmark
+   public YUV420Image frameToYUV420()
+   {
+      frameConverter.convert(frame, yuvImage);
+      return yuvImage;
+   }
+}
@@ -0,0 +1,61 @@
+package us.ihmc.videoacquisition.benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import us.ihmc.videoacquisition.JPEGDecompressor;
+import us.ihmc.videoacquisition.yuv.YUV420Image;
+
+/**
+ * Decoding a JPEG frame on the receiver side, to a {@link BufferedImage} as the former receivers
+ * did, or to the planes of a reused {@link YUV420Image}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class JPEGDecodeBenchmark
+{
+   private static final int QUALITY = 75;
+
+   @Param({"480p", "720p", "1080p", "4K"})
+   public String resolution;
+
+   private byte[] jpeg;
+   private final JPEGDecompressor decompressor = new JPEGDecompressor();
+   private final YUV420Image yuvImage = new YUV420Image();
+
+   @Setup
+   public void setup() throws IOException
+   {
+      jpeg = SyntheticImages.createJPEG(resolution, QUALITY);
+   }
+
+   @Benchmark
+   public BufferedImage decompressJPEGDataToBufferedImage()
+   {
+      return decompressor.decompressJPEGDataToBufferedImage(jpeg, 0, jpeg.length);
+   }
+
+   @Benchmark
+   public YUV420Image decompressJPEGDataToYUV420Image()
+   {
+      decompressor.decompressJPEGDataToYUV420Image(jpeg, 0, jpeg.length, yuvImage);
+      return yuvImage;
+   }
+}
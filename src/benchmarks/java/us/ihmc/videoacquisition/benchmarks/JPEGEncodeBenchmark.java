@@ -0,0 +1,57 @@
+package us.ihmc.videoacquisition.benchmarks;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import us.ihmc.codecs.generated.YUVPicture;
+import us.ihmc.codecs.yuv.JPEGEncoder;
+import us.ihmc.videoacquisition.yuv.YUV420Image;
+
+/**
+ * Encoding a 4:2:0 picture to JPEG, at the qualities the publishers are typically run at.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class JPEGEncodeBenchmark
+{
+   @Param({"480p", "720p", "1080p", "4K"})
+   public String resolution;
+
+   @Param({"50", "75", "90"})
+   public int quality;
+
+   private final JPEGEncoder encoder = new JPEGEncoder();
+   private YUV420Image image;
+   /** Built once, so only the encoding is measured. */
+   private YUVPicture picture;
+
+   @Setup
+   public void setup()
+   {
+      image = SyntheticImages.createYUV420Image(resolution);
+      picture = image.getYUVPicture();
+   }
+
+   @Benchmark
+   public ByteBuffer encode() throws IOException
+   {
+      return encoder.encode(picture, quality);
+   }
+}
@@ -0,0 +1,61 @@
+package us.ihmc.videoacquisition.benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javafx.embed.swing.JFXPanel;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.image.WritableImage;
+import us.ihmc.videoacquisition.JPEGDecompressor;
+
+/**
+ * Copying a decoded {@link BufferedImage} into the JavaFX image shown by the receivers.
+ * <p>
+ * Kept apart from the other benchmarks as it starts the JavaFX toolkit, which needs a display:
+ * exclude it on headless machines with {@code -e JavaFXImageBenchmark}.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class JavaFXImageBenchmark
+{
+   private static final int QUALITY = 75;
+
+   @Param({"480p", "720p", "1080p", "4K"})
+   public String resolution;
+
+   private BufferedImage image;
+   private WritableImage fxImage;
+
+   @Setup
+   public void setup() throws IOException
+   {
+      new JFXPanel(); // Starts the JavaFX toolkit
+      byte[] jpeg = SyntheticImages.createJPEG(resolution, QUALITY);
+      image = new JPEGDecompressor().decompressJPEGDataToBufferedImage(jpeg);
+      fxImage = new WritableImage(image.getWidth(), image.getHeight());
+   }
+
+   @Benchmark
+   public WritableImage toFXImage()
+   {
+      return SwingFXUtils.toFXImage(image, fxImage);
+   }
+}
@@ -0,0 +1,90 @@
+package us.ihmc.videoacquisition.benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.bytedeco.javacv.Frame;
+import org.bytedeco.javacv.Java2DFrameConverter;
+
+import us.ihmc.codecs.yuv.JPEGEncoder;
+import us.ihmc.videoacquisition.source.SyntheticFrameSource;
+import us.ihmc.videoacquisition.source.SyntheticFrameSource.Pattern;
+import us.ihmc.videoacquisition.yuv.FrameToYUV420Converter;
+import us.ihmc.videoacquisition.yuv.YUV420Image;
+
+/**
+ * Inputs of the benchmarks: the first frame of a {@link SyntheticFrameSource} with a fixed seed, so
+ * every run and every machine measures the same pixels.
+ * <p>
+ * The resolutions are given by name, as taken by the {@code resolution} parameter of the
+ * benchmarks: {@code 480p}, {@code 720p}, {@code 1080p} and {@code 4K}.
+ * </p>
+ */
+public final class SyntheticImages
+{
+   /** Noise on top of the color bars, so the JPEG sizes are closer to the ones of a camera. */
+   private static final int NOISE_AMPLITUDE = 8;
+   private static final long SEED = 42L;
+
+   private SyntheticImages()
+   {
+   }
+
+   /**
+    * @return the width and height of the resolution.
+    */
+   public static int[] getSize(String resolution)
+   {
+      switch (resolution)
+      {
+         case "480p":
+            return new int[] {640, 480};
+         case "720p":
+            return new int[] {1280, 720};
+         case "1080p":
+            return new int[] {1920, 1080};
+         case "4K":
+            return new int[] {3840, 2160};
+         default:
+            throw new IllegalArgumentException("Unknown resolution: " + resolution);
+      }
+   }
+
+   /**
+    * @return a 3-channel BGR frame, as grabbed from a camera.
+    */
+   public static Frame createFrame(String resolution)
+   {
+      int[] size = getSize(resolution);
+      SyntheticFrameSource source = new SyntheticFrameSource(size[0], size[1], 30.0, Pattern.COLOR_BARS, NOISE_AMPLITUDE, SEED);
+      source.start();
+      Frame frame = source.grab().clone();
+      source.stop();
+      return frame;
+   }
+
+   /**
+    * @return a {@link BufferedImage#TYPE_3BYTE_BGR} image, as handed to the publisher.
+    */
+   public static BufferedImage createBufferedImage(String resolution)
+   {
+      return new Java2DFrameConverter().getBufferedImage(createFrame(resolution));
+   }
+
+   public static YUV420Image createYUV420Image(String resolution)
+   {
+      YUV420Image image = new YUV420Image();
+      new FrameToYUV420Converter().convert(createFrame(resolution), image);
+      return image;
+   }
+
+   public static byte[] createJPEG(String resolution, int quality) throws IOException
+   {
+      YUV420Image image = createYUV420Image(resolution);
+      ByteBuffer encodedData = new JPEGEncoder().encode(image.getYUVPicture(), quality);
+      byte[] jpeg = new byte[encodedData.remaining()];
+      encodedData.get(jpeg);
+      return jpeg;
+   }
+}
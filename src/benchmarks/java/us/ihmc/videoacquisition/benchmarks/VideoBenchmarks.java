@@ -0,0 +1,37 @@
+package us.ihmc.videoacquisition.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks of every stage of the video path, from the camera image to the JavaFX image,
+ * with the GC profiler so the results give the bytes allocated per frame ({@code gc.alloc.rate.norm})
+ * along with the time.
+ */
+public class VideoBenchmarks
+{
+   /**
+    * Usage: {@code VideoBenchmarks [<JMH options>]}
+    * <p>
+    * Runs all the benchmarks of this package and writes the results to
+    * {@code video-benchmarks.json}. The JMH options come on top, e.g. {@code -p resolution=720p} to
+    * only run at 720p, or {@code -e JavaFXImageBenchmark} on a headless machine.
+    * </p>
+    */
+   public static void main(String[] args) throws RunnerException, CommandLineOptionException
+   {
+      Options options = new OptionsBuilder().parent(new CommandLineOptions(args))
+                                            .include(VideoBenchmarks.class.getPackage().getName() + "\\..*Benchmark")
+                                            .addProfiler(GCProfiler.class)
+                                            .resultFormat(ResultFormatType.JSON)
+                                            .result("video-benchmarks.json")
+                                            .build();
+      new Runner(options).run();
+   }
+}
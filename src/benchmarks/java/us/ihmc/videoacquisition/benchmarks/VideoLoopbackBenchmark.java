@@ -0,0 +1,332 @@
+package us.ihmc.videoacquisition.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+import us.ihmc.pubsub.DomainFactory.PubSubImplementation;
+import us.ihmc.videoacquisition.CameraVideoPublisher;
+import us.ihmc.videoacquisition.HeadlessVideoReceiver;
+import us.ihmc.videoacquisition.VideoManager;
+import us.ihmc.videoacquisition.latency.LatencyHistogram;
+import us.ihmc.videoacquisition.latency.VideoClock;
+import us.ihmc.videoacquisition.receiver.FrameSink;
+import us.ihmc.videoacquisition.receiver.VideoTopicReceiver;
+import us.ihmc.videoacquisition.source.SyntheticFrameSource;
+import us.ihmc.videoacquisition.transport.VideoFrame;
+import us.ihmc.videoacquisition.yuv.YUV420Image;
+
+/**
+ * Measures the whole video path in a single process, without a camera, a network nor a display: a
+ * {@link VideoManager} publishing the frames of a {@link SyntheticFrameSource} to a
+ * {@link HeadlessVideoReceiver} decoding them.
+ * <p>
+ * Each combination of resolution, JPEG quality and frame rate is run in turn with a new publisher
+ * and receiver. After a warmup, the frames are counted on both sides and the latency from capture to
+ * decoded is recorded for every frame: the publisher and the receiver share the {@link VideoClock},
+ * so no clock synchronization is involved. The garbage collections during the run are counted from
+ * the JVM. The results are written as JSON, one run per line, to be compared between builds.
+ * </p>
+ */
+public class VideoLoopbackBenchmark
+{
+   private static final int[][] DEFAULT_RESOLUTIONS = {{640, 480}, {1280, 720}, {1920, 1080}};
+   private static final int[] DEFAULT_QUALITIES = {50, 75, 90};
+   private static final double[] DEFAULT_FRAME_RATES = {30.0};
+
+   private final PubSubImplementation pubSubImplementation;
+   private double warmupDuration = 2.0;
+   private double duration = 10.0;
+
+   public VideoLoopbackBenchmark(PubSubImplementation pubSubImplementation)
+   {
+      this.pubSubImplementation = pubSubImplementation;
+   }
+
+   /**
+    * @param warmupDuration the seconds to run before measuring, to let the JIT compile the path.
+    * @param duration       the seconds to measure for.
+    */
+   public void setDurations(double warmupDuration, double duration)
+   {
+      this.warmupDuration = warmupDuration;
+      this.duration = duration;
+   }
+
+   /**
+    * Publishes and receives a synthetic video at the given settings.
+    */
+   public Result run(int width, int height, int quality, double frameRate) throws IOException, InterruptedException
+   {
+      SyntheticFrameSource frameSource = new SyntheticFrameSource(width, height, frameRate);
+      LoopbackFrameSink frameSink = new LoopbackFrameSink();
+      HeadlessVideoReceiver receiver = new HeadlessVideoReceiver(pubSubImplementation,
+                                                                 Collections.singletonList(VideoManager.LOGGING_CAMERA_VIDEO_TOPIC),
+                                                                 true,
+                                                                 frameSink);
+      receiver.start(0.0);
+
+      VideoManager videoManager = new VideoManager(pubSubImplementation, frameSource, false);
+      CameraVideoPublisher publisher = videoManager.getCameraVideoPublisher();
+      publisher.setMaxOutputResolution(width, height);
+      publisher.getRateController().setQualityRange(quality, quality);
+      VideoTopicReceiver topicReceiver = receiver.getVideoReceivers().get(0);
+
+      try
+      {
+         Thread.sleep((long) (warmupDuration * 1000.0));
+
+         long startPublishedFrameCount = publisher.getMetrics().getFrameCount();
+         long startReceivedFrameCount = topicReceiver.getFrameAssembler().getCompletedFrameCount();
+         long startGCCount = getGCCount();
+         long startGCTime = getGCTime();
+         long startTime = System.nanoTime();
+         frameSink.measuring = true;
+
+         Thread.sleep((long) (duration * 1000.0));
+
+         frameSink.measuring = false;
+         Result result = new Result();
+         result.width = width;
+         result.height = height;
+         result.quality = quality;
+         result.frameRate = frameRate;
+         result.duration = (System.nanoTime() - startTime) * 1.0e-9;
+         result.publishedFrameCount = publisher.getMetrics().getFrameCount() - startPublishedFrameCount;
+         result.receivedFrameCount = topicReceiver.getFrameAssembler().getCompletedFrameCount() - startReceivedFrameCount;
+         result.decodedFrameCount = frameSink.frameCount;
+         result.decodedByteCount = frameSink.byteCount;
+         result.latency = frameSink.latency;
+         result.gcCount = getGCCount() - startGCCount;
+         result.gcTime = getGCTime() - startGCTime;
+         return result;
+      }
+      finally
+      {
+         videoManager.stop();
+         receiver.stop();
+      }
+   }
+
+   private static long getGCCount()
+   {
+      long count = 0;
+      for (GarbageCollectorMXBean garbageCollector : ManagementFactory.getGarbageCollectorMXBeans())
+         count += Math.max(0, garbageCollector.getCollectionCount());
+      return count;
+   }
+
+   /**
+    * @return the time spent collecting garbage in milliseconds, as reported by the collectors.
+    */
+   private static long getGCTime()
+   {
+      long time = 0;
+      for (GarbageCollectorMXBean garbageCollector : ManagementFactory.getGarbageCollectorMXBeans())
+         time += Math.max(0, garbageCollector.getCollectionTime());
+      return time;
+   }
+
+   /**
+    * Counts the decoded frames and records their latency, while measuring. Called from the single
+    * decode thread of the receiver.
+    */
+   private static class LoopbackFrameSink implements FrameSink
+   {
+      private final LatencyHistogram latency = new LatencyHistogram("capture to decoded");
+      private volatile boolean measuring = false;
+      private volatile long frameCount = 0;
+      private volatile long byteCount = 0;
+
+      @Override
+      public void onFrame(String topic, VideoFrame frame, YUV420Image decodedImage)
+      {
+         if (!measuring)
+            return;
+
+         if (frame.getClockId() == VideoClock.getClockId())
+            latency.record(VideoClock.now() - frame.getCaptureTime());
+         frameCount++;
+         byteCount += frame.getSize();
+      }
+   }
+
+   public static class Result
+   {
+      private int width, height, quality;
+      private double frameRate;
+      /** Measured duration in seconds. */
+      private double duration;
+      private long publishedFrameCount, receivedFrameCount, decodedFrameCount, decodedByteCount;
+      private LatencyHistogram latency;
+      private long gcCount;
+      /** In milliseconds. */
+      private long gcTime;
+
+      /**
+       * @return the fraction of the published frames that were not received.
+       */
+      public double getLossRate()
+      {
+         return publishedFrameCount == 0 ? 0.0 : Math.max(0.0, 1.0 - (double) receivedFrameCount / publishedFrameCount);
+      }
+
+      public double getDecodedFrameRate()
+      {
+         return decodedFrameCount / duration;
+      }
+
+      public String toJSON(PubSubImplementation pubSubImplementation)
+      {
+         return String.format(Locale.ROOT,
+                              "{\"transport\": \"%s\", \"width\": %d, \"height\": %d, \"quality\": %d, \"fps\": %.1f, \"duration\": %.3f, "
+                                    + "\"published_fps\": %.2f, \"received_fps\": %.2f, \"decoded_fps\": %.2f, \"bytes_per_second\": %.0f, "
+                                    + "\"latency_p50_ms\": %.3f, \"latency_p99_ms\": %.3f, \"latency_p999_ms\": %.3f, \"latency_max_ms\": %.3f, "
+                                    + "\"loss_rate\": %.5f, \"gc_count\": %d, \"gc_time_ms\": %d}",
+                              pubSubImplementation,
+                              width,
+                              height,
+                              quality,
+                              frameRate,
+                              duration,
+                              publishedFrameCount / duration,
+                              receivedFrameCount / duration,
+                              getDecodedFrameRate(),
+                              decodedByteCount / duration,
+                              latency.getPercentile(50.0) * 1.0e-6,
+                              latency.getPercentile(99.0) * 1.0e-6,
+                              latency.getPercentile(99.9) * 1.0e-6,
+                              latency.getMax() * 1.0e-6,
+                              getLossRate(),
+                              gcCount,
+                              gcTime);
+      }
+
+      @Override
+      public String toString()
+      {
+         return String.format("%dx%d q%d @ %.1f fps: decoded %.1f fps, %.2f MB/s, latency p50 %.1f ms, p99 %.1f ms, p99.9 %.1f ms, loss %.2f%%, %d GCs (%d ms)",
+                              width,
+                              height,
+                              quality,
+                              frameRate,
+                              getDecodedFrameRate(),
+                              decodedByteCount / duration / 1.0e6,
+                              latency.getPercentile(50.0) * 1.0e-6,
+                              latency.getPercentile(99.0) * 1.0e-6,
+                              latency.getPercentile(99.9) * 1.0e-6,
+                              100.0 * getLossRate(),
+                              gcCount,
+                              gcTime);
+      }
+   }
+
+   /**
+    * Usage: {@code VideoLoopbackBenchmark [--resolutions <width>x<height>,...] [--qualities <quality>,...] [--fps <fps>,...]
+    * [--warmup <s>] [--duration <s>] [--fast-rtps] [--output <file>]}
+    * <p>
+    * Runs every combination of the given settings, by default 640x480, 1280x720 and 1920x1080 at the
+    * JPEG qualities 50, 75 and 90 and 30 frames per second, over the intraprocess transport, or over
+    * Fast-RTPS on the local host with {@code --fast-rtps}. Writes the report to
+    * {@code video-loopback-<date>.json} by default.
+    * </p>
+    */
+   public static void main(String[] args) throws IOException, InterruptedException
+   {
+      int[][] resolutions = DEFAULT_RESOLUTIONS;
+      int[] qualities = DEFAULT_QUALITIES;
+      double[] frameRates = DEFAULT_FRAME_RATES;
+      double warmupDuration = 2.0;
+      double duration = 10.0;
+      PubSubImplementation pubSubImplementation = PubSubImplementation.INTRAPROCESS;
+      File output = new File("video-loopback-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".json");
+
+      for (int i = 0; i < args.length; i++)
+      {
+         switch (args[i])
+         {
+            case "--resolutions":
+            {
+               String[] values = args[++i].split(",");
+               resolutions = new int[values.length][];
+               for (int j = 0; j < values.length; j++)
+               {
+                  String[] resolution = values[j].split("x");
+                  resolutions[j] = new int[] {Integer.parseInt(resolution[0]), Integer.parseInt(resolution[1])};
+               }
+               break;
+            }
+            case "--qualities":
+            {
+               String[] values = args[++i].split(",");
+               qualities = new int[values.length];
+               for (int j = 0; j < values.length; j++)
+                  qualities[j] = Integer.parseInt(values[j]);
+               break;
+            }
+            case "--fps":
+            {
+               String[] values = args[++i].split(",");
+               frameRates = new double[values.length];
+               for (int j = 0; j < values.length; j++)
+                  frameRates[j] = Double.parseDouble(values[j]);
+               break;
+            }
+            case "--warmup":
+               warmupDuration = Double.parseDouble(args[++i]);
+               break;
+            case "--duration":
+               duration = Double.parseDouble(args[++i]);
+               break;
+            case "--fast-rtps":
+               pubSubImplementation = PubSubImplementation.FAST_RTPS;
+               break;
+            case "--output":
+               output = new File(args[++i]);
+               break;
+            default:
+               throw new IllegalArgumentException("Unknown argument: " + args[i]);
+         }
+      }
+
+      VideoLoopbackBenchmark benchmark = new VideoLoopbackBenchmark(pubSubImplementation);
+      benchmark.setDurations(warmupDuration, duration);
+      List<Result> results = new ArrayList<>();
+
+      for (int[] resolution : resolutions)
+      {
+         for (int quality : qualities)
+         {
+            for (double frameRate : frameRates)
+            {
+               Result result = benchmark.run(resolution[0], resolution[1], quality, frameRate);
+               System.out.println(result);
+               results.add(result);
+            }
+         }
+      }
+
+      try (PrintWriter writer = new PrintWriter(output, "UTF-8"))
+      {
+         writer.println("{");
+         writer.printf(Locale.ROOT, "\"date\": \"%s\",%n", new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ").format(new Date()));
+         writer.printf(Locale.ROOT, "\"java\": \"%s\",%n", System.getProperty("java.version"));
+         writer.printf(Locale.ROOT, "\"processors\": %d,%n", Runtime.getRuntime().availableProcessors());
+         writer.println("\"results\": [");
+         for (int i = 0; i < results.size(); i++)
+            writer.println(results.get(i).toJSON(pubSubImplementation) + (i < results.size() - 1 ? "," : ""));
+         writer.println("]");
+         writer.println("}");
+      }
+
+      System.out.println("Report written to " + output);
+   }
+}
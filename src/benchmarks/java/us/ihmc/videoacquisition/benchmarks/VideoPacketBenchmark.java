@@ -0,0 +1,100 @@
+package us.ihmc.videoacquisition.benchmarks;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import controller_msgs.msg.dds.VideoPacket;
+import controller_msgs.msg.dds.VideoPacketPubSubType;
+import us.ihmc.pubsub.common.SerializedPayload;
+import us.ihmc.videoacquisition.pipeline.EncodedFrame;
+
+/**
+ * Turning a JPEG frame into the {@link VideoPacket}s of a frame, and serializing them to and from
+ * the wire format. Each benchmark handles all the fragments of a frame, so the 4K frames measure
+ * the fragmentation as well.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class VideoPacketBenchmark
+{
+   private static final int QUALITY = 75;
+
+   @Param({"480p", "720p", "1080p", "4K"})
+   public String resolution;
+
+   private ByteBuffer jpeg;
+   private final EncodedFrame encodedFrame = new EncodedFrame();
+   private final VideoPacketPubSubType pubSubType = new VideoPacketPubSubType();
+
+   private VideoPacket[] packets;
+   private SerializedPayload[] payloads;
+   private final VideoPacket packet = new VideoPacket();
+
+   @Setup
+   public void setup() throws IOException
+   {
+      jpeg = ByteBuffer.wrap(SyntheticImages.createJPEG(resolution, QUALITY));
+      encodedFrame.setCodec(VideoPacket.CODEC_JPEG);
+      encodedFrame.set(jpeg, 0L);
+
+      int fragmentCount = encodedFrame.getFragmentCount();
+      packets = new VideoPacket[fragmentCount];
+      payloads = new SerializedPayload[fragmentCount];
+
+      for (int i = 0; i < fragmentCount; i++)
+      {
+         packets[i] = new VideoPacket();
+         packets[i].set(encodedFrame.packFragment(i));
+         payloads[i] = new SerializedPayload(pubSubType.getTypeSize());
+         pubSubType.serialize(packets[i], payloads[i]);
+      }
+   }
+
+   @Benchmark
+   public void toVideoPacket(Blackhole blackhole)
+   {
+      jpeg.clear();
+      encodedFrame.set(jpeg, 0L);
+
+      for (int i = 0; i < encodedFrame.getFragmentCount(); i++)
+         blackhole.consume(encodedFrame.packFragment(i));
+   }
+
+   @Benchmark
+   public void serialize(Blackhole blackhole) throws IOException
+   {
+      for (int i = 0; i < packets.length; i++)
+      {
+         pubSubType.serialize(packets[i], payloads[i]);
+         blackhole.consume(payloads[i]);
+      }
+   }
+
+   @Benchmark
+   public void deserialize(Blackhole blackhole) throws IOException
+   {
+      for (int i = 0; i < payloads.length; i++)
+      {
+         pubSubType.deserialize(payloads[i], packet);
+         blackhole.consume(packet);
+      }
+   }
+}
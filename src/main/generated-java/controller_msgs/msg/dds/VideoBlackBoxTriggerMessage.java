@@ -0,0 +1,127 @@
+package controller_msgs.msg.dds;
+
+import us.ihmc.communication.packets.Packet;
+import us.ihmc.euclid.interfaces.Settable;
+import us.ihmc.euclid.interfaces.EpsilonComparable;
+import java.util.function.Supplier;
+import us.ihmc.pubsub.TopicDataType;
+
+/**
+       * Asks the video black boxes to save the video they hold, e.g. after a fall of the robot.
+       */
+public class VideoBlackBoxTriggerMessage extends Packet<VideoBlackBoxTriggerMessage> implements Settable<VideoBlackBoxTriggerMessage>, EpsilonComparable<VideoBlackBoxTriggerMessage>
+{
+   /**
+            * Unique ID used to identify this message, should preferably be consecutively increasing.
+            */
+   public long sequence_id_;
+   /**
+            * Seconds of video before the trigger to save, 0 to save all the video held.
+            */
+   public double duration_;
+
+   public VideoBlackBoxTriggerMessage()
+   {
+   }
+
+   public VideoBlackBoxTriggerMessage(VideoBlackBoxTriggerMessage other)
+   {
+      this();
+      set(other);
+   }
+
+   public void set(VideoBlackBoxTriggerMessage other)
+   {
+      sequence_id_ = other.sequence_id_;
+
+      duration_ = other.duration_;
+
+   }
+
+   /**
+            * Unique ID used to identify this message, should preferably be consecutively increasing.
+            */
+   public void setSequenceId(long sequence_id)
+   {
+      sequence_id_ = sequence_id;
+   }
+   /**
+            * Unique ID used to identify this message, should preferably be consecutively increasing.
+            */
+   public long getSequenceId()
+   {
+      return sequence_id_;
+   }
+
+   /**
+            * Seconds of video before the trigger to save, 0 to save all the video held.
+            */
+   public void setDuration(double duration)
+   {
+      duration_ = duration;
+   }
+   /**
+            * Seconds of video before the trigger to save, 0 to save all the video held.
+            */
+   public double getDuration()
+   {
+      return duration_;
+   }
+
+
+   public static Supplier<VideoBlackBoxTriggerMessagePubSubType> getPubSubType()
+   {
+      return VideoBlackBoxTriggerMessagePubSubType::new;
+   }
+
+   @Override
+   public Supplier<TopicDataType> getPubSubTypePacket()
+   {
+      return VideoBlackBoxTriggerMessagePubSubType::new;
+   }
+
+   @Override
+   public boolean epsilonEquals(VideoBlackBoxTriggerMessage other, double epsilon)
+   {
+      if(other == null) return false;
+      if(other == this) return true;
+
+      if (!us.ihmc.idl.IDLTools.epsilonEqualsPrimitive(this.sequence_id_, other.sequence_id_, epsilon)) return false;
+
+      if (!us.ihmc.idl.IDLTools.epsilonEqualsPrimitive(this.duration_, other.duration_, epsilon)) return false;
+
+
+      return true;
+   }
+
+   @Override
+   public boolean equals(Object other)
+   {
+      if(other == null) return false;
+      if(other == this) return true;
+      if(!(other instanceof VideoBlackBoxTriggerMessage)) return false;
+
+      VideoBlackBoxTriggerMessage otherMyClass = (VideoBlackBoxTriggerMessage) other;
+
+      if(this.sequence_id_ != otherMyClass.sequence_id_) return false;
+
+      if(this.duration_ != otherMyClass.duration_) return false;
+
+
+      return true;
+   }
+
+   @Override
+   public java.lang.String toString()
+   {
+      StringBuilder builder = new StringBuilder();
+
+      builder.append("VideoBlackBoxTriggerMessage {");
+      builder.append("sequence_id=");
+      builder.append(this.sequence_id_);      builder.append(", ");
+      builder.append("duration=");
+      builder.append(this.duration_);
+      builder.append("}");
+      return builder.toString();
+   }
+}
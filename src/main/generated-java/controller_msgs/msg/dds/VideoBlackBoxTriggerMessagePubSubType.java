@@ -0,0 +1,143 @@
+package controller_msgs.msg.dds;
+
+/**
+* 
+* Topic data type of the struct "VideoBlackBoxTriggerMessage" defined in "VideoBlackBoxTriggerMessage_.idl". Use this class to provide the TopicDataType to a Participant. 
+*
+* This file was automatically generated from VideoBlackBoxTriggerMessage_.idl by us.ihmc.idl.generator.IDLGenerator. 
+* Do not update this file directly, edit VideoBlackBoxTriggerMessage_.idl instead.
+*
+*/
+public class VideoBlackBoxTriggerMessagePubSubType implements us.ihmc.pubsub.TopicDataType<controller_msgs.msg.dds.VideoBlackBoxTriggerMessage>
+{
+   public static final java.lang.String name = "controller_msgs::msg::dds_::VideoBlackBoxTriggerMessage_";
+
+   private final us.ihmc.idl.CDR serializeCDR = new us.ihmc.idl.CDR();
+   private final us.ihmc.idl.CDR deserializeCDR = new us.ihmc.idl.CDR();
+
+   @Override
+   public void serialize(controller_msgs.msg.dds.VideoBlackBoxTriggerMessage data, us.ihmc.pubsub.common.SerializedPayload serializedPayload) throws java.io.IOException
+   {
+      serializeCDR.serialize(serializedPayload);
+      write(data, serializeCDR);
+      serializeCDR.finishSerialize();
+   }
+
+   @Override
+   public void deserialize(us.ihmc.pubsub.common.SerializedPayload serializedPayload, controller_msgs.msg.dds.VideoBlackBoxTriggerMessage data) throws java.io.IOException
+   {
+      deserializeCDR.deserialize(serializedPayload);
+      read(data, deserializeCDR);
+      deserializeCDR.finishDeserialize();
+   }
+
+   public static int getMaxCdrSerializedSize()
+   {
+      return getMaxCdrSerializedSize(0);
+   }
+
+   public static int getMaxCdrSerializedSize(int current_alignment)
+   {
+      int initial_alignment = current_alignment;
+
+      current_alignment += 4 + us.ihmc.idl.CDR.alignment(current_alignment, 4);
+
+      current_alignment += 8 + us.ihmc.idl.CDR.alignment(current_alignment, 8);
+
+
+      return current_alignment - initial_alignment;
+   }
+
+   public final static int getCdrSerializedSize(controller_msgs.msg.dds.VideoBlackBoxTriggerMessage data)
+   {
+      return getCdrSerializedSize(data, 0);
+   }
+
+   public final static int getCdrSerializedSize(controller_msgs.msg.dds.VideoBlackBoxTriggerMessage data, int current_alignment)
+   {
+      int initial_alignment = current_alignment;
+
+      current_alignment += 4 + us.ihmc.idl.CDR.alignment(current_alignment, 4);
+
+
+      current_alignment += 8 + us.ihmc.idl.CDR.alignment(current_alignment, 8);
+
+
+
+      return current_alignment - initial_alignment;
+   }
+
+   public static void write(controller_msgs.msg.dds.VideoBlackBoxTriggerMessage data, us.ihmc.idl.CDR cdr)
+   {
+      cdr.write_type_4(data.getSequenceId());
+
+      cdr.write_type_6(data.getDuration());
+
+   }
+
+   public static void read(controller_msgs.msg.dds.VideoBlackBoxTriggerMessage data, us.ihmc.idl.CDR cdr)
+   {
+      data.setSequenceId(cdr.read_type_4());
+      	
+      data.setDuration(cdr.read_type_6());
+      	
+
+   }
+
+   @Override
+   public final void serialize(controller_msgs.msg.dds.VideoBlackBoxTriggerMessage data, us.ihmc.idl.InterchangeSerializer ser)
+   {
+      ser.write_type_4("sequence_id", data.getSequenceId());
+      ser.write_type_6("duration", data.getDuration());
+   }
+
+   @Override
+   public final void deserialize(us.ihmc.idl.InterchangeSerializer ser, controller_msgs.msg.dds.VideoBlackBoxTriggerMessage data)
+   {
+      data.setSequenceId(ser.read_type_4("sequence_id"));
+      data.setDuration(ser.read_type_6("duration"));
+   }
+
+   public static void staticCopy(controller_msgs.msg.dds.VideoBlackBoxTriggerMessage src, controller_msgs.msg.dds.VideoBlackBoxTriggerMessage dest)
+   {
+      dest.set(src);
+   }
+
+   @Override
+   public controller_msgs.msg.dds.VideoBlackBoxTriggerMessage createData()
+   {
+      return new controller_msgs.msg.dds.VideoBlackBoxTriggerMessage();
+   }
+   @Override
+   public int getTypeSize()
+   {
+      return us.ihmc.idl.CDR.getTypeSize(getMaxCdrSerializedSize());
+   }
+
+   @Override
+   public java.lang.String getName()
+   {
+      return name;
+   }
+   
+   public void serialize(controller_msgs.msg.dds.VideoBlackBoxTriggerMessage data, us.ihmc.idl.CDR cdr)
+   {
+      write(data, cdr);
+   }
+
+   public void deserialize(controller_msgs.msg.dds.VideoBlackBoxTriggerMessage data, us.ihmc.idl.CDR cdr)
+   {
+      read(data, cdr);
+   }
+   
+   public void copy(controller_msgs.msg.dds.VideoBlackBoxTriggerMessage src, controller_msgs.msg.dds.VideoBlackBoxTriggerMessage dest)
+   {
+      staticCopy(src, dest);
+   }
+
+   @Override
+   public VideoBlackBoxTriggerMessagePubSubType newInstance()
+   {
+      return new VideoBlackBoxTriggerMessagePubSubType();
+   }
+}
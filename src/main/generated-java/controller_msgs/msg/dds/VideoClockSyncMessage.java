@@ -0,0 +1,235 @@
+package controller_msgs.msg.dds;
+
+import us.ihmc.communication.packets.Packet;
+import us.ihmc.euclid.interfaces.Settable;
+import us.ihmc.euclid.interfaces.EpsilonComparable;
+import java.util.function.Supplier;
+import us.ihmc.pubsub.TopicDataType;
+
+/**
+       * Ping sent by a video receiver and echoed by the video publishers, used by the receiver to estimate the offset between its clock and the clock of each publisher.
+       */
+public class VideoClockSyncMessage extends Packet<VideoClockSyncMessage> implements Settable<VideoClockSyncMessage>, EpsilonComparable<VideoClockSyncMessage>
+{
+   /**
+            * Unique ID used to identify this message, should preferably be consecutively increasing.
+            */
+   public long sequence_id_;
+   /**
+            * Clock ID of the receiver that sent the ping.
+            */
+   public long requester_clock_id_;
+   /**
+            * Clock ID of the publisher that echoed the ping, 0 in the ping.
+            */
+   public long responder_clock_id_;
+   /**
+            * Time in nanoseconds since the epoch at which the ping was sent, in the clock of the receiver.
+            */
+   public long request_time_;
+   /**
+            * Time in nanoseconds since the epoch at which the ping was received, in the clock of the publisher.
+            */
+   public long receive_time_;
+   /**
+            * Time in nanoseconds since the epoch at which the echo was sent, in the clock of the publisher.
+            */
+   public long transmit_time_;
+
+   public VideoClockSyncMessage()
+   {
+   }
+
+   public VideoClockSyncMessage(VideoClockSyncMessage other)
+   {
+      this();
+      set(other);
+   }
+
+   public void set(VideoClockSyncMessage other)
+   {
+      sequence_id_ = other.sequence_id_;
+
+      requester_clock_id_ = other.requester_clock_id_;
+
+      responder_clock_id_ = other.responder_clock_id_;
+
+      request_time_ = other.request_time_;
+
+      receive_time_ = other.receive_time_;
+
+      transmit_time_ = other.transmit_time_;
+
+   }
+
+   /**
+            * Unique ID used to identify this message, should preferably be consecutively increasing.
+            */
+   public void setSequenceId(long sequence_id)
+   {
+      sequence_id_ = sequence_id;
+   }
+   /**
+            * Unique ID used to identify this message, should preferably be consecutively increasing.
+            */
+   public long getSequenceId()
+   {
+      return sequence_id_;
+   }
+
+   /**
+            * Clock ID of the receiver that sent the ping.
+            */
+   public void setRequesterClockId(long requester_clock_id)
+   {
+      requester_clock_id_ = requester_clock_id;
+   }
+   /**
+            * Clock ID of the receiver that sent the ping.
+            */
+   public long getRequesterClockId()
+   {
+      return requester_clock_id_;
+   }
+
+   /**
+            * Clock ID of the publisher that echoed the ping, 0 in the ping.
+            */
+   public void setResponderClockId(long responder_clock_id)
+   {
+      responder_clock_id_ = responder_clock_id;
+   }
+   /**
+            * Clock ID of the publisher that echoed the ping, 0 in the ping.
+            */
+   public long getResponderClockId()
+   {
+      return responder_clock_id_;
+   }
+
+   /**
+            * Time in nanoseconds since the epoch at which the ping was sent, in the clock of the receiver.
+            */
+   public void setRequestTime(long request_time)
+   {
+      request_time_ = request_time;
+   }
+   /**
+            * Time in nanoseconds since the epoch at which the ping was sent, in the clock of the receiver.
+            */
+   public long getRequestTime()
+   {
+      return request_time_;
+   }
+
+   /**
+            * Time in nanoseconds since the epoch at which the ping was received, in the clock of the publisher.
+            */
+   public void setReceiveTime(long receive_time)
+   {
+      receive_time_ = receive_time;
+   }
+   /**
+            * Time in nanoseconds since the epoch at which the ping was received, in the clock of the publisher.
+            */
+   public long getReceiveTime()
+   {
+      return receive_time_;
+   }
+
+   /**
+            * Time in nanoseconds since the epoch at which the echo was sent, in the clock of the publisher.
+            */
+   public void setTransmitTime(long transmit_time)
+   {
+      transmit_time_ = transmit_time;
+   }
+   /**
+            * Time in nanoseconds since the epoch at which the echo was sent, in the clock of the publisher.
+            */
+   public long getTransmitTime()
+   {
+      return transmit_time_;
+   }
+
+
+   public static Supplier<VideoClockSyncMessagePubSubType> getPubSubType()
+   {
+      return VideoClockSyncMessagePubSubType::new;
+   }
+
+   @Override
+   public Supplier<TopicDataType> getPubSubTypePacket()
+   {
+      return VideoClockSyncMessagePubSubType::new;
+   }
+
+   @Override
+   public boolean epsilonEquals(VideoClockSyncMessage other, double epsilon)
+   {
+      if(other == null) return false;
+      if(other == this) return true;
+
+      if (!us.ihmc.idl.IDLTools.epsilonEqualsPrimitive(this.sequence_id_, other.sequence_id_, epsilon)) return false;
+
+      if (!us.ihmc.idl.IDLTools.epsilonEqualsPrimitive(this.requester_clock_id_, other.requester_clock_id_, epsilon)) return false;
+
+      if (!us.ihmc.idl.IDLTools.epsilonEqualsPrimitive(this.responder_clock_id_, other.responder_clock_id_, epsilon)) return false;
+
+      if (!us.ihmc.idl.IDLTools.epsilonEqualsPrimitive(this.request_time_, other.request_time_, epsilon)) return false;
+
+      if (!us.ihmc.idl.IDLTools.epsilonEqualsPrimitive(this.receive_time_, other.receive_time_, epsilon)) return false;
+
+      if (!us.ihmc.idl.IDLTools.epsilonEqualsPrimitive(this.transmit_time_, other.transmit_time_, epsilon)) return false;
+
+
+      return true;
+   }
+
+   @Override
+   public boolean equals(Object other)
+   {
+      if(other == null) return false;
+      if(other == this) return true;
+      if(!(other instanceof VideoClockSyncMessage)) return false;
+
+      VideoClockSyncMessage otherMyClass = (VideoClockSyncMessage) other;
+
+      if(this.sequence_id_ != otherMyClass.sequence_id_) return false;
+
+      if(this.requester_clock_id_ != otherMyClass.requester_clock_id_) return false;
+
+      if(this.responder_clock_id_ != otherMyClass.responder_clock_id_) return false;
+
+      if(this.request_time_ != otherMyClass.request_time_) return false;
+
+      if(this.receive_time_ != otherMyClass.receive_time_) return false;
+
+      if(this.transmit_time_ != otherMyClass.transmit_time_) return false;
+
+
+      return true;
+   }
+
+   @Override
+   public java.lang.String toString()
+   {
+      StringBuilder builder = new StringBuilder();
+
+      builder.append("VideoClockSyncMessage {");
+      builder.append("sequence_id=");
+      builder.append(this.sequence_id_);      builder.append(", ");
+      builder.append("requester_clock_id=");
+      builder.append(this.requester_clock_id_);      builder.append(", ");
+      builder.append("responder_clock_id=");
+      builder.append(this.responder_clock_id_);      builder.append(", ");
+      builder.append("request_time=");
+      builder.append(this.request_time_);      builder.append(", ");
+      builder.append("receive_time=");
+      builder.append(this.receive_time_);      builder.append(", ");
+      builder.append("transmit_time=");
+      builder.append(this.transmit_time_);
+      builder.append("}");
+      return builder.toString();
+   }
+}
@@ -0,0 +1,187 @@
+package controller_msgs.msg.dds;
+
+/**
+* 
+* Topic data type of the struct "VideoClockSyncMessage" defined in "VideoClockSyncMessage_.idl". Use this class to provide the TopicDataType to a Participant. 
+*
+* This file was automatically generated from VideoClockSyncMessage_.idl by us.ihmc.idl.generator.IDLGenerator. 
+* Do not update this file directly, edit VideoClockSyncMessage_.idl instead.
+*
+*/
+public class VideoClockSyncMessagePubSubType implements us.ihmc.pubsub.TopicDataType<controller_msgs.msg.dds.VideoClockSyncMessage>
+{
+   public static final java.lang.String name = "controller_msgs::msg::dds_::VideoClockSyncMessage_";
+
+   private final us.ihmc.idl.CDR serializeCDR = new us.ihmc.idl.CDR();
+   private final us.ihmc.idl.CDR deserializeCDR = new us.ihmc.idl.CDR();
+
+   @Override
+   public void serialize(controller_msgs.msg.dds.VideoClockSyncMessage data, us.ihmc.pubsub.common.SerializedPayload serializedPayload) throws java.io.IOException
+   {
+      serializeCDR.serialize(serializedPayload);
+      write(data, serializeCDR);
+      serializeCDR.finishSerialize();
+   }
+
+   @Override
+   public void deserialize(us.ihmc.pubsub.common.SerializedPayload serializedPayload, controller_msgs.msg.dds.VideoClockSyncMessage data) throws java.io.IOException
+   {
+      deserializeCDR.deserialize(serializedPayload);
+      read(data, deserializeCDR);
+      deserializeCDR.finishDeserialize();
+   }
+
+   public static int getMaxCdrSerializedSize()
+   {
+      return getMaxCdrSerializedSize(0);
+   }
+
+   public static int getMaxCdrSerializedSize(int current_alignment)
+   {
+      int initial_alignment = current_alignment;
+
+      current_alignment += 4 + us.ihmc.idl.CDR.alignment(current_alignment, 4);
+
+      current_alignment += 8 + us.ihmc.idl.CDR.alignment(current_alignment, 8);
+
+      current_alignment += 8 + us.ihmc.idl.CDR.alignment(current_alignment, 8);
+
+      current_alignment += 8 + us.ihmc.idl.CDR.alignment(current_alignment, 8);
+
+      current_alignment += 8 + us.ihmc.idl.CDR.alignment(current_alignment, 8);
+
+      current_alignment += 8 + us.ihmc.idl.CDR.alignment(current_alignment, 8);
+
+
+      return current_alignment - initial_alignment;
+   }
+
+   public final static int getCdrSerializedSize(controller_msgs.msg.dds.VideoClockSyncMessage data)
+   {
+      return getCdrSerializedSize(data, 0);
+   }
+
+   public final static int getCdrSerializedSize(controller_msgs.msg.dds.VideoClockSyncMessage data, int current_alignment)
+   {
+      int initial_alignment = current_alignment;
+
+      current_alignment += 4 + us.ihmc.idl.CDR.alignment(current_alignment, 4);
+
+
+      current_alignment += 8 + us.ihmc.idl.CDR.alignment(current_alignment, 8);
+
+
+      current_alignment += 8 + us.ihmc.idl.CDR.alignment(current_alignment, 8);
+
+
+      current_alignment += 8 + us.ihmc.idl.CDR.alignment(current_alignment, 8);
+
+
+      current_alignment += 8 + us.ihmc.idl.CDR.alignment(current_alignment, 8);
+
+
+      current_alignment += 8 + us.ihmc.idl.CDR.alignment(current_alignment, 8);
+
+
+
+      return current_alignment - initial_alignment;
+   }
+
+   public static void write(controller_msgs.msg.dds.VideoClockSyncMessage data, us.ihmc.idl.CDR cdr)
+   {
+      cdr.write_type_4(data.getSequenceId());
+
+      cdr.write_type_11(data.getRequesterClockId());
+
+      cdr.write_type_11(data.getResponderClockId());
+
+      cdr.write_type_11(data.getRequestTime());
+
+      cdr.write_type_11(data.getReceiveTime());
+
+      cdr.write_type_11(data.getTransmitTime());
+
+   }
+
+   public static void read(controller_msgs.msg.dds.VideoClockSyncMessage data, us.ihmc.idl.CDR cdr)
+   {
+      data.setSequenceId(cdr.read_type_4());
+      	
+      data.setRequesterClockId(cdr.read_type_11());
+      	
+      data.setResponderClockId(cdr.read_type_11());
+      	
+      data.setRequestTime(cdr.read_type_11());
+      	
+      data.setReceiveTime(cdr.read_type_11());
+      	
+      data.setTransmitTime(cdr.read_type_11());
+      	
+
+   }
+
+   @Override
+   public final void serialize(controller_msgs.msg.dds.VideoClockSyncMessage data, us.ihmc.idl.InterchangeSerializer ser)
+   {
+      ser.write_type_4("sequence_id", data.getSequenceId());
+      ser.write_type_11("requester_clock_id", data.getRequesterClockId());
+      ser.write_type_11("responder_clock_id", data.getResponderClockId());
+      ser.write_type_11("request_time", data.getRequestTime());
+      ser.write_type_11("receive_time", data.getReceiveTime());
+      ser.write_type_11("transmit_time", data.getTransmitTime());
+   }
+
+   @Override
+   public final void deserialize(us.ihmc.idl.InterchangeSerializer ser, controller_msgs.msg.dds.VideoClockSyncMessage data)
+   {
+      data.setSequenceId(ser.read_type_4("sequence_id"));
+      data.setRequesterClockId(ser.read_type_11("requester_clock_id"));
+      data.setResponderClockId(ser.read_type_11("responder_clock_id"));
+      data.setRequestTime(ser.read_type_11("request_time"));
+      data.setReceiveTime(ser.read_type_11("receive_time"));
+      data.setTransmitTime(ser.read_type_11("transmit_time"));
+   }
+
+   public static void staticCopy(controller_msgs.msg.dds.VideoClockSyncMessage src, controller_msgs.msg.dds.VideoClockSyncMessage dest)
+   {
+      dest.set(src);
+   }
+
+   @Override
+   public controller_msgs.msg.dds.VideoClockSyncMessage createData()
+   {
+      return new controller_msgs.msg.dds.VideoClockSyncMessage();
+   }
+   @Override
+   public int getTypeSize()
+   {
+      return us.ihmc.idl.CDR.getTypeSize(getMaxCdrSerializedSize());
+   }
+
+   @Override
+   public java.lang.String getName()
+   {
+      return name;
+   }
+   
+   public void serialize(controller_msgs.msg.dds.VideoClockSyncMessage data, us.ihmc.idl.CDR cdr)
+   {
+      write(data, cdr);
+   }
+
+   public void deserialize(controller_msgs.msg.dds.VideoClockSyncMessage data, us.ihmc.idl.CDR cdr)
+   {
+      read(data, cdr);
+   }
+   
+   public void copy(controller_msgs.msg.dds.VideoClockSyncMessage src, controller_msgs.msg.dds.VideoClockSyncMessage dest)
+   {
+      staticCopy(src, dest);
+   }
+
+   @Override
+   public VideoClockSyncMessagePubSubType newInstance()
+   {
+      return new VideoClockSyncMessagePubSubType();
+   }
+}
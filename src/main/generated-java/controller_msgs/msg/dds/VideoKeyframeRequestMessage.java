@@ -0,0 +1,128 @@
+package controller_msgs.msg.dds;
+
+import us.ihmc.communication.packets.Packet;
+import us.ihmc.euclid.interfaces.Settable;
+import us.ihmc.euclid.interfaces.EpsilonComparable;
+import java.util.function.Supplier;
+import us.ihmc.pubsub.TopicDataType;
+
+/**
+       * Sent by a video receiver to ask the publishers of inter-frame encoded video to send a keyframe, typically when it joins a stream or loses frames.
+       */
+public class VideoKeyframeRequestMessage extends Packet<VideoKeyframeRequestMessage> implements Settable<VideoKeyframeRequestMessage>, EpsilonComparable<VideoKeyframeRequestMessage>
+{
+   public static final byte VIDEO_SOURCE_ALL = (byte) 255;
+   /**
+            * Unique ID used to identify this message, should preferably be consecutively increasing.
+            */
+   public long sequence_id_;
+   /**
+            * Video source that should send a keyframe, VIDEO_SOURCE_ALL for all of them.
+            */
+   public byte video_source_ = (byte) 255;
+
+   public VideoKeyframeRequestMessage()
+   {
+   }
+
+   public VideoKeyframeRequestMessage(VideoKeyframeRequestMessage other)
+   {
+      this();
+      set(other);
+   }
+
+   public void set(VideoKeyframeRequestMessage other)
+   {
+      sequence_id_ = other.sequence_id_;
+
+      video_source_ = other.video_source_;
+
+   }
+
+   /**
+            * Unique ID used to identify this message, should preferably be consecutively increasing.
+            */
+   public void setSequenceId(long sequence_id)
+   {
+      sequence_id_ = sequence_id;
+   }
+   /**
+            * Unique ID used to identify this message, should preferably be consecutively increasing.
+            */
+   public long getSequenceId()
+   {
+      return sequence_id_;
+   }
+
+   /**
+            * Video source that should send a keyframe, VIDEO_SOURCE_ALL for all of them.
+            */
+   public void setVideoSource(byte video_source)
+   {
+      video_source_ = video_source;
+   }
+   /**
+            * Video source that should send a keyframe, VIDEO_SOURCE_ALL for all of them.
+            */
+   public byte getVideoSource()
+   {
+      return video_source_;
+   }
+
+
+   public static Supplier<VideoKeyframeRequestMessagePubSubType> getPubSubType()
+   {
+      return VideoKeyframeRequestMessagePubSubType::new;
+   }
+
+   @Override
+   public Supplier<TopicDataType> getPubSubTypePacket()
+   {
+      return VideoKeyframeRequestMessagePubSubType::new;
+   }
+
+   @Override
+   public boolean epsilonEquals(VideoKeyframeRequestMessage other, double epsilon)
+   {
+      if(other == null) return false;
+      if(other == this) return true;
+
+      if (!us.ihmc.idl.IDLTools.epsilonEqualsPrimitive(this.sequence_id_, other.sequence_id_, epsilon)) return false;
+
+      if (!us.ihmc.idl.IDLTools.epsilonEqualsPrimitive(this.video_source_, other.video_source_, epsilon)) return false;
+
+
+      return true;
+   }
+
+   @Override
+   public boolean equals(Object other)
+   {
+      if(other == null) return false;
+      if(other == this) return true;
+      if(!(other instanceof VideoKeyframeRequestMessage)) return false;
+
+      VideoKeyframeRequestMessage otherMyClass = (VideoKeyframeRequestMessage) other;
+
+      if(this.sequence_id_ != otherMyClass.sequence_id_) return false;
+
+      if(this.video_source_ != otherMyClass.video_source_) return false;
+
+
+      return true;
+   }
+
+   @Override
+   public java.lang.String toString()
+   {
+      StringBuilder builder = new StringBuilder();
+
+      builder.append("VideoKeyframeRequestMessage {");
+      builder.append("sequence_id=");
+      builder.append(this.sequence_id_);      builder.append(", ");
+      builder.append("video_source=");
+      builder.append(this.video_source_);
+      builder.append("}");
+      return builder.toString();
+   }
+}
@@ -15,6 +15,9 @@ public class VideoPacket extends Packet<VideoPacket> implements Settable<VideoPa
    public static final byte VIDEO_SOURCE_CV_THRESHOLD = (byte) 4;
    public static final byte VIDEO_SOURCE_IMAGE_PROCESSING_BEHAVIOR = (byte) 5;
    public static final byte VIDEO_SOURCE_AWARE_FACE_TRACKER = (byte) 6;
+   public static final byte CODEC_JPEG = (byte) 0;
+   public static final byte CODEC_H264 = (byte) 1;
+   public static final byte CODEC_JPEG_STRIPS = (byte) 2;
    /**
             * Unique ID used to identify this message, should preferably be consecutively increasing.
             */
@@ -25,6 +28,42 @@ public class VideoPacket extends Packet<VideoPacket> implements Settable<VideoPa
    public us.ihmc.euclid.tuple3D.Point3D position_;
    public us.ihmc.euclid.tuple4D.Quaternion orientation_;
    public controller_msgs.msg.dds.IntrinsicParametersMessage intrinsic_parameters_;
+   /**
+            * Frames larger than the data field are split into fragment_count packets sharing the same sequence_id. Index of this fragment in the frame.
+            */
+   public int fragment_index_;
+   /**
+            * Number of fragments of the frame, 0 or 1 when the frame is not fragmented.
+            */
+   public int fragment_count_;
+   /**
+            * Position of the data of this fragment in the frame.
+            */
+   public int fragment_offset_;
+   /**
+            * Size in bytes of the whole frame.
+            */
+   public int frame_size_;
+   /**
+            * Compression of the data, one of the CODEC_ constants. H.264 frames hold the NAL units of one access unit in Annex B format. JPEG strip frames hold a layout header followed by one JPEG per horizontal strip of the frame.
+            */
+   public byte codec_;
+   /**
+            * Random ID of the clock the following times are given in, drawn by the publisher at startup.
+            */
+   public long clock_id_;
+   /**
+            * Time in nanoseconds since the epoch at which the frame was grabbed from the camera.
+            */
+   public long capture_time_;
+   /**
+            * Time in nanoseconds since the epoch at which the frame was done encoding.
+            */
+   public long encode_time_;
+   /**
+            * Time in nanoseconds since the epoch at which the first fragment of the frame was published.
+            */
+   public long publish_time_;
 
    public VideoPacket()
    {
@@ -53,6 +92,24 @@ public class VideoPacket extends Packet<VideoPacket> implements Settable<VideoPa
       geometry_msgs.msg.dds.PointPubSubType.staticCopy(other.position_, position_);
       geometry_msgs.msg.dds.QuaternionPubSubType.staticCopy(other.orientation_, orientation_);
       controller_msgs.msg.dds.IntrinsicParametersMessagePubSubType.staticCopy(other.intrinsic_parameters_, intrinsic_parameters_);
+      fragment_index_ = other.fragment_index_;
+
+      fragment_count_ = other.fragment_count_;
+
+      fragment_offset_ = other.fragment_offset_;
+
+      frame_size_ = other.frame_size_;
+
+      codec_ = other.codec_;
+
+      clock_id_ = other.clock_id_;
+
+      capture_time_ = other.capture_time_;
+
+      encode_time_ = other.encode_time_;
+
+      publish_time_ = other.publish_time_;
+
    }
 
    /**
@@ -113,6 +170,144 @@ public class VideoPacket extends Packet<VideoPacket> implements Settable<VideoPa
    }
 
 
+   /**
+            * Frames larger than the data field are split into fragment_count packets sharing the same sequence_id. Index of this fragment in the frame.
+            */
+   public void setFragmentIndex(int fragment_index)
+   {
+      fragment_index_ = fragment_index;
+   }
+   /**
+            * Frames larger than the data field are split into fragment_count packets sharing the same sequence_id. Index of this fragment in the frame.
+            */
+   public int getFragmentIndex()
+   {
+      return fragment_index_;
+   }
+
+   /**
+            * Number of fragments of the frame, 0 or 1 when the frame is not fragmented.
+            */
+   public void setFragmentCount(int fragment_count)
+   {
+      fragment_count_ = fragment_count;
+   }
+   /**
+            * Number of fragments of the frame, 0 or 1 when the frame is not fragmented.
+            */
+   public int getFragmentCount()
+   {
+      return fragment_count_;
+   }
+
+   /**
+            * Position of the data of this fragment in the frame.
+            */
+   public void setFragmentOffset(int fragment_offset)
+   {
+      fragment_offset_ = fragment_offset;
+   }
+   /**
+            * Position of the data of this fragment in the frame.
+            */
+   public int getFragmentOffset()
+   {
+      return fragment_offset_;
+   }
+
+   /**
+            * Size in bytes of the whole frame.
+            */
+   public void setFrameSize(int frame_size)
+   {
+      frame_size_ = frame_size;
+   }
+   /**
+            * Size in bytes of the whole frame.
+            */
+   public int getFrameSize()
+   {
+      return frame_size_;
+   }
+
+
+   /**
+            * Compression of the data, one of the CODEC_ constants. H.264 frames hold the NAL units of one access unit in Annex B format. JPEG strip frames hold a layout header followed by one JPEG per horizontal strip of the frame.
+            */
+   public void setCodec(byte codec)
+   {
+      codec_ = codec;
+   }
+   /**
+            * Compression of the data, one of the CODEC_ constants. H.264 frames hold the NAL units of one access unit in Annex B format. JPEG strip frames hold a layout header followed by one JPEG per horizontal strip of the frame.
+            */
+   public byte getCodec()
+   {
+      return codec_;
+   }
+
+
+   /**
+            * Random ID of the clock the following times are given in, drawn by the publisher at startup.
+            */
+   public void setClockId(long clock_id)
+   {
+      clock_id_ = clock_id;
+   }
+   /**
+            * Random ID of the clock the following times are given in, drawn by the publisher at startup.
+            */
+   public long getClockId()
+   {
+      return clock_id_;
+   }
+
+   /**
+            * Time in nanoseconds since the epoch at which the frame was grabbed from the camera.
+            */
+   public void setCaptureTime(long capture_time)
+   {
+      capture_time_ = capture_time;
+   }
+   /**
+            * Time in nanoseconds since the epoch at which the frame was grabbed from the camera.
+            */
+   public long getCaptureTime()
+   {
+      return capture_time_;
+   }
+
+   /**
+            * Time in nanoseconds since the epoch at which the frame was done encoding.
+            */
+   public void setEncodeTime(long encode_time)
+   {
+      encode_time_ = encode_time;
+   }
+   /**
+            * Time in nanoseconds since the epoch at which the frame was done encoding.
+            */
+   public long getEncodeTime()
+   {
+      return encode_time_;
+   }
+
+   /**
+            * Time in nanoseconds since the epoch at which the first fragment of the frame was published.
+            */
+   public void setPublishTime(long publish_time)
+   {
+      publish_time_ = publish_time;
+   }
+   /**
+            * Time in nanoseconds since the epoch at which the first fragment of the frame was published.
+            */
+   public long getPublishTime()
+   {
+      return publish_time_;
+   }
+
+
    public static Supplier<VideoPacketPubSubType> getPubSubType()
    {
       return VideoPacketPubSubType::new;
@@ -142,6 +337,24 @@ public class VideoPacket extends Packet<VideoPacket> implements Settable<VideoPa
       if (!this.orientation_.epsilonEquals(other.orientation_, epsilon)) return false;
       if (!this.intrinsic_parameters_.epsilonEquals(other.intrinsic_parameters_, epsilon)) return false;
 
+      if (!us.ihmc.idl.IDLTools.epsilonEqualsPrimitive(this.fragment_index_, other.fragment_index_, epsilon)) return false;
+
+      if (!us.ihmc.idl.IDLTools.epsilonEqualsPrimitive(this.fragment_count_, other.fragment_count_, epsilon)) return false;
+
+      if (!us.ihmc.idl.IDLTools.epsilonEqualsPrimitive(this.fragment_offset_, other.fragment_offset_, epsilon)) return false;
+
+      if (!us.ihmc.idl.IDLTools.epsilonEqualsPrimitive(this.frame_size_, other.frame_size_, epsilon)) return false;
+
+      if (!us.ihmc.idl.IDLTools.epsilonEqualsPrimitive(this.codec_, other.codec_, epsilon)) return false;
+
+      if (!us.ihmc.idl.IDLTools.epsilonEqualsPrimitive(this.clock_id_, other.clock_id_, epsilon)) return false;
+
+      if (!us.ihmc.idl.IDLTools.epsilonEqualsPrimitive(this.capture_time_, other.capture_time_, epsilon)) return false;
+
+      if (!us.ihmc.idl.IDLTools.epsilonEqualsPrimitive(this.encode_time_, other.encode_time_, epsilon)) return false;
+
+      if (!us.ihmc.idl.IDLTools.epsilonEqualsPrimitive(this.publish_time_, other.publish_time_, epsilon)) return false;
+
       return true;
    }
 
@@ -165,6 +378,24 @@ public class VideoPacket extends Packet<VideoPacket> implements Settable<VideoPa
       if (!this.orientation_.equals(otherMyClass.orientation_)) return false;
       if (!this.intrinsic_parameters_.equals(otherMyClass.intrinsic_parameters_)) return false;
 
+      if(this.fragment_index_ != otherMyClass.fragment_index_) return false;
+
+      if(this.fragment_count_ != otherMyClass.fragment_count_) return false;
+
+      if(this.fragment_offset_ != otherMyClass.fragment_offset_) return false;
+
+      if(this.frame_size_ != otherMyClass.frame_size_) return false;
+
+      if(this.codec_ != otherMyClass.codec_) return false;
+
+      if(this.clock_id_ != otherMyClass.clock_id_) return false;
+
+      if(this.capture_time_ != otherMyClass.capture_time_) return false;
+
+      if(this.encode_time_ != otherMyClass.encode_time_) return false;
+
+      if(this.publish_time_ != otherMyClass.publish_time_) return false;
+
       return true;
    }
 
@@ -187,7 +418,25 @@ public class VideoPacket extends Packet<VideoPacket> implements Settable<VideoPa
       builder.append("orientation=");
       builder.append(this.orientation_);      builder.append(", ");
       builder.append("intrinsic_parameters=");
-      builder.append(this.intrinsic_parameters_);
+      builder.append(this.intrinsic_parameters_);      builder.append(", ");
+      builder.append("fragment_index=");
+      builder.append(this.fragment_index_);      builder.append(", ");
+      builder.append("fragment_count=");
+      builder.append(this.fragment_count_);      builder.append(", ");
+      builder.append("fragment_offset=");
+      builder.append(this.fragment_offset_);      builder.append(", ");
+      builder.append("frame_size=");
+      builder.append(this.frame_size_);      builder.append(", ");
+      builder.append("codec=");
+      builder.append(this.codec_);      builder.append(", ");
+      builder.append("clock_id=");
+      builder.append(this.clock_id_);      builder.append(", ");
+      builder.append("capture_time=");
+      builder.append(this.capture_time_);      builder.append(", ");
+      builder.append("encode_time=");
+      builder.append(this.encode_time_);      builder.append(", ");
+      builder.append("publish_time=");
+      builder.append(this.publish_time_);
       builder.append("}");
       return builder.toString();
    }
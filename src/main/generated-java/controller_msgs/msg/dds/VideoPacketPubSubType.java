@@ -54,6 +54,24 @@ public class VideoPacketPubSubType implements us.ihmc.pubsub.TopicDataType<contr
 
       current_alignment += controller_msgs.msg.dds.IntrinsicParametersMessagePubSubType.getMaxCdrSerializedSize(current_alignment);
 
+      current_alignment += 4 + us.ihmc.idl.CDR.alignment(current_alignment, 4);
+
+      current_alignment += 4 + us.ihmc.idl.CDR.alignment(current_alignment, 4);
+
+      current_alignment += 4 + us.ihmc.idl.CDR.alignment(current_alignment, 4);
+
+      current_alignment += 4 + us.ihmc.idl.CDR.alignment(current_alignment, 4);
+
+      current_alignment += 1 + us.ihmc.idl.CDR.alignment(current_alignment, 1);
+
+      current_alignment += 8 + us.ihmc.idl.CDR.alignment(current_alignment, 8);
+
+      current_alignment += 8 + us.ihmc.idl.CDR.alignment(current_alignment, 8);
+
+      current_alignment += 8 + us.ihmc.idl.CDR.alignment(current_alignment, 8);
+
+      current_alignment += 8 + us.ihmc.idl.CDR.alignment(current_alignment, 8);
+
 
       return current_alignment - initial_alignment;
    }
@@ -86,6 +104,31 @@ public class VideoPacketPubSubType implements us.ihmc.pubsub.TopicDataType<contr
 
       current_alignment += controller_msgs.msg.dds.IntrinsicParametersMessagePubSubType.getCdrSerializedSize(data.getIntrinsicParameters(), current_alignment);
 
+      current_alignment += 4 + us.ihmc.idl.CDR.alignment(current_alignment, 4);
+
+
+      current_alignment += 4 + us.ihmc.idl.CDR.alignment(current_alignment, 4);
+
+
+      current_alignment += 4 + us.ihmc.idl.CDR.alignment(current_alignment, 4);
+
+
+      current_alignment += 4 + us.ihmc.idl.CDR.alignment(current_alignment, 4);
+
+      current_alignment += 1 + us.ihmc.idl.CDR.alignment(current_alignment, 1);
+
+      current_alignment += 8 + us.ihmc.idl.CDR.alignment(current_alignment, 8);
+
+
+      current_alignment += 8 + us.ihmc.idl.CDR.alignment(current_alignment, 8);
+
+
+      current_alignment += 8 + us.ihmc.idl.CDR.alignment(current_alignment, 8);
+
+
+      current_alignment += 8 + us.ihmc.idl.CDR.alignment(current_alignment, 8);
+
+
 
       return current_alignment - initial_alignment;
    }
@@ -105,6 +148,24 @@ public class VideoPacketPubSubType implements us.ihmc.pubsub.TopicDataType<contr
       geometry_msgs.msg.dds.PointPubSubType.write(data.getPosition(), cdr);
       geometry_msgs.msg.dds.QuaternionPubSubType.write(data.getOrientation(), cdr);
       controller_msgs.msg.dds.IntrinsicParametersMessagePubSubType.write(data.getIntrinsicParameters(), cdr);
+      cdr.write_type_2(data.getFragmentIndex());
+
+      cdr.write_type_2(data.getFragmentCount());
+
+      cdr.write_type_2(data.getFragmentOffset());
+
+      cdr.write_type_2(data.getFrameSize());
+
+      cdr.write_type_9(data.getCodec());
+
+      cdr.write_type_11(data.getClockId());
+
+      cdr.write_type_11(data.getCaptureTime());
+
+      cdr.write_type_11(data.getEncodeTime());
+
+      cdr.write_type_11(data.getPublishTime());
+
    }
 
    public static void read(controller_msgs.msg.dds.VideoPacket data, us.ihmc.idl.CDR cdr)
@@ -119,6 +180,24 @@ public class VideoPacketPubSubType implements us.ihmc.pubsub.TopicDataType<contr
       geometry_msgs.msg.dds.PointPubSubType.read(data.getPosition(), cdr);	
       geometry_msgs.msg.dds.QuaternionPubSubType.read(data.getOrientation(), cdr);	
       controller_msgs.msg.dds.IntrinsicParametersMessagePubSubType.read(data.getIntrinsicParameters(), cdr);	
+      data.setFragmentIndex(cdr.read_type_2());
+      	
+      data.setFragmentCount(cdr.read_type_2());
+      	
+      data.setFragmentOffset(cdr.read_type_2());
+      	
+      data.setFrameSize(cdr.read_type_2());
+      	
+      data.setCodec(cdr.read_type_9());
+      	
+      data.setClockId(cdr.read_type_11());
+      	
+      data.setCaptureTime(cdr.read_type_11());
+      	
+      data.setEncodeTime(cdr.read_type_11());
+      	
+      data.setPublishTime(cdr.read_type_11());
+      	
 
    }
 
@@ -134,6 +213,15 @@ public class VideoPacketPubSubType implements us.ihmc.pubsub.TopicDataType<contr
       ser.write_type_a("orientation", new geometry_msgs.msg.dds.QuaternionPubSubType(), data.getOrientation());
 
       ser.write_type_a("intrinsic_parameters", new controller_msgs.msg.dds.IntrinsicParametersMessagePubSubType(), data.getIntrinsicParameters());
+      ser.write_type_2("fragment_index", data.getFragmentIndex());
+      ser.write_type_2("fragment_count", data.getFragmentCount());
+      ser.write_type_2("fragment_offset", data.getFragmentOffset());
+      ser.write_type_2("frame_size", data.getFrameSize());
+      ser.write_type_9("codec", data.getCodec());
+      ser.write_type_11("clock_id", data.getClockId());
+      ser.write_type_11("capture_time", data.getCaptureTime());
+      ser.write_type_11("encode_time", data.getEncodeTime());
+      ser.write_type_11("publish_time", data.getPublishTime());
 
    }
 
@@ -149,6 +237,15 @@ public class VideoPacketPubSubType implements us.ihmc.pubsub.TopicDataType<contr
       ser.read_type_a("orientation", new geometry_msgs.msg.dds.QuaternionPubSubType(), data.getOrientation());
 
       ser.read_type_a("intrinsic_parameters", new controller_msgs.msg.dds.IntrinsicParametersMessagePubSubType(), data.getIntrinsicParameters());
+      data.setFragmentIndex(ser.read_type_2("fragment_index"));
+      data.setFragmentCount(ser.read_type_2("fragment_count"));
+      data.setFragmentOffset(ser.read_type_2("fragment_offset"));
+      data.setFrameSize(ser.read_type_2("frame_size"));
+      data.setCodec(ser.read_type_9("codec"));
+      data.setClockId(ser.read_type_11("clock_id"));
+      data.setCaptureTime(ser.read_type_11("capture_time"));
+      data.setEncodeTime(ser.read_type_11("encode_time"));
+      data.setPublishTime(ser.read_type_11("publish_time"));
 
    }
 
@@ -0,0 +1,486 @@
+package us.ihmc.videoacquisition;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.bytedeco.javacv.Frame;
+
+import controller_msgs.msg.dds.VideoKeyframeRequestMessage;
+import controller_msgs.msg.dds.VideoPacket;
+import us.ihmc.codecs.yuv.JPEGEncoder;
+import us.ihmc.commons.thread.ThreadTools;
+import us.ihmc.ros2.ROS2Publisher;
+import us.ihmc.videoacquisition.codec.H264Encoder;
+import us.ihmc.videoacquisition.codec.JPEGRateController;
+import us.ihmc.videoacquisition.codec.StripJPEGEncoder;
+import us.ihmc.videoacquisition.latency.VideoClock;
+import us.ihmc.videoacquisition.latency.VideoMetrics;
+import us.ihmc.videoacquisition.latency.VideoMetrics.Stage;
+import us.ihmc.videoacquisition.pipeline.CapturedFrame;
+import us.ihmc.videoacquisition.pipeline.EncodeScheduler;
+import us.ihmc.videoacquisition.pipeline.EncodedFrame;
+import us.ihmc.videoacquisition.pipeline.VideoPipeline;
+import us.ihmc.videoacquisition.recording.VideoBlackBox;
+import us.ihmc.videoacquisition.source.FrameSource;
+import us.ihmc.videoacquisition.yuv.FrameToYUV420Converter;
+import us.ihmc.videoacquisition.yuv.PlanarScaler;
+import us.ihmc.videoacquisition.yuv.PlanarScaler.Kernel;
+import us.ihmc.videoacquisition.yuv.YUV420Image;
+
+/**
+ * Grabs, compresses and publishes the frames of a single {@link FrameSource}.
+ * <p>
+ * Frames are compressed either as independent JPEGs, as JPEGs split in strips encoded in parallel,
+ * or as an H.264 stream. Every packet is tagged with the {@link VideoPacket#video_source_} given at
+ * construction so that several cameras can share a topic, with a sequence ID counting the published
+ * frames, and with the times the frame was grabbed, done encoding and published in the
+ * {@link VideoClock} so receivers can measure the latency. Frames too large for a single packet
+ * are sent in fragments. The grabber runs on its own thread; the encode stage runs either on a
+ * dedicated thread or on an {@link EncodeScheduler} shared with other cameras. The time of each
+ * stage and the frames published are recorded in the {@link VideoMetrics} of the camera.
+ * </p>
+ * <p>
+ * In H.264, an encoded frame that does not make it out, dropped by the publish queue, too large or
+ * failing to publish, is followed by a keyframe rather than by frames referring to it. Its
+ * sequence ID is skipped, so the receivers see the gap and do not decode the frames referring to it
+ * as if nothing was missing. In JPEG, where the frames do not refer to each other, the frames
+ * dropped by the publish queue leave no gap for the receivers to count as lost.
+ * </p>
+ */
+public class CameraVideoPublisher
+{
+   /** Half of 720p, while a 640x480 camera is published as is. */
+   public static final int DEFAULT_MAX_OUTPUT_WIDTH = 1280 / 2;
+   public static final int DEFAULT_MAX_OUTPUT_HEIGHT = 480;
+   /** Wait between failed attempts at restarting the frame source, doubled up to the maximum. */
+   private static final long MIN_RESTART_BACK_OFF_MILLIS = 100;
+   private static final long MAX_RESTART_BACK_OFF_MILLIS = 5000;
+
+   private final String name;
+   private final byte videoSource;
+   private final FrameSource frameSource;
+   private final ROS2Publisher<VideoPacket> videoPacketPublisher;
+   private final VideoPipeline pipeline;
+   private final ScheduledExecutorService executor;
+   private final VideoMetrics metrics;
+   private volatile boolean started = false;
+
+   private volatile int maxOutputWidth = DEFAULT_MAX_OUTPUT_WIDTH;
+   private volatile int maxOutputHeight = DEFAULT_MAX_OUTPUT_HEIGHT;
+   private volatile Consumer<Frame> frameListener = null;
+   private volatile VideoBlackBox blackBox = null;
+
+   private final FrameToYUV420Converter frameToYUVConverter = new FrameToYUV420Converter();
+   private final PlanarScaler scaler = new PlanarScaler(Kernel.BOX);
+   private final YUV420Image scaledImage = new YUV420Image();
+   private volatile byte codec = VideoPacket.CODEC_JPEG;
+   private final JPEGEncoder encoder = new JPEGEncoder();
+   private final StripJPEGEncoder stripEncoder = new StripJPEGEncoder();
+   private final JPEGRateController rateController = new JPEGRateController(EncodedFrame.DEFAULT_MAX_FRAME_SIZE);
+   private final H264Encoder h264Encoder = new H264Encoder();
+   /** Drops of the publish queue seen by the encoder so far. */
+   private long droppedEncodedFrameCount = 0;
+   /** Number of frames that went through the encoder, only used by the encode thread. */
+   private long encodedFrameCount = 0;
+   /** Only used by the publish thread. */
+   private long nextSequenceId = 0;
+   /** -1 when the last frame published was not H.264. */
+   private long lastPublishedH264EncodeIndex = -1;
+
+   /**
+    * @param encodeScheduler the scheduler to encode on, or {@code null} to encode on a dedicated
+    *                        thread.
+    */
+   public CameraVideoPublisher(String name,
+                               byte videoSource,
+                               FrameSource frameSource,
+                               ROS2Publisher<VideoPacket> videoPacketPublisher,
+                               EncodeScheduler encodeScheduler)
+   {
+      this.name = name;
+      this.videoSource = videoSource;
+      this.frameSource = frameSource;
+      this.videoPacketPublisher = videoPacketPublisher;
+
+      pipeline = new VideoPipeline(name, VideoPipeline.DEFAULT_QUEUE_CAPACITY, this::capture, this::encode, this::publish, encodeScheduler);
+      executor = ThreadTools.newSingleDaemonThreadScheduledExecutor("video-grabber-" + name);
+      h264Encoder.setFrameRate(frameSource.getFrameRate());
+
+      metrics = new VideoMetrics(name);
+      metrics.addDroppedFrameCounter(this::getDroppedFrameCount);
+   }
+
+   public void start()
+   {
+      pipeline.start();
+
+      executor.scheduleAtFixedRate(() ->
+      {
+         if (!started)
+            return;
+
+         pipeline.captureFrame();
+      }, 0, (long) (1.0e6 / frameSource.getFrameRate()), TimeUnit.MICROSECONDS);
+
+      executor.execute(new Runnable()
+      {
+         @Override
+         public void run()
+         {
+            if (start())
+            {
+               started = true;
+               return;
+            }
+            else
+            {
+               long backOff = MIN_RESTART_BACK_OFF_MILLIS;
+
+               while (!restart())
+               {
+                  System.out.println("Trying to restart " + name + " in " + backOff + " ms");
+
+                  try
+                  {
+                     Thread.sleep(backOff);
+                  }
+                  catch (InterruptedException e)
+                  { // Stopped.
+                     return;
+                  }
+
+                  backOff = Math.min(2 * backOff, MAX_RESTART_BACK_OFF_MILLIS);
+               }
+
+               started = true;
+            }
+         }
+
+         private boolean start()
+         {
+            try
+            {
+               frameSource.start();
+               return true;
+            }
+            catch (IOException e)
+            {
+               e.printStackTrace();
+               return false;
+            }
+         }
+
+         private boolean restart()
+         {
+            try
+            {
+               frameSource.restart();
+               return true;
+            }
+            catch (IOException e)
+            {
+               e.printStackTrace();
+               return false;
+            }
+         }
+      });
+   }
+
+   public void stop()
+   {
+      started = false;
+      executor.shutdownNow();
+      pipeline.stop();
+
+      try
+      {
+         frameSource.stop();
+      }
+      catch (IOException e)
+      {
+         e.printStackTrace();
+      }
+   }
+
+   private boolean capture(CapturedFrame capturedFrameToPack) throws IOException
+   {
+      long grabStart = System.nanoTime();
+      Frame capturedFrame = frameSource.grab();
+
+      if (capturedFrame == null)
+         return false;
+
+      long timestamp = System.nanoTime();
+      long captureTime = VideoClock.now();
+      metrics.record(Stage.GRAB, timestamp - grabStart);
+
+      Consumer<Frame> frameListener = this.frameListener;
+      if (frameListener != null)
+         frameListener.accept(capturedFrame);
+
+      long convertStart = System.nanoTime();
+      frameToYUVConverter.convert(capturedFrame, capturedFrameToPack.getImage());
+      metrics.record(Stage.CONVERT, System.nanoTime() - convertStart);
+      capturedFrameToPack.setTimestamp(timestamp);
+      capturedFrameToPack.setCaptureTime(captureTime);
+      return true;
+   }
+
+   private boolean encode(CapturedFrame capturedFrame, EncodedFrame encodedFrameToPack) throws IOException
+   {
+      byte codec = this.codec;
+      YUV420Image image = capturedFrame.getImage();
+
+      // An H.264 frame dropped after being encoded breaks the references of the following ones.
+      long publishQueueDrops = pipeline.getPublishQueue().getDroppedFrames();
+      if (publishQueueDrops != droppedEncodedFrameCount)
+      {
+         droppedEncodedFrameCount = publishQueueDrops;
+         if (codec == VideoPacket.CODEC_H264)
+            h264Encoder.requestKeyframe();
+      }
+
+      int outputWidth = image.getWidth();
+      int outputHeight = image.getHeight();
+      if (outputWidth > maxOutputWidth || outputHeight > maxOutputHeight)
+      { // Fit in the maximum resolution while keeping the aspect ratio.
+         double fit = Math.min((double) maxOutputWidth / outputWidth, (double) maxOutputHeight / outputHeight);
+         outputWidth = Math.max(2, (int) Math.round(outputWidth * fit) & ~1);
+         outputHeight = Math.max(2, (int) Math.round(outputHeight * fit) & ~1);
+      }
+
+      // Resolution adaptation is JPEG only, changing the size of an H.264 stream forces a keyframe.
+      double scale = codec != VideoPacket.CODEC_H264 ? rateController.getScale() : 1.0;
+      if (scale < 1.0)
+      {
+         outputWidth = Math.max(2, (int) Math.round(outputWidth * scale) & ~1);
+         outputHeight = Math.max(2, (int) Math.round(outputHeight * scale) & ~1);
+      }
+
+      if (outputWidth != image.getWidth() || outputHeight != image.getHeight())
+      {
+         long resizeStart = System.nanoTime();
+         scaler.scale(image, scaledImage, outputWidth, outputHeight);
+         image = scaledImage;
+         metrics.record(Stage.RESIZE, System.nanoTime() - resizeStart);
+      }
+
+      long encodeStart = System.nanoTime();
+      ByteBuffer buffer;
+      if (codec == VideoPacket.CODEC_H264)
+         buffer = h264Encoder.encode(image.getYUVPicture());
+      else
+         buffer = encodeJPEG(image, codec == VideoPacket.CODEC_JPEG_STRIPS, capturedFrame.getTimestamp());
+
+      long serializeStart = System.nanoTime();
+      metrics.record(Stage.ENCODE, serializeStart - encodeStart);
+
+      if (buffer == null)
+         return false;
+
+      // Counted even when too large, as the following H.264 frames refer to it all the same.
+      encodedFrameToPack.setEncodeIndex(encodedFrameCount++);
+      if (!encodedFrameToPack.set(buffer, capturedFrame.getTimestamp()))
+      {
+         metrics.oversizeFrame();
+         if (codec == VideoPacket.CODEC_H264)
+            h264Encoder.requestKeyframe();
+         return false;
+      }
+      metrics.record(Stage.SERIALIZE, System.nanoTime() - serializeStart);
+
+      encodedFrameToPack.setVideoSource(videoSource);
+      encodedFrameToPack.setCodec(codec);
+      encodedFrameToPack.setLatencyTimes(VideoClock.getClockId(), capturedFrame.getCaptureTime(), VideoClock.now());
+      return true;
+   }
+
+   private ByteBuffer encodeJPEG(YUV420Image image, boolean inStrips, long timestamp) throws IOException
+   {
+      int quality = rateController.getQuality();
+      ByteBuffer buffer = encodeJPEG(image, inStrips, quality);
+
+      while (buffer.remaining() > EncodedFrame.DEFAULT_MAX_FRAME_SIZE)
+      {
+         quality = rateController.getRetryQuality(quality, buffer.remaining());
+
+         if (quality < 0)
+         {
+            System.err.println("Image is too big!");
+            metrics.oversizeFrame();
+            return null;
+         }
+
+         buffer = encodeJPEG(image, inStrips, quality);
+      }
+
+      rateController.update(buffer.remaining(), timestamp);
+      return buffer;
+   }
+
+   private ByteBuffer encodeJPEG(YUV420Image image, boolean inStrips, int quality) throws IOException
+   {
+      if (inStrips)
+         return stripEncoder.encode(image, quality);
+      else
+         return encoder.encode(image.getYUVPicture(), quality);
+   }
+
+   private boolean publish(EncodedFrame encodedFrame)
+   {
+      long publishStart = System.nanoTime();
+      long publishTime = VideoClock.now();
+      encodedFrame.setPublishTime(publishTime);
+      // Numbered here rather than when encoded, so the JPEG frames dropped by the publish queue leave
+      // no gap for the receivers to count as lost. The H.264 frames that did not make it out do,
+      // since the following ones refer to them. sequence_id is an uint32 on the wire.
+      if (encodedFrame.getPacket().getCodec() == VideoPacket.CODEC_H264)
+      {
+         if (lastPublishedH264EncodeIndex >= 0)
+            nextSequenceId += encodedFrame.getEncodeIndex() - lastPublishedH264EncodeIndex - 1;
+         lastPublishedH264EncodeIndex = encodedFrame.getEncodeIndex();
+      }
+      else
+      {
+         lastPublishedH264EncodeIndex = -1;
+      }
+      encodedFrame.setSequenceId(nextSequenceId++ & 0xFFFFFFFFL);
+      VideoBlackBox blackBox = this.blackBox;
+
+      for (int i = 0; i < encodedFrame.getFragmentCount(); i++)
+      {
+         VideoPacket packet = encodedFrame.packFragment(i);
+         if (!videoPacketPublisher.publish(packet))
+         {
+            if (encodedFrame.getPacket().getCodec() == VideoPacket.CODEC_H264)
+               h264Encoder.requestKeyframe();
+            return false;
+         }
+         if (blackBox != null)
+            blackBox.record(packet, publishTime);
+      }
+
+      metrics.record(Stage.PUBLISH, System.nanoTime() - publishStart);
+      metrics.frameCompleted(encodedFrame.getLength());
+      return true;
+   }
+
+   /**
+    * @param codec one of the {@code CODEC_} constants of {@link VideoPacket}.
+    */
+   public void setCodec(byte codec)
+   {
+      if (codec != VideoPacket.CODEC_JPEG && codec != VideoPacket.CODEC_H264 && codec != VideoPacket.CODEC_JPEG_STRIPS)
+         throw new IllegalArgumentException("Unknown codec: " + codec);
+
+      this.codec = codec;
+      if (codec == VideoPacket.CODEC_H264)
+         h264Encoder.requestKeyframe();
+   }
+
+   public byte getCodec()
+   {
+      return codec;
+   }
+
+   /**
+    * Makes the next H.264 frame a keyframe, typically when a receiver joins the stream. Has no
+    * effect in JPEG where every frame is a keyframe.
+    */
+   public void requestKeyframe()
+   {
+      h264Encoder.requestKeyframe();
+   }
+
+   /**
+    * Requests a keyframe if {@code request} targets the video source of this camera.
+    */
+   public void handleKeyframeRequest(VideoKeyframeRequestMessage request)
+   {
+      if (request.getVideoSource() == VideoKeyframeRequestMessage.VIDEO_SOURCE_ALL || request.getVideoSource() == videoSource)
+         requestKeyframe();
+   }
+
+   /**
+    * Sets the largest resolution frames are published at; larger frames are downscaled to fit,
+    * keeping their aspect ratio. Both dimensions must be even.
+    */
+   public void setMaxOutputResolution(int maxOutputWidth, int maxOutputHeight)
+   {
+      this.maxOutputWidth = maxOutputWidth;
+      this.maxOutputHeight = maxOutputHeight;
+   }
+
+   /**
+    * @param frameListener called from the grabber thread with every grabbed frame, e.g. to show a
+    *                      preview. The frame is reused by the source for the following grabs.
+    */
+   public void setFrameListener(Consumer<Frame> frameListener)
+   {
+      this.frameListener = frameListener;
+   }
+
+   /**
+    * @param blackBox keeps the last published packets, or {@code null} to not keep them.
+    */
+   public void setBlackBox(VideoBlackBox blackBox)
+   {
+      this.blackBox = blackBox;
+   }
+
+   public String getName()
+   {
+      return name;
+   }
+
+   public byte getVideoSource()
+   {
+      return videoSource;
+   }
+
+   public FrameSource getFrameSource()
+   {
+      return frameSource;
+   }
+
+   public VideoPipeline getPipeline()
+   {
+      return pipeline;
+   }
+
+   /**
+    * @return the number of frames dropped by the queues of the pipeline or failing to publish.
+    */
+   private long getDroppedFrameCount()
+   {
+      return pipeline.getEncodeQueue().getDroppedFrames() + pipeline.getPublishQueue().getDroppedFrames() + pipeline.getFailedPublishCount();
+   }
+
+   public VideoMetrics getMetrics()
+   {
+      return metrics;
+   }
+
+   public JPEGRateController getRateController()
+   {
+      return rateController;
+   }
+
+   public StripJPEGEncoder getStripEncoder()
+   {
+      return stripEncoder;
+   }
+
+   public H264Encoder getH264Encoder()
+   {
+      return h264Encoder;
+   }
+
+   public String getStatistics()
+   {
+      return pipeline.getStatistics() + " | " + (codec == VideoPacket.CODEC_H264 ? h264Encoder.getStatistics() : rateController.getStatistics());
+   }
+}
@@ -0,0 +1,193 @@
+package us.ihmc.videoacquisition;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import controller_msgs.msg.dds.VideoKeyframeRequestMessage;
+import us.ihmc.commons.thread.ThreadTools;
+import us.ihmc.pubsub.DomainFactory.PubSubImplementation;
+import us.ihmc.ros2.ROS2Distro;
+import us.ihmc.ros2.RealtimeROS2Node;
+import us.ihmc.util.PeriodicNonRealtimeThreadSchedulerFactory;
+import us.ihmc.videoacquisition.latency.LatencyMonitor;
+import us.ihmc.videoacquisition.receiver.FrameSink;
+import us.ihmc.videoacquisition.receiver.FrameSinks;
+import us.ihmc.videoacquisition.receiver.KeyframeRequestPublisher;
+import us.ihmc.videoacquisition.receiver.StatisticsFrameSink;
+import us.ihmc.videoacquisition.receiver.VideoTopicReceiver;
+
+/**
+ * Receives video topics without a display, passing the frames to a {@link FrameSink}.
+ * <p>
+ * Used to measure how many streams and frames per second a node can receive and decode, e.g. on
+ * a server or in CI. Each topic has its own subscription and, when decoding, its own decode thread.
+ * </p>
+ */
+public class HeadlessVideoReceiver
+{
+   private String name = "headless_video_receiver";
+   private String namespace = "/us/ihmc";
+   private final RealtimeROS2Node ros2Node;
+   private final KeyframeRequestPublisher keyframeRequestPublisher;
+   private final List<VideoTopicReceiver> videoReceivers = new ArrayList<>();
+   private final FrameSink frameSink;
+   private final LatencyMonitor latencyMonitor;
+   private final ScheduledExecutorService statisticsExecutor = ThreadTools.newSingleDaemonThreadScheduledExecutor("video-statistics");
+
+   /**
+    * @param decode whether to decode the frames, otherwise the sink receives the compressed frames
+    *               only.
+    */
+   public HeadlessVideoReceiver(PubSubImplementation pubSubImplementation, List<String> topics, boolean decode, FrameSink frameSink) throws IOException
+   {
+      this.frameSink = frameSink;
+      ros2Node = new RealtimeROS2Node(pubSubImplementation, ROS2Distro.ARDENT, new PeriodicNonRealtimeThreadSchedulerFactory(), name, namespace);
+      keyframeRequestPublisher = new KeyframeRequestPublisher(ros2Node);
+      latencyMonitor = new LatencyMonitor(ros2Node);
+
+      for (String topic : topics)
+      {
+         VideoTopicReceiver videoReceiver = new VideoTopicReceiver(ros2Node, topic, decode, keyframeRequestPublisher, frameSink);
+         videoReceiver.setLatencyMonitor(latencyMonitor);
+         videoReceivers.add(videoReceiver);
+      }
+   }
+
+   /**
+    * @param statisticsPeriod period in seconds at which to print the statistics, 0 to not print them.
+    */
+   public void start(double statisticsPeriod)
+   {
+      for (VideoTopicReceiver videoReceiver : videoReceivers)
+         videoReceiver.start();
+      latencyMonitor.start();
+
+      if (statisticsPeriod > 0.0)
+      {
+         long period = (long) (statisticsPeriod * 1000.0);
+         statisticsExecutor.scheduleAtFixedRate(this::printStatistics, period, period, TimeUnit.MILLISECONDS);
+      }
+
+      // Let the H.264 publishers know there is a new receiver.
+      keyframeRequestPublisher.requestKeyframe(VideoKeyframeRequestMessage.VIDEO_SOURCE_ALL);
+      ros2Node.spin();
+   }
+
+   public void stop()
+   {
+      statisticsExecutor.shutdownNow();
+      latencyMonitor.stop();
+      ros2Node.destroy();
+
+      for (VideoTopicReceiver videoReceiver : videoReceivers)
+         videoReceiver.stop();
+
+      frameSink.close();
+   }
+
+   private void printStatistics()
+   {
+      for (VideoTopicReceiver videoReceiver : videoReceivers)
+         System.out.println(videoReceiver.getStatistics());
+
+      String sinkStatistics = frameSink.getStatistics();
+      if (sinkStatistics != null)
+         System.out.println(sinkStatistics);
+      System.out.println(latencyMonitor.getStatistics());
+   }
+
+   public List<VideoTopicReceiver> getVideoReceivers()
+   {
+      return videoReceivers;
+   }
+
+   public LatencyMonitor getLatencyMonitor()
+   {
+      return latencyMonitor;
+   }
+
+   public FrameSink getFrameSink()
+   {
+      return frameSink;
+   }
+
+   /**
+    * Usage: {@code HeadlessVideoReceiver [--topic <topic>]... [--camera-topics <count>] [--compressed]
+    * [--sink null|checksum|statistics | --sink file <directory>]... [--intraprocess] [--duration <s>] [--statistics-period <s>]}
+    * <p>
+    * Receives {@link VideoManager#LOGGING_CAMERA_VIDEO_TOPIC} when no topic is given, and passes the
+    * frames to a statistics sink when no sink is given. {@code --camera-topics} adds the topics of
+    * the first cameras of a {@link MultiCameraVideoManager} publishing on per-camera topics.
+    * </p>
+    */
+   public static void main(String[] args) throws IOException, InterruptedException
+   {
+      List<String> topics = new ArrayList<>();
+      List<FrameSink> frameSinks = new ArrayList<>();
+      boolean decode = true;
+      PubSubImplementation pubSubImplementation = PubSubImplementation.FAST_RTPS;
+      double duration = Double.POSITIVE_INFINITY;
+      double statisticsPeriod = 5.0;
+
+      for (int i = 0; i < args.length; i++)
+      {
+         FrameSink frameSink = FrameSinks.parse(args, i);
+         if (frameSink != null)
+         {
+            frameSinks.add(frameSink);
+            i += FrameSinks.getArgumentCount(args, i) - 1;
+            continue;
+         }
+
+         switch (args[i])
+         {
+            case "--topic":
+               topics.add(args[++i]);
+               break;
+            case "--camera-topics":
+            {
+               int cameraCount = Integer.parseInt(args[++i]);
+               for (int cameraIndex = 0; cameraIndex < cameraCount; cameraIndex++)
+                  topics.add(MultiCameraVideoManager.getCameraTopic(cameraIndex));
+               break;
+            }
+            case "--compressed":
+               decode = false;
+               break;
+            case "--intraprocess":
+               pubSubImplementation = PubSubImplementation.INTRAPROCESS;
+               break;
+            case "--duration":
+               duration = Double.parseDouble(args[++i]);
+               break;
+            case "--statistics-period":
+               statisticsPeriod = Double.parseDouble(args[++i]);
+               break;
+            default:
+               throw new IllegalArgumentException("Unknown argument: " + args[i]);
+         }
+      }
+
+      if (topics.isEmpty())
+         topics.add(VideoManager.LOGGING_CAMERA_VIDEO_TOPIC);
+      if (frameSinks.isEmpty())
+         frameSinks.add(new StatisticsFrameSink());
+
+      HeadlessVideoReceiver receiver = new HeadlessVideoReceiver(pubSubImplementation, topics, decode, FrameSinks.combine(frameSinks));
+      receiver.start(statisticsPeriod);
+
+      if (Double.isInfinite(duration))
+      {
+         Thread.currentThread().join();
+      }
+      else
+      {
+         Thread.sleep((long) (duration * 1000.0));
+         receiver.printStatistics();
+         receiver.stop();
+      }
+   }
+}
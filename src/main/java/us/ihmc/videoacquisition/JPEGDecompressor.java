@@ -2,26 +2,203 @@ package us.ihmc.videoacquisition;
 
 import java.awt.image.BufferedImage;
 import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
 
 import us.ihmc.codecs.generated.YUVPicture;
 import us.ihmc.codecs.util.ByteBufferProvider;
 import us.ihmc.codecs.yuv.JPEGDecoder;
 import us.ihmc.codecs.yuv.YUVPictureConverter;
+import us.ihmc.idl.IDLSequence;
+import us.ihmc.videoacquisition.yuv.YUV420Image;
+import us.ihmc.videoacquisition.yuv.YUV420ToARGBConverter;
 
+/**
+ * Decodes JPEG data, e.g. the data of a {@link controller_msgs.msg.dds.VideoPacket}.
+ * <p>
+ * Besides the {@link BufferedImage} methods, the JPEG data can be decoded into memory owned by the
+ * caller: the planes of a {@link YUV420Image}, an {@code int[]} ARGB raster or an ARGB
+ * {@link IntBuffer}. These methods reuse the buffers of the decompressor and of the destination,
+ * so that decoding a stream of frames of the same resolution does not allocate pixel memory.
+ * </p>
+ * <p>
+ * An instance is not thread-safe.
+ * </p>
+ */
 public class JPEGDecompressor
 {
    private final JPEGDecoder jpegDecoder = new JPEGDecoder();
    private final ByteBufferProvider byteBufferProvider = new ByteBufferProvider();
    private final YUVPictureConverter yuvPictureConverter = new YUVPictureConverter();
 
+   /** Used to copy the data out of a sequence in one go. */
+   private byte[] sequenceData = new byte[0];
+   /** Holds the decoded planes when decoding straight to ARGB. */
+   private final YUV420Image yuvImage = new YUV420Image();
+   private final YUV420ToARGBConverter argbConverter = new YUV420ToARGBConverter();
+
    public BufferedImage decompressJPEGDataToBufferedImage(byte[] jpegData)
    {
-      ByteBuffer byteBuffer = byteBufferProvider.getOrCreateBuffer(jpegData.length);
-      byteBuffer.put(jpegData);
-      byteBuffer.flip();
-      YUVPicture yuvPicture = jpegDecoder.decode(byteBuffer);
+      return decompressJPEGDataToBufferedImage(jpegData, 0, jpegData.length);
+   }
+
+   public BufferedImage decompressJPEGDataToBufferedImage(byte[] jpegData, int offset, int length)
+   {
+      YUVPicture yuvPicture = jpegDecoder.decode(load(jpegData, offset, length));
       BufferedImage bufferedImage = yuvPictureConverter.toBufferedImage(yuvPicture);
       yuvPicture.delete();
       return bufferedImage;
    }
+
+   /**
+    * Decodes a 4:2:0 JPEG into the planes of the given image, reshaping it as needed.
+    *
+    * @return {@code false} if the data could not be decoded.
+    */
+   public boolean decompressJPEGDataToYUV420Image(byte[] jpegData, int offset, int length, YUV420Image yuvImageToPack)
+   {
+      return decode(load(jpegData, offset, length), yuvImageToPack);
+   }
+
+   /**
+    * Same as {@link #decompressJPEGDataToYUV420Image(byte[], int, int, YUV420Image)} for the
+    * remaining bytes of the buffer. The position of the buffer is left unchanged.
+    */
+   public boolean decompressJPEGDataToYUV420Image(ByteBuffer jpegData, YUV420Image yuvImageToPack)
+   {
+      return decode(load(jpegData), yuvImageToPack);
+   }
+
+   /**
+    * Same as {@link #decompressJPEGDataToYUV420Image(byte[], int, int, YUV420Image)} for the data of
+    * a packet, without going through {@link IDLSequence.Byte#toArray()}.
+    */
+   public boolean decompressJPEGDataToYUV420Image(IDLSequence.Byte jpegData, YUV420Image yuvImageToPack)
+   {
+      return decode(load(jpegData), yuvImageToPack);
+   }
+
+   /**
+    * Decodes a 4:2:0 JPEG into opaque ARGB pixels.
+    *
+    * @param argbToPack where to write the pixels, it has to be large enough for the image, see
+    *                   {@link #getWidth()} and {@link #getHeight()}.
+    * @param offset     index of the top-left pixel in {@code argbToPack}.
+    * @param rowStride  number of pixels per row in {@code argbToPack}.
+    * @return {@code false} if the data could not be decoded.
+    */
+   public boolean decompressJPEGDataToARGB(ByteBuffer jpegData, int[] argbToPack, int offset, int rowStride)
+   {
+      if (!decode(load(jpegData), yuvImage))
+         return false;
+
+      checkDestination(argbToPack.length - offset, rowStride);
+      argbConverter.convert(yuvImage, argbToPack, offset, rowStride);
+      return true;
+   }
+
+   public boolean decompressJPEGDataToARGB(IDLSequence.Byte jpegData, int[] argbToPack, int offset, int rowStride)
+   {
+      if (!decode(load(jpegData), yuvImage))
+         return false;
+
+      checkDestination(argbToPack.length - offset, rowStride);
+      argbConverter.convert(yuvImage, argbToPack, offset, rowStride);
+      return true;
+   }
+
+   /**
+    * Decodes a 4:2:0 JPEG into opaque ARGB pixels, e.g. into the direct buffer backing a JavaFX
+    * {@code PixelBuffer}.
+    *
+    * @param argbToPack where to write the pixels, starting at index 0.
+    * @param rowStride  number of pixels per row in {@code argbToPack}.
+    * @return {@code false} if the data could not be decoded.
+    */
+   public boolean decompressJPEGDataToARGB(ByteBuffer jpegData, IntBuffer argbToPack, int rowStride)
+   {
+      if (!decode(load(jpegData), yuvImage))
+         return false;
+
+      checkDestination(argbToPack.capacity(), rowStride);
+      argbConverter.convert(yuvImage, argbToPack, rowStride);
+      return true;
+   }
+
+   public boolean decompressJPEGDataToARGB(IDLSequence.Byte jpegData, IntBuffer argbToPack, int rowStride)
+   {
+      if (!decode(load(jpegData), yuvImage))
+         return false;
+
+      checkDestination(argbToPack.capacity(), rowStride);
+      argbConverter.convert(yuvImage, argbToPack, rowStride);
+      return true;
+   }
+
+   /**
+    * @return the width of the last image decoded to ARGB.
+    */
+   public int getWidth()
+   {
+      return yuvImage.getWidth();
+   }
+
+   /**
+    * @return the height of the last image decoded to ARGB.
+    */
+   public int getHeight()
+   {
+      return yuvImage.getHeight();
+   }
+
+   private boolean decode(ByteBuffer jpegData, YUV420Image yuvImageToPack)
+   {
+      YUVPicture yuvPicture = jpegDecoder.decode(jpegData);
+      if (yuvPicture == null)
+         return false;
+
+      yuvImageToPack.set(yuvPicture);
+      yuvPicture.delete();
+      return true;
+   }
+
+   private void checkDestination(int capacity, int rowStride)
+   {
+      int width = yuvImage.getWidth();
+      int height = yuvImage.getHeight();
+
+      if (rowStride < width || (height > 0 && capacity < (height - 1) * rowStride + width))
+         throw new IllegalArgumentException("Destination too small for a " + width + "x" + height + " image");
+   }
+
+   private ByteBuffer load(byte[] jpegData, int offset, int length)
+   {
+      ByteBuffer byteBuffer = byteBufferProvider.getOrCreateBuffer(length);
+      byteBuffer.put(jpegData, offset, length);
+      byteBuffer.flip();
+      return byteBuffer;
+   }
+
+   private ByteBuffer load(IDLSequence.Byte jpegData)
+   {
+      int length = jpegData.size();
+      if (sequenceData.length < length)
+         sequenceData = new byte[length];
+
+      jpegData.toArray(sequenceData, 0, 0, length);
+      return load(sequenceData, 0, length);
+   }
+
+   private ByteBuffer load(ByteBuffer jpegData)
+   {
+      // The decoder reads a direct buffer from its start, only other buffers need to be copied.
+      if (jpegData.isDirect() && jpegData.position() == 0)
+         return jpegData;
+
+      int position = jpegData.position();
+      ByteBuffer byteBuffer = byteBufferProvider.getOrCreateBuffer(jpegData.remaining());
+      byteBuffer.put(jpegData);
+      byteBuffer.flip();
+      jpegData.position(position);
+      return byteBuffer;
+   }
 }
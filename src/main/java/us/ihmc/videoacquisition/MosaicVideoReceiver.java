@@ -0,0 +1,285 @@
+package us.ihmc.videoacquisition;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import controller_msgs.msg.dds.VideoKeyframeRequestMessage;
+import javafx.animation.AnimationTimer;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.WritableImage;
+import javafx.scene.layout.Pane;
+import javafx.stage.Stage;
+import us.ihmc.commons.thread.ThreadTools;
+import us.ihmc.pubsub.DomainFactory.PubSubImplementation;
+import us.ihmc.ros2.ROS2Distro;
+import us.ihmc.ros2.RealtimeROS2Node;
+import us.ihmc.util.PeriodicNonRealtimeThreadSchedulerFactory;
+import us.ihmc.videoacquisition.latency.LatencyMonitor;
+import us.ihmc.videoacquisition.receiver.DecodeScheduler;
+import us.ihmc.videoacquisition.receiver.KeyframeRequestPublisher;
+import us.ihmc.videoacquisition.receiver.MosaicTile;
+import us.ihmc.videoacquisition.receiver.VideoTopicReceiver;
+import us.ihmc.videoacquisition.transport.VideoFrame;
+
+/**
+ * Shows all the streams of one or several topics at once, in a grid.
+ * <p>
+ * Each topic and video source gets its own {@link MosaicTile}, created when its first frame arrives.
+ * The tiles are decoded in parallel on a bounded {@link DecodeScheduler}, each at the resolution of
+ * its cell in the grid. Clicking a tile shows it alone and stops decoding the others, clicking it
+ * again goes back to the grid. Nothing is decoded while the window is minimized.
+ * </p>
+ */
+public class MosaicVideoReceiver extends Application
+{
+   /** Frames held by the tiles of a topic, at most one JPEG or a few H.264 frames per tile. */
+   private static final int FRAME_POOL_SIZE = 32;
+
+   private String name = "mosaic_video_receiver";
+   private String namespace = "/us/ihmc";
+   private RealtimeROS2Node ros2Node;
+   private KeyframeRequestPublisher keyframeRequestPublisher;
+   private DecodeScheduler decodeScheduler;
+   private LatencyMonitor latencyMonitor;
+   private final List<VideoTopicReceiver> videoReceivers = new ArrayList<>();
+   private double tileFrameRate = Double.POSITIVE_INFINITY;
+
+   /** Modified from the JavaFX thread only, also read by the statistics thread. */
+   private final List<MosaicTile> tiles = new CopyOnWriteArrayList<>();
+   /** Only accessed from the JavaFX thread. */
+   private final List<ImageView> tileViews = new ArrayList<>();
+   private final List<Label> tileLabels = new ArrayList<>();
+   private MosaicTile focusedTile = null;
+   private Stage stage;
+   private Pane root;
+
+   private AnimationTimer refreshImages = new AnimationTimer()
+   {
+      @Override
+      public void handle(long now)
+      {
+         updateImages();
+      }
+   };
+
+   /**
+    * Arguments: {@code [--topic <topic>]... [--camera-topics <count>] [--workers <count>] [--tile-fps <fps>]}
+    * <p>
+    * Receives {@link VideoManager#LOGGING_CAMERA_VIDEO_TOPIC} when no topic is given.
+    * </p>
+    */
+   @Override
+   public void start(Stage primaryStage) throws Exception
+   {
+      List<String> args = getParameters().getRaw();
+      List<String> topics = new ArrayList<>();
+      int numberOfWorkers = Runtime.getRuntime().availableProcessors();
+
+      for (int i = 0; i < args.size(); i++)
+      {
+         switch (args.get(i))
+         {
+            case "--topic":
+               topics.add(args.get(++i));
+               break;
+            case "--camera-topics":
+            {
+               int cameraCount = Integer.parseInt(args.get(++i));
+               for (int cameraIndex = 0; cameraIndex < cameraCount; cameraIndex++)
+                  topics.add(MultiCameraVideoManager.getCameraTopic(cameraIndex));
+               break;
+            }
+            case "--workers":
+               numberOfWorkers = Integer.parseInt(args.get(++i));
+               break;
+            case "--tile-fps":
+               tileFrameRate = Double.parseDouble(args.get(++i));
+               break;
+            default:
+               throw new IllegalArgumentException("Unknown argument: " + args.get(i));
+         }
+      }
+
+      if (topics.isEmpty())
+         topics.add(VideoManager.LOGGING_CAMERA_VIDEO_TOPIC);
+
+      ros2Node = new RealtimeROS2Node(PubSubImplementation.FAST_RTPS, ROS2Distro.ARDENT, new PeriodicNonRealtimeThreadSchedulerFactory(), name, namespace);
+      keyframeRequestPublisher = new KeyframeRequestPublisher(ros2Node);
+      decodeScheduler = new DecodeScheduler("mosaic", numberOfWorkers);
+      latencyMonitor = new LatencyMonitor(ros2Node);
+
+      for (String topic : topics)
+      {
+         // Only accessed from the subscription thread of the topic.
+         MosaicTile[] topicTiles = new MosaicTile[256];
+         VideoTopicReceiver videoReceiver = new VideoTopicReceiver(ros2Node, topic, frame -> frameReceived(topic, topicTiles, frame), FRAME_POOL_SIZE);
+         videoReceiver.setLatencyMonitor(latencyMonitor);
+         videoReceivers.add(videoReceiver);
+      }
+
+      ThreadTools.newSingleDaemonThreadScheduledExecutor("video-statistics")
+                 .scheduleAtFixedRate(this::printStatistics, 5, 5, TimeUnit.SECONDS);
+
+      stage = primaryStage;
+      root = new Pane();
+      root.layoutBoundsProperty().addListener((o, oldValue, newValue) -> layoutTiles());
+      primaryStage.iconifiedProperty().addListener((o, oldValue, newValue) -> layoutTiles());
+      primaryStage.setTitle("Video mosaic");
+      primaryStage.setScene(new Scene(root, 1280, 720));
+      primaryStage.setOnCloseRequest(e -> stop());
+      primaryStage.show();
+
+      // Let the H.264 publishers know there is a new receiver.
+      keyframeRequestPublisher.requestKeyframe(VideoKeyframeRequestMessage.VIDEO_SOURCE_ALL);
+
+      decodeScheduler.start();
+      latencyMonitor.start();
+      refreshImages.start();
+      ros2Node.spin();
+   }
+
+   private void frameReceived(String topic, MosaicTile[] topicTiles, VideoFrame frame)
+   {
+      int index = frame.getVideoSource() & 0xFF;
+      MosaicTile tile = topicTiles[index];
+
+      if (tile == null)
+      {
+         MosaicTile newTile = new MosaicTile(topic, frame.getVideoSource(), decodeScheduler, keyframeRequestPublisher, FRAME_POOL_SIZE);
+         newTile.setMaxFrameRate(tileFrameRate);
+         newTile.setLatencyMonitor(latencyMonitor);
+         topicTiles[index] = newTile;
+         shareFramePool(topicTiles);
+         Platform.runLater(() -> addTile(newTile));
+         tile = newTile;
+      }
+
+      tile.submit(frame);
+   }
+
+   /**
+    * Splits the frame pool of a topic between the H.264 queues of its tiles.
+    */
+   private static void shareFramePool(MosaicTile[] topicTiles)
+   {
+      int tileCount = 0;
+      for (MosaicTile tile : topicTiles)
+      {
+         if (tile != null)
+            tileCount++;
+      }
+
+      for (MosaicTile tile : topicTiles)
+      {
+         if (tile != null)
+            tile.setSharedBy(tileCount);
+      }
+   }
+
+   private void addTile(MosaicTile tile)
+   {
+      ImageView view = new ImageView();
+      view.setPreserveRatio(true);
+      view.setOnMouseClicked(e -> toggleFocus(tile));
+      Label label = new Label(tile.getName());
+      label.setStyle("-fx-text-fill: white; -fx-background-color: rgba(0, 0, 0, 0.5);");
+      label.setMouseTransparent(true);
+
+      tiles.add(tile);
+      tileViews.add(view);
+      tileLabels.add(label);
+      root.getChildren().add(view);
+      root.getChildren().add(label);
+      layoutTiles();
+   }
+
+   private void toggleFocus(MosaicTile tile)
+   {
+      focusedTile = focusedTile == tile ? null : tile;
+      layoutTiles();
+   }
+
+   /**
+    * Lays out the shown tiles in a grid filling the window, and tells each tile at which resolution
+    * to decode its frames. The tiles that are not shown stop decoding.
+    */
+   private void layoutTiles()
+   {
+      int shownTileCount = focusedTile != null ? 1 : tiles.size();
+      if (shownTileCount == 0)
+         return;
+
+      int columns = (int) Math.ceil(Math.sqrt(shownTileCount));
+      int rows = (shownTileCount + columns - 1) / columns;
+      double cellWidth = root.getWidth() / columns;
+      double cellHeight = root.getHeight() / rows;
+      boolean isIconified = stage.isIconified();
+      int cell = 0;
+
+      for (int i = 0; i < tiles.size(); i++)
+      {
+         MosaicTile tile = tiles.get(i);
+         ImageView view = tileViews.get(i);
+         Label label = tileLabels.get(i);
+
+         boolean isShown = !isIconified && (focusedTile == null || focusedTile == tile);
+         tile.setVisible(isShown);
+         view.setVisible(isShown);
+         label.setVisible(isShown);
+         if (!isShown)
+            continue;
+
+         double x = (cell % columns) * cellWidth;
+         double y = (cell / columns) * cellHeight;
+         view.relocate(x, y);
+         view.setFitWidth(cellWidth);
+         view.setFitHeight(cellHeight);
+         label.relocate(x + 4.0, y + 4.0);
+         tile.setMaxDecodeResolution((int) Math.ceil(cellWidth), (int) Math.ceil(cellHeight));
+         cell++;
+      }
+   }
+
+   private void updateImages()
+   {
+      // The images are decoded and converted by the decode workers, only swap them here.
+      for (int i = 0; i < tiles.size(); i++)
+      {
+         WritableImage image = tiles.get(i).pollImage();
+         if (image != null)
+            tileViews.get(i).setImage(image);
+      }
+   }
+
+   private void printStatistics()
+   {
+      for (VideoTopicReceiver videoReceiver : videoReceivers)
+         System.out.println(videoReceiver.getStatistics());
+
+      System.out.println("Decode workers: " + decodeScheduler.getNumberOfWorkers() + ", tiles waiting: " + decodeScheduler.getQueueLength());
+      for (MosaicTile tile : tiles)
+         System.out.println(tile.getStatistics());
+      System.out.println(latencyMonitor.getStatistics());
+   }
+
+   @Override
+   public void stop()
+   {
+      refreshImages.stop();
+      latencyMonitor.stop();
+      ros2Node.destroy();
+      decodeScheduler.stop();
+      Platform.exit();
+   }
+
+   public static void main(String[] args)
+   {
+      launch(args);
+   }
+}
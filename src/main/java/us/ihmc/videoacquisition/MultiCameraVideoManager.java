@@ -0,0 +1,187 @@
+package us.ihmc.videoacquisition;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import controller_msgs.msg.dds.VideoKeyframeRequestMessage;
+import controller_msgs.msg.dds.VideoPacket;
+import us.ihmc.commons.thread.ThreadTools;
+import us.ihmc.pubsub.DomainFactory.PubSubImplementation;
+import us.ihmc.ros2.ROS2Node;
+import us.ihmc.ros2.ROS2Publisher;
+import us.ihmc.videoacquisition.codec.H264Encoder;
+import us.ihmc.videoacquisition.latency.ClockSyncResponder;
+import us.ihmc.videoacquisition.pipeline.EncodeScheduler;
+import us.ihmc.videoacquisition.source.FrameSource;
+import us.ihmc.videoacquisition.source.FrameSources;
+
+/**
+ * Publishes several cameras from a single process.
+ * <p>
+ * Each camera gets its own grabber and pipeline, and its packets are tagged with
+ * {@code video_source_} set to the index of the camera. The cameras either share
+ * {@link VideoManager#LOGGING_CAMERA_VIDEO_TOPIC}, in which case receivers tell them apart with
+ * the video source, or are published on one topic per camera. The encode stages of all the cameras
+ * share one {@link EncodeScheduler} sized to the number of cores.
+ * </p>
+ */
+public class MultiCameraVideoManager
+{
+   private String name = "multi_camera_video_publisher";
+   private String namespace = "/us/ihmc";
+   private int domainId = 57; // FIXME set me up
+   private final ROS2Node ros2Node;
+   private final EncodeScheduler encodeScheduler;
+   private final List<CameraVideoPublisher> cameraVideoPublishers = new ArrayList<>();
+   private final ScheduledExecutorService statisticsExecutor = ThreadTools.newSingleDaemonThreadScheduledExecutor("video-statistics");
+
+   /**
+    * @param perCameraTopics whether to publish each camera on its own topic,
+    *                        {@link #getCameraTopic(int)}, instead of the shared one.
+    */
+   public MultiCameraVideoManager(List<FrameSource> frameSources, boolean perCameraTopics) throws IOException
+   {
+      if (frameSources.size() > 256)
+         throw new IllegalArgumentException("At most 256 cameras can be told apart, got " + frameSources.size());
+
+      ros2Node = new ROS2Node(PubSubImplementation.FAST_RTPS, name, namespace, domainId);
+      encodeScheduler = new EncodeScheduler("video");
+
+      ROS2Publisher<VideoPacket> sharedPublisher = null;
+      if (!perCameraTopics)
+         sharedPublisher = ros2Node.createPublisher(VideoPacket.getPubSubType().get(), VideoManager.LOGGING_CAMERA_VIDEO_TOPIC);
+
+      for (int i = 0; i < frameSources.size(); i++)
+      {
+         ROS2Publisher<VideoPacket> publisher = sharedPublisher;
+         if (perCameraTopics)
+            publisher = ros2Node.createPublisher(VideoPacket.getPubSubType().get(), getCameraTopic(i));
+
+         cameraVideoPublishers.add(new CameraVideoPublisher("camera_" + i, (byte) i, frameSources.get(i), publisher, encodeScheduler));
+      }
+
+      ros2Node.createSubscription(VideoKeyframeRequestMessage.getPubSubType().get(), s ->
+      {
+         VideoKeyframeRequestMessage request = s.takeNextData();
+         for (CameraVideoPublisher cameraVideoPublisher : cameraVideoPublishers)
+            cameraVideoPublisher.handleKeyframeRequest(request);
+      }, VideoManager.KEYFRAME_REQUEST_TOPIC);
+      new ClockSyncResponder(ros2Node);
+   }
+
+   public static String getCameraTopic(int cameraIndex)
+   {
+      return VideoManager.LOGGING_CAMERA_VIDEO_TOPIC + "/camera_" + cameraIndex;
+   }
+
+   public void start()
+   {
+      encodeScheduler.start();
+
+      for (CameraVideoPublisher cameraVideoPublisher : cameraVideoPublishers)
+         cameraVideoPublisher.start();
+
+      statisticsExecutor.scheduleAtFixedRate(this::printStatistics, 5, 5, TimeUnit.SECONDS);
+   }
+
+   public void stop()
+   {
+      statisticsExecutor.shutdownNow();
+
+      for (CameraVideoPublisher cameraVideoPublisher : cameraVideoPublishers)
+         cameraVideoPublisher.stop();
+
+      encodeScheduler.stop();
+      ros2Node.destroy();
+   }
+
+   private void printStatistics()
+   {
+      System.out.println("Encode workers: " + encodeScheduler.getNumberOfWorkers() + ", pipelines waiting: " + encodeScheduler.getQueueLength());
+      for (CameraVideoPublisher cameraVideoPublisher : cameraVideoPublishers)
+         System.out.println(cameraVideoPublisher.getStatistics());
+   }
+
+   public List<CameraVideoPublisher> getCameraVideoPublishers()
+   {
+      return cameraVideoPublishers;
+   }
+
+   /**
+    * Usage: {@code MultiCameraVideoManager (--camera <device> | --synthetic <width>x<height>@<fps> | --replay <file or directory> [fps])...
+    * [--per-camera-topics] [--bitrate <Mbit/s per camera>] [--adapt-resolution] [--max-resolution <width>x<height>]
+    * [--codec jpeg|jpeg-strips|h264] [--keyframe-interval <frames>]}
+    */
+   public static void main(String args[]) throws IOException, InterruptedException
+   {
+      List<FrameSource> frameSources = new ArrayList<>();
+      boolean perCameraTopics = false;
+      double bitrateBudget = Double.POSITIVE_INFINITY;
+      boolean adaptResolution = false;
+      int maxOutputWidth = CameraVideoPublisher.DEFAULT_MAX_OUTPUT_WIDTH;
+      int maxOutputHeight = CameraVideoPublisher.DEFAULT_MAX_OUTPUT_HEIGHT;
+      byte codec = VideoPacket.CODEC_JPEG;
+      int keyframeInterval = H264Encoder.DEFAULT_KEYFRAME_INTERVAL;
+
+      for (int i = 0; i < args.length; i++)
+      {
+         FrameSource frameSource = FrameSources.parse(args, i);
+         if (frameSource != null)
+         {
+            frameSources.add(frameSource);
+            i += FrameSources.getArgumentCount(args, i) - 1;
+            continue;
+         }
+
+         switch (args[i])
+         {
+            case "--per-camera-topics":
+               perCameraTopics = true;
+               break;
+            case "--bitrate":
+               bitrateBudget = Double.parseDouble(args[++i]) * 1.0e6;
+               break;
+            case "--adapt-resolution":
+               adaptResolution = true;
+               break;
+            case "--max-resolution":
+            {
+               String[] resolution = args[++i].split("x");
+               maxOutputWidth = Integer.parseInt(resolution[0]);
+               maxOutputHeight = Integer.parseInt(resolution[1]);
+               break;
+            }
+            case "--codec":
+               codec = VideoManager.parseCodec(args[++i]);
+               break;
+            case "--keyframe-interval":
+               keyframeInterval = Integer.parseInt(args[++i]);
+               break;
+            default:
+               throw new IllegalArgumentException("Unknown argument: " + args[i]);
+         }
+      }
+
+      if (frameSources.isEmpty())
+         throw new IllegalArgumentException("No camera given");
+
+      MultiCameraVideoManager videoManager = new MultiCameraVideoManager(frameSources, perCameraTopics);
+
+      for (CameraVideoPublisher cameraVideoPublisher : videoManager.getCameraVideoPublishers())
+      {
+         cameraVideoPublisher.getRateController().setBitrateBudget(bitrateBudget);
+         cameraVideoPublisher.getRateController().setAdaptResolution(adaptResolution);
+         cameraVideoPublisher.setMaxOutputResolution(maxOutputWidth, maxOutputHeight);
+         cameraVideoPublisher.setCodec(codec);
+         cameraVideoPublisher.getH264Encoder().setKeyframeInterval(keyframeInterval);
+         if (!Double.isInfinite(bitrateBudget))
+            cameraVideoPublisher.getH264Encoder().setBitrate(bitrateBudget);
+      }
+
+      videoManager.start();
+      Thread.currentThread().join();
+   }
+}
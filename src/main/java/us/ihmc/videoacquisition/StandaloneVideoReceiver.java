@@ -1,13 +1,13 @@
 package us.ihmc.videoacquisition;
 
-import java.awt.image.BufferedImage;
-import java.util.concurrent.atomic.AtomicReference;
+import java.io.File;
+import java.util.List;
 
-import controller_msgs.msg.dds.VideoPacket;
+import controller_msgs.msg.dds.VideoBlackBoxTriggerMessage;
+import controller_msgs.msg.dds.VideoKeyframeRequestMessage;
 import javafx.animation.AnimationTimer;
 import javafx.application.Application;
 import javafx.application.Platform;
-import javafx.embed.swing.SwingFXUtils;
 import javafx.scene.Scene;
 import javafx.scene.image.ImageView;
 import javafx.scene.image.WritableImage;
@@ -18,6 +18,12 @@ import us.ihmc.ros2.ROS2Distro;
 import us.ihmc.ros2.RealtimeROS2Node;
 import us.ihmc.util.PeriodicNonRealtimeThreadSchedulerFactory;
 import us.ihmc.util.PeriodicThreadSchedulerFactory;
+import us.ihmc.videoacquisition.latency.LatencyMonitor;
+import us.ihmc.videoacquisition.latency.VideoMetrics;
+import us.ihmc.videoacquisition.receiver.JavaFXFrameSink;
+import us.ihmc.videoacquisition.receiver.KeyframeRequestPublisher;
+import us.ihmc.videoacquisition.receiver.VideoTopicReceiver;
+import us.ihmc.videoacquisition.recording.VideoBlackBox;
 
 public class StandaloneVideoReceiver extends Application
 {
@@ -25,7 +31,12 @@ public class StandaloneVideoReceiver extends Application
    private String namespace = "/us/ihmc";
    private ImageView viewport;
 
-   private final AtomicReference<VideoPacket> lastVideoPacket = new AtomicReference<>(null);
+   private final JavaFXFrameSink frameSink = new JavaFXFrameSink();
+   private KeyframeRequestPublisher keyframeRequestPublisher;
+   private VideoTopicReceiver videoReceiver;
+   private LatencyMonitor latencyMonitor;
+   private final VideoMetrics metrics = new VideoMetrics(name);
+   private VideoBlackBox blackBox;
    private AnimationTimer refreshImage = new AnimationTimer()
    {
       @Override
@@ -41,9 +52,35 @@ public class StandaloneVideoReceiver extends Application
       PeriodicThreadSchedulerFactory threadFactory = new PeriodicNonRealtimeThreadSchedulerFactory();
       ros2Node = new RealtimeROS2Node(PubSubImplementation.FAST_RTPS, ROS2Distro.ARDENT, threadFactory, name, namespace);
 
-      ros2Node.createCallbackSubscription(VideoPacket.getPubSubType().get(),
-                                          VideoManager.LOGGING_CAMERA_VIDEO_TOPIC,
-                                          s -> lastVideoPacket.set(s.takeNextData()));
+      keyframeRequestPublisher = new KeyframeRequestPublisher(ros2Node);
+      videoReceiver = new VideoTopicReceiver(ros2Node, VideoManager.LOGGING_CAMERA_VIDEO_TOPIC, true, keyframeRequestPublisher, frameSink);
+      latencyMonitor = new LatencyMonitor(ros2Node);
+      videoReceiver.setLatencyMonitor(latencyMonitor);
+      frameSink.setLatencyMonitor(latencyMonitor);
+      videoReceiver.setMetrics(metrics);
+      frameSink.setMetrics(metrics);
+      metrics.register();
+
+      List<String> parameters = getParameters().getRaw();
+      int blackBoxIndex = parameters.indexOf("--black-box");
+      if (blackBoxIndex >= 0)
+      {
+         blackBox = new VideoBlackBox(VideoManager.LOGGING_CAMERA_VIDEO_TOPIC,
+                                      new File(parameters.get(blackBoxIndex + 1)),
+                                      VideoBlackBox.DEFAULT_DURATION,
+                                      VideoBlackBox.DEFAULT_CAPACITY_PER_SOURCE);
+         videoReceiver.setBlackBox(blackBox);
+         ros2Node.createCallbackSubscription(VideoBlackBoxTriggerMessage.getPubSubType().get(),
+                                             VideoManager.BLACK_BOX_TRIGGER_TOPIC,
+                                             s -> blackBox.handleTrigger(s.takeNextData()));
+      }
+
+      metrics.addSummaryDetails(videoReceiver::getStatistics);
+      metrics.addSummaryDetails(frameSink::getStatistics);
+      metrics.addSummaryDetails(latencyMonitor::getStatistics);
+      int metricsPeriodIndex = parameters.indexOf("--metrics-period");
+      if (metricsPeriodIndex >= 0)
+         metrics.startSummaries(Double.parseDouble(parameters.get(metricsPeriodIndex + 1)));
 
       viewport = new ImageView();
       AnchorPane root = new AnchorPane(viewport);
@@ -55,32 +92,48 @@ public class StandaloneVideoReceiver extends Application
       primaryStage.setOnCloseRequest(e -> stop());
       primaryStage.show();
 
+      // Let the H.264 publishers know there is a new receiver.
+      keyframeRequestPublisher.requestKeyframe(VideoKeyframeRequestMessage.VIDEO_SOURCE_ALL);
+
+      videoReceiver.start();
+      latencyMonitor.start();
       refreshImage.start();
       ros2Node.spin();
    }
 
-   private final JPEGDecompressor decompressor = new JPEGDecompressor();
    private RealtimeROS2Node ros2Node;
 
    private void updateVideoFeed()
    {
-      VideoPacket newPacket = lastVideoPacket.getAndSet(null);
-      if (newPacket == null)
-         return;
-
-      BufferedImage bufferedImage = decompressor.decompressJPEGDataToBufferedImage(newPacket.getData().toArray());
-      WritableImage fxImage = SwingFXUtils.toFXImage(bufferedImage, null);
-      viewport.setImage(fxImage);
+      // The image is decoded and converted by the decode thread, only swap it here.
+      WritableImage image = frameSink.pollImage();
+      if (image != null)
+         viewport.setImage(image);
    }
 
    @Override
    public void stop()
    {
       refreshImage.stop();
+      latencyMonitor.stop();
       ros2Node.destroy();
+      videoReceiver.stop();
+      if (blackBox != null)
+         blackBox.shutdown();
+      metrics.stop();
       Platform.exit();
    }
 
+   /**
+    * Usage: {@code StandaloneVideoReceiver [--black-box <directory>] [--metrics-period <s>]}
+    * <p>
+    * With {@code --black-box}, keeps the last received video in a {@link VideoBlackBox}, saved on a
+    * message on {@link VideoManager#BLACK_BOX_TRIGGER_TOPIC}. The time of each stage and the frame
+    * counts are exposed over JMX, see {@link VideoMetrics}, and printed every
+    * {@code --metrics-period} seconds if given, along with the statistics of the reception, the
+    * display and the latency.
+    * </p>
+    */
    public static void main(String[] args)
    {
       launch(args);
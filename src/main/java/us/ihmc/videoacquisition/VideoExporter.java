@@ -0,0 +1,69 @@
+package us.ihmc.videoacquisition;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import us.ihmc.videoacquisition.recording.MJPEGAVIWriter;
+import us.ihmc.videoacquisition.recording.MJPEGExporter;
+import us.ihmc.videoacquisition.recording.VideoLogReader;
+
+/**
+ * Exports video logs recorded by a {@link VideoRecorder} to motion JPEG AVI files, see
+ * {@link MJPEGExporter}.
+ */
+public class VideoExporter
+{
+   /**
+    * Usage: {@code VideoExporter --log <directory>... [--output <directory>] [--fps <fps>] [--max-file-size <MB>]}
+    * <p>
+    * Writes the files into {@code video-export} by default, at
+    * {@link MJPEGExporter#DEFAULT_FRAME_RATE} frames per second.
+    * </p>
+    */
+   public static void main(String[] args) throws IOException
+   {
+      List<File> logDirectories = new ArrayList<>();
+      File outputDirectory = new File("video-export");
+      double frameRate = MJPEGExporter.DEFAULT_FRAME_RATE;
+      long maxFileSize = MJPEGAVIWriter.MAX_FILE_SIZE;
+
+      for (int i = 0; i < args.length; i++)
+      {
+         switch (args[i])
+         {
+            case "--log":
+               logDirectories.add(new File(args[++i]));
+               break;
+            case "--output":
+               outputDirectory = new File(args[++i]);
+               break;
+            case "--fps":
+               frameRate = Double.parseDouble(args[++i]);
+               break;
+            case "--max-file-size":
+               maxFileSize = Long.parseLong(args[++i]) << 20;
+               break;
+            default:
+               throw new IllegalArgumentException("Unknown argument: " + args[i]);
+         }
+      }
+
+      if (logDirectories.isEmpty())
+         throw new IllegalArgumentException("No log to export");
+
+      MJPEGExporter exporter = new MJPEGExporter(outputDirectory);
+      exporter.setFrameRate(frameRate);
+      exporter.setMaxFileSize(maxFileSize);
+
+      for (File logDirectory : logDirectories)
+      {
+         long startTime = System.nanoTime();
+         List<File> files = exporter.export(new VideoLogReader(logDirectory));
+         System.out.printf("%s: exported in %.1f s to %s%n", logDirectory, (System.nanoTime() - startTime) * 1.0e-9, files);
+      }
+
+      System.out.println(exporter.getStatistics());
+   }
+}
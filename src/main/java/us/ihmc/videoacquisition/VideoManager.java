@@ -2,185 +2,184 @@ package us.ihmc.videoacquisition;
 
 import java.awt.BorderLayout;
 import java.awt.Graphics2D;
-import java.awt.Image;
+import java.awt.GraphicsEnvironment;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 
 import javax.swing.JFrame;
 import javax.swing.JPanel;
 import javax.swing.SwingUtilities;
 
 import org.bytedeco.javacv.CanvasFrame;
-import org.bytedeco.javacv.Frame;
-import org.bytedeco.javacv.FrameGrabber.Exception;
-import org.bytedeco.javacv.Java2DFrameConverter;
-import org.bytedeco.javacv.OpenCVFrameGrabber;
 
+import controller_msgs.msg.dds.VideoBlackBoxTriggerMessage;
+import controller_msgs.msg.dds.VideoKeyframeRequestMessage;
 import controller_msgs.msg.dds.VideoPacket;
-import us.ihmc.codecs.generated.YUVPicture;
-import us.ihmc.codecs.generated.YUVPicture.YUVSubsamplingType;
-import us.ihmc.codecs.yuv.JPEGEncoder;
-import us.ihmc.codecs.yuv.YUVPictureConverter;
-import us.ihmc.commons.thread.ThreadTools;
 import us.ihmc.pubsub.DomainFactory.PubSubImplementation;
 import us.ihmc.ros2.ROS2Node;
 import us.ihmc.ros2.ROS2Publisher;
+import us.ihmc.videoacquisition.codec.H264Encoder;
+import us.ihmc.videoacquisition.codec.JPEGRateController;
+import us.ihmc.videoacquisition.latency.ClockSyncResponder;
+import us.ihmc.videoacquisition.latency.VideoMetrics;
+import us.ihmc.videoacquisition.recording.VideoBlackBox;
+import us.ihmc.videoacquisition.source.FrameSource;
+import us.ihmc.videoacquisition.source.FrameSources;
+import us.ihmc.videoacquisition.source.OpenCVFrameSource;
+import us.ihmc.videoacquisition.yuv.PlanarScaler;
+import us.ihmc.videoacquisition.yuv.PlanarScaler.Kernel;
 
 public class VideoManager
 {
    public static final String LOGGING_CAMERA_VIDEO_TOPIC = "/ihmc/video";
-   private CanvasFrame mainFrame;
+   public static final String KEYFRAME_REQUEST_TOPIC = LOGGING_CAMERA_VIDEO_TOPIC + "/keyframe_request";
+   /** Pings of the receivers estimating their clock offset to the publishers, see {@link ClockSyncResponder}. */
+   public static final String CLOCK_SYNC_PING_TOPIC = LOGGING_CAMERA_VIDEO_TOPIC + "/clock_sync/ping";
+   public static final String CLOCK_SYNC_ECHO_TOPIC = LOGGING_CAMERA_VIDEO_TOPIC + "/clock_sync/echo";
+   /** Triggers saving the video held by the black boxes, see {@link VideoBlackBox}. */
+   public static final String BLACK_BOX_TRIGGER_TOPIC = LOGGING_CAMERA_VIDEO_TOPIC + "/black_box/trigger";
+
+   /** Shared by all the callers of {@link #resize(BufferedImage, int, int)} to keep its filter tables. */
+   private static final PlanarScaler RESIZE_SCALER = new PlanarScaler(Kernel.BOX);
 
-   private boolean started = false;
+   private CanvasFrame mainFrame;
 
    private String name = "video_publisher";
    private String namespace = "/us/ihmc";
    private int domainId = 57; // FIXME set me up
    private ROS2Node ros2Node;
    private ROS2Publisher<VideoPacket> videoPacketPublisher;
-   private Java2DFrameConverter frameConverter = new Java2DFrameConverter();
-   private final OpenCVFrameGrabber grabber;
+   private final CameraVideoPublisher cameraVideoPublisher;
 
    public VideoManager() throws IOException
    {
-      grabber = new OpenCVFrameGrabber(0);
-      grabber.setImageWidth(640);
-      grabber.setImageHeight(480);
-
-      ros2Node = new ROS2Node(PubSubImplementation.FAST_RTPS, name, namespace, domainId);
-      videoPacketPublisher = ros2Node.createPublisher(VideoPacket.getPubSubType().get(), LOGGING_CAMERA_VIDEO_TOPIC);
-      ScheduledExecutorService executor = ThreadTools.newSingleDaemonThreadScheduledExecutor("video-grabber");
-
-      setupUI();
-
-      executor.scheduleAtFixedRate(() ->
-      {
-         if (!started)
-            return;
-
-         System.out.println("Yoohoo!");
-
-         try
-         {
-            Frame capturedFrame = grabber.grab();
-
-            if (capturedFrame == null)
-               return;
+      this(new OpenCVFrameSource(0, 640, 480, 10.0), true);
+   }
 
-            if (mainFrame.isVisible())
-            {
-               // Show our frame in the preview
-               SwingUtilities.invokeLater(() -> mainFrame.showImage(capturedFrame));
-            }
+   public VideoManager(FrameSource frameSource, boolean showPreview) throws IOException
+   {
+      this(PubSubImplementation.FAST_RTPS, frameSource, showPreview);
+   }
 
-            BufferedImage image = frameConverter.convert(capturedFrame);
-            if (image.getWidth() > 1280 / 2)
-               image = resize(image, 1280 / 2, 720 / 2);
-            VideoPacket videoPacket = toVideoPacket(image);
-            videoPacketPublisher.publish(videoPacket);
+   public VideoManager(PubSubImplementation pubSubImplementation, FrameSource frameSource, boolean showPreview) throws IOException
+   {
+      ros2Node = new ROS2Node(pubSubImplementation, name, namespace, domainId);
+      videoPacketPublisher = ros2Node.createPublisher(VideoPacket.getPubSubType().get(), LOGGING_CAMERA_VIDEO_TOPIC);
 
-         }
-         catch (Throwable e)
-         {
-            e.printStackTrace();
-         }
-      }, 0, 100, TimeUnit.MILLISECONDS);
+      if (showPreview && !GraphicsEnvironment.isHeadless())
+         setupUI();
 
-      executor.execute(new Runnable()
+      cameraVideoPublisher = new CameraVideoPublisher("video", VideoPacket.VIDEO_SOURCE_MULTISENSE_LEFT_EYE, frameSource, videoPacketPublisher, null);
+      cameraVideoPublisher.setFrameListener(frame ->
       {
-         @Override
-         public void run()
+         if (mainFrame != null && mainFrame.isVisible())
          {
-            if (start())
-            {
-               started = true;
-               return;
-            }
-            else
-            {
-               while (!restart())
-               {
-                  System.out.println("Trying to restart");
-               }
-
-               started = true;
-            }
-         }
-
-         private boolean start()
-         {
-            try
-            {
-               grabber.start();
-               return true;
-            }
-            catch (Exception e)
-            {
-               e.printStackTrace();
-               return false;
-            }
-         }
-
-         private boolean restart()
-         {
-            try
-            {
-               grabber.restart();
-               return true;
-            }
-            catch (Exception e)
-            {
-               e.printStackTrace();
-               return false;
-            }
+            // Show our frame in the preview
+            SwingUtilities.invokeLater(() -> mainFrame.showImage(frame));
          }
       });
+      cameraVideoPublisher.getMetrics().register();
+      cameraVideoPublisher.getMetrics().addSummaryDetails(cameraVideoPublisher::getStatistics);
+      cameraVideoPublisher.start();
+
+      ros2Node.createSubscription(VideoKeyframeRequestMessage.getPubSubType().get(),
+                                  s -> cameraVideoPublisher.handleKeyframeRequest(s.takeNextData()),
+                                  KEYFRAME_REQUEST_TOPIC);
+      new ClockSyncResponder(ros2Node);
+   }
 
+   /**
+    * Stops publishing and releases the camera and the node.
+    */
+   public void stop()
+   {
+      cameraVideoPublisher.stop();
+      cameraVideoPublisher.getMetrics().stop();
+      ros2Node.destroy();
+
+      if (mainFrame != null)
+         mainFrame.dispose();
    }
 
    public static BufferedImage resize(BufferedImage originalImage, int newWidth, int newHeight)
    {
-      Image tmp = originalImage.getScaledInstance(newWidth, newHeight, Image.SCALE_SMOOTH);
-      BufferedImage reducedImage = new BufferedImage(newWidth, newHeight, BufferedImage.TYPE_INT_ARGB);
+      BufferedImage source = originalImage;
+      int type = source.getType();
+
+      if ((type != BufferedImage.TYPE_3BYTE_BGR && type != BufferedImage.TYPE_4BYTE_ABGR) || source.getRaster().getParent() != null)
+      { // Bring anything else to a packed byte layout the scaler can work on.
+         source = new BufferedImage(originalImage.getWidth(), originalImage.getHeight(), BufferedImage.TYPE_4BYTE_ABGR);
+         Graphics2D g2d = source.createGraphics();
+         g2d.drawImage(originalImage, 0, 0, null);
+         g2d.dispose();
+         type = BufferedImage.TYPE_4BYTE_ABGR;
+      }
 
-      Graphics2D g2d = reducedImage.createGraphics();
-      g2d.drawImage(tmp, 0, 0, null);
-      g2d.dispose();
+      int channels = type == BufferedImage.TYPE_3BYTE_BGR ? 3 : 4;
+      BufferedImage reducedImage = new BufferedImage(newWidth, newHeight, type);
+      byte[] sourceData = ((DataBufferByte) source.getRaster().getDataBuffer()).getData();
+      byte[] reducedData = ((DataBufferByte) reducedImage.getRaster().getDataBuffer()).getData();
+
+      synchronized (RESIZE_SCALER)
+      {
+         RESIZE_SCALER.scale(ByteBuffer.wrap(sourceData),
+                             source.getWidth(),
+                             source.getHeight(),
+                             source.getWidth() * channels,
+                             channels,
+                             ByteBuffer.wrap(reducedData),
+                             newWidth,
+                             newHeight,
+                             newWidth * channels);
+      }
 
       return reducedImage;
    }
 
-   private final YUVPictureConverter converter = new YUVPictureConverter();
-   private final JPEGEncoder encoder = new JPEGEncoder();
-
-   private VideoPacket toVideoPacket(BufferedImage image)
+   /**
+    * Keeps the last published video in a {@link VideoBlackBox}, saved into {@code dumpDirectory} on
+    * a message on {@link #BLACK_BOX_TRIGGER_TOPIC}.
+    */
+   public VideoBlackBox enableBlackBox(File dumpDirectory)
    {
-      VideoPacket videoPacket = null;
-      YUVPicture picture = converter.fromBufferedImage(image, YUVSubsamplingType.YUV420);
-      try
-      {
-         ByteBuffer buffer = encoder.encode(picture, 75);
-         byte[] data = new byte[buffer.remaining()];
-         buffer.get(data);
+      VideoBlackBox blackBox = new VideoBlackBox(LOGGING_CAMERA_VIDEO_TOPIC,
+                                                 dumpDirectory,
+                                                 VideoBlackBox.DEFAULT_DURATION,
+                                                 VideoBlackBox.DEFAULT_CAPACITY_PER_SOURCE);
+      ros2Node.createSubscription(VideoBlackBoxTriggerMessage.getPubSubType().get(), s -> blackBox.handleTrigger(s.takeNextData()), BLACK_BOX_TRIGGER_TOPIC);
+      cameraVideoPublisher.setBlackBox(blackBox);
+      return blackBox;
+   }
 
-         videoPacket = new VideoPacket();
-         videoPacket.source = 0;
+   public JPEGRateController getRateController()
+   {
+      return cameraVideoPublisher.getRateController();
+   }
 
-         if (data.length > videoPacket.getData().capacity())
-            System.err.println("Image is too big!");
+   public CameraVideoPublisher getCameraVideoPublisher()
+   {
+      return cameraVideoPublisher;
+   }
 
-         videoPacket.getData().add(data);
-         videoPacket.setTimestamp(System.nanoTime());
-      }
-      catch (IOException e)
+   /**
+    * @return the {@code CODEC_} constant of {@link VideoPacket} named {@code name}.
+    */
+   public static byte parseCodec(String name)
+   {
+      switch (name)
       {
-         e.printStackTrace();
+         case "jpeg":
+            return VideoPacket.CODEC_JPEG;
+         case "h264":
+            return VideoPacket.CODEC_H264;
+         case "jpeg-strips":
+            return VideoPacket.CODEC_JPEG_STRIPS;
+         default:
+            throw new IllegalArgumentException("Unknown codec: " + name);
       }
-      picture.delete();
-      return videoPacket;
    }
 
    private void setupUI()
@@ -197,9 +196,94 @@ public class VideoManager
       mainFrame.setVisible(true);
    }
 
-   public static void main(String args[]) throws IOException
+   /**
+    * Usage: {@code VideoManager [--camera <device> | --synthetic <width>x<height>@<fps> | --replay <file or directory> [fps]] [--headless]
+    * [--bitrate <Mbit/s>] [--adapt-resolution] [--max-resolution <width>x<height>]
+    * [--codec jpeg|jpeg-strips|h264] [--keyframe-interval <frames>] [--black-box <directory>] [--metrics-period <s>]}
+    * <p>
+    * The time of each stage and the frame counts are exposed over JMX, see {@link VideoMetrics}, and
+    * printed every {@code --metrics-period} seconds if given, along with the statistics of the
+    * pipeline and the encoder.
+    * </p>
+    */
+   public static void main(String args[]) throws IOException, InterruptedException
    {
-      new VideoManager();
+      FrameSource frameSource = null;
+      boolean showPreview = true;
+      double bitrateBudget = Double.POSITIVE_INFINITY;
+      boolean adaptResolution = false;
+      int maxOutputWidth = CameraVideoPublisher.DEFAULT_MAX_OUTPUT_WIDTH;
+      int maxOutputHeight = CameraVideoPublisher.DEFAULT_MAX_OUTPUT_HEIGHT;
+      byte codec = VideoPacket.CODEC_JPEG;
+      int keyframeInterval = H264Encoder.DEFAULT_KEYFRAME_INTERVAL;
+      File blackBoxDirectory = null;
+      double metricsPeriod = 0.0;
+
+      for (int i = 0; i < args.length; i++)
+      {
+         FrameSource parsedSource = FrameSources.parse(args, i);
+         if (parsedSource != null)
+         {
+            frameSource = parsedSource;
+            i += FrameSources.getArgumentCount(args, i) - 1;
+            continue;
+         }
+
+         switch (args[i])
+         {
+            case "--headless":
+               showPreview = false;
+               break;
+            case "--bitrate":
+               bitrateBudget = Double.parseDouble(args[++i]) * 1.0e6;
+               break;
+            case "--adapt-resolution":
+               adaptResolution = true;
+               break;
+            case "--max-resolution":
+            {
+               String[] resolution = args[++i].split("x");
+               maxOutputWidth = Integer.parseInt(resolution[0]);
+               maxOutputHeight = Integer.parseInt(resolution[1]);
+               break;
+            }
+            case "--codec":
+               codec = parseCodec(args[++i]);
+               break;
+            case "--keyframe-interval":
+               keyframeInterval = Integer.parseInt(args[++i]);
+               break;
+            case "--black-box":
+               blackBoxDirectory = new File(args[++i]);
+               break;
+            case "--metrics-period":
+               metricsPeriod = Double.parseDouble(args[++i]);
+               break;
+            default:
+               throw new IllegalArgumentException("Unknown argument: " + args[i]);
+         }
+      }
+
+      if (frameSource == null)
+         frameSource = new OpenCVFrameSource(0, 640, 480, 10.0);
+
+      VideoManager videoManager = new VideoManager(frameSource, showPreview);
+
+      videoManager.getRateController().setBitrateBudget(bitrateBudget);
+      videoManager.getRateController().setAdaptResolution(adaptResolution);
+      videoManager.getCameraVideoPublisher().setMaxOutputResolution(maxOutputWidth, maxOutputHeight);
+      videoManager.getCameraVideoPublisher().setCodec(codec);
+      videoManager.getCameraVideoPublisher().getH264Encoder().setKeyframeInterval(keyframeInterval);
+      if (!Double.isInfinite(bitrateBudget))
+         videoManager.getCameraVideoPublisher().getH264Encoder().setBitrate(bitrateBudget);
+      if (blackBoxDirectory != null)
+         videoManager.enableBlackBox(blackBoxDirectory);
+      if (metricsPeriod > 0.0)
+         videoManager.getCameraVideoPublisher().getMetrics().startSummaries(metricsPeriod);
+
+      // Without the preview window, nothing else keeps the application alive.
+      if (!showPreview || GraphicsEnvironment.isHeadless())
+         Thread.currentThread().join();
    }
 
 }
@@ -0,0 +1,151 @@
+package us.ihmc.videoacquisition;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import us.ihmc.commons.thread.ThreadTools;
+import us.ihmc.pubsub.DomainFactory.PubSubImplementation;
+import us.ihmc.ros2.ROS2Node;
+import us.ihmc.videoacquisition.recording.VideoLogPlayer;
+import us.ihmc.videoacquisition.recording.VideoLogReader;
+
+/**
+ * Plays back video logs recorded by a {@link VideoRecorder}, e.g. to feed a
+ * {@link StandaloneVideoReceiver} or to benchmark receivers at maximum speed.
+ */
+public class VideoPlayer
+{
+   private String name = "video_player";
+   private String namespace = "/us/ihmc";
+   private int domainId = 57; // FIXME set me up
+   private final ROS2Node ros2Node;
+   private final VideoLogPlayer player;
+   private final ScheduledExecutorService statisticsExecutor = ThreadTools.newSingleDaemonThreadScheduledExecutor("video-statistics");
+
+   /**
+    * @param logDirectories the logs to play back.
+    * @param topics         the topic to publish each log on, {@code null} for the topic it was
+    *                       recorded from.
+    */
+   public VideoPlayer(PubSubImplementation pubSubImplementation, List<File> logDirectories, List<String> topics) throws IOException
+   {
+      ros2Node = new ROS2Node(pubSubImplementation, name, namespace, domainId);
+      player = new VideoLogPlayer(ros2Node);
+
+      for (int i = 0; i < logDirectories.size(); i++)
+      {
+         VideoLogReader reader = new VideoLogReader(logDirectories.get(i));
+         String topic = topics.get(i) != null ? topics.get(i) : reader.getTopic();
+         player.addLog(reader, topic);
+         System.out.printf("%s: %d packets over %.1f s, published on %s%n",
+                           reader.getDirectory(),
+                           reader.getPacketCount(),
+                           (reader.getEndTime() - reader.getStartTime()) * 1.0e-9,
+                           topic);
+      }
+   }
+
+   /**
+    * @param statisticsPeriod period in seconds at which to print the statistics, 0 to not print them.
+    */
+   public void start(double statisticsPeriod)
+   {
+      if (statisticsPeriod > 0.0)
+      {
+         long period = (long) (statisticsPeriod * 1000.0);
+         statisticsExecutor.scheduleAtFixedRate(this::printStatistics, period, period, TimeUnit.MILLISECONDS);
+      }
+
+      player.start();
+   }
+
+   public void stop()
+   {
+      statisticsExecutor.shutdownNow();
+      player.stop();
+      ros2Node.destroy();
+   }
+
+   private void printStatistics()
+   {
+      System.out.println(player.getStatistics());
+   }
+
+   public VideoLogPlayer getPlayer()
+   {
+      return player;
+   }
+
+   /**
+    * Usage: {@code VideoPlayer --log <directory> [--topic <topic>] [--log <directory> [--topic <topic>]]... [--speed <factor>|max]
+    * [--start <s>] [--loop] [--intraprocess] [--statistics-period <s>]}
+    * <p>
+    * Each log is published on the topic it was recorded from, typically
+    * {@link VideoManager#LOGGING_CAMERA_VIDEO_TOPIC}, unless followed by {@code --topic}.
+    * {@code --start} skips the given number of seconds from the start of the logs. With
+    * {@code --loop}, the sequence IDs carry on from one pass to the next, so the receivers keep
+    * showing the frames.
+    * </p>
+    */
+   public static void main(String[] args) throws IOException, InterruptedException
+   {
+      List<File> logDirectories = new ArrayList<>();
+      List<String> topics = new ArrayList<>();
+      double speed = 1.0;
+      double start = 0.0;
+      boolean loop = false;
+      PubSubImplementation pubSubImplementation = PubSubImplementation.FAST_RTPS;
+      double statisticsPeriod = 5.0;
+
+      for (int i = 0; i < args.length; i++)
+      {
+         switch (args[i])
+         {
+            case "--log":
+               logDirectories.add(new File(args[++i]));
+               topics.add(null);
+               break;
+            case "--topic":
+               if (logDirectories.isEmpty())
+                  throw new IllegalArgumentException("--topic has to follow a --log");
+               topics.set(topics.size() - 1, args[++i]);
+               break;
+            case "--speed":
+               speed = args[++i].equals("max") ? VideoLogPlayer.MAXIMUM_SPEED : Double.parseDouble(args[i]);
+               break;
+            case "--start":
+               start = Double.parseDouble(args[++i]);
+               break;
+            case "--loop":
+               loop = true;
+               break;
+            case "--intraprocess":
+               pubSubImplementation = PubSubImplementation.INTRAPROCESS;
+               break;
+            case "--statistics-period":
+               statisticsPeriod = Double.parseDouble(args[++i]);
+               break;
+            default:
+               throw new IllegalArgumentException("Unknown argument: " + args[i]);
+         }
+      }
+
+      if (logDirectories.isEmpty())
+         throw new IllegalArgumentException("No log to play back");
+
+      VideoPlayer videoPlayer = new VideoPlayer(pubSubImplementation, logDirectories, topics);
+      VideoLogPlayer player = videoPlayer.getPlayer();
+      player.setSpeed(speed);
+      player.setLoop(loop);
+      player.setStartTime(player.getLogStartTime() + (long) (start * 1.0e9));
+
+      videoPlayer.start(statisticsPeriod);
+      player.waitUntilDone();
+      videoPlayer.printStatistics();
+      videoPlayer.stop();
+   }
+}
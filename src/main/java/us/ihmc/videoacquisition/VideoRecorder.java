@@ -0,0 +1,243 @@
+package us.ihmc.videoacquisition;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import us.ihmc.commons.thread.ThreadTools;
+import us.ihmc.pubsub.DomainFactory.PubSubImplementation;
+import us.ihmc.pubsub.common.SampleInfo;
+import us.ihmc.ros2.ROS2Distro;
+import us.ihmc.ros2.RealtimeROS2Node;
+import us.ihmc.util.PeriodicNonRealtimeThreadSchedulerFactory;
+import us.ihmc.videoacquisition.latency.VideoClock;
+import us.ihmc.videoacquisition.recording.RawVideoPacket;
+import us.ihmc.videoacquisition.recording.RawVideoPacketPubSubType;
+import us.ihmc.videoacquisition.recording.VideoLogWriter;
+import us.ihmc.videoacquisition.recording.VideoLogWriter.SyncPolicy;
+
+/**
+ * Records video topics into video logs, one log directory per topic, see
+ * {@link us.ihmc.videoacquisition.recording.VideoLogFormat}.
+ * <p>
+ * The packets are recorded as received, in CDR, without being deserialized, so recording several
+ * camera streams costs little more than copying their bytes.
+ * </p>
+ */
+public class VideoRecorder
+{
+   private String name = "video_recorder";
+   private String namespace = "/us/ihmc";
+   private final RealtimeROS2Node ros2Node;
+   private final List<TopicRecorder> topicRecorders = new ArrayList<>();
+   private final ScheduledExecutorService statisticsExecutor = ThreadTools.newSingleDaemonThreadScheduledExecutor("video-statistics");
+
+   /**
+    * @param outputDirectory where to create the log directories, named after the topics.
+    */
+   public VideoRecorder(PubSubImplementation pubSubImplementation, List<String> topics, File outputDirectory, long segmentSize, SyncPolicy syncPolicy,
+                        long syncPeriodMillis)
+         throws IOException
+   {
+      ros2Node = new RealtimeROS2Node(pubSubImplementation, ROS2Distro.ARDENT, new PeriodicNonRealtimeThreadSchedulerFactory(), name, namespace);
+
+      for (String topic : topics)
+      {
+         VideoLogWriter writer = new VideoLogWriter(new File(outputDirectory, getLogName(topic)), topic);
+         writer.setSegmentSize(segmentSize);
+         writer.setSyncPolicy(syncPolicy, syncPeriodMillis);
+
+         TopicRecorder topicRecorder = new TopicRecorder(writer);
+         ros2Node.createCallbackSubscription(new RawVideoPacketPubSubType(), topic, s ->
+         {
+            while (s.takeNextData(topicRecorder.packet, topicRecorder.sampleInfo))
+               topicRecorder.record();
+         });
+         topicRecorders.add(topicRecorder);
+      }
+   }
+
+   /**
+    * @return the name of the log directory of {@code topic}, e.g. {@code ihmc_video_camera_0}.
+    */
+   public static String getLogName(String topic)
+   {
+      String logName = topic.replaceAll("[^A-Za-z0-9_-]+", "_").replaceAll("^_+|_+$", "");
+      return logName.isEmpty() ? "video" : logName;
+   }
+
+   /**
+    * @param statisticsPeriod period in seconds at which to print the statistics, 0 to not print them.
+    */
+   public void start(double statisticsPeriod)
+   {
+      if (statisticsPeriod > 0.0)
+      {
+         long period = (long) (statisticsPeriod * 1000.0);
+         statisticsExecutor.scheduleAtFixedRate(this::printStatistics, period, period, TimeUnit.MILLISECONDS);
+      }
+
+      ros2Node.spin();
+   }
+
+   public void stop()
+   {
+      statisticsExecutor.shutdownNow();
+      ros2Node.destroy();
+
+      for (TopicRecorder topicRecorder : topicRecorders)
+         topicRecorder.close();
+   }
+
+   private void printStatistics()
+   {
+      for (TopicRecorder topicRecorder : topicRecorders)
+         System.out.println(topicRecorder.writer.getStatistics());
+   }
+
+   public List<VideoLogWriter> getWriters()
+   {
+      List<VideoLogWriter> writers = new ArrayList<>();
+      for (TopicRecorder topicRecorder : topicRecorders)
+         writers.add(topicRecorder.writer);
+      return writers;
+   }
+
+   /**
+    * Writes the packets of one topic, from the thread of its subscription.
+    */
+   private static class TopicRecorder
+   {
+      private final VideoLogWriter writer;
+      private final RawVideoPacket packet = new RawVideoPacket();
+      private final SampleInfo sampleInfo = new SampleInfo();
+      private boolean failed = false;
+
+      TopicRecorder(VideoLogWriter writer)
+      {
+         this.writer = writer;
+      }
+
+      synchronized void record()
+      {
+         if (failed)
+            return;
+
+         try
+         {
+            writer.write(packet, VideoClock.now());
+         }
+         catch (IOException e)
+         {
+            // Most likely the disk is full, stop recording this topic rather than failing on each packet.
+            System.err.println("Stopped recording " + writer.getDirectory());
+            e.printStackTrace();
+            failed = true;
+         }
+      }
+
+      synchronized void close()
+      {
+         try
+         {
+            writer.close();
+         }
+         catch (IOException e)
+         {
+            e.printStackTrace();
+         }
+      }
+   }
+
+   /**
+    * Usage: {@code VideoRecorder [--topic <topic>]... [--camera-topics <count>] [--output <directory>] [--segment-size <MB>]
+    * [--sync none|rotation | --sync periodic <ms>] [--intraprocess] [--duration <s>] [--statistics-period <s>]}
+    * <p>
+    * Records {@link VideoManager#LOGGING_CAMERA_VIDEO_TOPIC} when no topic is given, into
+    * {@code video-logs} by default. Segments are synced to disk when full by default.
+    * </p>
+    */
+   public static void main(String[] args) throws IOException, InterruptedException
+   {
+      List<String> topics = new ArrayList<>();
+      File outputDirectory = new File("video-logs");
+      long segmentSize = VideoLogWriter.DEFAULT_SEGMENT_SIZE;
+      SyncPolicy syncPolicy = SyncPolicy.ON_ROTATION;
+      long syncPeriodMillis = VideoLogWriter.DEFAULT_SYNC_PERIOD_MILLIS;
+      PubSubImplementation pubSubImplementation = PubSubImplementation.FAST_RTPS;
+      double duration = Double.POSITIVE_INFINITY;
+      double statisticsPeriod = 5.0;
+
+      for (int i = 0; i < args.length; i++)
+      {
+         switch (args[i])
+         {
+            case "--topic":
+               topics.add(args[++i]);
+               break;
+            case "--camera-topics":
+            {
+               int cameraCount = Integer.parseInt(args[++i]);
+               for (int cameraIndex = 0; cameraIndex < cameraCount; cameraIndex++)
+                  topics.add(MultiCameraVideoManager.getCameraTopic(cameraIndex));
+               break;
+            }
+            case "--output":
+               outputDirectory = new File(args[++i]);
+               break;
+            case "--segment-size":
+               segmentSize = Long.parseLong(args[++i]) << 20;
+               break;
+            case "--sync":
+               switch (args[++i])
+               {
+                  case "none":
+                     syncPolicy = SyncPolicy.NONE;
+                     break;
+                  case "rotation":
+                     syncPolicy = SyncPolicy.ON_ROTATION;
+                     break;
+                  case "periodic":
+                     syncPolicy = SyncPolicy.PERIODIC;
+                     syncPeriodMillis = Long.parseLong(args[++i]);
+                     break;
+                  default:
+                     throw new IllegalArgumentException("Unknown sync policy: " + args[i]);
+               }
+               break;
+            case "--intraprocess":
+               pubSubImplementation = PubSubImplementation.INTRAPROCESS;
+               break;
+            case "--duration":
+               duration = Double.parseDouble(args[++i]);
+               break;
+            case "--statistics-period":
+               statisticsPeriod = Double.parseDouble(args[++i]);
+               break;
+            default:
+               throw new IllegalArgumentException("Unknown argument: " + args[i]);
+         }
+      }
+
+      if (topics.isEmpty())
+         topics.add(VideoManager.LOGGING_CAMERA_VIDEO_TOPIC);
+
+      VideoRecorder recorder = new VideoRecorder(pubSubImplementation, topics, outputDirectory, segmentSize, syncPolicy, syncPeriodMillis);
+      Runtime.getRuntime().addShutdownHook(new Thread(recorder::stop, "video-recorder-shutdown"));
+      recorder.start(statisticsPeriod);
+
+      if (Double.isInfinite(duration))
+      {
+         Thread.currentThread().join();
+      }
+      else
+      {
+         Thread.sleep((long) (duration * 1000.0));
+         recorder.printStatistics();
+         System.exit(0);
+      }
+   }
+}
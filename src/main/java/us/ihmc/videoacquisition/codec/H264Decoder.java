@@ -0,0 +1,103 @@
+package us.ihmc.videoacquisition.codec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import us.ihmc.codecs.generated.YUVPicture;
+import us.ihmc.codecs.h264.OpenH264Decoder;
+import us.ihmc.codecs.util.ByteBufferProvider;
+
+/**
+ * Decodes an H.264 stream sent by an {@link H264Encoder} with OpenH264.
+ * <p>
+ * Unlike JPEG, every frame of the stream has to go through the decoder, in order: frames refer to
+ * the previous ones. Frames received before the first keyframe cannot be decoded and are skipped.
+ * </p>
+ */
+public class H264Decoder
+{
+   private static final int NAL_UNIT_TYPE_IDR = 5;
+
+   private OpenH264Decoder decoder;
+   private final ByteBufferProvider byteBufferProvider = new ByteBufferProvider();
+   private boolean waitingForKeyframe = true;
+
+   private long decodedFrameCount = 0;
+   private long skippedFrameCount = 0;
+
+   /**
+    * @return the decoded picture, to be deleted by the caller, or {@code null} if the frame could not
+    *         be decoded or the decoder is waiting for a keyframe.
+    */
+   public YUVPicture decode(byte[] data, int offset, int length) throws IOException
+   {
+      if (waitingForKeyframe)
+      {
+         if (!containsKeyframe(data, offset, length))
+         {
+            skippedFrameCount++;
+            return null;
+         }
+
+         waitingForKeyframe = false;
+      }
+
+      if (decoder == null)
+         decoder = new OpenH264Decoder();
+
+      ByteBuffer buffer = byteBufferProvider.getOrCreateBuffer(length);
+      buffer.put(data, offset, length);
+      buffer.flip();
+
+      YUVPicture picture = decoder.decodeFrame(buffer);
+      if (picture != null)
+         decodedFrameCount++;
+      return picture;
+   }
+
+   /**
+    * Drops the decoder state, frames are skipped until the next keyframe.
+    */
+   public void reset()
+   {
+      delete();
+      waitingForKeyframe = true;
+   }
+
+   public boolean isWaitingForKeyframe()
+   {
+      return waitingForKeyframe;
+   }
+
+   static boolean containsKeyframe(byte[] data, int offset, int length)
+   {
+      int end = offset + length - 3;
+
+      for (int i = offset; i < end; i++)
+      {
+         if (data[i] == 0 && data[i + 1] == 0 && data[i + 2] == 1 && (data[i + 3] & 0x1F) == NAL_UNIT_TYPE_IDR)
+            return true;
+      }
+
+      return false;
+   }
+
+   public void delete()
+   {
+      if (decoder != null)
+      {
+         decoder.delete();
+         decoder = null;
+      }
+   }
+
+   public long getDecodedFrameCount()
+   {
+      return decodedFrameCount;
+   }
+
+   public long getSkippedFrameCount()
+   {
+      return skippedFrameCount;
+   }
+}
@@ -0,0 +1,193 @@
+package us.ihmc.videoacquisition.codec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import us.ihmc.codecs.generated.EUsageType;
+import us.ihmc.codecs.generated.RC_MODES;
+import us.ihmc.codecs.generated.YUVPicture;
+import us.ihmc.codecs.h264.OpenH264Encoder;
+
+/**
+ * H.264 encoding of a video stream with OpenH264.
+ * <p>
+ * Each call to {@link #encode(YUVPicture)} returns the NAL units of one access unit in Annex B
+ * format, ready to be fed as a whole to a decoder. The native encoder is created on the first frame
+ * and recreated whenever the frame size or the settings change; the first frame after that is
+ * always a keyframe. All methods but the setters and {@link #requestKeyframe()} are expected to be
+ * called from the encoder thread.
+ * </p>
+ */
+public class H264Encoder
+{
+   public static final double DEFAULT_BITRATE = 2.0e6;
+   public static final int DEFAULT_KEYFRAME_INTERVAL = 60;
+
+   private static final int NAL_UNIT_TYPE_IDR = 5;
+
+   private OpenH264Encoder encoder;
+   private int width = -1;
+   private int height = -1;
+   private volatile boolean reconfigure = true;
+   private volatile boolean keyframeRequested = false;
+
+   private volatile double bitrate = DEFAULT_BITRATE;
+   private volatile int keyframeInterval = DEFAULT_KEYFRAME_INTERVAL;
+   private volatile double frameRate = 30.0;
+
+   private ByteBuffer accessUnit = ByteBuffer.allocate(65536);
+   private boolean lastFrameKeyframe = false;
+
+   private volatile long encodedFrameCount = 0;
+   private volatile long keyframeCount = 0;
+   private volatile long requestedKeyframeCount = 0;
+
+   /**
+    * @param bitrate target bitrate of the stream in bit/s.
+    */
+   public void setBitrate(double bitrate)
+   {
+      this.bitrate = bitrate;
+      reconfigure = true;
+   }
+
+   /**
+    * @param keyframeInterval number of frames between two periodic keyframes.
+    */
+   public void setKeyframeInterval(int keyframeInterval)
+   {
+      this.keyframeInterval = keyframeInterval;
+      reconfigure = true;
+   }
+
+   public void setFrameRate(double frameRate)
+   {
+      this.frameRate = frameRate;
+      reconfigure = true;
+   }
+
+   /**
+    * Makes the next frame a keyframe, so that a receiver that just joined or lost frames can start
+    * decoding again. May be called from any thread.
+    */
+   public void requestKeyframe()
+   {
+      keyframeRequested = true;
+   }
+
+   /**
+    * @return the encoded access unit, only valid until the next call.
+    */
+   public ByteBuffer encode(YUVPicture picture) throws IOException
+   {
+      if (encoder == null || reconfigure || picture.getWidth() != width || picture.getHeight() != height)
+      {
+         configure(picture.getWidth(), picture.getHeight());
+      }
+      else if (keyframeRequested)
+      {
+         encoder.sendIntraFrame();
+         requestedKeyframeCount++;
+      }
+      keyframeRequested = false;
+
+      encoder.encodeFrame(picture);
+
+      accessUnit.clear();
+      lastFrameKeyframe = false;
+
+      while (encoder.nextNAL())
+      {
+         ByteBuffer nal = encoder.getNAL();
+
+         if (accessUnit.remaining() < nal.remaining())
+         {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(2 * accessUnit.capacity(), accessUnit.position() + nal.remaining()));
+            accessUnit.flip();
+            larger.put(accessUnit);
+            accessUnit = larger;
+         }
+
+         if (getNALUnitType(nal) == NAL_UNIT_TYPE_IDR)
+            lastFrameKeyframe = true;
+
+         accessUnit.put(nal);
+      }
+
+      accessUnit.flip();
+      encodedFrameCount++;
+      if (lastFrameKeyframe)
+         keyframeCount++;
+      return accessUnit;
+   }
+
+   private void configure(int width, int height) throws IOException
+   {
+      delete();
+
+      encoder = new OpenH264Encoder();
+      encoder.setUsageType(EUsageType.CAMERA_VIDEO_REAL_TIME);
+      encoder.setSize(width, height);
+      encoder.setRCMode(RC_MODES.RC_BITRATE_MODE);
+      // OpenH264 takes the bitrate in kbit/s.
+      encoder.setBitRate((int) (bitrate / 1000.0));
+      encoder.setFrameRate((float) frameRate);
+      encoder.setIntraPeriod(keyframeInterval);
+
+      this.width = width;
+      this.height = height;
+      reconfigure = false;
+   }
+
+   /**
+    * @return the type of a NAL unit starting with an Annex B start code, -1 if there is none.
+    */
+   static int getNALUnitType(ByteBuffer nal)
+   {
+      int position = nal.position();
+
+      for (int i = position; i + 3 < nal.limit() && i < position + 4; i++)
+      {
+         if (nal.get(i) == 0 && nal.get(i + 1) == 0 && nal.get(i + 2) == 1)
+            return nal.get(i + 3) & 0x1F;
+      }
+
+      return -1;
+   }
+
+   /**
+    * @return whether the last encoded frame is a keyframe.
+    */
+   public boolean isLastFrameKeyframe()
+   {
+      return lastFrameKeyframe;
+   }
+
+   public void delete()
+   {
+      if (encoder != null)
+      {
+         encoder.delete();
+         encoder = null;
+      }
+   }
+
+   public double getBitrate()
+   {
+      return bitrate;
+   }
+
+   public int getKeyframeInterval()
+   {
+      return keyframeInterval;
+   }
+
+   public String getStatistics()
+   {
+      return String.format("H.264 %.2f Mbit/s target, %d frames, %d keyframes (%d requested)",
+                           bitrate * 1.0e-6,
+                           encodedFrameCount,
+                           keyframeCount,
+                           requestedKeyframeCount);
+   }
+}
@@ -0,0 +1,259 @@
+package us.ihmc.videoacquisition.codec;
+
+/**
+ * Closed-loop rate control for a JPEG stream: picks the quality, and optionally the scale of the
+ * output resolution, of each frame so that every frame fits in a packet and the stream stays under
+ * a bandwidth budget.
+ * <p>
+ * The controller compares the size of the recent frames against a per-frame target derived from
+ * the budget and the measured frame rate. JPEG size grows roughly exponentially with quality, so
+ * quality is corrected proportionally to the log of the size error. When quality has bottomed out
+ * and the stream is still over budget, the resolution is reduced, and restored once there is
+ * headroom again.
+ * </p>
+ * <p>
+ * All methods are expected to be called from the encoder thread, only the metric getters may be
+ * called from other threads.
+ * </p>
+ */
+public class JPEGRateController
+{
+   public static final int DEFAULT_MIN_QUALITY = 10;
+   public static final int DEFAULT_MAX_QUALITY = 75;
+   public static final double MIN_SCALE = 0.25;
+
+   private static final int HISTORY_LENGTH = 30;
+   /** Aim below the hard limits to absorb the frame-to-frame size variations. */
+   private static final double TARGET_MARGIN = 0.85;
+   /** Quality points per unit of log size error. */
+   private static final double QUALITY_GAIN = 12.0;
+   private static final int MAX_QUALITY_STEP = 10;
+   private static final double SCALE_STEP = 0.8;
+   private static final int FRAMES_BEFORE_SCALE_CHANGE = 15;
+
+   private final int maxFrameSize;
+   private volatile double bitrateBudget = Double.POSITIVE_INFINITY;
+   private volatile boolean adaptResolution = false;
+   private volatile int minQuality = DEFAULT_MIN_QUALITY;
+   private volatile int maxQuality = DEFAULT_MAX_QUALITY;
+
+   private final int[] frameSizes = new int[HISTORY_LENGTH];
+   private final long[] frameTimestamps = new long[HISTORY_LENGTH];
+   private int historySize = 0;
+   private int historyIndex = 0;
+
+   private volatile int quality = DEFAULT_MAX_QUALITY;
+   private volatile double scale = 1.0;
+   private int framesOverBudget = 0;
+   private int framesUnderBudget = 0;
+
+   private volatile double bitrate = 0.0;
+   private volatile double averageFrameSize = 0.0;
+   private volatile long oversizeRetries = 0;
+   private volatile long oversizeFrames = 0;
+
+   /**
+    * @param maxFrameSize hard limit on the size of an encoded frame, in bytes.
+    */
+   public JPEGRateController(int maxFrameSize)
+   {
+      this.maxFrameSize = maxFrameSize;
+   }
+
+   /**
+    * @param bitrateBudget maximum bitrate of the stream in bit/s, {@link Double#POSITIVE_INFINITY}
+    *                      to only limit the size of each frame.
+    */
+   public void setBitrateBudget(double bitrateBudget)
+   {
+      this.bitrateBudget = bitrateBudget;
+   }
+
+   /**
+    * Whether the output resolution may be reduced when the lowest quality is not enough to meet
+    * the budget. Disabled by default.
+    */
+   public void setAdaptResolution(boolean adaptResolution)
+   {
+      this.adaptResolution = adaptResolution;
+      if (!adaptResolution)
+         scale = 1.0;
+   }
+
+   public void setQualityRange(int minQuality, int maxQuality)
+   {
+      if (minQuality < 1 || maxQuality > 100 || minQuality > maxQuality)
+         throw new IllegalArgumentException("Invalid quality range: [" + minQuality + ", " + maxQuality + "]");
+
+      this.minQuality = minQuality;
+      this.maxQuality = maxQuality;
+      quality = Math.max(minQuality, Math.min(maxQuality, quality));
+   }
+
+   /**
+    * @return the quality to encode the next frame with.
+    */
+   public int getQuality()
+   {
+      return quality;
+   }
+
+   /**
+    * @return the factor, in (0, 1], to apply to the nominal output width and height of the next
+    *         frame.
+    */
+   public double getScale()
+   {
+      return scale;
+   }
+
+   /**
+    * Picks a lower quality to re-encode a frame that came out larger than the maximum frame size.
+    *
+    * @return the quality to retry with, or -1 if the frame cannot be made small enough by lowering
+    *         the quality any further.
+    */
+   public int getRetryQuality(int failedQuality, int encodedSize)
+   {
+      if (failedQuality <= minQuality)
+      {
+         oversizeFrames++;
+         if (adaptResolution)
+            scale = Math.max(MIN_SCALE, scale * SCALE_STEP);
+         return -1;
+      }
+
+      oversizeRetries++;
+      double error = Math.log((double) encodedSize / (TARGET_MARGIN * maxFrameSize));
+      int retryQuality = failedQuality - Math.max(5, (int) Math.ceil(QUALITY_GAIN * error));
+      retryQuality = Math.max(minQuality, retryQuality);
+      // Do not start the next frame from a quality that is known to be too high.
+      quality = Math.min(quality, retryQuality);
+      return retryQuality;
+   }
+
+   /**
+    * Feeds back the outcome of an encoded frame and updates the quality and scale for the next one.
+    *
+    * @param encodedSize size of the encoded frame in bytes.
+    * @param timestamp   capture time of the frame in nanoseconds.
+    */
+   public void update(int encodedSize, long timestamp)
+   {
+      frameSizes[historyIndex] = encodedSize;
+      frameTimestamps[historyIndex] = timestamp;
+      historyIndex = (historyIndex + 1) % HISTORY_LENGTH;
+      historySize = Math.min(historySize + 1, HISTORY_LENGTH);
+
+      long totalSize = 0;
+      for (int i = 0; i < historySize; i++)
+         totalSize += frameSizes[i];
+      averageFrameSize = (double) totalSize / historySize;
+
+      int oldest = historySize < HISTORY_LENGTH ? 0 : historyIndex;
+      int newest = (historyIndex + HISTORY_LENGTH - 1) % HISTORY_LENGTH;
+      double window = (frameTimestamps[newest] - frameTimestamps[oldest]) * 1.0e-9;
+      double frameRate = historySize > 1 && window > 0.0 ? (historySize - 1) / window : 0.0;
+      bitrate = 8.0 * averageFrameSize * frameRate;
+
+      double targetFrameSize = TARGET_MARGIN * maxFrameSize;
+      if (frameRate > 0.0 && !Double.isInfinite(bitrateBudget))
+         targetFrameSize = Math.min(targetFrameSize, TARGET_MARGIN * bitrateBudget / 8.0 / frameRate);
+
+      // Blend the latest frame with the recent average: react quickly to scene changes without
+      // oscillating on noise.
+      double observedSize = 0.5 * encodedSize + 0.5 * averageFrameSize;
+      double error = Math.log(observedSize / targetFrameSize);
+      int step = (int) Math.round(QUALITY_GAIN * error);
+      step = Math.max(-MAX_QUALITY_STEP, Math.min(MAX_QUALITY_STEP, step));
+      quality = Math.max(minQuality, Math.min(maxQuality, quality - step));
+
+      if (adaptResolution)
+         updateScale(observedSize, targetFrameSize);
+   }
+
+   private void updateScale(double observedSize, double targetFrameSize)
+   {
+      if (quality <= minQuality && observedSize > targetFrameSize)
+      {
+         framesUnderBudget = 0;
+         if (++framesOverBudget >= FRAMES_BEFORE_SCALE_CHANGE && scale > MIN_SCALE)
+         {
+            scale = Math.max(MIN_SCALE, scale * SCALE_STEP);
+            framesOverBudget = 0;
+            clearHistory();
+         }
+      }
+      // Going up in resolution multiplies the frame size by 1 / SCALE_STEP^2: wait for that much headroom.
+      else if (scale < 1.0 && quality >= maxQuality && observedSize < SCALE_STEP * SCALE_STEP * targetFrameSize)
+      {
+         framesOverBudget = 0;
+         if (++framesUnderBudget >= FRAMES_BEFORE_SCALE_CHANGE)
+         {
+            scale = Math.min(1.0, scale / SCALE_STEP);
+            framesUnderBudget = 0;
+            clearHistory();
+         }
+      }
+      else
+      {
+         framesOverBudget = 0;
+         framesUnderBudget = 0;
+      }
+   }
+
+   /**
+    * Forgets the frame sizes observed at the previous resolution.
+    */
+   private void clearHistory()
+   {
+      historySize = 0;
+      historyIndex = 0;
+   }
+
+   /**
+    * @return the bitrate of the stream over the recent frames, in bit/s.
+    */
+   public double getBitrate()
+   {
+      return bitrate;
+   }
+
+   public double getBitrateBudget()
+   {
+      return bitrateBudget;
+   }
+
+   public double getAverageFrameSize()
+   {
+      return averageFrameSize;
+   }
+
+   /**
+    * @return the number of frames that had to be re-encoded at a lower quality to fit.
+    */
+   public long getOversizeRetries()
+   {
+      return oversizeRetries;
+   }
+
+   /**
+    * @return the number of frames that could not be made to fit and were dropped.
+    */
+   public long getOversizeFrames()
+   {
+      return oversizeFrames;
+   }
+
+   public String getStatistics()
+   {
+      return String.format("quality %d, scale %.2f, %.2f Mbit/s (budget %s), %.1f kB/frame, %d retries, %d oversize",
+                           quality,
+                           scale,
+                           bitrate * 1.0e-6,
+                           Double.isInfinite(bitrateBudget) ? "none" : String.format("%.2f Mbit/s", bitrateBudget * 1.0e-6),
+                           averageFrameSize / 1000.0,
+                           oversizeRetries,
+                           oversizeFrames);
+   }
+}
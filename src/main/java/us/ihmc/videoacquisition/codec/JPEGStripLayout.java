@@ -0,0 +1,66 @@
+package us.ihmc.videoacquisition.codec;
+
+import java.nio.ByteBuffer;
+
+import controller_msgs.msg.dds.VideoPacket;
+
+/**
+ * Layout of a {@link VideoPacket#CODEC_JPEG_STRIPS} frame: a frame split into horizontal strips,
+ * each compressed as an independent JPEG so that the strips can be encoded and decoded in parallel.
+ * <p>
+ * The frame starts with a header, in big-endian order:
+ * <ul>
+ * <li>the version of the layout, one byte, {@link #VERSION},
+ * <li>the number of strips, one byte,
+ * <li>the width and height of the frame, two unsigned shorts,
+ * <li>for each strip, from the top of the frame down, its number of rows as an unsigned short and
+ * the size of its JPEG in bytes as an int.
+ * </ul>
+ * The JPEGs of the strips follow, in the same order. Every strip but the last one has a number of
+ * rows multiple of {@link #ROW_ALIGNMENT}, so that its chroma rows start on a chroma block of the
+ * frame and the strips add up to the frame exactly.
+ * </p>
+ */
+public final class JPEGStripLayout
+{
+   public static final byte VERSION = 1;
+   public static final int MAX_STRIP_COUNT = 255;
+   /** Height of a 4:2:0 JPEG macroblock. */
+   public static final int ROW_ALIGNMENT = 16;
+
+   static final int HEADER_SIZE = 6;
+   static final int STRIP_ENTRY_SIZE = 6;
+
+   private JPEGStripLayout()
+   {
+   }
+
+   /**
+    * @return the number of rows of each strip but the last one when splitting {@code height} rows in
+    *         at most {@code stripCount} strips.
+    */
+   public static int getRowsPerStrip(int height, int stripCount)
+   {
+      int rowsPerStrip = (height + stripCount - 1) / stripCount;
+      return Math.max(ROW_ALIGNMENT, (rowsPerStrip + ROW_ALIGNMENT - 1) / ROW_ALIGNMENT * ROW_ALIGNMENT);
+   }
+
+   public static int getHeaderSize(int stripCount)
+   {
+      return HEADER_SIZE + STRIP_ENTRY_SIZE * stripCount;
+   }
+
+   static void writeHeader(ByteBuffer buffer, int width, int height, int stripCount)
+   {
+      buffer.put(VERSION);
+      buffer.put((byte) stripCount);
+      buffer.putShort((short) width);
+      buffer.putShort((short) height);
+   }
+
+   static void writeStripEntry(ByteBuffer buffer, int rows, int size)
+   {
+      buffer.putShort((short) rows);
+      buffer.putInt(size);
+   }
+}
@@ -0,0 +1,162 @@
+package us.ihmc.videoacquisition.codec;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import us.ihmc.videoacquisition.JPEGDecompressor;
+import us.ihmc.videoacquisition.yuv.YUV420Image;
+
+/**
+ * Decodes frames encoded by a {@link StripJPEGEncoder}, the strips in parallel on a
+ * {@link ForkJoinPool}, and puts them back together into one {@link YUV420Image}.
+ * <p>
+ * Each strip has its own decompressor and is decoded into its own image, whose rows are then
+ * copied at their place in the frame by the same task. The layout is checked against the frame
+ * before decoding anything, so a corrupted header is rejected rather than written out of bounds.
+ * </p>
+ * <p>
+ * An instance must not be used by several threads at once.
+ * </p>
+ */
+public class StripJPEGDecoder
+{
+   private final ForkJoinPool pool;
+   private final Strip[] strips = new Strip[JPEGStripLayout.MAX_STRIP_COUNT];
+
+   public StripJPEGDecoder()
+   {
+      this(ForkJoinPool.commonPool());
+   }
+
+   public StripJPEGDecoder(ForkJoinPool pool)
+   {
+      this.pool = pool;
+   }
+
+   /**
+    * @return {@code false} if the frame could not be decoded.
+    */
+   public boolean decode(byte[] data, int offset, int length, YUV420Image imageToPack)
+   {
+      ByteBuffer buffer = ByteBuffer.wrap(data, offset, length);
+      if (buffer.remaining() < JPEGStripLayout.HEADER_SIZE || buffer.get() != JPEGStripLayout.VERSION)
+         return false;
+
+      int stripCount = buffer.get() & 0xFF;
+      int width = buffer.getShort() & 0xFFFF;
+      int height = buffer.getShort() & 0xFFFF;
+      if (stripCount == 0 || buffer.remaining() < JPEGStripLayout.STRIP_ENTRY_SIZE * stripCount)
+         return false;
+
+      int stripOffset = buffer.position() + JPEGStripLayout.STRIP_ENTRY_SIZE * stripCount;
+      int startRow = 0;
+
+      for (int i = 0; i < stripCount; i++)
+      {
+         int rows = buffer.getShort() & 0xFFFF;
+         int size = buffer.getInt();
+         boolean isLast = i == stripCount - 1;
+
+         if (size < 0 || size > offset + length - stripOffset || rows == 0 || (!isLast && rows % JPEGStripLayout.ROW_ALIGNMENT != 0))
+            return false;
+
+         if (strips[i] == null)
+            strips[i] = new Strip();
+         strips[i].prepare(data, stripOffset, size, startRow, rows, width);
+
+         stripOffset += size;
+         startRow += rows;
+      }
+
+      if (startRow != height)
+         return false;
+
+      imageToPack.reshape(width, height);
+      for (int i = 0; i < stripCount; i++)
+         strips[i].destination = imageToPack;
+
+      pool.invoke(new RecursiveAction()
+      {
+         @Override
+         protected void compute()
+         {
+            for (int i = 1; i < stripCount; i++)
+               strips[i].fork();
+            strips[0].invoke();
+            for (int i = 1; i < stripCount; i++)
+               strips[i].join();
+         }
+      });
+
+      boolean decoded = true;
+      for (int i = 0; i < stripCount; i++)
+      {
+         decoded &= strips[i].decoded;
+         strips[i].data = null;
+         strips[i].destination = null;
+      }
+      return decoded;
+   }
+
+   @SuppressWarnings("serial")
+   private static class Strip extends RecursiveAction
+   {
+      private final JPEGDecompressor decompressor = new JPEGDecompressor();
+      private final YUV420Image stripImage = new YUV420Image();
+      private byte[] row = new byte[0];
+
+      private byte[] data;
+      private int offset, length, startRow, rows, width;
+      private YUV420Image destination;
+      private boolean decoded;
+
+      void prepare(byte[] data, int offset, int length, int startRow, int rows, int width)
+      {
+         this.data = data;
+         this.offset = offset;
+         this.length = length;
+         this.startRow = startRow;
+         this.rows = rows;
+         this.width = width;
+         decoded = false;
+         reinitialize();
+      }
+
+      @Override
+      protected void compute()
+      {
+         if (!decompressor.decompressJPEGDataToYUV420Image(data, offset, length, stripImage))
+            return;
+         if (stripImage.getWidth() != width || stripImage.getHeight() != rows)
+            return;
+
+         copyRows(stripImage.getY(), stripImage.getYStride(), destination.getY(), destination.getYStride(), startRow, rows, width);
+         int chromaWidth = stripImage.getChromaWidth();
+         int chromaRows = stripImage.getChromaHeight();
+         copyRows(stripImage.getU(), stripImage.getUStride(), destination.getU(), destination.getUStride(), startRow / 2, chromaRows, chromaWidth);
+         copyRows(stripImage.getV(), stripImage.getVStride(), destination.getV(), destination.getVStride(), startRow / 2, chromaRows, chromaWidth);
+         decoded = true;
+      }
+
+      /**
+       * Copies the rows through a private duplicate of the destination plane, the other strips
+       * write to the same plane at the same time.
+       */
+      private void copyRows(ByteBuffer source, int sourceStride, ByteBuffer destination, int destinationStride, int destinationRow, int rows, int width)
+      {
+         if (row.length < width)
+            row = new byte[width];
+
+         ByteBuffer destinationPlane = destination.duplicate();
+         for (int i = 0; i < rows; i++)
+         {
+            source.position(i * sourceStride);
+            source.get(row, 0, width);
+            destinationPlane.position((destinationRow + i) * destinationStride);
+            destinationPlane.put(row, 0, width);
+         }
+         source.position(0);
+      }
+   }
+}
@@ -0,0 +1,209 @@
+package us.ihmc.videoacquisition.codec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import us.ihmc.codecs.generated.YUVPicture;
+import us.ihmc.codecs.generated.YUVPicture.YUVSubsamplingType;
+import us.ihmc.codecs.yuv.JPEGEncoder;
+import us.ihmc.videoacquisition.yuv.YUV420Image;
+
+/**
+ * Encodes a {@link YUV420Image} as independent JPEG strips on a {@link ForkJoinPool}, see
+ * {@link JPEGStripLayout}.
+ * <p>
+ * Each strip has its own native encoder, and a native picture over its rows of the image kept from
+ * frame to frame as long as the image is not reshaped, see {@link YUV420Image#getYUVPicture()}.
+ * By default, the number of strips follows the parallelism of the pool, without
+ * making strips shorter than {@link #MIN_STRIP_HEIGHT} rows.
+ * </p>
+ * <p>
+ * An instance must not be used by several threads at once.
+ * </p>
+ */
+public class StripJPEGEncoder
+{
+   /** Below this height, the per-strip overhead outweighs the gain of encoding in parallel. */
+   public static final int MIN_STRIP_HEIGHT = 128;
+
+   private final ForkJoinPool pool;
+   private final Strip[] strips = new Strip[JPEGStripLayout.MAX_STRIP_COUNT];
+   private int stripCount = 0;
+   private ByteBuffer output = ByteBuffer.allocate(0);
+
+   public StripJPEGEncoder()
+   {
+      this(ForkJoinPool.commonPool());
+   }
+
+   public StripJPEGEncoder(ForkJoinPool pool)
+   {
+      this.pool = pool;
+   }
+
+   /**
+    * @return the frame, header and strips, valid until the next call.
+    */
+   public ByteBuffer encode(YUV420Image image, int quality) throws IOException
+   {
+      int width = image.getWidth();
+      int height = image.getHeight();
+      int rowsPerStrip = JPEGStripLayout.getRowsPerStrip(height, getStripCount(height));
+      int usedStripCount = (height + rowsPerStrip - 1) / rowsPerStrip;
+
+      for (int i = 0; i < usedStripCount; i++)
+      {
+         if (strips[i] == null)
+            strips[i] = new Strip();
+
+         int startRow = i * rowsPerStrip;
+         strips[i].prepare(image, startRow, Math.min(rowsPerStrip, height - startRow), quality);
+      }
+
+      pool.invoke(new RecursiveAction()
+      {
+         @Override
+         protected void compute()
+         {
+            for (int i = 1; i < usedStripCount; i++)
+               strips[i].fork();
+            strips[0].invoke();
+            for (int i = 1; i < usedStripCount; i++)
+               strips[i].join();
+         }
+      });
+
+      int size = JPEGStripLayout.getHeaderSize(usedStripCount);
+      for (int i = 0; i < usedStripCount; i++)
+      {
+         if (strips[i].exception != null)
+            throw strips[i].exception;
+         size += strips[i].encodedStrip.remaining();
+      }
+
+      if (output.capacity() < size)
+         output = ByteBuffer.allocate(size);
+      output.clear();
+
+      JPEGStripLayout.writeHeader(output, width, height, usedStripCount);
+      for (int i = 0; i < usedStripCount; i++)
+         JPEGStripLayout.writeStripEntry(output, strips[i].rows, strips[i].encodedStrip.remaining());
+      for (int i = 0; i < usedStripCount; i++)
+         output.put(strips[i].encodedStrip);
+
+      output.flip();
+      return output;
+   }
+
+   private int getStripCount(int height)
+   {
+      int stripCount = this.stripCount;
+      if (stripCount <= 0)
+         stripCount = Math.min(Math.max(1, pool.getParallelism()), height / MIN_STRIP_HEIGHT);
+      return Math.max(1, Math.min(JPEGStripLayout.MAX_STRIP_COUNT, stripCount));
+   }
+
+   /**
+    * @param stripCount the number of strips to split the frames in, rounded to fit
+    *                   {@link JPEGStripLayout#ROW_ALIGNMENT}, or 0 to follow the parallelism of the
+    *                   pool.
+    */
+   public void setStripCount(int stripCount)
+   {
+      this.stripCount = stripCount;
+   }
+
+   public void delete()
+   {
+      for (Strip strip : strips)
+      {
+         if (strip != null)
+            strip.delete();
+      }
+   }
+
+   @SuppressWarnings("serial")
+   private static class Strip extends RecursiveAction
+   {
+      private final JPEGEncoder encoder = new JPEGEncoder();
+      private YUVPicture picture;
+      /** Plane and layout the picture was built over. */
+      private ByteBuffer pictureYPlane;
+      private int startRow;
+      private int rows;
+      private int width;
+
+      private int quality;
+      private ByteBuffer encodedStrip;
+      private IOException exception;
+
+      void prepare(YUV420Image image, int startRow, int rows, int quality)
+      {
+         this.quality = quality;
+         encodedStrip = null;
+         exception = null;
+         reinitialize();
+
+         if (picture != null && YUV420Image.picturesReferToBuffers() && pictureYPlane == image.getY() && this.startRow == startRow
+               && this.rows == rows && width == image.getWidth())
+            return;
+
+         if (picture != null)
+            picture.delete();
+
+         pictureYPlane = image.getY();
+         this.startRow = startRow;
+         this.rows = rows;
+         width = image.getWidth();
+
+         int yStride = image.getYStride();
+         int uStride = image.getUStride();
+         int vStride = image.getVStride();
+         // Strips start on an even row, so their chroma rows start at half their first row.
+         int chromaStartRow = startRow / 2;
+         int chromaRows = YUV420Image.getChromaHeight(rows);
+         picture = new YUVPicture(YUVSubsamplingType.YUV420,
+                                  width,
+                                  rows,
+                                  yStride,
+                                  uStride,
+                                  vStride,
+                                  slice(image.getY(), startRow * yStride, rows * yStride),
+                                  slice(image.getU(), chromaStartRow * uStride, chromaRows * uStride),
+                                  slice(image.getV(), chromaStartRow * vStride, chromaRows * vStride));
+      }
+
+      private static ByteBuffer slice(ByteBuffer plane, int offset, int size)
+      {
+         ByteBuffer duplicate = plane.duplicate();
+         duplicate.clear();
+         duplicate.position(offset);
+         duplicate.limit(offset + size);
+         return duplicate.slice();
+      }
+
+      @Override
+      protected void compute()
+      {
+         try
+         {
+            encodedStrip = encoder.encode(picture, quality);
+         }
+         catch (IOException e)
+         {
+            exception = e;
+         }
+      }
+
+      void delete()
+      {
+         if (picture != null)
+            picture.delete();
+         picture = null;
+         pictureYPlane = null;
+         encoder.delete();
+      }
+   }
+}
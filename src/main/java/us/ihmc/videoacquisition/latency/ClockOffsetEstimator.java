@@ -0,0 +1,192 @@
+package us.ihmc.videoacquisition.latency;
+
+import java.util.Arrays;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import controller_msgs.msg.dds.VideoClockSyncMessage;
+import us.ihmc.commons.thread.ThreadTools;
+import us.ihmc.pubsub.common.SampleInfo;
+import us.ihmc.ros2.RealtimeROS2Node;
+import us.ihmc.ros2.RealtimeROS2Publisher;
+import us.ihmc.videoacquisition.VideoManager;
+
+/**
+ * Receiver side of the clock synchronization: estimates the offset between the {@link VideoClock}
+ * of this process and the clock of each publisher, so that the times stamped by a publisher can be
+ * compared to local times.
+ * <p>
+ * Pings are sent periodically on {@link VideoManager#CLOCK_SYNC_PING_TOPIC} and echoed by every
+ * {@link ClockSyncResponder}. As in NTP, an echo gives the offset
+ * {@code ((t1 - t0) + (t2 - t3)) / 2} and the round trip delay {@code (t3 - t0) - (t2 - t1)}, where
+ * {@code t0} and {@code t3} are the local send and receive times and {@code t1} and {@code t2} the
+ * remote receive and transmit times. The offset is exact when the delays are the same both ways,
+ * so out of the last {@link #SAMPLE_WINDOW} echoes of a publisher, the one with the shortest round
+ * trip is used: it is the one least affected by queuing.
+ * </p>
+ * <p>
+ * {@link #toLocalTime(long, long)} can be called from any thread without locking nor allocating.
+ * </p>
+ */
+public class ClockOffsetEstimator
+{
+   public static final long PING_PERIOD_MILLIS = 500;
+   /** Number of echoes the offset of a publisher is estimated from. */
+   public static final int SAMPLE_WINDOW = 32;
+   /** Returned by {@link #toLocalTime(long, long)} for a clock that has not answered any ping yet. */
+   public static final long UNKNOWN_TIME = Long.MIN_VALUE;
+
+   private final RealtimeROS2Publisher<VideoClockSyncMessage> pingPublisher;
+   private final VideoClockSyncMessage ping = new VideoClockSyncMessage();
+   private final VideoClockSyncMessage echo = new VideoClockSyncMessage();
+   private final SampleInfo sampleInfo = new SampleInfo();
+   private final ScheduledExecutorService executor = ThreadTools.newSingleDaemonThreadScheduledExecutor("video-clock-sync");
+
+   /** Copied on write when a new publisher answers, read without locking. */
+   private volatile ClockEstimate[] estimates = new ClockEstimate[0];
+
+   /**
+    * Creates the ping publisher and the echo subscription, to be called before the node starts
+    * spinning.
+    */
+   public ClockOffsetEstimator(RealtimeROS2Node ros2Node)
+   {
+      pingPublisher = ros2Node.createPublisher(VideoClockSyncMessage.getPubSubType().get(), VideoManager.CLOCK_SYNC_PING_TOPIC);
+      ros2Node.createCallbackSubscription(VideoClockSyncMessage.getPubSubType().get(), VideoManager.CLOCK_SYNC_ECHO_TOPIC, s ->
+      {
+         long receptionTime = VideoClock.now();
+         while (s.takeNextData(echo, sampleInfo))
+            handleEcho(echo, receptionTime);
+      });
+      ping.setRequesterClockId(VideoClock.getClockId());
+   }
+
+   public void start()
+   {
+      executor.scheduleAtFixedRate(this::sendPing, 0, PING_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+   }
+
+   public void stop()
+   {
+      executor.shutdownNow();
+   }
+
+   private void sendPing()
+   {
+      ping.setSequenceId((ping.getSequenceId() + 1) & 0xFFFFFFFFL);
+      ping.setRequestTime(VideoClock.now());
+      pingPublisher.publish(ping);
+   }
+
+   private void handleEcho(VideoClockSyncMessage echo, long receptionTime)
+   {
+      if (echo.getRequesterClockId() != VideoClock.getClockId())
+         return; // Echo of the ping of another receiver.
+
+      long offset = ((echo.getReceiveTime() - echo.getRequestTime()) + (echo.getTransmitTime() - receptionTime)) / 2;
+      long roundTripDelay = (receptionTime - echo.getRequestTime()) - (echo.getTransmitTime() - echo.getReceiveTime());
+      if (roundTripDelay < 0)
+         return;
+
+      ClockEstimate estimate = findEstimate(echo.getResponderClockId());
+      if (estimate == null)
+      {
+         estimate = new ClockEstimate(echo.getResponderClockId());
+         ClockEstimate[] newEstimates = Arrays.copyOf(estimates, estimates.length + 1);
+         newEstimates[estimates.length] = estimate;
+         estimates = newEstimates;
+      }
+
+      estimate.addSample(offset, roundTripDelay);
+   }
+
+   private ClockEstimate findEstimate(long clockId)
+   {
+      ClockEstimate[] estimates = this.estimates;
+      for (int i = 0; i < estimates.length; i++)
+      {
+         if (estimates[i].clockId == clockId)
+            return estimates[i];
+      }
+      return null;
+   }
+
+   /**
+    * @param clockId    the clock {@code remoteTime} is given in.
+    * @param remoteTime time in nanoseconds since the epoch in the clock {@code clockId}.
+    * @return the same time in the {@link VideoClock} of this process, or {@link #UNKNOWN_TIME} if
+    *         the offset to that clock is not known yet.
+    */
+   public long toLocalTime(long clockId, long remoteTime)
+   {
+      if (clockId == VideoClock.getClockId())
+         return remoteTime;
+
+      ClockEstimate estimate = findEstimate(clockId);
+      if (estimate == null)
+         return UNKNOWN_TIME;
+      return remoteTime - estimate.offset;
+   }
+
+   /**
+    * @return whether times given in the clock {@code clockId} can be converted to local times.
+    */
+   public boolean isSynchronized(long clockId)
+   {
+      return clockId == VideoClock.getClockId() || findEstimate(clockId) != null;
+   }
+
+   public String getStatistics()
+   {
+      ClockEstimate[] estimates = this.estimates;
+      if (estimates.length == 0)
+         return "clock sync: no publisher answered";
+
+      StringBuilder statistics = new StringBuilder("clock sync:");
+      for (ClockEstimate estimate : estimates)
+      {
+         statistics.append(String.format(" [%016x offset %.3f ms, round trip %.3f ms]",
+                                         estimate.clockId,
+                                         estimate.offset * 1.0e-6,
+                                         estimate.roundTripDelay * 1.0e-6));
+      }
+      return statistics.toString();
+   }
+
+   /**
+    * Offset to one publisher clock, updated from the subscription thread only.
+    */
+   private static class ClockEstimate
+   {
+      private final long clockId;
+      private final long[] offsets = new long[SAMPLE_WINDOW];
+      private final long[] roundTripDelays = new long[SAMPLE_WINDOW];
+      private int sampleCount = 0;
+
+      private volatile long offset;
+      private volatile long roundTripDelay;
+
+      ClockEstimate(long clockId)
+      {
+         this.clockId = clockId;
+      }
+
+      void addSample(long offset, long roundTripDelay)
+      {
+         int index = sampleCount++ % SAMPLE_WINDOW;
+         offsets[index] = offset;
+         roundTripDelays[index] = roundTripDelay;
+
+         int best = 0;
+         int size = Math.min(sampleCount, SAMPLE_WINDOW);
+         for (int i = 1; i < size; i++)
+         {
+            if (roundTripDelays[i] < roundTripDelays[best])
+               best = i;
+         }
+
+         this.roundTripDelay = roundTripDelays[best];
+         this.offset = offsets[best];
+      }
+   }
+}
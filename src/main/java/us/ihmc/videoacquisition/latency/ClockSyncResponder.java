@@ -0,0 +1,42 @@
+package us.ihmc.videoacquisition.latency;
+
+import controller_msgs.msg.dds.VideoClockSyncMessage;
+import us.ihmc.pubsub.common.SampleInfo;
+import us.ihmc.ros2.ROS2Node;
+import us.ihmc.ros2.ROS2Publisher;
+import us.ihmc.videoacquisition.VideoManager;
+
+/**
+ * Publisher side of the clock synchronization: echoes the pings of the receivers received on
+ * {@link VideoManager#CLOCK_SYNC_PING_TOPIC} on {@link VideoManager#CLOCK_SYNC_ECHO_TOPIC}, with
+ * the times at which the ping was received and the echo sent in the {@link VideoClock} of this
+ * process.
+ * <p>
+ * The receive time is taken as soon as the ping is handed over by the subscription, and the
+ * transmit time right before publishing, so that the time spent in between is not mistaken for
+ * network delay.
+ * </p>
+ */
+public class ClockSyncResponder
+{
+   private final ROS2Publisher<VideoClockSyncMessage> echoPublisher;
+   private final VideoClockSyncMessage message = new VideoClockSyncMessage();
+   private final SampleInfo sampleInfo = new SampleInfo();
+
+   public ClockSyncResponder(ROS2Node ros2Node)
+   {
+      echoPublisher = ros2Node.createPublisher(VideoClockSyncMessage.getPubSubType().get(), VideoManager.CLOCK_SYNC_ECHO_TOPIC);
+      ros2Node.createSubscription(VideoClockSyncMessage.getPubSubType().get(), s ->
+      {
+         long receiveTime = VideoClock.now();
+         while (s.takeNextData(message, sampleInfo))
+         {
+            message.setResponderClockId(VideoClock.getClockId());
+            message.setReceiveTime(receiveTime);
+            message.setTransmitTime(VideoClock.now());
+            echoPublisher.publish(message);
+            receiveTime = VideoClock.now();
+         }
+      }, VideoManager.CLOCK_SYNC_PING_TOPIC);
+   }
+}
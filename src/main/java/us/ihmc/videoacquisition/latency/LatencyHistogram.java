@@ -0,0 +1,170 @@
+package us.ihmc.videoacquisition.latency;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Distribution of latencies, recorded without locking nor allocating.
+ * <p>
+ * Latencies are counted in log-linear buckets of microseconds: below {@value #SUB_BUCKET_COUNT} us
+ * every microsecond has its own bucket, and each following power of two is split into
+ * {@value #SUB_BUCKET_COUNT} buckets, so the percentiles are within about 6% of the recorded
+ * values. Latencies from 0 to about 76 hours are told apart, longer ones are counted in the last
+ * bucket. Negative latencies, which can be recorded while the clock offset estimate settles, are
+ * counted as 0.
+ * </p>
+ * <p>
+ * {@link #record(long)} can be called from several threads. The histogram can be registered as a
+ * JMX MBean, as done by {@link VideoMetrics}.
+ * </p>
+ */
+public class LatencyHistogram implements LatencyHistogramMBean
+{
+   private static final int SUB_BUCKET_BITS = 4;
+   private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+   private static final int MAX_EXPONENT = 33;
+   private static final int BUCKET_COUNT = (MAX_EXPONENT + 2) * SUB_BUCKET_COUNT;
+
+   private final String name;
+   private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+   private final AtomicLong count = new AtomicLong();
+   private final AtomicLong sum = new AtomicLong();
+   private final AtomicLong max = new AtomicLong();
+
+   public LatencyHistogram(String name)
+   {
+      this.name = name;
+   }
+
+   /**
+    * @param latency in nanoseconds.
+    */
+   public void record(long latency)
+   {
+      long micros = Math.max(0L, latency / 1000L);
+      counts.incrementAndGet(getBucketIndex(micros));
+      count.incrementAndGet();
+      sum.addAndGet(micros);
+
+      long currentMax;
+      while (micros > (currentMax = max.get()))
+      {
+         if (max.compareAndSet(currentMax, micros))
+            break;
+      }
+   }
+
+   private static int getBucketIndex(long micros)
+   {
+      if (micros < SUB_BUCKET_COUNT)
+         return (int) micros;
+
+      int exponent = 63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS;
+      if (exponent > MAX_EXPONENT)
+         return BUCKET_COUNT - 1;
+      // The sub-bucket is in [SUB_BUCKET_COUNT, 2 * SUB_BUCKET_COUNT).
+      int subBucket = (int) (micros >>> exponent);
+      return (exponent + 1) * SUB_BUCKET_COUNT + subBucket - SUB_BUCKET_COUNT;
+   }
+
+   /**
+    * @return the smallest latency in microseconds counted in the bucket.
+    */
+   private static long getBucketLowerBound(int index)
+   {
+      if (index < SUB_BUCKET_COUNT)
+         return index;
+
+      int exponent = index / SUB_BUCKET_COUNT - 1;
+      return (long) (index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT) << exponent;
+   }
+
+   /**
+    * @param percentile between 0 and 100.
+    * @return the latency in nanoseconds below which {@code percentile}% of the recorded latencies
+    *         fall, rounded down to its bucket, or 0 if nothing has been recorded.
+    */
+   public long getPercentile(double percentile)
+   {
+      long total = count.get();
+      if (total == 0)
+         return 0;
+
+      long rank = Math.max(1L, (long) Math.ceil(percentile / 100.0 * total));
+      long cumulativeCount = 0;
+      for (int i = 0; i < BUCKET_COUNT; i++)
+      {
+         cumulativeCount += counts.get(i);
+         if (cumulativeCount >= rank)
+            return Math.min(getBucketLowerBound(i), max.get()) * 1000L;
+      }
+      return max.get() * 1000L;
+   }
+
+   @Override
+   public long getP50()
+   {
+      return getPercentile(50.0);
+   }
+
+   @Override
+   public long getP90()
+   {
+      return getPercentile(90.0);
+   }
+
+   @Override
+   public long getP99()
+   {
+      return getPercentile(99.0);
+   }
+
+   @Override
+   public long getP999()
+   {
+      return getPercentile(99.9);
+   }
+
+   @Override
+   public long getCount()
+   {
+      return count.get();
+   }
+
+   /**
+    * @return the mean latency in nanoseconds.
+    */
+   @Override
+   public double getMean()
+   {
+      long total = count.get();
+      return total == 0 ? 0.0 : 1000.0 * sum.get() / total;
+   }
+
+   /**
+    * @return the largest latency in nanoseconds, to the microsecond.
+    */
+   @Override
+   public long getMax()
+   {
+      return max.get() * 1000L;
+   }
+
+   @Override
+   public String getName()
+   {
+      return name;
+   }
+
+   public String getStatistics()
+   {
+      return String.format("%s: %d samples, mean %.1f ms, p50 %.1f ms, p90 %.1f ms, p99 %.1f ms, max %.1f ms",
+                           name,
+                           getCount(),
+                           getMean() * 1.0e-6,
+                           getPercentile(50.0) * 1.0e-6,
+                           getPercentile(90.0) * 1.0e-6,
+                           getPercentile(99.0) * 1.0e-6,
+                           getMax() * 1.0e-6);
+   }
+}
@@ -0,0 +1,23 @@
+package us.ihmc.videoacquisition.latency;
+
+/**
+ * JMX view of a {@link LatencyHistogram}, all the latencies in nanoseconds.
+ */
+public interface LatencyHistogramMBean
+{
+   String getName();
+
+   long getCount();
+
+   double getMean();
+
+   long getMax();
+
+   long getP50();
+
+   long getP90();
+
+   long getP99();
+
+   long getP999();
+}
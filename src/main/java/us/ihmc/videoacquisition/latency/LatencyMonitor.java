@@ -0,0 +1,131 @@
+package us.ihmc.videoacquisition.latency;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import us.ihmc.ros2.RealtimeROS2Node;
+import us.ihmc.videoacquisition.transport.VideoFrame;
+
+/**
+ * Measures how old the frames are when they are received and displayed, end to end from the
+ * moment they were grabbed by the publisher.
+ * <p>
+ * The publisher stamps each frame with its grab, encode and publish times in its own
+ * {@link VideoClock}. The times are brought to the clock of this process with a
+ * {@link ClockOffsetEstimator}, so the latencies are only recorded once the publisher has answered
+ * a clock sync ping; the frames received before are counted as unsynchronized. The stages within
+ * the publisher, grab to encode done and encode done to publish, do not depend on the offset and
+ * are always recorded.
+ * </p>
+ * <p>
+ * Frames can be reported from any thread without locking nor allocating.
+ * </p>
+ */
+public class LatencyMonitor
+{
+   private final ClockOffsetEstimator clockOffsetEstimator;
+
+   private final LatencyHistogram captureToReceive = new LatencyHistogram("capture to receive");
+   private final LatencyHistogram captureToDisplay = new LatencyHistogram("capture to display");
+   private final LatencyHistogram captureToEncode = new LatencyHistogram("capture to encode done");
+   private final LatencyHistogram encodeToPublish = new LatencyHistogram("encode done to publish");
+   private final LatencyHistogram publishToReceive = new LatencyHistogram("publish to receive");
+   private final AtomicLong unsynchronizedFrameCount = new AtomicLong();
+
+   /**
+    * Creates the clock sync ping publisher and echo subscription, to be called before the node
+    * starts spinning.
+    */
+   public LatencyMonitor(RealtimeROS2Node ros2Node)
+   {
+      clockOffsetEstimator = new ClockOffsetEstimator(ros2Node);
+   }
+
+   public void start()
+   {
+      clockOffsetEstimator.start();
+   }
+
+   public void stop()
+   {
+      clockOffsetEstimator.stop();
+   }
+
+   /**
+    * To be called as soon as a frame has been put back together from its packets.
+    */
+   public void frameReceived(VideoFrame frame)
+   {
+      long now = VideoClock.now();
+      long clockId = frame.getClockId();
+      if (clockId == 0)
+         return; // Sent by a publisher that does not stamp its frames.
+
+      captureToEncode.record(frame.getEncodeTime() - frame.getCaptureTime());
+      encodeToPublish.record(frame.getPublishTime() - frame.getEncodeTime());
+
+      long captureTime = clockOffsetEstimator.toLocalTime(clockId, frame.getCaptureTime());
+      if (captureTime == ClockOffsetEstimator.UNKNOWN_TIME)
+      {
+         unsynchronizedFrameCount.incrementAndGet();
+         return;
+      }
+
+      captureToReceive.record(now - captureTime);
+      publishToReceive.record(now - clockOffsetEstimator.toLocalTime(clockId, frame.getPublishTime()));
+   }
+
+   /**
+    * To be called when a frame is handed over to be displayed.
+    *
+    * @param clockId     the clock ID of the publisher of the frame.
+    * @param captureTime the capture time of the frame in the clock of its publisher.
+    */
+   public void frameDisplayed(long clockId, long captureTime)
+   {
+      long now = VideoClock.now();
+      if (clockId == 0)
+         return;
+
+      long localCaptureTime = clockOffsetEstimator.toLocalTime(clockId, captureTime);
+      if (localCaptureTime != ClockOffsetEstimator.UNKNOWN_TIME)
+         captureToDisplay.record(now - localCaptureTime);
+   }
+
+   public LatencyHistogram getCaptureToReceive()
+   {
+      return captureToReceive;
+   }
+
+   public LatencyHistogram getCaptureToDisplay()
+   {
+      return captureToDisplay;
+   }
+
+   public ClockOffsetEstimator getClockOffsetEstimator()
+   {
+      return clockOffsetEstimator;
+   }
+
+   /**
+    * @return the number of frames received before the offset to the clock of their publisher was
+    *         known.
+    */
+   public long getUnsynchronizedFrameCount()
+   {
+      return unsynchronizedFrameCount.get();
+   }
+
+   public String getStatistics()
+   {
+      StringBuilder statistics = new StringBuilder(clockOffsetEstimator.getStatistics());
+      if (unsynchronizedFrameCount.get() > 0)
+         statistics.append(", ").append(unsynchronizedFrameCount.get()).append(" frames received before sync");
+
+      for (LatencyHistogram histogram : new LatencyHistogram[] {captureToReceive, captureToDisplay, captureToEncode, encodeToPublish, publishToReceive})
+      {
+         if (histogram.getCount() > 0)
+            statistics.append("\n").append(histogram.getStatistics());
+      }
+      return statistics.toString();
+   }
+}
@@ -0,0 +1,51 @@
+package us.ihmc.videoacquisition.latency;
+
+import java.security.SecureRandom;
+
+/**
+ * Clock the video timestamps that have to be compared across hosts are given in, such as the
+ * {@code capture_time_} of a {@link controller_msgs.msg.dds.VideoPacket}.
+ * <p>
+ * The time is in nanoseconds since the epoch, but it is derived from {@link System#nanoTime()}
+ * anchored once to the wall clock, so that it never jumps when the wall clock is adjusted. The
+ * clocks of two hosts are therefore not assumed to agree: the receivers estimate the offset to each
+ * publisher clock, see {@link ClockOffsetEstimator}. Each process draws a random clock ID that is
+ * sent along with the times, so that a receiver can tell which clock they belong to.
+ * </p>
+ */
+public final class VideoClock
+{
+   private static final long EPOCH_OFFSET = System.currentTimeMillis() * 1000000L - System.nanoTime();
+   private static final long CLOCK_ID = drawClockId();
+
+   private VideoClock()
+   {
+   }
+
+   /**
+    * @return the current time in nanoseconds since the epoch.
+    */
+   public static long now()
+   {
+      return System.nanoTime() + EPOCH_OFFSET;
+   }
+
+   /**
+    * @return the ID of the clock of this process, never 0.
+    */
+   public static long getClockId()
+   {
+      return CLOCK_ID;
+   }
+
+   private static long drawClockId()
+   {
+      long clockId;
+      do
+      {
+         clockId = new SecureRandom().nextLong();
+      }
+      while (clockId == 0);
+      return clockId;
+   }
+}
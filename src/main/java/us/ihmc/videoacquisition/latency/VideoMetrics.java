@@ -0,0 +1,266 @@
+package us.ihmc.videoacquisition.latency;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import us.ihmc.commons.thread.ThreadTools;
+
+/**
+ * Time spent in each stage of the video path and counts of the frames going through it, for a
+ * publisher or a receiver, meant to be left on in production.
+ * <p>
+ * The time of every frame in every stage is recorded in a {@link LatencyHistogram}, and the frames
+ * and bytes in counters, all without locking nor allocating, so instrumenting a camera costs a few
+ * {@link System#nanoTime()} calls and atomic increments per frame. The frames dropped are not
+ * counted twice: the counters the components already keep are read when asked for.
+ * </p>
+ * <p>
+ * Once {@link #register() registered}, the counters and each histogram are MBeans under
+ * {@value #DOMAIN}, to be watched from JConsole or VisualVM or polled by a JMX agent. The
+ * statistics can also be printed periodically with {@link #startSummaries(double)}, followed by
+ * the statistics of the components added with {@link #addSummaryDetails(Supplier)}.
+ * </p>
+ */
+public class VideoMetrics implements VideoMetricsMBean
+{
+   public static final String DOMAIN = "us.ihmc.videoacquisition";
+
+   public enum Stage
+   {
+      /** Grabbing a frame from the camera. */
+      GRAB,
+      /** Converting the grabbed frame to YUV 4:2:0. */
+      CONVERT,
+      /** Scaling the frame down to the published resolution. */
+      RESIZE,
+      ENCODE,
+      /** Copying the encoded frame into the packets to publish. */
+      SERIALIZE,
+      /** Publishing all the packets of a frame. */
+      PUBLISH,
+      /** Taking a packet from the subscription and adding it to its frame. */
+      RECEIVE,
+      DECODE,
+      /** Converting a decoded frame into the image to display. */
+      RENDER;
+
+      public String getName()
+      {
+         return name().toLowerCase();
+      }
+   }
+
+   private static final Stage[] STAGES = Stage.values();
+
+   private final String name;
+   private final LatencyHistogram[] histograms = new LatencyHistogram[STAGES.length];
+   private final AtomicLong frameCount = new AtomicLong();
+   private final AtomicLong byteCount = new AtomicLong();
+   private final AtomicLong oversizeFrameCount = new AtomicLong();
+   private final List<LongSupplier> droppedFrameCounters = new CopyOnWriteArrayList<>();
+   private final List<Supplier<String>> summaryDetails = new CopyOnWriteArrayList<>();
+
+   private final List<ObjectName> registeredNames = new CopyOnWriteArrayList<>();
+   private ScheduledExecutorService summaryExecutor = null;
+
+   /**
+    * @param name the name of the publisher or receiver, in the statistics and the MBean names.
+    */
+   public VideoMetrics(String name)
+   {
+      this.name = name;
+
+      for (Stage stage : STAGES)
+         histograms[stage.ordinal()] = new LatencyHistogram(stage.getName());
+   }
+
+   /**
+    * @param duration in nanoseconds.
+    */
+   public void record(Stage stage, long duration)
+   {
+      histograms[stage.ordinal()].record(duration);
+   }
+
+   /**
+    * Counts a frame that went through the whole path, i.e. published or received.
+    *
+    * @param size the size of the encoded frame in bytes.
+    */
+   public void frameCompleted(int size)
+   {
+      frameCount.incrementAndGet();
+      byteCount.addAndGet(size);
+   }
+
+   /**
+    * Counts a frame dropped for being too large to be published.
+    */
+   public void oversizeFrame()
+   {
+      oversizeFrameCount.incrementAndGet();
+   }
+
+   /**
+    * @param droppedFrameCounter a count of dropped frames kept by one of the components, added to
+    *                            {@link #getDroppedFrameCount()}.
+    */
+   public void addDroppedFrameCounter(LongSupplier droppedFrameCounter)
+   {
+      droppedFrameCounters.add(droppedFrameCounter);
+   }
+
+   /**
+    * @param details statistics of one of the components, printed after the metrics by
+    *                {@link #startSummaries(double)}, may return {@code null} when it has nothing
+    *                to print.
+    */
+   public void addSummaryDetails(Supplier<String> details)
+   {
+      summaryDetails.add(details);
+   }
+
+   public LatencyHistogram getHistogram(Stage stage)
+   {
+      return histograms[stage.ordinal()];
+   }
+
+   public String getName()
+   {
+      return name;
+   }
+
+   @Override
+   public long getFrameCount()
+   {
+      return frameCount.get();
+   }
+
+   @Override
+   public long getByteCount()
+   {
+      return byteCount.get();
+   }
+
+   @Override
+   public long getDroppedFrameCount()
+   {
+      long droppedFrameCount = 0;
+      for (LongSupplier droppedFrameCounter : droppedFrameCounters)
+         droppedFrameCount += droppedFrameCounter.getAsLong();
+      return droppedFrameCount;
+   }
+
+   @Override
+   public long getOversizeFrameCount()
+   {
+      return oversizeFrameCount.get();
+   }
+
+   /**
+    * Registers the counters and the histograms with the platform MBean server, as
+    * {@code us.ihmc.videoacquisition:type=VideoMetrics,name=<name>[,stage=<stage>]}.
+    */
+   public void register()
+   {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      String objectName = DOMAIN + ":type=VideoMetrics,name=" + ObjectName.quote(name);
+
+      try
+      {
+         register(server, this, new ObjectName(objectName));
+         for (Stage stage : STAGES)
+            register(server, getHistogram(stage), new ObjectName(objectName + ",stage=" + stage.getName()));
+      }
+      catch (JMException e)
+      {
+         e.printStackTrace();
+      }
+   }
+
+   private void register(MBeanServer server, Object mBean, ObjectName objectName) throws JMException
+   {
+      server.registerMBean(mBean, objectName);
+      registeredNames.add(objectName);
+   }
+
+   /**
+    * @param period period in seconds at which to print the statistics.
+    */
+   public synchronized void startSummaries(double period)
+   {
+      if (summaryExecutor != null)
+         summaryExecutor.shutdown();
+
+      long periodMillis = (long) (period * 1000.0);
+      summaryExecutor = ThreadTools.newSingleDaemonThreadScheduledExecutor("video-metrics");
+      summaryExecutor.scheduleAtFixedRate(this::printSummary, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+   }
+
+   private void printSummary()
+   {
+      System.out.println(getStatistics());
+
+      for (Supplier<String> details : summaryDetails)
+      {
+         String statistics = details.get();
+         if (statistics != null)
+            System.out.println(statistics);
+      }
+   }
+
+   /**
+    * Stops the summaries and unregisters the MBeans.
+    */
+   public synchronized void stop()
+   {
+      if (summaryExecutor != null)
+      {
+         summaryExecutor.shutdown();
+         summaryExecutor = null;
+      }
+
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      for (ObjectName objectName : registeredNames)
+      {
+         try
+         {
+            server.unregisterMBean(objectName);
+         }
+         catch (JMException e)
+         {
+            e.printStackTrace();
+         }
+      }
+      registeredNames.clear();
+   }
+
+   @Override
+   public String getStatistics()
+   {
+      StringBuilder statistics = new StringBuilder();
+      statistics.append(String.format("%s: %d frames, %.1f MB, %d dropped, %d oversize",
+                                      name,
+                                      getFrameCount(),
+                                      getByteCount() / 1.0e6,
+                                      getDroppedFrameCount(),
+                                      getOversizeFrameCount()));
+
+      for (LatencyHistogram histogram : histograms)
+      {
+         if (histogram.getCount() > 0)
+            statistics.append("\n").append(name).append(" ").append(histogram.getStatistics());
+      }
+      return statistics.toString();
+   }
+}
@@ -0,0 +1,17 @@
+package us.ihmc.videoacquisition.latency;
+
+/**
+ * JMX view of the counters of a {@link VideoMetrics}.
+ */
+public interface VideoMetricsMBean
+{
+   long getFrameCount();
+
+   long getByteCount();
+
+   long getDroppedFrameCount();
+
+   long getOversizeFrameCount();
+
+   String getStatistics();
+}
@@ -0,0 +1,42 @@
+package us.ihmc.videoacquisition.pipeline;
+
+import us.ihmc.videoacquisition.yuv.YUV420Image;
+
+/**
+ * Pipeline slot holding a private YUV 4:2:0 copy of a grabbed frame, so the grabber can reuse its
+ * own buffers while the frame is being encoded.
+ */
+public class CapturedFrame
+{
+   private final YUV420Image image = new YUV420Image();
+   private long timestamp;
+   private long captureTime;
+
+   public YUV420Image getImage()
+   {
+      return image;
+   }
+
+   public void setTimestamp(long timestamp)
+   {
+      this.timestamp = timestamp;
+   }
+
+   public long getTimestamp()
+   {
+      return timestamp;
+   }
+
+   /**
+    * @param captureTime time the frame was grabbed at, in the {@link us.ihmc.videoacquisition.latency.VideoClock}.
+    */
+   public void setCaptureTime(long captureTime)
+   {
+      this.captureTime = captureTime;
+   }
+
+   public long getCaptureTime()
+   {
+      return captureTime;
+   }
+}
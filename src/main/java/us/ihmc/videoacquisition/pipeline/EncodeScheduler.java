@@ -0,0 +1,100 @@
+package us.ihmc.videoacquisition.pipeline;
+
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Runs the encode stage of several {@link VideoPipeline}s on a shared pool of worker threads.
+ * <p>
+ * Scheduling is round-robin over the pipelines that have frames waiting: a worker encodes a single
+ * frame of a pipeline and then sends that pipeline to the back of the queue. A camera producing
+ * large or frequent frames therefore gets its fair share of the workers without starving the
+ * others. A pipeline is never encoded by two workers at once, so its encoder does not need to be
+ * thread-safe.
+ * </p>
+ */
+public class EncodeScheduler
+{
+   private final LinkedBlockingQueue<VideoPipeline> readyPipelines = new LinkedBlockingQueue<>();
+   private final Thread[] workers;
+   private volatile boolean running = false;
+
+   /**
+    * Creates a scheduler with one worker per available processor.
+    */
+   public EncodeScheduler(String name)
+   {
+      this(name, Runtime.getRuntime().availableProcessors());
+   }
+
+   public EncodeScheduler(String name, int numberOfWorkers)
+   {
+      workers = new Thread[numberOfWorkers];
+
+      for (int i = 0; i < numberOfWorkers; i++)
+      {
+         workers[i] = new Thread(this::runWorker, name + "-encoder-" + i);
+         workers[i].setDaemon(true);
+      }
+   }
+
+   public void start()
+   {
+      running = true;
+      for (Thread worker : workers)
+         worker.start();
+   }
+
+   public void stop()
+   {
+      running = false;
+      for (Thread worker : workers)
+         worker.interrupt();
+   }
+
+   /**
+    * Notifies the scheduler that {@code pipeline} has a frame to encode. Queues the pipeline unless it
+    * is already queued or being encoded.
+    */
+   void schedule(VideoPipeline pipeline)
+   {
+      if (pipeline.encodeScheduled.compareAndSet(false, true))
+         readyPipelines.add(pipeline);
+   }
+
+   private void runWorker()
+   {
+      while (running)
+      {
+         VideoPipeline pipeline;
+
+         try
+         {
+            pipeline = readyPipelines.take();
+            pipeline.encodeNextFrame(0);
+         }
+         catch (InterruptedException e)
+         {
+            break;
+         }
+
+         // Clear the flag before checking for more work, so a frame captured in between is not missed.
+         pipeline.encodeScheduled.set(false);
+
+         if (pipeline.hasFramesToEncode() && pipeline.encodeScheduled.compareAndSet(false, true))
+            readyPipelines.add(pipeline);
+      }
+   }
+
+   public int getNumberOfWorkers()
+   {
+      return workers.length;
+   }
+
+   /**
+    * @return the number of pipelines waiting for a worker.
+    */
+   public int getQueueLength()
+   {
+      return readyPipelines.size();
+   }
+}
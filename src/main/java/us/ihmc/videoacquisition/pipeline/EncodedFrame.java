@@ -0,0 +1,184 @@
+package us.ihmc.videoacquisition.pipeline;
+
+import java.nio.ByteBuffer;
+
+import controller_msgs.msg.dds.VideoPacket;
+
+/**
+ * Pipeline slot holding one compressed frame, already laid out as the {@link VideoPacket}s to
+ * publish.
+ * <p>
+ * Slots are preallocated by the {@link FrameRingBuffer} and recycled frame after frame, which
+ * makes the ring buffer the packet pool. A frame that fits in a single packet is written straight
+ * into the packet's data sequence and sent as is. A larger frame is kept whole and split into
+ * fragments of at most {@link VideoPacketData#MAX_SIZE} bytes when published, each fragment
+ * sharing the sequence ID of the frame.
+ * </p>
+ */
+public class EncodedFrame
+{
+   /** Largest frame that can be sent in fragments. */
+   public static final int MAX_FRAME_SIZE = 128 * VideoPacketData.MAX_SIZE;
+   /**
+    * Largest frame the publishers send and the receivers accept by default, 2 MiB, which holds a 4K
+    * JPEG at high quality. Frame buffers are preallocated to this size on both sides.
+    */
+   public static final int DEFAULT_MAX_FRAME_SIZE = 8 * VideoPacketData.MAX_SIZE;
+
+   private final VideoPacket packet = new VideoPacket();
+   private final VideoPacketData data = new VideoPacketData();
+
+   /** Whole frame when it does not fit in a packet. */
+   private final byte[] frameData;
+   private int frameSize = 0;
+   private int fragmentCount = 1;
+   private long encodeIndex = 0;
+
+   public EncodedFrame()
+   {
+      this(DEFAULT_MAX_FRAME_SIZE);
+   }
+
+   /**
+    * @param maxFrameSize size of the largest frame this slot can hold, at most
+    *                     {@link #MAX_FRAME_SIZE}.
+    */
+   public EncodedFrame(int maxFrameSize)
+   {
+      if (maxFrameSize > MAX_FRAME_SIZE)
+         throw new IllegalArgumentException("The maximum frame size cannot exceed " + MAX_FRAME_SIZE + ", got " + maxFrameSize);
+
+      frameData = new byte[maxFrameSize > VideoPacketData.MAX_SIZE ? maxFrameSize : 0];
+      packet.data_ = data;
+      packet.source = 0;
+   }
+
+   /**
+    * Copies the encoder output once: straight into the data sequence of the packet, which is
+    * {@link VideoPacketData}, or into the fragment buffer when it does not fit in one packet. The
+    * encoder output buffer can be reused by the encoder as soon as this returns.
+    *
+    * @return {@code false} if the encoded frame is larger than {@link #getMaxFrameSize()}.
+    */
+   public boolean set(ByteBuffer encodedData, long timestamp)
+   {
+      int length = encodedData.remaining();
+
+      if (length <= VideoPacketData.MAX_SIZE)
+      {
+         data.set(encodedData);
+         fragmentCount = 1;
+      }
+      else if (length <= frameData.length)
+      {
+         encodedData.get(frameData, 0, length);
+         fragmentCount = (length + VideoPacketData.MAX_SIZE - 1) / VideoPacketData.MAX_SIZE;
+      }
+      else
+      {
+         return false;
+      }
+
+      frameSize = length;
+      packet.setTimestamp(timestamp);
+      packet.setFrameSize(length);
+      packet.setFragmentCount(fragmentCount);
+      packet.setFragmentIndex(0);
+      packet.setFragmentOffset(0);
+      return true;
+   }
+
+   public void setVideoSource(byte videoSource)
+   {
+      packet.setVideoSource(videoSource);
+   }
+
+   public void setCodec(byte codec)
+   {
+      packet.setCodec(codec);
+   }
+
+   /**
+    * Sets the position of the frame among the frames that went through the encoder, including the
+    * ones that were not published, which tells the publish stage what was dropped before it.
+    */
+   public void setEncodeIndex(long encodeIndex)
+   {
+      this.encodeIndex = encodeIndex;
+   }
+
+   public long getEncodeIndex()
+   {
+      return encodeIndex;
+   }
+
+   public void setSequenceId(long sequenceId)
+   {
+      packet.setSequenceId(sequenceId);
+   }
+
+   /**
+    * Sets the times, in the {@link us.ihmc.videoacquisition.latency.VideoClock} of this process, at
+    * which the frame was grabbed and done encoding.
+    */
+   public void setLatencyTimes(long clockId, long captureTime, long encodeTime)
+   {
+      packet.setClockId(clockId);
+      packet.setCaptureTime(captureTime);
+      packet.setEncodeTime(encodeTime);
+   }
+
+   /**
+    * Sets the time at which the frame is published, shared by all its fragments.
+    */
+   public void setPublishTime(long publishTime)
+   {
+      packet.setPublishTime(publishTime);
+   }
+
+   /**
+    * @return the number of packets needed to send this frame.
+    */
+   public int getFragmentCount()
+   {
+      return fragmentCount;
+   }
+
+   /**
+    * Lays out the given fragment of the frame in the packet returned by {@link #getPacket()}.
+    */
+   public VideoPacket packFragment(int fragmentIndex)
+   {
+      if (fragmentCount == 1)
+         return packet;
+
+      int offset = fragmentIndex * VideoPacketData.MAX_SIZE;
+      data.set(frameData, offset, Math.min(VideoPacketData.MAX_SIZE, frameSize - offset));
+      packet.setFragmentIndex(fragmentIndex);
+      packet.setFragmentOffset(offset);
+      return packet;
+   }
+
+   /**
+    * @return the size of the largest frame this slot can hold.
+    */
+   public int getMaxFrameSize()
+   {
+      return Math.max(VideoPacketData.MAX_SIZE, frameData.length);
+   }
+
+   public VideoPacket getPacket()
+   {
+      return packet;
+   }
+
+   public int getLength()
+   {
+      return frameSize;
+   }
+
+   public long getTimestamp()
+   {
+      return packet.getTimestamp();
+   }
+}
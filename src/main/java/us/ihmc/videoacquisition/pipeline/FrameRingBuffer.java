@@ -0,0 +1,132 @@
+package us.ihmc.videoacquisition.pipeline;
+
+import java.util.function.Supplier;
+
+/**
+ * Bounded queue of preallocated frame slots connecting two pipeline stages.
+ * <p>
+ * The producer {@link #claim()}s an empty slot, fills it, and {@link #publish(Object)}es it. The
+ * consumer {@link #poll(long)}s the oldest published slot and {@link #release(Object)}s it once
+ * done. When the consumer falls behind and the queue is full, the oldest queued frame is dropped
+ * and recycled so the newest frame always gets through.
+ * </p>
+ */
+public class FrameRingBuffer<T>
+{
+   private final String name;
+   private final Object[] queue;
+   private final Object[] freeSlots;
+   private int head = 0;
+   private int size = 0;
+   private int freeCount = 0;
+
+   private long publishedFrames = 0;
+   private long droppedFrames = 0;
+
+   public FrameRingBuffer(String name, int capacity, Supplier<T> slotFactory)
+   {
+      if (capacity < 1)
+         throw new IllegalArgumentException("Capacity must be at least 1, was: " + capacity);
+
+      this.name = name;
+      queue = new Object[capacity];
+      // One extra slot for the producer to fill and one for the consumer to read from.
+      freeSlots = new Object[capacity + 2];
+
+      for (int i = 0; i < freeSlots.length; i++)
+         freeSlots[freeCount++] = slotFactory.get();
+   }
+
+   /**
+    * Gets an empty slot for the producer to fill. Never blocks.
+    */
+   @SuppressWarnings("unchecked")
+   public synchronized T claim()
+   {
+      if (freeCount == 0)
+         throw new IllegalStateException(name + ": no free slot, a claimed slot was not published or released");
+
+      T slot = (T) freeSlots[--freeCount];
+      freeSlots[freeCount] = null;
+      return slot;
+   }
+
+   /**
+    * Queues a filled slot for the consumer. If the queue is full, the oldest queued frame is dropped.
+    */
+   public synchronized void publish(T slot)
+   {
+      if (size == queue.length)
+      {
+         freeSlots[freeCount++] = queue[head];
+         queue[head] = null;
+         head = (head + 1) % queue.length;
+         size--;
+         droppedFrames++;
+      }
+
+      queue[(head + size) % queue.length] = slot;
+      size++;
+      publishedFrames++;
+      notifyAll();
+   }
+
+   /**
+    * Takes the oldest queued frame, waiting up to {@code timeoutMillis} for one to be published.
+    *
+    * @return the frame, or {@code null} if none was published in time.
+    */
+   @SuppressWarnings("unchecked")
+   public synchronized T poll(long timeoutMillis) throws InterruptedException
+   {
+      long deadline = System.currentTimeMillis() + timeoutMillis;
+
+      while (size == 0)
+      {
+         long remaining = deadline - System.currentTimeMillis();
+         if (remaining <= 0)
+            return null;
+         wait(remaining);
+      }
+
+      T slot = (T) queue[head];
+      queue[head] = null;
+      head = (head + 1) % queue.length;
+      size--;
+      return slot;
+   }
+
+   /**
+    * Gives a slot back to the buffer, either after consuming it or when the producer decides not to
+    * publish it.
+    */
+   public synchronized void release(T slot)
+   {
+      freeSlots[freeCount++] = slot;
+   }
+
+   public String getName()
+   {
+      return name;
+   }
+
+   public int getCapacity()
+   {
+      return queue.length;
+   }
+
+   public synchronized int getSize()
+   {
+      return size;
+   }
+
+   public synchronized long getPublishedFrames()
+   {
+      return publishedFrames;
+   }
+
+   public synchronized long getDroppedFrames()
+   {
+      return droppedFrames;
+   }
+}
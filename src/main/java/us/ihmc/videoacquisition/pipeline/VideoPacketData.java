@@ -0,0 +1,55 @@
+package us.ihmc.videoacquisition.pipeline;
+
+import java.nio.ByteBuffer;
+
+import us.ihmc.idl.IDLSequence;
+
+/**
+ * Drop-in replacement for {@link controller_msgs.msg.dds.VideoPacket#data_} that can be filled
+ * straight from the encoder output buffer, without an intermediate {@code byte[]}.
+ */
+public class VideoPacketData extends IDLSequence.Byte
+{
+   public static final int MAX_SIZE = 262144;
+
+   public VideoPacketData()
+   {
+      super(MAX_SIZE, "type_9");
+      ensureCapacity(MAX_SIZE);
+   }
+
+   /**
+    * Replaces the content of this sequence with the remaining bytes of {@code source}.
+    *
+    * @return {@code false}, leaving this sequence and {@code source} untouched, if the source does
+    *         not fit in a packet.
+    */
+   public boolean set(ByteBuffer source)
+   {
+      int length = source.remaining();
+      if (length > MAX_SIZE)
+         return false;
+
+      ensureCapacity(length);
+      source.get(_data, 0, length);
+      _pos = length;
+      return true;
+   }
+
+   /**
+    * Replaces the content of this sequence with {@code length} bytes of {@code source} starting at
+    * {@code offset}.
+    *
+    * @return {@code false}, leaving this sequence untouched, if the bytes do not fit in a packet.
+    */
+   public boolean set(byte[] source, int offset, int length)
+   {
+      if (length > MAX_SIZE)
+         return false;
+
+      ensureCapacity(length);
+      System.arraycopy(source, offset, _data, 0, length);
+      _pos = length;
+      return true;
+   }
+}
@@ -0,0 +1,321 @@
+package us.ihmc.videoacquisition.pipeline;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Capture &rarr; encode &rarr; publish pipeline where each stage runs on its own thread.
+ * <p>
+ * Capture is driven by the caller through {@link #captureFrame()}, typically from a scheduled
+ * grabber thread. Encoding runs either on a dedicated daemon thread, or on the worker pool of an
+ * {@link EncodeScheduler} shared between several pipelines. Publishing runs on a dedicated daemon
+ * thread. Stages are connected by {@link FrameRingBuffer}s so a slow encode does not delay the next
+ * grab; when a stage falls behind, the oldest pending frames are dropped and counted.
+ * </p>
+ */
+public class VideoPipeline
+{
+   public interface CaptureStage
+   {
+      /**
+       * @return {@code false} if no frame was available.
+       */
+      boolean capture(CapturedFrame capturedFrameToPack) throws Exception;
+   }
+
+   public interface EncodeStage
+   {
+      /**
+       * @return {@code false} if the frame could not be encoded and should be skipped.
+       */
+      boolean encode(CapturedFrame capturedFrame, EncodedFrame encodedFrameToPack) throws Exception;
+   }
+
+   public interface PublishStage
+   {
+      /**
+       * @return {@code false} if the frame could not be published.
+       */
+      boolean publish(EncodedFrame encodedFrame) throws Exception;
+   }
+
+   public static final int DEFAULT_QUEUE_CAPACITY = 2;
+   private static final long POLL_TIMEOUT_MILLIS = 100;
+
+   private final String name;
+   private final CaptureStage captureStage;
+   private final EncodeStage encodeStage;
+   private final PublishStage publishStage;
+
+   private final FrameRingBuffer<CapturedFrame> capturedFrames;
+   private final FrameRingBuffer<EncodedFrame> encodedFrames;
+
+   private final EncodeScheduler encodeScheduler;
+   /** Set while this pipeline is queued or being encoded by the {@link EncodeScheduler}. */
+   final AtomicBoolean encodeScheduled = new AtomicBoolean(false);
+   private final Thread encodeThread;
+   private final Thread publishThread;
+   private volatile boolean running = false;
+
+   private volatile long capturedFrameCount = 0;
+   private volatile long encodedFrameCount = 0;
+   private volatile long publishedFrameCount = 0;
+   private volatile long failedCaptureCount = 0;
+   private volatile long failedEncodeCount = 0;
+   private volatile long failedPublishCount = 0;
+
+   public VideoPipeline(String name, CaptureStage captureStage, EncodeStage encodeStage, PublishStage publishStage)
+   {
+      this(name, DEFAULT_QUEUE_CAPACITY, captureStage, encodeStage, publishStage);
+   }
+
+   public VideoPipeline(String name, int queueCapacity, CaptureStage captureStage, EncodeStage encodeStage, PublishStage publishStage)
+   {
+      this(name, queueCapacity, captureStage, encodeStage, publishStage, null);
+   }
+
+   /**
+    * @param encodeScheduler the scheduler to run the encode stage on, or {@code null} to run it on a
+    *                        dedicated thread.
+    */
+   public VideoPipeline(String name,
+                        int queueCapacity,
+                        CaptureStage captureStage,
+                        EncodeStage encodeStage,
+                        PublishStage publishStage,
+                        EncodeScheduler encodeScheduler)
+   {
+      this.name = name;
+      this.captureStage = captureStage;
+      this.encodeStage = encodeStage;
+      this.publishStage = publishStage;
+      this.encodeScheduler = encodeScheduler;
+
+      capturedFrames = new FrameRingBuffer<>(name + "-encode-queue", queueCapacity, CapturedFrame::new);
+      encodedFrames = new FrameRingBuffer<>(name + "-publish-queue", queueCapacity, EncodedFrame::new);
+
+      if (encodeScheduler == null)
+      {
+         encodeThread = new Thread(this::runEncodeStage, name + "-encoder");
+         encodeThread.setDaemon(true);
+      }
+      else
+      {
+         encodeThread = null;
+      }
+
+      publishThread = new Thread(this::runPublishStage, name + "-publisher");
+      publishThread.setDaemon(true);
+   }
+
+   public void start()
+   {
+      running = true;
+      if (encodeThread != null)
+         encodeThread.start();
+      publishThread.start();
+   }
+
+   public void stop()
+   {
+      running = false;
+      if (encodeThread != null)
+         encodeThread.interrupt();
+      publishThread.interrupt();
+   }
+
+   /**
+    * Runs the capture stage once and hands the frame over to the encoder. Meant to be called
+    * periodically from the grabber thread.
+    */
+   public void captureFrame()
+   {
+      CapturedFrame capturedFrame = capturedFrames.claim();
+      boolean success = false;
+
+      try
+      {
+         success = captureStage.capture(capturedFrame);
+      }
+      catch (Throwable e)
+      {
+         failedCaptureCount++;
+         e.printStackTrace();
+      }
+
+      if (success)
+      {
+         capturedFrameCount++;
+         capturedFrames.publish(capturedFrame);
+
+         if (encodeScheduler != null)
+            encodeScheduler.schedule(this);
+      }
+      else
+      {
+         capturedFrames.release(capturedFrame);
+      }
+   }
+
+   private void runEncodeStage()
+   {
+      while (running)
+      {
+         try
+         {
+            encodeNextFrame(POLL_TIMEOUT_MILLIS);
+         }
+         catch (InterruptedException e)
+         {
+            break;
+         }
+      }
+   }
+
+   boolean hasFramesToEncode()
+   {
+      return capturedFrames.getSize() > 0;
+   }
+
+   /**
+    * Encodes the oldest captured frame, waiting up to {@code timeoutMillis} for one.
+    *
+    * @return whether a frame was taken from the encode queue.
+    */
+   boolean encodeNextFrame(long timeoutMillis) throws InterruptedException
+   {
+      CapturedFrame capturedFrame = capturedFrames.poll(timeoutMillis);
+
+      if (capturedFrame == null)
+         return false;
+
+      EncodedFrame encodedFrame = encodedFrames.claim();
+      boolean success = false;
+
+      try
+      {
+         success = encodeStage.encode(capturedFrame, encodedFrame);
+         if (!success)
+            failedEncodeCount++;
+      }
+      catch (Throwable e)
+      {
+         failedEncodeCount++;
+         e.printStackTrace();
+      }
+
+      capturedFrames.release(capturedFrame);
+
+      if (success)
+      {
+         encodedFrameCount++;
+         encodedFrames.publish(encodedFrame);
+      }
+      else
+      {
+         encodedFrames.release(encodedFrame);
+      }
+
+      return true;
+   }
+
+   private void runPublishStage()
+   {
+      while (running)
+      {
+         EncodedFrame encodedFrame;
+
+         try
+         {
+            encodedFrame = encodedFrames.poll(POLL_TIMEOUT_MILLIS);
+         }
+         catch (InterruptedException e)
+         {
+            break;
+         }
+
+         if (encodedFrame == null)
+            continue;
+
+         try
+         {
+            if (publishStage.publish(encodedFrame))
+               publishedFrameCount++;
+            else
+               failedPublishCount++;
+         }
+         catch (Throwable e)
+         {
+            failedPublishCount++;
+            e.printStackTrace();
+         }
+
+         encodedFrames.release(encodedFrame);
+      }
+   }
+
+   public String getName()
+   {
+      return name;
+   }
+
+   public FrameRingBuffer<CapturedFrame> getEncodeQueue()
+   {
+      return capturedFrames;
+   }
+
+   public FrameRingBuffer<EncodedFrame> getPublishQueue()
+   {
+      return encodedFrames;
+   }
+
+   public long getCapturedFrameCount()
+   {
+      return capturedFrameCount;
+   }
+
+   public long getEncodedFrameCount()
+   {
+      return encodedFrameCount;
+   }
+
+   public long getPublishedFrameCount()
+   {
+      return publishedFrameCount;
+   }
+
+   public long getFailedCaptureCount()
+   {
+      return failedCaptureCount;
+   }
+
+   public long getFailedEncodeCount()
+   {
+      return failedEncodeCount;
+   }
+
+   public long getFailedPublishCount()
+   {
+      return failedPublishCount;
+   }
+
+   /**
+    * One-line summary of the frame counts, queue depths and drops of each stage.
+    */
+   public String getStatistics()
+   {
+      return String.format("%s: captured %d (%d failed) | encode queue %d/%d, %d dropped | encoded %d (%d failed) | publish queue %d/%d, %d dropped | published %d (%d failed)",
+                           name,
+                           capturedFrameCount,
+                           failedCaptureCount,
+                           capturedFrames.getSize(),
+                           capturedFrames.getCapacity(),
+                           capturedFrames.getDroppedFrames(),
+                           encodedFrameCount,
+                           failedEncodeCount,
+                           encodedFrames.getSize(),
+                           encodedFrames.getCapacity(),
+                           encodedFrames.getDroppedFrames(),
+                           publishedFrameCount,
+                           failedPublishCount);
+   }
+}
@@ -0,0 +1,87 @@
+package us.ihmc.videoacquisition.receiver;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import us.ihmc.videoacquisition.transport.VideoFrame;
+import us.ihmc.videoacquisition.yuv.YUV420Image;
+
+/**
+ * Computes the CRC32 of every frame, compressed and decoded when available, and sums them up.
+ * <p>
+ * The sums do not depend on the order the topics are received in, so the sums of two receivers of
+ * the same frames, e.g. of two playbacks of a log, can be compared to check that both got the same
+ * frames. The publishers do not compute them.
+ * </p>
+ */
+public class ChecksumFrameSink implements FrameSink
+{
+   private final ThreadLocal<CRC32> crc = ThreadLocal.withInitial(CRC32::new);
+   private final AtomicLong frameCount = new AtomicLong();
+   private final AtomicLong compressedChecksum = new AtomicLong();
+   private final AtomicLong decodedChecksum = new AtomicLong();
+
+   @Override
+   public void onFrame(String topic, VideoFrame frame, YUV420Image decodedImage)
+   {
+      CRC32 crc = this.crc.get();
+
+      crc.reset();
+      crc.update(frame.getData(), 0, frame.getSize());
+      compressedChecksum.addAndGet(crc.getValue());
+
+      if (decodedImage != null)
+      {
+         crc.reset();
+         update(crc, decodedImage.getY(), decodedImage.getYStride(), decodedImage.getWidth(), decodedImage.getHeight());
+         update(crc, decodedImage.getU(), decodedImage.getUStride(), decodedImage.getChromaWidth(), decodedImage.getChromaHeight());
+         update(crc, decodedImage.getV(), decodedImage.getVStride(), decodedImage.getChromaWidth(), decodedImage.getChromaHeight());
+         decodedChecksum.addAndGet(crc.getValue());
+      }
+
+      frameCount.incrementAndGet();
+   }
+
+   /**
+    * Only the pixels are checked, not the padding at the end of the rows.
+    */
+   private static void update(CRC32 crc, ByteBuffer plane, int stride, int width, int height)
+   {
+      for (int row = 0; row < height; row++)
+      {
+         plane.limit(row * stride + width);
+         plane.position(row * stride);
+         crc.update(plane);
+      }
+
+      plane.clear();
+   }
+
+   public long getFrameCount()
+   {
+      return frameCount.get();
+   }
+
+   /**
+    * @return the sum of the CRC32 of the compressed frames.
+    */
+   public long getCompressedChecksum()
+   {
+      return compressedChecksum.get();
+   }
+
+   /**
+    * @return the sum of the CRC32 of the planes of the decoded frames.
+    */
+   public long getDecodedChecksum()
+   {
+      return decodedChecksum.get();
+   }
+
+   @Override
+   public String getStatistics()
+   {
+      return String.format("checksums of %d frames: compressed %016x, decoded %016x", getFrameCount(), getCompressedChecksum(), getDecodedChecksum());
+   }
+}
@@ -0,0 +1,100 @@
+package us.ihmc.videoacquisition.receiver;
+
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Decodes the frames of several {@link MosaicTile}s on a bounded pool of worker threads.
+ * <p>
+ * Scheduling is round-robin over the tiles that have frames waiting, as for the encode stage of the
+ * publishers: a worker decodes a single frame of a tile and then sends that tile to the back of the
+ * queue, so a large stream does not starve the others. A tile is never decoded by two workers at
+ * once, so its decoder does not need to be thread-safe and its H.264 frames are decoded in order.
+ * </p>
+ */
+public class DecodeScheduler
+{
+   private final LinkedBlockingQueue<MosaicTile> readyTiles = new LinkedBlockingQueue<>();
+   private final Thread[] workers;
+   private volatile boolean running = false;
+
+   /**
+    * Creates a scheduler with one worker per available processor.
+    */
+   public DecodeScheduler(String name)
+   {
+      this(name, Runtime.getRuntime().availableProcessors());
+   }
+
+   public DecodeScheduler(String name, int numberOfWorkers)
+   {
+      workers = new Thread[numberOfWorkers];
+
+      for (int i = 0; i < numberOfWorkers; i++)
+      {
+         workers[i] = new Thread(this::runWorker, name + "-decoder-" + i);
+         workers[i].setDaemon(true);
+      }
+   }
+
+   public void start()
+   {
+      running = true;
+      for (Thread worker : workers)
+         worker.start();
+   }
+
+   public void stop()
+   {
+      running = false;
+      for (Thread worker : workers)
+         worker.interrupt();
+   }
+
+   /**
+    * Notifies the scheduler that {@code tile} has a frame to decode. Queues the tile unless it is
+    * already queued or being decoded.
+    */
+   void schedule(MosaicTile tile)
+   {
+      if (tile.decodeScheduled.compareAndSet(false, true))
+         readyTiles.add(tile);
+   }
+
+   private void runWorker()
+   {
+      while (running)
+      {
+         MosaicTile tile;
+
+         try
+         {
+            tile = readyTiles.take();
+         }
+         catch (InterruptedException e)
+         {
+            break;
+         }
+
+         tile.decodeNextFrame();
+
+         // Clear the flag before checking for more work, so a frame received in between is not missed.
+         tile.decodeScheduled.set(false);
+
+         if (tile.hasFramesToDecode() && tile.decodeScheduled.compareAndSet(false, true))
+            readyTiles.add(tile);
+      }
+   }
+
+   public int getNumberOfWorkers()
+   {
+      return workers.length;
+   }
+
+   /**
+    * @return the number of tiles waiting for a worker.
+    */
+   public int getQueueLength()
+   {
+      return readyTiles.size();
+   }
+}
@@ -0,0 +1,105 @@
+package us.ihmc.videoacquisition.receiver;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import controller_msgs.msg.dds.VideoPacket;
+import us.ihmc.videoacquisition.transport.VideoFrame;
+import us.ihmc.videoacquisition.yuv.YUV420Image;
+
+/**
+ * Writes the compressed frames of each topic and video source to their own file in a directory.
+ * <p>
+ * The frames are appended as they are: JPEG frames make a motion JPEG file and H.264 frames an
+ * Annex B elementary stream, which both can be read by FFmpeg. JPEG strip frames are only readable
+ * by a {@link us.ihmc.videoacquisition.codec.StripJPEGDecoder}. A stream switching codec is written
+ * to one file per codec.
+ * </p>
+ */
+public class FileFrameSink implements FrameSink
+{
+   /** File extension of each codec, indexed as in {@link #getOutputStream(String, VideoFrame)}. */
+   private static final String[] CODEC_EXTENSIONS = {".mjpeg", ".h264", ".jpegstrips"};
+
+   private final File directory;
+   /** For each topic, the files indexed by video source and codec, see {@link #getOutputStream(String, VideoFrame)}. */
+   private final Map<String, OutputStream[]> outputStreams = new HashMap<>();
+   private long writtenBytes = 0;
+
+   public FileFrameSink(File directory) throws IOException
+   {
+      if (!directory.isDirectory() && !directory.mkdirs())
+         throw new IOException("Could not create " + directory);
+
+      this.directory = directory;
+   }
+
+   @Override
+   public synchronized void onFrame(String topic, VideoFrame frame, YUV420Image decodedImage)
+   {
+      try
+      {
+         getOutputStream(topic, frame).write(frame.getData(), 0, frame.getSize());
+         writtenBytes += frame.getSize();
+      }
+      catch (IOException e)
+      {
+         e.printStackTrace();
+      }
+   }
+
+   private OutputStream getOutputStream(String topic, VideoFrame frame) throws IOException
+   {
+      OutputStream[] topicOutputStreams = outputStreams.computeIfAbsent(topic, t -> new OutputStream[CODEC_EXTENSIONS.length * 256]);
+      int codecIndex = frame.getCodec() == VideoPacket.CODEC_H264 ? 1 : frame.getCodec() == VideoPacket.CODEC_JPEG_STRIPS ? 2 : 0;
+      int index = CODEC_EXTENSIONS.length * (frame.getVideoSource() & 0xFF) + codecIndex;
+
+      if (topicOutputStreams[index] == null)
+      {
+         String fileName = topic.replaceAll("^/+", "").replace('/', '_') + "_source" + (frame.getVideoSource() & 0xFF) + CODEC_EXTENSIONS[codecIndex];
+         topicOutputStreams[index] = new BufferedOutputStream(new FileOutputStream(new File(directory, fileName)), 1 << 20);
+      }
+
+      return topicOutputStreams[index];
+   }
+
+   public synchronized long getWrittenBytes()
+   {
+      return writtenBytes;
+   }
+
+   @Override
+   public synchronized String getStatistics()
+   {
+      return String.format("written %.1f MB to %s", writtenBytes * 1.0e-6, directory);
+   }
+
+   @Override
+   public synchronized void close()
+   {
+      for (OutputStream[] topicOutputStreams : outputStreams.values())
+      {
+         for (OutputStream outputStream : topicOutputStreams)
+         {
+            if (outputStream == null)
+               continue;
+
+            try
+            {
+               outputStream.close();
+            }
+            catch (IOException e)
+            {
+               e.printStackTrace();
+            }
+         }
+      }
+
+      outputStreams.clear();
+   }
+}
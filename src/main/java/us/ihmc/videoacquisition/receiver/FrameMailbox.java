@@ -0,0 +1,142 @@
+package us.ihmc.videoacquisition.receiver;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import controller_msgs.msg.dds.VideoPacket;
+import us.ihmc.videoacquisition.transport.VideoFrame;
+import us.ihmc.videoacquisition.transport.VideoFrameAssembler;
+
+/**
+ * Hands over the frames of one video stream from the subscription thread to a decoding thread,
+ * without locking nor allocating.
+ * <p>
+ * JPEG frames are triple-buffered: the mailbox holds the latest frame, which the decoding thread
+ * takes while the next frame is being assembled. A frame replaced before being taken is released
+ * right away and counted as overwritten. H.264 frames all have to be decoded, in order, since the
+ * following frames depend on them: they go through a single-producer single-consumer queue
+ * instead.
+ * </p>
+ * <p>
+ * The frames come from the pool of a {@link VideoFrameAssembler}, shared by all the video sources of
+ * a topic. The H.264 queues of the streams of a topic together hold at most half the pool, see
+ * {@link #setSharedBy(int)}: when the decoder falls behind, the queues fill up and drop frames
+ * before the assembler runs out of frames to assemble the next ones in.
+ * </p>
+ */
+public class FrameMailbox
+{
+   private final int framePoolSize;
+   private final AtomicReference<VideoFrame> latestJPEGFrame = new AtomicReference<>(null);
+   private final VideoFrame[] h264Queue;
+   /** Number of H.264 frames the queue may hold, up to the length of the queue. */
+   private volatile int h264QueueSize;
+   /** Index of the next H.264 frame to take, only written by the consumer. */
+   private volatile long h264QueueHead = 0;
+   /** Index of the next H.264 frame to submit, only written by the producer. */
+   private volatile long h264QueueTail = 0;
+
+   private volatile long overwrittenFrameCount = 0;
+   private volatile long droppedH264FrameCount = 0;
+
+   /**
+    * @param framePoolSize size of the pool of the assembler the frames come from.
+    */
+   public FrameMailbox(int framePoolSize)
+   {
+      this.framePoolSize = framePoolSize;
+      h264Queue = new VideoFrame[getH264QueueSize(framePoolSize, 1)];
+      h264QueueSize = h264Queue.length;
+   }
+
+   /**
+    * @return the number of H.264 frames each of {@code streamCount} streams sharing a pool of
+    *         {@code framePoolSize} frames may queue, at least one.
+    */
+   public static int getH264QueueSize(int framePoolSize, int streamCount)
+   {
+      return Math.max(1, framePoolSize / (2 * Math.max(1, streamCount)));
+   }
+
+   /**
+    * Sets the number of streams, this one included, whose frames come from the same pool, to be
+    * called from the producer thread when a stream appears. Frames already queued beyond the new
+    * size are kept.
+    */
+   public void setSharedBy(int streamCount)
+   {
+      h264QueueSize = getH264QueueSize(framePoolSize, streamCount);
+   }
+
+   /**
+    * Hands over a frame, to be called from a single producer thread. Never blocks.
+    */
+   public void submit(VideoFrame frame)
+   {
+      if (frame.getCodec() == VideoPacket.CODEC_H264)
+      {
+         long tail = h264QueueTail;
+         if (tail - h264QueueHead >= h264QueueSize)
+         {
+            // The decoder will request a keyframe when it sees the gap in the sequence IDs.
+            droppedH264FrameCount++;
+            frame.release();
+            return;
+         }
+
+         h264Queue[(int) (tail % h264Queue.length)] = frame;
+         h264QueueTail = tail + 1;
+      }
+      else
+      {
+         VideoFrame overwrittenFrame = latestJPEGFrame.getAndSet(frame);
+         if (overwrittenFrame != null)
+         {
+            overwrittenFrameCount++;
+            overwrittenFrame.release();
+         }
+      }
+   }
+
+   /**
+    * Takes the next frame, to be called from a single consumer thread, which has to release the
+    * frame once done with it.
+    *
+    * @return the oldest H.264 frame, or else the latest JPEG frame, or {@code null} if empty.
+    */
+   public VideoFrame poll()
+   {
+      long head = h264QueueHead;
+      if (head != h264QueueTail)
+      {
+         int index = (int) (head % h264Queue.length);
+         VideoFrame frame = h264Queue[index];
+         h264Queue[index] = null;
+         h264QueueHead = head + 1;
+         return frame;
+      }
+
+      return latestJPEGFrame.getAndSet(null);
+   }
+
+   public boolean isEmpty()
+   {
+      return h264QueueHead == h264QueueTail && latestJPEGFrame.get() == null;
+   }
+
+   /**
+    * @return the number of JPEG frames released without being taken because a newer frame was
+    *         submitted first.
+    */
+   public long getOverwrittenFrameCount()
+   {
+      return overwrittenFrameCount;
+   }
+
+   /**
+    * @return the number of H.264 frames dropped because the queue was full.
+    */
+   public long getDroppedH264FrameCount()
+   {
+      return droppedH264FrameCount;
+   }
+}
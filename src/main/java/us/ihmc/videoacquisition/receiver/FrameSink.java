@@ -0,0 +1,39 @@
+package us.ihmc.videoacquisition.receiver;
+
+import us.ihmc.videoacquisition.transport.VideoFrame;
+import us.ihmc.videoacquisition.yuv.YUV420Image;
+
+/**
+ * Consumer of the frames received by a {@link VideoTopicReceiver}, to display, check, record or
+ * count them.
+ * <p>
+ * When receiving several topics, each topic calls the sink from its own thread, so a sink shared
+ * between topics has to be thread-safe.
+ * </p>
+ */
+public interface FrameSink
+{
+   /**
+    * @param topic        the topic the frame was received on.
+    * @param frame        the compressed frame. It is released after the call and must not be kept.
+    * @param decodedImage the decoded frame, reused after the call, or {@code null} when the receiver
+    *                     does not decode.
+    */
+   void onFrame(String topic, VideoFrame frame, YUV420Image decodedImage);
+
+   /**
+    * @return a summary of what the sink has received so far, or {@code null} if it has nothing to
+    *         report.
+    */
+   default String getStatistics()
+   {
+      return null;
+   }
+
+   /**
+    * Called once the receiver has stopped, to flush and release the resources of the sink.
+    */
+   default void close()
+   {
+   }
+}
@@ -0,0 +1,94 @@
+package us.ihmc.videoacquisition.receiver;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import us.ihmc.videoacquisition.transport.VideoFrame;
+import us.ihmc.videoacquisition.yuv.YUV420Image;
+
+/**
+ * Command line helpers shared by the receivers to create {@link FrameSink}s.
+ */
+public class FrameSinks
+{
+   /**
+    * Parses the frame sink option starting at {@code args[index]}, one of
+    * {@code --sink null|checksum|statistics} or {@code --sink file <directory>}.
+    *
+    * @return the sink, or {@code null} if {@code args[index]} is not a frame sink option.
+    */
+   public static FrameSink parse(String[] args, int index) throws IOException
+   {
+      if (!args[index].equals("--sink"))
+         return null;
+
+      switch (args[index + 1])
+      {
+         case "null":
+            return new NullFrameSink();
+         case "checksum":
+            return new ChecksumFrameSink();
+         case "statistics":
+            return new StatisticsFrameSink();
+         case "file":
+            return new FileFrameSink(new File(args[index + 2]));
+         default:
+            throw new IllegalArgumentException("Unknown frame sink: " + args[index + 1]);
+      }
+   }
+
+   /**
+    * @return the number of arguments taken by the frame sink option starting at
+    *         {@code args[index]}, including the option itself.
+    */
+   public static int getArgumentCount(String[] args, int index)
+   {
+      if (!args[index].equals("--sink"))
+         return 0;
+
+      return args[index + 1].equals("file") ? 3 : 2;
+   }
+
+   /**
+    * @return a sink passing every frame to each of the given sinks in turn.
+    */
+   public static FrameSink combine(List<FrameSink> frameSinks)
+   {
+      if (frameSinks.size() == 1)
+         return frameSinks.get(0);
+
+      FrameSink[] sinks = frameSinks.toArray(new FrameSink[frameSinks.size()]);
+
+      return new FrameSink()
+      {
+         @Override
+         public void onFrame(String topic, VideoFrame frame, YUV420Image decodedImage)
+         {
+            for (FrameSink sink : sinks)
+               sink.onFrame(topic, frame, decodedImage);
+         }
+
+         @Override
+         public String getStatistics()
+         {
+            List<String> statistics = new ArrayList<>();
+            for (FrameSink sink : sinks)
+            {
+               String sinkStatistics = sink.getStatistics();
+               if (sinkStatistics != null)
+                  statistics.add(sinkStatistics);
+            }
+            return statistics.isEmpty() ? null : String.join("\n", statistics);
+         }
+
+         @Override
+         public void close()
+         {
+            for (FrameSink sink : sinks)
+               sink.close();
+         }
+      };
+   }
+}
@@ -0,0 +1,146 @@
+package us.ihmc.videoacquisition.receiver;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javafx.scene.image.WritableImage;
+import us.ihmc.videoacquisition.latency.LatencyMonitor;
+import us.ihmc.videoacquisition.latency.VideoMetrics;
+import us.ihmc.videoacquisition.latency.VideoMetrics.Stage;
+import us.ihmc.videoacquisition.transport.VideoFrame;
+import us.ihmc.videoacquisition.yuv.YUV420Image;
+import us.ihmc.videoacquisition.yuv.YUV420ToARGBConverter;
+
+/**
+ * Converts the decoded frames into JavaFX images and hands the newest one over to the JavaFX thread
+ * through a lock-free slot, so the JavaFX thread only has to swap the displayed image.
+ * <p>
+ * Frames are converted from YUV straight into the direct buffer backing a {@link VideoImage}. The
+ * images are recycled: besides the one being written, one can be waiting in the slot, one is
+ * displayed and one has just been replaced on screen and may still be read by the renderer. Once
+ * the images have been created at the stream resolution, displaying a frame does not allocate any
+ * image.
+ * </p>
+ * <p>
+ * Frames are expected from a single decode thread.
+ * </p>
+ */
+public class JavaFXFrameSink implements FrameSink
+{
+   private static final int IMAGE_POOL_SIZE = 4;
+
+   private final YUV420ToARGBConverter argbConverter = new YUV420ToARGBConverter();
+   private final AtomicReference<VideoImage> readyImage = new AtomicReference<>(null);
+   private final ArrayBlockingQueue<VideoImage> freeImages = new ArrayBlockingQueue<>(IMAGE_POOL_SIZE);
+   private int allocatedImageCount = 0;
+   /** Only accessed from the JavaFX thread. */
+   private VideoImage displayedImage, replacedImage;
+
+   private volatile long displayedFrameCount = 0;
+   private volatile long overwrittenImageCount = 0;
+   private volatile LatencyMonitor latencyMonitor = null;
+   private volatile VideoMetrics metrics = null;
+
+   @Override
+   public void onFrame(String topic, VideoFrame frame, YUV420Image decodedImage)
+   {
+      long renderStart = System.nanoTime();
+      VideoImage image = claimImage(decodedImage.getWidth(), decodedImage.getHeight());
+      image.set(decodedImage, argbConverter, frame.getClockId(), frame.getCaptureTime());
+      VideoMetrics metrics = this.metrics;
+      if (metrics != null)
+         metrics.record(Stage.RENDER, System.nanoTime() - renderStart);
+      VideoImage overwrittenImage = readyImage.getAndSet(image);
+      if (overwrittenImage != null)
+      {
+         overwrittenImageCount++;
+         freeImages.offer(overwrittenImage);
+      }
+   }
+
+   /**
+    * Takes the newest image, to be called from the JavaFX thread.
+    *
+    * @return the image, or {@code null} if no new frame has been received since the last call.
+    */
+   public WritableImage pollImage()
+   {
+      VideoImage image = readyImage.getAndSet(null);
+      if (image == null)
+         return null;
+
+      image.markDirty();
+      // The renderer may still be reading the image that was displayed until now, only recycle the one before.
+      if (replacedImage != null)
+         freeImages.offer(replacedImage);
+      replacedImage = displayedImage;
+      displayedImage = image;
+
+      displayedFrameCount++;
+      LatencyMonitor latencyMonitor = this.latencyMonitor;
+      if (latencyMonitor != null)
+         latencyMonitor.frameDisplayed(image.getClockId(), image.getCaptureTime());
+      return image.getImage();
+   }
+
+   /**
+    * Gets an image that is not used by the JavaFX thread. Since at most three images are held by the
+    * slot and the JavaFX thread, one of the four images of the pool is always free.
+    */
+   private VideoImage claimImage(int width, int height)
+   {
+      VideoImage image = freeImages.poll();
+
+      if (image == null)
+      {
+         allocatedImageCount++;
+         if (allocatedImageCount > IMAGE_POOL_SIZE)
+            throw new IllegalStateException("All the images are in use");
+      }
+      else if (image.hasSize(width, height))
+      {
+         return image;
+      }
+
+      // The stream resolution has changed, the buffer of an image cannot be resized.
+      return new VideoImage(width, height);
+   }
+
+   /**
+    * @param latencyMonitor records the capture to display latency of every image handed over to the
+    *                       JavaFX thread, or {@code null} to not measure it.
+    */
+   public void setLatencyMonitor(LatencyMonitor latencyMonitor)
+   {
+      this.latencyMonitor = latencyMonitor;
+   }
+
+   /**
+    * Records the time to convert each frame into its image, and counts the images dropped. To be
+    * called once.
+    */
+   public void setMetrics(VideoMetrics metrics)
+   {
+      metrics.addDroppedFrameCounter(this::getOverwrittenImageCount);
+      this.metrics = metrics;
+   }
+
+   public long getDisplayedFrameCount()
+   {
+      return displayedFrameCount;
+   }
+
+   /**
+    * @return the number of images replaced by a newer one before being displayed.
+    */
+   public long getOverwrittenImageCount()
+   {
+      return overwrittenImageCount;
+   }
+
+   @Override
+   public String getStatistics()
+   {
+      return String.format("displayed %d, dropped %d after decode", displayedFrameCount, overwrittenImageCount);
+   }
+}
@@ -0,0 +1,46 @@
+package us.ihmc.videoacquisition.receiver;
+
+import java.util.Arrays;
+
+import controller_msgs.msg.dds.VideoKeyframeRequestMessage;
+import us.ihmc.ros2.RealtimeROS2Node;
+import us.ihmc.ros2.RealtimeROS2Publisher;
+import us.ihmc.videoacquisition.VideoManager;
+
+/**
+ * Publishes the keyframe requests of a receiver on {@link VideoManager#KEYFRAME_REQUEST_TOPIC}.
+ * <p>
+ * A decoder keeps requesting a keyframe for every frame it cannot decode, so the requests for a
+ * video source are limited to one every {@link #KEYFRAME_REQUEST_PERIOD_NANOS}. Requests can be
+ * made from several decode threads.
+ * </p>
+ */
+public class KeyframeRequestPublisher implements KeyframeRequester
+{
+   /** Minimum time between two keyframe requests for the same video source. */
+   public static final long KEYFRAME_REQUEST_PERIOD_NANOS = 500000000L;
+
+   private final RealtimeROS2Publisher<VideoKeyframeRequestMessage> publisher;
+   private final VideoKeyframeRequestMessage keyframeRequest = new VideoKeyframeRequestMessage();
+   private final long[] lastKeyframeRequestTimes = new long[256];
+
+   public KeyframeRequestPublisher(RealtimeROS2Node ros2Node)
+   {
+      publisher = ros2Node.createPublisher(VideoKeyframeRequestMessage.getPubSubType().get(), VideoManager.KEYFRAME_REQUEST_TOPIC);
+      Arrays.fill(lastKeyframeRequestTimes, Long.MIN_VALUE);
+   }
+
+   @Override
+   public synchronized void requestKeyframe(byte videoSource)
+   {
+      long now = System.nanoTime();
+      int index = videoSource & 0xFF;
+      if (lastKeyframeRequestTimes[index] != Long.MIN_VALUE && now - lastKeyframeRequestTimes[index] < KEYFRAME_REQUEST_PERIOD_NANOS)
+         return;
+
+      lastKeyframeRequestTimes[index] = now;
+      keyframeRequest.setSequenceId(keyframeRequest.getSequenceId() + 1);
+      keyframeRequest.setVideoSource(videoSource);
+      publisher.publish(keyframeRequest);
+   }
+}
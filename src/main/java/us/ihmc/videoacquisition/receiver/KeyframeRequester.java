@@ -0,0 +1,14 @@
+package us.ihmc.videoacquisition.receiver;
+
+/**
+ * Asks the H.264 publishers for a keyframe, see
+ * {@link controller_msgs.msg.dds.VideoKeyframeRequestMessage}.
+ */
+public interface KeyframeRequester
+{
+   /**
+    * @param videoSource the video source to request a keyframe from, or
+    *                    {@link controller_msgs.msg.dds.VideoKeyframeRequestMessage#VIDEO_SOURCE_ALL}.
+    */
+   void requestKeyframe(byte videoSource);
+}
@@ -0,0 +1,206 @@
+package us.ihmc.videoacquisition.receiver;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import controller_msgs.msg.dds.VideoPacket;
+import javafx.scene.image.WritableImage;
+import us.ihmc.videoacquisition.latency.LatencyMonitor;
+import us.ihmc.videoacquisition.transport.VideoFrame;
+import us.ihmc.videoacquisition.yuv.PlanarScaler;
+import us.ihmc.videoacquisition.yuv.YUV420Image;
+
+/**
+ * One stream of a mosaic, identified by its topic and video source, decoded by a
+ * {@link DecodeScheduler} and displayed through its own {@link JavaFXFrameSink}.
+ * <p>
+ * Each tile has its own frame rate limit and decode resolution. JPEG frames coming faster than the
+ * limit are dropped before being decoded. H.264 frames all have to be decoded for the stream to
+ * remain decodable, so the limit only saves their conversion and display. A hidden tile, with a
+ * limit of zero, drops all its frames: an H.264 stream is then resumed from a keyframe once the tile
+ * is shown again. Decoded frames larger than the decode resolution are scaled down before being
+ * converted for display, since the codecs decode at full resolution.
+ * </p>
+ */
+public class MosaicTile
+{
+   private final String topic;
+   private final byte videoSource;
+   private final DecodeScheduler scheduler;
+   private final FrameMailbox mailbox;
+   private final VideoFrameDecoder decoder;
+   private final JavaFXFrameSink frameSink = new JavaFXFrameSink();
+   private final PlanarScaler scaler = new PlanarScaler(PlanarScaler.Kernel.BOX);
+   private final YUV420Image decodedImage = new YUV420Image();
+   private final YUV420Image scaledImage = new YUV420Image();
+
+   /** Set while the tile is queued or being decoded, see {@link DecodeScheduler}. */
+   final AtomicBoolean decodeScheduled = new AtomicBoolean(false);
+
+   private volatile double maxFrameRate = Double.POSITIVE_INFINITY;
+   private volatile boolean visible = true;
+   private volatile int maxDecodeWidth = 0;
+   private volatile int maxDecodeHeight = 0;
+   private long lastDisplayedFrameTime = Long.MIN_VALUE;
+
+   private volatile long receivedFrameCount = 0;
+   private volatile long droppedFrameCount = 0;
+
+   /**
+    * @param framePoolSize size of the pool of the assembler of the topic, shared by its tiles.
+    */
+   public MosaicTile(String topic, byte videoSource, DecodeScheduler scheduler, KeyframeRequester keyframeRequester, int framePoolSize)
+   {
+      this.topic = topic;
+      this.videoSource = videoSource;
+      this.scheduler = scheduler;
+      mailbox = new FrameMailbox(framePoolSize);
+      decoder = new VideoFrameDecoder(keyframeRequester);
+   }
+
+   /**
+    * Sets the number of tiles of the topic, this one included, see
+    * {@link FrameMailbox#setSharedBy(int)}. To be called from the subscription thread.
+    */
+   public void setSharedBy(int tileCount)
+   {
+      mailbox.setSharedBy(tileCount);
+   }
+
+   /**
+    * Hands over a frame of this tile's stream, to be called from the subscription thread. The frame
+    * is released once decoded or dropped.
+    */
+   public void submit(VideoFrame frame)
+   {
+      receivedFrameCount++;
+      mailbox.submit(frame);
+      scheduler.schedule(this);
+   }
+
+   boolean hasFramesToDecode()
+   {
+      return !mailbox.isEmpty();
+   }
+
+   /**
+    * Decodes the next frame, called by a single worker of the scheduler at a time.
+    */
+   void decodeNextFrame()
+   {
+      VideoFrame frame = mailbox.poll();
+      if (frame == null)
+         return;
+
+      double frameRate = visible ? maxFrameRate : 0.0;
+      long now = System.nanoTime();
+      boolean isDue = frameRate > 0.0 && (lastDisplayedFrameTime == Long.MIN_VALUE || now - lastDisplayedFrameTime >= 1.0e9 / frameRate);
+
+      if (isDue)
+      {
+         if (decoder.decode(frame, decodedImage))
+         {
+            lastDisplayedFrameTime = now;
+            frameSink.onFrame(topic, frame, scaleToDecodeResolution(decodedImage));
+         }
+      }
+      else if (frame.getCodec() == VideoPacket.CODEC_H264 && frameRate > 0.0)
+      {
+         // Keep the reference frames up to date, only the display is skipped.
+         decoder.decode(frame, decodedImage);
+         droppedFrameCount++;
+      }
+      else
+      {
+         decoder.skip(frame);
+         droppedFrameCount++;
+      }
+
+      frame.release();
+   }
+
+   private YUV420Image scaleToDecodeResolution(YUV420Image image)
+   {
+      int maxWidth = maxDecodeWidth;
+      int maxHeight = maxDecodeHeight;
+      if (maxWidth <= 0 || maxHeight <= 0 || (image.getWidth() <= maxWidth && image.getHeight() <= maxHeight))
+         return image;
+
+      // Fit in the decode resolution while keeping the aspect ratio.
+      double scale = Math.min((double) maxWidth / image.getWidth(), (double) maxHeight / image.getHeight());
+      int width = Math.max(1, (int) Math.round(scale * image.getWidth()));
+      int height = Math.max(1, (int) Math.round(scale * image.getHeight()));
+      scaler.scale(image, scaledImage, width, height);
+      return scaledImage;
+   }
+
+   /**
+    * Takes the newest image, to be called from the JavaFX thread.
+    *
+    * @return the image, or {@code null} if no new frame has been decoded since the last call.
+    */
+   public WritableImage pollImage()
+   {
+      return frameSink.pollImage();
+   }
+
+   /**
+    * @param latencyMonitor records the capture to display latency of the tile, or {@code null} to
+    *                       not measure it.
+    */
+   public void setLatencyMonitor(LatencyMonitor latencyMonitor)
+   {
+      frameSink.setLatencyMonitor(latencyMonitor);
+   }
+
+   /**
+    * @param maxFrameRate the maximum number of frames per second to display,
+    *                     {@link Double#POSITIVE_INFINITY} for no limit.
+    */
+   public void setMaxFrameRate(double maxFrameRate)
+   {
+      this.maxFrameRate = maxFrameRate;
+   }
+
+   /**
+    * A hidden tile does not decode its frames.
+    */
+   public void setVisible(boolean visible)
+   {
+      this.visible = visible;
+   }
+
+   /**
+    * @param maxWidth  the width to scale the decoded frames down to, 0 for the full resolution.
+    * @param maxHeight the height to scale the decoded frames down to, 0 for the full resolution.
+    */
+   public void setMaxDecodeResolution(int maxWidth, int maxHeight)
+   {
+      maxDecodeWidth = maxWidth;
+      maxDecodeHeight = maxHeight;
+   }
+
+   public String getTopic()
+   {
+      return topic;
+   }
+
+   public byte getVideoSource()
+   {
+      return videoSource;
+   }
+
+   public String getName()
+   {
+      return topic + "[" + (videoSource & 0xFF) + "]";
+   }
+
+   public String getStatistics()
+   {
+      return String.format("%s: received %d, dropped %d, %s | %s",
+                           getName(),
+                           receivedFrameCount,
+                           droppedFrameCount + mailbox.getOverwrittenFrameCount() + mailbox.getDroppedH264FrameCount(),
+                           decoder.getStatistics(),
+                           frameSink.getStatistics());
+   }
+}
@@ -0,0 +1,15 @@
+package us.ihmc.videoacquisition.receiver;
+
+import us.ihmc.videoacquisition.transport.VideoFrame;
+import us.ihmc.videoacquisition.yuv.YUV420Image;
+
+/**
+ * Drops the frames, to measure how fast frames can be received and decoded.
+ */
+public class NullFrameSink implements FrameSink
+{
+   @Override
+   public void onFrame(String topic, VideoFrame frame, YUV420Image decodedImage)
+   {
+   }
+}
@@ -0,0 +1,117 @@
+package us.ihmc.videoacquisition.receiver;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import us.ihmc.videoacquisition.transport.VideoFrame;
+import us.ihmc.videoacquisition.yuv.YUV420Image;
+
+/**
+ * Counts the frames and bytes received for each topic and video source, and reports the rates
+ * since the last report.
+ */
+public class StatisticsFrameSink implements FrameSink
+{
+   private final Map<String, SourceStatistics[]> topicStatistics = new ConcurrentSkipListMap<>();
+   private long lastReportTime = System.nanoTime();
+
+   private static class SourceStatistics
+   {
+      /** Only written by the thread of the topic. */
+      private volatile long frameCount, byteCount, decodedFrameCount;
+      private int width, height;
+      private long lastReportedFrameCount, lastReportedByteCount;
+   }
+
+   @Override
+   public void onFrame(String topic, VideoFrame frame, YUV420Image decodedImage)
+   {
+      SourceStatistics[] sourceStatistics = topicStatistics.computeIfAbsent(topic, t -> new SourceStatistics[256]);
+      int index = frame.getVideoSource() & 0xFF;
+      SourceStatistics statistics = sourceStatistics[index];
+      if (statistics == null)
+      {
+         statistics = new SourceStatistics();
+         sourceStatistics[index] = statistics;
+      }
+
+      statistics.frameCount++;
+      statistics.byteCount += frame.getSize();
+
+      if (decodedImage != null)
+      {
+         statistics.decodedFrameCount++;
+         statistics.width = decodedImage.getWidth();
+         statistics.height = decodedImage.getHeight();
+      }
+   }
+
+   /**
+    * @return the total number of frames received on all the topics.
+    */
+   public long getFrameCount()
+   {
+      long frameCount = 0;
+      for (SourceStatistics[] sourceStatistics : topicStatistics.values())
+      {
+         for (SourceStatistics statistics : sourceStatistics)
+         {
+            if (statistics != null)
+               frameCount += statistics.frameCount;
+         }
+      }
+      return frameCount;
+   }
+
+   /**
+    * @return one line per topic and video source with the frame rate and bitrate since the previous
+    *         call, and a line with the totals.
+    */
+   @Override
+   public synchronized String getStatistics()
+   {
+      long now = System.nanoTime();
+      double period = (now - lastReportTime) / 1.0e9;
+      lastReportTime = now;
+
+      StringBuilder report = new StringBuilder();
+      int streamCount = 0;
+      double totalFrameRate = 0.0;
+      double totalBitrate = 0.0;
+
+      for (Map.Entry<String, SourceStatistics[]> entry : topicStatistics.entrySet())
+      {
+         SourceStatistics[] sourceStatistics = entry.getValue();
+
+         for (int videoSource = 0; videoSource < sourceStatistics.length; videoSource++)
+         {
+            SourceStatistics statistics = sourceStatistics[videoSource];
+            if (statistics == null)
+               continue;
+
+            long frameCount = statistics.frameCount;
+            long byteCount = statistics.byteCount;
+            double frameRate = (frameCount - statistics.lastReportedFrameCount) / period;
+            double bitrate = 8.0 * (byteCount - statistics.lastReportedByteCount) / period;
+            statistics.lastReportedFrameCount = frameCount;
+            statistics.lastReportedByteCount = byteCount;
+
+            streamCount++;
+            totalFrameRate += frameRate;
+            totalBitrate += bitrate;
+            report.append(String.format("%s[%d]: %.1f fps, %.2f Mbit/s, %d frames (%d decoded, %dx%d)%n",
+                                        entry.getKey(),
+                                        videoSource,
+                                        frameRate,
+                                        bitrate * 1.0e-6,
+                                        frameCount,
+                                        statistics.decodedFrameCount,
+                                        statistics.width,
+                                        statistics.height));
+         }
+      }
+
+      report.append(String.format("total: %d streams, %.1f fps, %.2f Mbit/s", streamCount, totalFrameRate, totalBitrate * 1.0e-6));
+      return report.toString();
+   }
+}
@@ -0,0 +1,161 @@
+package us.ihmc.videoacquisition.receiver;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import us.ihmc.videoacquisition.transport.VideoFrame;
+import us.ihmc.videoacquisition.yuv.YUV420Image;
+
+/**
+ * Decodes the received frames on a dedicated thread and passes them to a {@link FrameSink}, e.g.
+ * a {@link JavaFXFrameSink} to display them.
+ * <p>
+ * Frames are submitted from the subscription thread without locking nor allocating, through one
+ * {@link FrameMailbox} per video source: when the decoder falls behind, only the latest JPEG frame
+ * of each video source is decoded, while H.264 frames are all decoded in order.
+ * </p>
+ */
+public class VideoDecodeThread
+{
+   private final String topic;
+   private final FrameSink frameSink;
+   private final Thread thread;
+   private volatile boolean running = false;
+   private final int framePoolSize;
+   /** Created by the subscription thread on the first frame of each video source. */
+   private final AtomicReferenceArray<FrameMailbox> mailboxes = new AtomicReferenceArray<>(256);
+   /** Only used by the subscription thread. */
+   private int mailboxCount = 0;
+
+   private final VideoFrameDecoder decoder;
+   private final YUV420Image yuvImage = new YUV420Image();
+
+   /**
+    * @param topic             topic the frames are received on, passed to the frame sink.
+    * @param keyframeRequester called from the decode thread when an H.264 stream needs a keyframe to
+    *                          be decoded again.
+    * @param frameSink         receives the decoded frames, from the decode thread.
+    * @param framePoolSize     size of the pool of the assembler the frames come from, shared by
+    *                          the mailboxes of all the video sources.
+    */
+   public VideoDecodeThread(String name, String topic, KeyframeRequester keyframeRequester, FrameSink frameSink, int framePoolSize)
+   {
+      this.topic = topic;
+      this.frameSink = frameSink;
+      this.framePoolSize = framePoolSize;
+      decoder = new VideoFrameDecoder(keyframeRequester);
+
+      thread = new Thread(this::run, name);
+      thread.setDaemon(true);
+   }
+
+   public void start()
+   {
+      running = true;
+      thread.start();
+   }
+
+   public void stop()
+   {
+      running = false;
+      thread.interrupt();
+   }
+
+   /**
+    * Hands over a frame to be decoded. The frame is released by the decode thread once done with it.
+    * <p>
+    * To be called from a single thread, typically the subscription thread. Never blocks.
+    * </p>
+    */
+   public void submit(VideoFrame frame)
+   {
+      int videoSource = frame.getVideoSource() & 0xFF;
+      FrameMailbox mailbox = mailboxes.get(videoSource);
+      if (mailbox == null)
+      {
+         mailbox = new FrameMailbox(framePoolSize);
+         mailboxes.set(videoSource, mailbox);
+         mailboxCount++;
+
+         // All the video sources share the frame pool of the assembler.
+         for (int i = 0; i < mailboxes.length(); i++)
+         {
+            FrameMailbox sharingMailbox = mailboxes.get(i);
+            if (sharingMailbox != null)
+               sharingMailbox.setSharedBy(mailboxCount);
+         }
+      }
+
+      mailbox.submit(frame);
+      LockSupport.unpark(thread);
+   }
+
+   private void run()
+   {
+      while (running)
+      {
+         boolean hasDecoded = false;
+
+         for (int videoSource = 0; videoSource < mailboxes.length(); videoSource++)
+         {
+            FrameMailbox mailbox = mailboxes.get(videoSource);
+            if (mailbox == null)
+               continue;
+
+            VideoFrame frame;
+            while ((frame = mailbox.poll()) != null)
+            {
+               if (decoder.decode(frame, yuvImage))
+                  frameSink.onFrame(topic, frame, yuvImage);
+               frame.release();
+               hasDecoded = true;
+            }
+         }
+
+         // A frame submitted since the checks above has already unparked this thread, so park returns right away.
+         if (!hasDecoded)
+            LockSupport.park(this);
+      }
+   }
+
+   public VideoFrameDecoder getDecoder()
+   {
+      return decoder;
+   }
+
+   /**
+    * @return the number of JPEG frames released without being decoded because a newer frame of the
+    *         same video source was submitted first.
+    */
+   public long getOverwrittenFrameCount()
+   {
+      long overwrittenFrameCount = 0;
+      for (int videoSource = 0; videoSource < mailboxes.length(); videoSource++)
+      {
+         FrameMailbox mailbox = mailboxes.get(videoSource);
+         if (mailbox != null)
+            overwrittenFrameCount += mailbox.getOverwrittenFrameCount();
+      }
+      return overwrittenFrameCount;
+   }
+
+   /**
+    * @return the number of H.264 frames dropped because the decoder was too far behind.
+    */
+   public long getDroppedH264FrameCount()
+   {
+      long droppedH264FrameCount = 0;
+      for (int videoSource = 0; videoSource < mailboxes.length(); videoSource++)
+      {
+         FrameMailbox mailbox = mailboxes.get(videoSource);
+         if (mailbox != null)
+            droppedH264FrameCount += mailbox.getDroppedH264FrameCount();
+      }
+      return droppedH264FrameCount;
+   }
+
+   public String getStatistics()
+   {
+      return String.format("%s | dropped %d overwritten, %d H.264", decoder.getStatistics(), getOverwrittenFrameCount(), getDroppedH264FrameCount());
+   }
+}
@@ -0,0 +1,187 @@
+package us.ihmc.videoacquisition.receiver;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import controller_msgs.msg.dds.VideoPacket;
+import us.ihmc.codecs.generated.YUVPicture;
+import us.ihmc.videoacquisition.JPEGDecompressor;
+import us.ihmc.videoacquisition.codec.H264Decoder;
+import us.ihmc.videoacquisition.codec.StripJPEGDecoder;
+import us.ihmc.videoacquisition.latency.VideoMetrics;
+import us.ihmc.videoacquisition.latency.VideoMetrics.Stage;
+import us.ihmc.videoacquisition.transport.VideoFrame;
+import us.ihmc.videoacquisition.yuv.YUV420Image;
+
+/**
+ * Decodes JPEG, JPEG strips and H.264 {@link VideoFrame}s into {@link YUV420Image}s.
+ * <p>
+ * Each video source gets its own H.264 decoder. A gap in the sequence IDs, or a decoder waiting for
+ * a keyframe, results in a keyframe request so the stream recovers as soon as possible. After a
+ * gap the decoder conceals the missing references as best it can, unless the link of the video
+ * source is {@link VideoFrame#isLinkDegraded() degraded}: more losses are then to come and the
+ * frames are skipped until the next keyframe rather than shown corrupted. An instance must not be
+ * used by several threads at once.
+ * </p>
+ */
+public class VideoFrameDecoder
+{
+   private final KeyframeRequester keyframeRequester;
+   private final JPEGDecompressor jpegDecompressor = new JPEGDecompressor();
+   private final StripJPEGDecoder stripJPEGDecoder = new StripJPEGDecoder();
+   private final H264Decoder[] h264Decoders = new H264Decoder[256];
+   private final long[] lastSequenceIds = new long[256];
+   private volatile VideoMetrics metrics = null;
+
+   private volatile long decodedFrameCount = 0;
+   private volatile long failedFrameCount = 0;
+   private volatile long totalDecodeTime = 0;
+   private volatile long maxDecodeTime = 0;
+
+   /**
+    * @param keyframeRequester called when an H.264 stream needs a keyframe to be decoded again.
+    */
+   public VideoFrameDecoder(KeyframeRequester keyframeRequester)
+   {
+      this.keyframeRequester = keyframeRequester;
+      Arrays.fill(lastSequenceIds, -1L);
+   }
+
+   /**
+    * @return {@code false} if the frame could not be decoded, e.g. an H.264 frame received while
+    *         waiting for a keyframe.
+    */
+   public boolean decode(VideoFrame frame, YUV420Image yuvImageToPack)
+   {
+      long start = System.nanoTime();
+      boolean decoded;
+
+      if (frame.getCodec() == VideoPacket.CODEC_H264)
+         decoded = decodeH264(frame, yuvImageToPack);
+      else if (frame.getCodec() == VideoPacket.CODEC_JPEG_STRIPS)
+         decoded = stripJPEGDecoder.decode(frame.getData(), 0, frame.getSize(), yuvImageToPack);
+      else
+         decoded = jpegDecompressor.decompressJPEGDataToYUV420Image(frame.getData(), 0, frame.getSize(), yuvImageToPack);
+
+      if (!decoded)
+      {
+         failedFrameCount++;
+         return false;
+      }
+
+      long decodeTime = System.nanoTime() - start;
+      decodedFrameCount++;
+      totalDecodeTime += decodeTime;
+      maxDecodeTime = Math.max(maxDecodeTime, decodeTime);
+      VideoMetrics metrics = this.metrics;
+      if (metrics != null)
+         metrics.record(Stage.DECODE, decodeTime);
+      return true;
+   }
+
+   /**
+    * Skips a frame without decoding it. Skipping an H.264 frame breaks the references of the
+    * following ones, so the stream is then resumed from the next keyframe, which gets requested with
+    * the next decoded frame.
+    */
+   public void skip(VideoFrame frame)
+   {
+      if (frame.getCodec() != VideoPacket.CODEC_H264)
+         return;
+
+      H264Decoder decoder = h264Decoders[frame.getVideoSource() & 0xFF];
+      if (decoder != null && !decoder.isWaitingForKeyframe())
+         decoder.reset();
+   }
+
+   private boolean decodeH264(VideoFrame frame, YUV420Image yuvImageToPack)
+   {
+      int videoSource = frame.getVideoSource() & 0xFF;
+      H264Decoder decoder = h264Decoders[videoSource];
+      if (decoder == null)
+      {
+         decoder = new H264Decoder();
+         h264Decoders[videoSource] = decoder;
+      }
+
+      if (frame.isStreamRestart())
+      { // The new stream does not refer to the frames of the previous one.
+         lastSequenceIds[videoSource] = -1L;
+         if (!decoder.isWaitingForKeyframe())
+            decoder.reset();
+      }
+
+      long lastSequenceId = lastSequenceIds[videoSource];
+      lastSequenceIds[videoSource] = frame.getSequenceId();
+      // A missing frame breaks the references of the following ones until the next keyframe.
+      if (lastSequenceId >= 0 && frame.getSequenceId() != ((lastSequenceId + 1) & 0xFFFFFFFFL))
+      {
+         if (frame.isLinkDegraded() && !decoder.isWaitingForKeyframe())
+            decoder.reset(); // The keyframe gets requested below.
+         else
+            keyframeRequester.requestKeyframe(frame.getVideoSource());
+      }
+
+      try
+      {
+         YUVPicture picture = decoder.decode(frame.getData(), 0, frame.getSize());
+
+         if (decoder.isWaitingForKeyframe())
+            keyframeRequester.requestKeyframe(frame.getVideoSource());
+
+         if (picture == null)
+            return false;
+
+         yuvImageToPack.set(picture);
+         picture.delete();
+         return true;
+      }
+      catch (IOException e)
+      {
+         e.printStackTrace();
+         decoder.reset();
+         keyframeRequester.requestKeyframe(frame.getVideoSource());
+         return false;
+      }
+   }
+
+   /**
+    * @param metrics records the time to decode each frame, or {@code null} to not record it.
+    */
+   public void setMetrics(VideoMetrics metrics)
+   {
+      this.metrics = metrics;
+   }
+
+   public long getDecodedFrameCount()
+   {
+      return decodedFrameCount;
+   }
+
+   public long getFailedFrameCount()
+   {
+      return failedFrameCount;
+   }
+
+   /**
+    * @return the average decode time in milliseconds.
+    */
+   public double getAverageDecodeTime()
+   {
+      long decodedFrameCount = this.decodedFrameCount;
+      return decodedFrameCount == 0 ? 0.0 : totalDecodeTime / 1.0e6 / decodedFrameCount;
+   }
+
+   /**
+    * @return the longest decode time in milliseconds.
+    */
+   public double getMaxDecodeTime()
+   {
+      return maxDecodeTime / 1.0e6;
+   }
+
+   public String getStatistics()
+   {
+      return String.format("decoded %d (%d failed), avg %.2f ms, max %.2f ms", decodedFrameCount, failedFrameCount, getAverageDecodeTime(), getMaxDecodeTime());
+   }
+}
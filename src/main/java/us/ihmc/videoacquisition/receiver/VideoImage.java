@@ -0,0 +1,77 @@
+package us.ihmc.videoacquisition.receiver;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import us.ihmc.videoacquisition.yuv.YUV420Image;
+import us.ihmc.videoacquisition.yuv.YUV420ToARGBConverter;
+
+/**
+ * JavaFX image backed by a direct ARGB buffer that the decoded frames are written into, so that
+ * displaying a frame does not allocate a new image.
+ * <p>
+ * The pixels are written from the decode thread while the image is not displayed, and
+ * {@link #markDirty()} is then called from the JavaFX thread before displaying it, see
+ * {@link JavaFXFrameSink}.
+ * </p>
+ */
+class VideoImage
+{
+   private final int width;
+   private final int height;
+   private final IntBuffer pixels;
+   private final PixelBuffer<IntBuffer> pixelBuffer;
+   private final WritableImage image;
+   /** Identifies the frame held by the image, for measuring the display latency. */
+   private long clockId, captureTime;
+
+   VideoImage(int width, int height)
+   {
+      this.width = width;
+      this.height = height;
+
+      pixels = ByteBuffer.allocateDirect(4 * width * height).order(ByteOrder.nativeOrder()).asIntBuffer();
+      pixelBuffer = new PixelBuffer<>(width, height, pixels, PixelFormat.getIntArgbPreInstance());
+      image = new WritableImage(pixelBuffer);
+   }
+
+   boolean hasSize(int width, int height)
+   {
+      return this.width == width && this.height == height;
+   }
+
+   void set(YUV420Image yuvImage, YUV420ToARGBConverter converter, long clockId, long captureTime)
+   {
+      converter.convert(yuvImage, pixels, width);
+      this.clockId = clockId;
+      this.captureTime = captureTime;
+   }
+
+   /**
+    * Lets JavaFX know the pixels have changed. Each frame replaces the whole image, so the dirty
+    * region is the whole buffer.
+    */
+   void markDirty()
+   {
+      pixelBuffer.updateBuffer(buffer -> null);
+   }
+
+   long getClockId()
+   {
+      return clockId;
+   }
+
+   long getCaptureTime()
+   {
+      return captureTime;
+   }
+
+   WritableImage getImage()
+   {
+      return image;
+   }
+}
@@ -0,0 +1,216 @@
+package us.ihmc.videoacquisition.receiver;
+
+import java.util.function.Consumer;
+
+import controller_msgs.msg.dds.VideoPacket;
+import us.ihmc.pubsub.common.SampleInfo;
+import us.ihmc.ros2.RealtimeROS2Node;
+import us.ihmc.videoacquisition.latency.LatencyMonitor;
+import us.ihmc.videoacquisition.latency.VideoMetrics;
+import us.ihmc.videoacquisition.latency.VideoMetrics.Stage;
+import us.ihmc.videoacquisition.recording.VideoBlackBox;
+import us.ihmc.videoacquisition.transport.SequenceTracker;
+import us.ihmc.videoacquisition.transport.VideoFrame;
+import us.ihmc.videoacquisition.transport.VideoFrameAssembler;
+
+/**
+ * Receives the video packets of one topic, puts the frames back together and passes them to a
+ * {@link FrameSink}, decoded on a {@link VideoDecodeThread} or still compressed.
+ * <p>
+ * The subscription deserializes every message into one recycled packet: the assembler copies each
+ * fragment out of the packet before returning, so it can be reused for the next message. When not
+ * decoding, the sink is called from the subscription thread. The frames can also be handed over
+ * as is to a consumer taking care of decoding them, such as the {@link MosaicTile}s of a mosaic.
+ * </p>
+ * <p>
+ * An alarm is printed when the link of a video source degrades, and again when it recovers, see
+ * {@link SequenceTracker}.
+ * </p>
+ */
+public class VideoTopicReceiver
+{
+   private final String topic;
+   private final FrameSink frameSink;
+   private final VideoDecodeThread decodeThread;
+   private final Consumer<VideoFrame> frameConsumer;
+   private final VideoFrameAssembler frameAssembler;
+   private volatile LatencyMonitor latencyMonitor = null;
+   private volatile VideoBlackBox blackBox = null;
+   private volatile VideoMetrics metrics = null;
+   private final VideoPacket receivedPacket = new VideoPacket();
+   private final SampleInfo sampleInfo = new SampleInfo();
+
+   /**
+    * @param decode            whether to decode the frames before passing them to the sink.
+    * @param keyframeRequester used to recover the H.264 streams when decoding.
+    */
+   public VideoTopicReceiver(RealtimeROS2Node ros2Node, String topic, boolean decode, KeyframeRequester keyframeRequester, FrameSink frameSink)
+   {
+      this.topic = topic;
+      this.frameSink = frameSink;
+
+      if (decode)
+      {
+         decodeThread = new VideoDecodeThread("video-decoder" + topic.replace('/', '-'), topic, keyframeRequester, frameSink, VideoFrameAssembler.DEFAULT_POOL_SIZE);
+         frameConsumer = decodeThread::submit;
+      }
+      else
+      {
+         decodeThread = null;
+         frameConsumer = this::frameReceived;
+      }
+      frameAssembler = new VideoFrameAssembler(this::frameCompleted);
+      frameAssembler.setLinkQualityListener(this::linkQualityChanged);
+
+      createSubscription(ros2Node);
+   }
+
+   /**
+    * @param frameConsumer receives each completed frame on the subscription thread, and has to
+    *                      {@link VideoFrame#release() release} it when done with it.
+    * @param framePoolSize maximum number of frames being assembled or held by the consumer.
+    */
+   public VideoTopicReceiver(RealtimeROS2Node ros2Node, String topic, Consumer<VideoFrame> frameConsumer, int framePoolSize)
+   {
+      this.topic = topic;
+      frameSink = null;
+      decodeThread = null;
+      this.frameConsumer = frameConsumer;
+      frameAssembler = new VideoFrameAssembler(this::frameCompleted, VideoFrameAssembler.DEFAULT_TIMEOUT_MILLIS, framePoolSize);
+      frameAssembler.setLinkQualityListener(this::linkQualityChanged);
+
+      createSubscription(ros2Node);
+   }
+
+   private void createSubscription(RealtimeROS2Node ros2Node)
+   {
+      ros2Node.createCallbackSubscription(VideoPacket.getPubSubType().get(), topic, s ->
+      {
+         VideoMetrics metrics = this.metrics;
+         long receiveStart = System.nanoTime();
+
+         while (s.takeNextData(receivedPacket, sampleInfo))
+         {
+            VideoBlackBox blackBox = this.blackBox;
+            if (blackBox != null)
+               blackBox.record(receivedPacket);
+            frameAssembler.handle(receivedPacket);
+
+            if (metrics != null)
+            {
+               long receiveEnd = System.nanoTime();
+               metrics.record(Stage.RECEIVE, receiveEnd - receiveStart);
+               receiveStart = receiveEnd;
+            }
+         }
+      });
+   }
+
+   private void frameCompleted(VideoFrame frame)
+   {
+      LatencyMonitor latencyMonitor = this.latencyMonitor;
+      if (latencyMonitor != null)
+         latencyMonitor.frameReceived(frame);
+      VideoMetrics metrics = this.metrics;
+      if (metrics != null)
+         metrics.frameCompleted(frame.getSize());
+      frameConsumer.accept(frame);
+   }
+
+   private void linkQualityChanged(SequenceTracker tracker)
+   {
+      String alarm = String.format("%s: link of video source %d %s, %.1f%% of the last %d frames lost, longest burst %d frames",
+                                   topic,
+                                   tracker.getVideoSource() & 0xFF,
+                                   tracker.isLinkDegraded() ? "degraded" : "recovered",
+                                   100.0 * tracker.getWindowLossRate(),
+                                   SequenceTracker.WINDOW_SIZE,
+                                   tracker.getMaxBurstLength());
+
+      if (tracker.isLinkDegraded())
+         System.err.println(alarm);
+      else
+         System.out.println(alarm);
+   }
+
+   private void frameReceived(VideoFrame frame)
+   {
+      frameSink.onFrame(topic, frame, null);
+      frame.release();
+   }
+
+   /**
+    * To be called before the node starts spinning.
+    */
+   public void start()
+   {
+      if (decodeThread != null)
+         decodeThread.start();
+   }
+
+   public void stop()
+   {
+      if (decodeThread != null)
+         decodeThread.stop();
+   }
+
+   /**
+    * @param latencyMonitor records the capture to receive latency of every completed frame, or
+    *                       {@code null} to not measure it.
+    */
+   public void setLatencyMonitor(LatencyMonitor latencyMonitor)
+   {
+      this.latencyMonitor = latencyMonitor;
+   }
+
+   /**
+    * @param blackBox keeps the last received packets, or {@code null} to not keep them.
+    */
+   public void setBlackBox(VideoBlackBox blackBox)
+   {
+      this.blackBox = blackBox;
+   }
+
+   /**
+    * Records the time to receive each packet and, when decoding, to decode each frame, and counts
+    * the frames received and dropped. To be called once, before the node starts spinning.
+    */
+   public void setMetrics(VideoMetrics metrics)
+   {
+      metrics.addDroppedFrameCounter(frameAssembler::getDiscardedFrameCount);
+      if (decodeThread != null)
+      {
+         decodeThread.getDecoder().setMetrics(metrics);
+         metrics.addDroppedFrameCounter(() -> decodeThread.getOverwrittenFrameCount() + decodeThread.getDroppedH264FrameCount());
+      }
+      this.metrics = metrics;
+   }
+
+   public String getTopic()
+   {
+      return topic;
+   }
+
+   public VideoFrameAssembler getFrameAssembler()
+   {
+      return frameAssembler;
+   }
+
+   /**
+    * @return the decode thread, or {@code null} when not decoding.
+    */
+   public VideoDecodeThread getDecodeThread()
+   {
+      return decodeThread;
+   }
+
+   public String getStatistics()
+   {
+      String statistics = topic + ": " + frameAssembler.getStatistics();
+      for (SequenceTracker sequenceTracker : frameAssembler.getSequenceTrackers())
+         statistics += "\n" + topic + ": " + sequenceTracker.getStatistics();
+      if (decodeThread != null)
+         statistics += "\n" + topic + ": " + decodeThread.getStatistics();
+      return statistics;
+   }
+}
@@ -0,0 +1,286 @@
+package us.ihmc.videoacquisition.recording;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Writes JPEG images as they are into a motion JPEG AVI file, readable by FFmpeg, VLC and most
+ * players.
+ * <p>
+ * The file is a plain AVI 1.0 file with a single video stream at a constant frame rate, so it has to
+ * stay under {@link #MAX_FILE_SIZE}: longer videos are split into several files rather than
+ * written in the OpenDML extension. Gaps in the stream are filled with empty chunks, which players
+ * show as a repetition of the previous frame. The index is streamed to a temporary file and
+ * appended on closing, so writing takes the same memory however long the video.
+ * </p>
+ */
+public class MJPEGAVIWriter
+{
+   /** Kept well under the 4 GB of a RIFF file, as some players only read up to 2 GB. */
+   public static final long MAX_FILE_SIZE = 2000L << 20;
+
+   private static final int BUFFER_SIZE = 1 << 20;
+   private static final int AVIF_HASINDEX = 0x10;
+   private static final int AVIIF_KEYFRAME = 0x10;
+
+   // Offsets of the fields patched on closing, see writeHeaders().
+   private static final int RIFF_SIZE_OFFSET = 4;
+   private static final int TOTAL_FRAMES_OFFSET = 48;
+   private static final int AVIH_BUFFER_SIZE_OFFSET = 60;
+   private static final int STREAM_LENGTH_OFFSET = 140;
+   private static final int STRH_BUFFER_SIZE_OFFSET = 144;
+   private static final int MOVI_SIZE_OFFSET = 216;
+   private static final int MOVI_OFFSET = 220;
+   private static final int HEADER_SIZE = 224;
+
+   private final File file;
+   private final File indexFile;
+   private final OutputStream output;
+   private final OutputStream indexOutput;
+   private final ByteBuffer buffer = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+
+   private long maxFileSize = MAX_FILE_SIZE;
+   private long size = HEADER_SIZE;
+   private int frameCount = 0;
+   private int maxChunkSize = 0;
+
+   /**
+    * @param frameRate the frame rate of the video, the frames are shown at a constant rate.
+    * @param width     the width of the JPEG images.
+    * @param height    the height of the JPEG images.
+    */
+   public MJPEGAVIWriter(File file, double frameRate, int width, int height) throws IOException
+   {
+      this.file = file;
+      indexFile = new File(file.getPath() + ".idx1");
+      output = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+      indexOutput = new BufferedOutputStream(new FileOutputStream(indexFile));
+      writeHeaders(frameRate, width, height);
+   }
+
+   private void writeHeaders(double frameRate, int width, int height) throws IOException
+   {
+      int rate = (int) Math.round(frameRate * 1000.0);
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+      putFourCC(header, "RIFF");
+      header.putInt(0); // Patched on closing
+      putFourCC(header, "AVI ");
+
+      putFourCC(header, "LIST");
+      header.putInt(192);
+      putFourCC(header, "hdrl");
+
+      putFourCC(header, "avih");
+      header.putInt(56);
+      header.putInt((int) Math.round(1.0e6 / frameRate)); // dwMicroSecPerFrame
+      header.putInt(0); // dwMaxBytesPerSec
+      header.putInt(0); // dwPaddingGranularity
+      header.putInt(AVIF_HASINDEX);
+      header.putInt(0); // dwTotalFrames, patched on closing
+      header.putInt(0); // dwInitialFrames
+      header.putInt(1); // dwStreams
+      header.putInt(0); // dwSuggestedBufferSize, patched on closing
+      header.putInt(width);
+      header.putInt(height);
+      header.position(header.position() + 16); // dwReserved
+
+      putFourCC(header, "LIST");
+      header.putInt(116);
+      putFourCC(header, "strl");
+
+      putFourCC(header, "strh");
+      header.putInt(56);
+      putFourCC(header, "vids");
+      putFourCC(header, "MJPG");
+      header.putInt(0); // dwFlags
+      header.putShort((short) 0); // wPriority
+      header.putShort((short) 0); // wLanguage
+      header.putInt(0); // dwInitialFrames
+      header.putInt(1000); // dwScale
+      header.putInt(rate); // dwRate
+      header.putInt(0); // dwStart
+      header.putInt(0); // dwLength, patched on closing
+      header.putInt(0); // dwSuggestedBufferSize, patched on closing
+      header.putInt(-1); // dwQuality
+      header.putInt(0); // dwSampleSize
+      header.putShort((short) 0);
+      header.putShort((short) 0);
+      header.putShort((short) width);
+      header.putShort((short) height);
+
+      putFourCC(header, "strf");
+      header.putInt(40);
+      header.putInt(40); // biSize
+      header.putInt(width);
+      header.putInt(height);
+      header.putShort((short) 1); // biPlanes
+      header.putShort((short) 24); // biBitCount
+      putFourCC(header, "MJPG");
+      header.putInt(width * height * 3); // biSizeImage
+      header.putInt(0);
+      header.putInt(0);
+      header.putInt(0);
+      header.putInt(0);
+
+      putFourCC(header, "LIST");
+      header.putInt(0); // Patched on closing
+      putFourCC(header, "movi");
+
+      output.write(header.array(), 0, HEADER_SIZE);
+   }
+
+   private static void putFourCC(ByteBuffer buffer, String fourCC)
+   {
+      buffer.put(fourCC.getBytes(StandardCharsets.US_ASCII));
+   }
+
+   /**
+    * Writes the next frame of the video.
+    */
+   public void writeFrame(byte[] jpeg, int offset, int length) throws IOException
+   {
+      writeChunk(jpeg, offset, length);
+   }
+
+   /**
+    * Shows the previous frame again, when the next one is missing.
+    */
+   public void repeatFrame() throws IOException
+   {
+      writeChunk(null, 0, 0);
+   }
+
+   private void writeChunk(byte[] data, int offset, int length) throws IOException
+   {
+      buffer.clear();
+      putFourCC(buffer, "00dc");
+      buffer.putInt(length);
+      output.write(buffer.array(), 0, 8);
+
+      buffer.clear();
+      putFourCC(buffer, "00dc");
+      buffer.putInt(AVIIF_KEYFRAME);
+      buffer.putInt((int) (size - MOVI_OFFSET));
+      buffer.putInt(length);
+      indexOutput.write(buffer.array(), 0, 16);
+
+      if (length > 0)
+         output.write(data, offset, length);
+      if ((length & 1) != 0)
+         output.write(0);
+
+      size += 8 + length + (length & 1);
+      frameCount++;
+      maxChunkSize = Math.max(maxChunkSize, length);
+   }
+
+   /**
+    * @return whether a frame of {@code length} bytes, after {@code repeatCount} repeated frames,
+    *         still fits in the file along with the index.
+    */
+   public boolean hasRoom(int length, int repeatCount)
+   {
+      long chunkCount = frameCount + repeatCount + 1;
+      return size + 8L * (repeatCount + 1) + length + 1 + 8 + 16 * chunkCount <= maxFileSize;
+   }
+
+   /**
+    * @param maxFileSize the size past which {@link #hasRoom(int, int)} is {@code false}, at most
+    *                    {@link #MAX_FILE_SIZE}.
+    */
+   public void setMaxFileSize(long maxFileSize)
+   {
+      this.maxFileSize = Math.min(maxFileSize, MAX_FILE_SIZE);
+   }
+
+   public File getFile()
+   {
+      return file;
+   }
+
+   public int getFrameCount()
+   {
+      return frameCount;
+   }
+
+   /**
+    * Appends the index and completes the headers.
+    */
+   public void close() throws IOException
+   {
+      long moviEnd = size;
+
+      indexOutput.close();
+      buffer.clear();
+      putFourCC(buffer, "idx1");
+      buffer.putInt(16 * frameCount);
+      output.write(buffer.array(), 0, 8);
+      Files.copy(indexFile.toPath(), output);
+      output.close();
+      indexFile.delete();
+
+      try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw"))
+      {
+         long fileSize = randomAccessFile.length();
+         patch(randomAccessFile, RIFF_SIZE_OFFSET, (int) (fileSize - 8));
+         patch(randomAccessFile, TOTAL_FRAMES_OFFSET, frameCount);
+         patch(randomAccessFile, AVIH_BUFFER_SIZE_OFFSET, maxChunkSize + 8);
+         patch(randomAccessFile, STREAM_LENGTH_OFFSET, frameCount);
+         patch(randomAccessFile, STRH_BUFFER_SIZE_OFFSET, maxChunkSize + 8);
+         patch(randomAccessFile, MOVI_SIZE_OFFSET, (int) (moviEnd - MOVI_OFFSET));
+      }
+   }
+
+   private static void patch(RandomAccessFile file, long offset, int value) throws IOException
+   {
+      file.seek(offset);
+      file.writeInt(Integer.reverseBytes(value));
+   }
+
+   /**
+    * @return the width and height of a baseline or progressive JPEG image, read from its frame
+    *         header, or {@code null} if there is none.
+    */
+   public static int[] readJPEGSize(byte[] jpeg, int offset, int length)
+   {
+      int end = offset + length;
+      int position = offset + 2; // Skip SOI
+
+      while (position + 9 <= end)
+      {
+         if (jpeg[position] != (byte) 0xFF)
+            return null;
+
+         int marker = jpeg[position + 1] & 0xFF;
+         if (marker == 0xFF)
+         { // Fill byte
+            position++;
+            continue;
+         }
+
+         int segmentLength = ((jpeg[position + 2] & 0xFF) << 8) | (jpeg[position + 3] & 0xFF);
+         boolean isFrameHeader = marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+         if (isFrameHeader)
+         {
+            int height = ((jpeg[position + 5] & 0xFF) << 8) | (jpeg[position + 6] & 0xFF);
+            int width = ((jpeg[position + 7] & 0xFF) << 8) | (jpeg[position + 8] & 0xFF);
+            return new int[] {width, height};
+         }
+         if (marker == 0xDA)
+            return null; // Start of scan without a frame header
+
+         position += 2 + segmentLength;
+      }
+
+      return null;
+   }
+}
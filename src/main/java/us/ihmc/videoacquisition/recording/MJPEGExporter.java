@@ -0,0 +1,251 @@
+package us.ihmc.videoacquisition.recording;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import controller_msgs.msg.dds.VideoPacket;
+import us.ihmc.videoacquisition.transport.VideoFrame;
+import us.ihmc.videoacquisition.transport.VideoFrameAssembler;
+
+/**
+ * Exports the JPEG frames of video logs to motion JPEG AVI files, one series of files per log and
+ * video source, without decoding them.
+ * <p>
+ * The packets are streamed out of the log and put back together into frames by a
+ * {@link VideoFrameAssembler}, whose JPEG bytes are copied as they are into a
+ * {@link MJPEGAVIWriter}. Exporting is bound by reading and writing the files, and takes the same
+ * memory however long the logs. H.264 and JPEG strip frames cannot be passed through and are
+ * skipped.
+ * </p>
+ * <p>
+ * The frames are placed in the constant frame rate video on their capture time, or their timestamp
+ * when the publisher did not stamp the capture time: missing frames are filled with repetitions of
+ * the previous one, and frames coming too early for their slot are dropped. A file is split when
+ * it is full or when the resolution changes.
+ * </p>
+ */
+public class MJPEGExporter
+{
+   public static final double DEFAULT_FRAME_RATE = 30.0;
+   /** A jump in the frame times larger than this is taken as a restart of the publisher. */
+   private static final double MAX_GAP_SECONDS = 60.0;
+
+   private final File outputDirectory;
+   private double frameRate = DEFAULT_FRAME_RATE;
+   private long maxFileSize = MJPEGAVIWriter.MAX_FILE_SIZE;
+
+   private final VideoPacket packet = new VideoPacket();
+   private final SourceExport[] sourceExports = new SourceExport[256];
+   private final List<File> exportedFiles = new ArrayList<>();
+   private String logName;
+   private IOException exportException = null;
+
+   private long exportedFrameCount = 0;
+   private long repeatedFrameCount = 0;
+   private long droppedFrameCount = 0;
+   private long skippedFrameCount = 0;
+   private long incompleteFrameCount = 0;
+
+   public MJPEGExporter(File outputDirectory) throws IOException
+   {
+      if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs())
+         throw new IOException("Could not create " + outputDirectory);
+
+      this.outputDirectory = outputDirectory;
+   }
+
+   /**
+    * @param frameRate the frame rate of the exported videos, ideally the one of the cameras.
+    */
+   public void setFrameRate(double frameRate)
+   {
+      this.frameRate = frameRate;
+   }
+
+   public void setMaxFileSize(long maxFileSize)
+   {
+      this.maxFileSize = maxFileSize;
+   }
+
+   /**
+    * Exports all the packets of a log, to files named after its directory.
+    *
+    * @return the files written.
+    */
+   public List<File> export(VideoLogReader reader) throws IOException
+   {
+      logName = reader.getDirectory().getName();
+      exportedFiles.clear();
+      exportException = null;
+
+      VideoFrameAssembler assembler = new VideoFrameAssembler(this::frameCompleted);
+      reader.rewind();
+
+      try
+      {
+         while (reader.hasNext() && exportException == null)
+         {
+            long recordTime = reader.read(packet);
+            assembler.handle(packet, recordTime);
+         }
+      }
+      finally
+      {
+         for (int i = 0; i < sourceExports.length; i++)
+         {
+            if (sourceExports[i] != null)
+            {
+               sourceExports[i].close();
+               sourceExports[i] = null;
+            }
+         }
+
+         incompleteFrameCount += assembler.getDiscardedFrameCount();
+      }
+
+      if (exportException != null)
+         throw exportException;
+
+      return new ArrayList<>(exportedFiles);
+   }
+
+   private void frameCompleted(VideoFrame frame)
+   {
+      try
+      {
+         if (exportException == null)
+            exportFrame(frame);
+      }
+      catch (IOException e)
+      {
+         exportException = e;
+      }
+      finally
+      {
+         frame.release();
+      }
+   }
+
+   private void exportFrame(VideoFrame frame) throws IOException
+   {
+      if (frame.getCodec() != VideoPacket.CODEC_JPEG)
+      {
+         skippedFrameCount++;
+         return;
+      }
+
+      int[] size = MJPEGAVIWriter.readJPEGSize(frame.getData(), 0, frame.getSize());
+      if (size == null)
+      {
+         skippedFrameCount++;
+         return;
+      }
+
+      int videoSource = frame.getVideoSource() & 0xFF;
+      SourceExport sourceExport = sourceExports[videoSource];
+      if (sourceExport == null)
+      {
+         sourceExport = new SourceExport(videoSource);
+         sourceExports[videoSource] = sourceExport;
+      }
+
+      long time = frame.getClockId() != 0 ? frame.getCaptureTime() : frame.getTimestamp();
+      sourceExport.write(frame, time, size[0], size[1]);
+   }
+
+   public String getStatistics()
+   {
+      return String.format("Export: %d frames, %d repeated, %d dropped, %d skipped, %d incomplete",
+                           exportedFrameCount,
+                           repeatedFrameCount,
+                           droppedFrameCount,
+                           skippedFrameCount,
+                           incompleteFrameCount);
+   }
+
+   /**
+    * The files of one video source.
+    */
+   private class SourceExport
+   {
+      private final int videoSource;
+      private MJPEGAVIWriter writer = null;
+      private int partIndex = 0;
+      private int width, height;
+
+      /** Time of slot 0, moved when the times jump. */
+      private long anchorTime;
+      private long nextSlot = 0;
+
+      SourceExport(int videoSource)
+      {
+         this.videoSource = videoSource;
+      }
+
+      void write(VideoFrame frame, long time, int width, int height) throws IOException
+      {
+         if (writer == null)
+            anchorTime = time;
+
+         long slot = Math.round((time - anchorTime) * 1.0e-9 * frameRate);
+         long gap = slot - nextSlot;
+
+         if (Math.abs(gap) > MAX_GAP_SECONDS * frameRate)
+         {
+            anchorTime = time - (long) (nextSlot * 1.0e9 / frameRate);
+            slot = nextSlot;
+            gap = 0;
+         }
+
+         if (gap < 0)
+         {
+            droppedFrameCount++;
+            return;
+         }
+
+         if (writer == null || width != this.width || height != this.height || !writer.hasRoom(frame.getSize(), (int) gap))
+         {
+            openNextFile(width, height);
+            gap = 0;
+         }
+
+         for (long i = 0; i < gap; i++)
+            writer.repeatFrame();
+         writer.writeFrame(frame.getData(), 0, frame.getSize());
+
+         repeatedFrameCount += gap;
+         exportedFrameCount++;
+         nextSlot = slot + 1;
+      }
+
+      private void openNextFile(int width, int height) throws IOException
+      {
+         close();
+
+         File file = new File(outputDirectory, String.format("%s-%d-%03d.avi", logName, videoSource, partIndex++));
+         writer = new MJPEGAVIWriter(file, frameRate, width, height);
+         writer.setMaxFileSize(maxFileSize);
+         this.width = width;
+         this.height = height;
+         exportedFiles.add(file);
+      }
+
+      void close()
+      {
+         if (writer == null)
+            return;
+
+         try
+         {
+            writer.close();
+         }
+         catch (IOException e)
+         {
+            e.printStackTrace();
+         }
+         writer = null;
+      }
+   }
+}
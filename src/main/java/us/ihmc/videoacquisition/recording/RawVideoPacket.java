@@ -0,0 +1,108 @@
+package us.ihmc.videoacquisition.recording;
+
+import java.nio.ByteBuffer;
+
+import controller_msgs.msg.dds.VideoPacketPubSubType;
+
+/**
+ * A {@link controller_msgs.msg.dds.VideoPacket} kept as serialized on the wire, in CDR, so that it
+ * can be recorded and published again without being deserialized, see
+ * {@link RawVideoPacketPubSubType}.
+ * <p>
+ * The fields every video packet starts with, the sequence ID, the video source and the timestamp,
+ * are at fixed offsets and can be read without deserializing the rest.
+ * </p>
+ */
+public class RawVideoPacket
+{
+   /** CDR encapsulations, telling the byte order of the serialized data. */
+   public static final short CDR_BE = 0x0000;
+   public static final short CDR_LE = 0x0001;
+
+   private static final int SEQUENCE_ID_OFFSET = 0;
+   private static final int VIDEO_SOURCE_OFFSET = 4;
+   private static final int TIMESTAMP_OFFSET = 8;
+   private static final int MIN_LENGTH = TIMESTAMP_OFFSET + 8;
+
+   private final byte[] data = new byte[VideoPacketPubSubType.getMaxCdrSerializedSize()];
+   private final ByteBuffer buffer = ByteBuffer.wrap(data);
+   private int length = 0;
+   private short encapsulation = CDR_LE;
+
+   /**
+    * Copies {@code length} serialized bytes from the position of {@code source}, the position of
+    * {@code source} is advanced past them.
+    */
+   public void set(ByteBuffer source, int length, short encapsulation)
+   {
+      source.get(data, 0, length);
+      this.length = length;
+      this.encapsulation = encapsulation;
+   }
+
+   public void set(RawVideoPacket other)
+   {
+      System.arraycopy(other.data, 0, data, 0, other.length);
+      length = other.length;
+      encapsulation = other.encapsulation;
+   }
+
+   /**
+    * @return whether the packet is long enough to hold the fixed fields.
+    */
+   public boolean isValid()
+   {
+      return length >= MIN_LENGTH;
+   }
+
+   public long getSequenceId()
+   {
+      return getInt(SEQUENCE_ID_OFFSET) & 0xFFFFFFFFL;
+   }
+
+   /**
+    * Rewrites the sequence ID in the serialized packet.
+    */
+   public void setSequenceId(long sequenceId)
+   {
+      int value = (int) sequenceId;
+      buffer.putInt(SEQUENCE_ID_OFFSET, encapsulation == CDR_LE ? Integer.reverseBytes(value) : value);
+   }
+
+   public byte getVideoSource()
+   {
+      return data[VIDEO_SOURCE_OFFSET];
+   }
+
+   public long getTimestamp()
+   {
+      if (encapsulation == CDR_LE)
+         return (getInt(TIMESTAMP_OFFSET) & 0xFFFFFFFFL) | ((long) getInt(TIMESTAMP_OFFSET + 4) << 32);
+      else
+         return ((long) getInt(TIMESTAMP_OFFSET) << 32) | (getInt(TIMESTAMP_OFFSET + 4) & 0xFFFFFFFFL);
+   }
+
+   private int getInt(int offset)
+   {
+      int value = buffer.getInt(offset);
+      return encapsulation == CDR_LE ? Integer.reverseBytes(value) : value;
+   }
+
+   /**
+    * @return the buffer holding the serialized packet in its first {@link #getLength()} bytes.
+    */
+   public byte[] getData()
+   {
+      return data;
+   }
+
+   public int getLength()
+   {
+      return length;
+   }
+
+   public short getEncapsulation()
+   {
+      return encapsulation;
+   }
+}
@@ -0,0 +1,80 @@
+package us.ihmc.videoacquisition.recording;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import controller_msgs.msg.dds.VideoPacketPubSubType;
+import us.ihmc.idl.InterchangeSerializer;
+import us.ihmc.pubsub.TopicDataType;
+import us.ihmc.pubsub.common.SerializedPayload;
+
+/**
+ * Topic data type exchanging {@link controller_msgs.msg.dds.VideoPacket}s as is, in their
+ * serialized form: receiving a packet only copies its bytes out of the payload, and publishing one
+ * only copies them back in.
+ * <p>
+ * The type has the name of {@link VideoPacketPubSubType}, so it matches the publishers and
+ * subscribers of video topics using the regular type.
+ * </p>
+ */
+public class RawVideoPacketPubSubType implements TopicDataType<RawVideoPacket>
+{
+   @Override
+   public void serialize(RawVideoPacket data, SerializedPayload serializedPayload) throws IOException
+   {
+      ByteBuffer payload = serializedPayload.getData();
+      payload.clear();
+      payload.put(data.getData(), 0, data.getLength());
+      payload.flip();
+      serializedPayload.setLength(data.getLength());
+      serializedPayload.setEncapsulation(data.getEncapsulation());
+   }
+
+   @Override
+   public void deserialize(SerializedPayload serializedPayload, RawVideoPacket data) throws IOException
+   {
+      ByteBuffer payload = serializedPayload.getData();
+      int position = payload.position();
+      int limit = payload.limit();
+      payload.clear();
+      data.set(payload, serializedPayload.getLength(), serializedPayload.getEncapsulation());
+      payload.limit(limit);
+      payload.position(position);
+   }
+
+   @Override
+   public void serialize(RawVideoPacket data, InterchangeSerializer serializer)
+   {
+      throw new UnsupportedOperationException("Raw packets are only exchanged in CDR");
+   }
+
+   @Override
+   public void deserialize(InterchangeSerializer serializer, RawVideoPacket data)
+   {
+      throw new UnsupportedOperationException("Raw packets are only exchanged in CDR");
+   }
+
+   @Override
+   public RawVideoPacket createData()
+   {
+      return new RawVideoPacket();
+   }
+
+   @Override
+   public int getTypeSize()
+   {
+      return new VideoPacketPubSubType().getTypeSize();
+   }
+
+   @Override
+   public String getName()
+   {
+      return VideoPacketPubSubType.name;
+   }
+
+   @Override
+   public RawVideoPacketPubSubType newInstance()
+   {
+      return new RawVideoPacketPubSubType();
+   }
+}
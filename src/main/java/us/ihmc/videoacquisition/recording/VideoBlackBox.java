@@ -0,0 +1,414 @@
+package us.ihmc.videoacquisition.recording;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import controller_msgs.msg.dds.VideoBlackBoxTriggerMessage;
+import controller_msgs.msg.dds.VideoPacket;
+import controller_msgs.msg.dds.VideoPacketPubSubType;
+import us.ihmc.commons.thread.ThreadTools;
+import us.ihmc.pubsub.common.SerializedPayload;
+import us.ihmc.videoacquisition.latency.VideoClock;
+
+/**
+ * Keeps the last seconds of video of a topic in memory, to save them as a video log when something
+ * goes wrong, e.g. when the robot falls, without recording everything.
+ * <p>
+ * The packets of each video source are kept serialized, in a ring of records laid out as in a
+ * {@link VideoLogFormat} segment, allocated off-heap when the first packet of the video source is
+ * recorded. Once full, the oldest packets are overwritten, so the footprint is fixed: two rings of
+ * the capacity per video source, one being written to while the other is saved.
+ * </p>
+ * <p>
+ * Recording a packet serializes it into a reused payload and copies it into the ring, without
+ * allocating nor waiting. A dump swaps the rings of each video source and writes the one holding
+ * the past packets to a {@link VideoLogWriter} on a background thread. The packets of a video source
+ * have to be recorded from a single thread.
+ * </p>
+ */
+public class VideoBlackBox
+{
+   public static final double DEFAULT_DURATION = 30.0;
+   /** About a minute of 720p JPEG video at 30 frames per second. */
+   public static final int DEFAULT_CAPACITY_PER_SOURCE = 64 << 20;
+
+   private final String topic;
+   private final File dumpDirectory;
+   private final double duration;
+   private final int capacityPerSource;
+   private final AtomicReferenceArray<SourceBuffer> sourceBuffers = new AtomicReferenceArray<>(256);
+   private final ScheduledExecutorService executor = ThreadTools.newSingleDaemonThreadScheduledExecutor("video-black-box");
+
+   /**
+    * @param topic             the topic of the packets, saved in the logs.
+    * @param dumpDirectory     where to save the logs.
+    * @param duration          the seconds of video before the trigger to save by default.
+    * @param capacityPerSource the size in bytes of the rings of a video source, has to hold the
+    *                          duration.
+    */
+   public VideoBlackBox(String topic, File dumpDirectory, double duration, int capacityPerSource)
+   {
+      this.topic = topic;
+      this.dumpDirectory = dumpDirectory;
+      this.duration = duration;
+      this.capacityPerSource = capacityPerSource / VideoLogFormat.RECORD_ALIGNMENT * VideoLogFormat.RECORD_ALIGNMENT;
+   }
+
+   public void record(VideoPacket packet)
+   {
+      record(packet, VideoClock.now());
+   }
+
+   /**
+    * @param recordTime the time in the {@link VideoClock} the packet was published or received at.
+    */
+   public void record(VideoPacket packet, long recordTime)
+   {
+      int videoSource = packet.getVideoSource() & 0xFF;
+      SourceBuffer sourceBuffer = sourceBuffers.get(videoSource);
+      if (sourceBuffer == null)
+      {
+         sourceBuffer = new SourceBuffer(capacityPerSource);
+         sourceBuffers.set(videoSource, sourceBuffer);
+      }
+
+      sourceBuffer.record(packet, recordTime);
+   }
+
+   /**
+    * Saves the default duration of video before now.
+    *
+    * @return the directory of the log, once saved.
+    */
+   public Future<File> dump()
+   {
+      return dump(duration);
+   }
+
+   /**
+    * @param duration the seconds of video before now to save, 0 for all the video held.
+    * @return the directory of the log, once saved.
+    */
+   public Future<File> dump(double duration)
+   {
+      long triggerTime = VideoClock.now();
+      long startTime = duration > 0.0 ? triggerTime - (long) (duration * 1.0e9) : Long.MIN_VALUE;
+      return executor.submit(() -> writeDump(startTime));
+   }
+
+   /**
+    * Dumps on a {@link VideoBlackBoxTriggerMessage}, to be called from a subscription to
+    * {@link us.ihmc.videoacquisition.VideoManager#BLACK_BOX_TRIGGER_TOPIC}.
+    */
+   public void handleTrigger(VideoBlackBoxTriggerMessage trigger)
+   {
+      System.out.println("Saving the video of " + topic + " on trigger " + trigger.getSequenceId());
+      dump(trigger.getDuration() > 0.0 ? trigger.getDuration() : duration);
+   }
+
+   private File writeDump(long startTime) throws IOException
+   {
+      List<SourceBuffer> frozenSources = new ArrayList<>();
+      List<RingCursor> cursors = new ArrayList<>();
+
+      for (int i = 0; i < sourceBuffers.length(); i++)
+      {
+         SourceBuffer sourceBuffer = sourceBuffers.get(i);
+         if (sourceBuffer != null)
+         {
+            frozenSources.add(sourceBuffer);
+            cursors.add(new RingCursor(sourceBuffer.freeze()));
+         }
+      }
+
+      File directory = createDumpDirectory();
+
+      try
+      {
+         VideoLogWriter writer = new VideoLogWriter(directory, topic);
+         RawVideoPacket packet = new RawVideoPacket();
+
+         try
+         {
+            // Merge the video sources in the order the packets were recorded.
+            while (true)
+            {
+               RingCursor next = null;
+               for (RingCursor cursor : cursors)
+               {
+                  if (cursor.hasNext() && (next == null || cursor.getRecordTime() < next.getRecordTime()))
+                     next = cursor;
+               }
+               if (next == null)
+                  break;
+
+               long recordTime = next.getRecordTime();
+               next.read(packet);
+               if (recordTime >= startTime)
+                  writer.write(packet, recordTime);
+            }
+         }
+         finally
+         {
+            writer.close();
+         }
+
+         System.out.println("Saved " + writer.getStatistics());
+         return directory;
+      }
+      finally
+      {
+         for (int i = 0; i < frozenSources.size(); i++)
+            frozenSources.get(i).release(cursors.get(i).ring);
+      }
+   }
+
+   private File createDumpDirectory()
+   {
+      String name = "black-box-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+      File directory = new File(dumpDirectory, name);
+      for (int i = 1; directory.exists(); i++)
+         directory = new File(dumpDirectory, name + "-" + i);
+      return directory;
+   }
+
+   /**
+    * @return the number of packets recorded so far, over all the video sources.
+    */
+   public long getRecordedPacketCount()
+   {
+      long recordedPacketCount = 0;
+      for (int i = 0; i < sourceBuffers.length(); i++)
+      {
+         SourceBuffer sourceBuffer = sourceBuffers.get(i);
+         if (sourceBuffer != null)
+            recordedPacketCount += sourceBuffer.recordedPacketCount;
+      }
+      return recordedPacketCount;
+   }
+
+   /**
+    * @return the number of packets not kept, because they were larger than half a ring or arrived
+    *         while a dump was swapping the rings.
+    */
+   public long getMissedPacketCount()
+   {
+      long missedPacketCount = 0;
+      for (int i = 0; i < sourceBuffers.length(); i++)
+      {
+         SourceBuffer sourceBuffer = sourceBuffers.get(i);
+         if (sourceBuffer != null)
+            missedPacketCount += sourceBuffer.missedPacketCount;
+      }
+      return missedPacketCount;
+   }
+
+   public void shutdown()
+   {
+      executor.shutdown();
+   }
+
+   /**
+    * The rings of one video source.
+    * <p>
+    * The ring being written to is only touched by the recording thread and by a dump swapping it,
+    * each after claiming {@link #busy}. The recording thread never waits for it: it skips the packet
+    * instead, which only happens during the few instructions of a swap.
+    * </p>
+    */
+   private static class SourceBuffer
+   {
+      private final AtomicBoolean busy = new AtomicBoolean(false);
+      private Ring live;
+      /** Only touched by the dump thread. */
+      private Ring spare;
+
+      private final VideoPacketPubSubType pubSubType = new VideoPacketPubSubType();
+      private final SerializedPayload payload = new SerializedPayload(pubSubType.getTypeSize());
+
+      private volatile long recordedPacketCount = 0;
+      private volatile long missedPacketCount = 0;
+
+      SourceBuffer(int capacity)
+      {
+         live = new Ring(capacity);
+         spare = new Ring(capacity);
+      }
+
+      void record(VideoPacket packet, long recordTime)
+      {
+         try
+         {
+            pubSubType.serialize(packet, payload);
+         }
+         catch (IOException e)
+         {
+            e.printStackTrace();
+            return;
+         }
+
+         if (!busy.compareAndSet(false, true))
+         {
+            missedPacketCount++;
+            return;
+         }
+
+         boolean recorded = live.append(payload, recordTime);
+         busy.lazySet(false);
+
+         if (recorded)
+            recordedPacketCount++;
+         else
+            missedPacketCount++;
+      }
+
+      /**
+       * @return the ring holding the packets recorded so far, to hand back with
+       *         {@link #release(Ring)} once saved.
+       */
+      Ring freeze()
+      {
+         while (!busy.compareAndSet(false, true))
+            Thread.yield();
+
+         Ring frozen = live;
+         spare.clear();
+         live = spare;
+         spare = null;
+         busy.set(false);
+         return frozen;
+      }
+
+      void release(Ring frozen)
+      {
+         spare = frozen;
+      }
+   }
+
+   /**
+    * Records in the layout of {@link VideoLogFormat}, the oldest being overwritten once full. A
+    * record that does not fit before the end of the buffer starts over at its beginning, after a
+    * {@link #WRAP} marker.
+    */
+   private static class Ring
+   {
+      private static final int WRAP = -1;
+
+      private final ByteBuffer buffer;
+      private final int capacity;
+      /** Positions since the ring was cleared, of the end of the newest record and of the oldest one. */
+      private long head = 0;
+      private long tail = 0;
+
+      Ring(int capacity)
+      {
+         this.capacity = capacity;
+         buffer = ByteBuffer.allocateDirect(capacity).order(VideoLogFormat.BYTE_ORDER);
+      }
+
+      void clear()
+      {
+         head = 0;
+         tail = 0;
+      }
+
+      /**
+       * @return {@code false} if the packet is too large for the ring.
+       */
+      boolean append(SerializedPayload payload, long recordTime)
+      {
+         int length = payload.getLength();
+         int recordSize = VideoLogFormat.getRecordSize(length);
+         if (recordSize > capacity / 2)
+            return false;
+
+         int position = (int) (head % capacity);
+         int padding = position + recordSize > capacity ? capacity - position : 0;
+         while (head + padding + recordSize - tail > capacity)
+            evictOldest();
+
+         if (padding > 0)
+         {
+            buffer.putInt(position, WRAP);
+            head += padding;
+            position = 0;
+         }
+
+         buffer.putInt(position, length);
+         buffer.putShort(position + 4, payload.getEncapsulation());
+         buffer.putShort(position + 6, (short) 0);
+         buffer.putLong(position + 8, recordTime);
+
+         ByteBuffer serializedPacket = payload.getData();
+         serializedPacket.clear();
+         serializedPacket.limit(length);
+         buffer.position(position + VideoLogFormat.RECORD_HEADER_SIZE);
+         buffer.put(serializedPacket);
+
+         head += recordSize;
+         return true;
+      }
+
+      private void evictOldest()
+      {
+         int position = (int) (tail % capacity);
+         int length = buffer.getInt(position);
+         tail += length == WRAP ? capacity - position : VideoLogFormat.getRecordSize(length);
+      }
+   }
+
+   /**
+    * Reads a frozen ring from its oldest record, on the dump thread.
+    */
+   private static class RingCursor
+   {
+      private final Ring ring;
+      private final ByteBuffer buffer;
+      private long position;
+
+      RingCursor(Ring ring)
+      {
+         this.ring = ring;
+         buffer = ring.buffer.duplicate().order(VideoLogFormat.BYTE_ORDER);
+         position = ring.tail;
+         skipWrap();
+      }
+
+      private void skipWrap()
+      {
+         int offset = (int) (position % ring.capacity);
+         if (position < ring.head && buffer.getInt(offset) == Ring.WRAP)
+            position += ring.capacity - offset;
+      }
+
+      boolean hasNext()
+      {
+         return position < ring.head;
+      }
+
+      long getRecordTime()
+      {
+         return buffer.getLong((int) (position % ring.capacity) + 8);
+      }
+
+      void read(RawVideoPacket packetToPack)
+      {
+         int offset = (int) (position % ring.capacity);
+         int length = buffer.getInt(offset);
+         buffer.position(offset + VideoLogFormat.RECORD_HEADER_SIZE);
+         packetToPack.set(buffer, length, buffer.getShort(offset + 4));
+
+         position += VideoLogFormat.getRecordSize(length);
+         skipWrap();
+      }
+   }
+}
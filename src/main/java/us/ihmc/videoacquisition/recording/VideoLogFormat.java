@@ -0,0 +1,164 @@
+package us.ihmc.videoacquisition.recording;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Layout of the files of a video log, the recording of one video topic, written by a
+ * {@link VideoLogWriter}.
+ * <p>
+ * A log is a directory of segments. Each segment is a data file holding the packets as serialized
+ * on the wire, and an index file locating them. All numbers are little-endian.
+ * </p>
+ * <p>
+ * Data file, {@code segment-<index>.vlog}: a header of {@link #DATA_HEADER_SIZE} bytes
+ * <ul>
+ * <li>{@code 0}: {@link #DATA_MAGIC}, long,
+ * <li>{@code 8}: {@link #VERSION}, int,
+ * <li>{@code 12}: index of the segment in the log, int,
+ * <li>{@code 16}: size of the data written so far, header included, long. Updated after each
+ * record, so a segment left over by a crash can be read up to its last complete record,
+ * <li>{@code 24}: length of the topic name, unsigned short, followed by the topic name in UTF-8,
+ * </ul>
+ * then the records, each starting on a multiple of {@link #RECORD_ALIGNMENT}:
+ * <ul>
+ * <li>{@code 0}: length of the serialized packet, int,
+ * <li>{@code 4}: CDR encapsulation of the serialized packet, short, then 2 reserved bytes,
+ * <li>{@code 8}: record time, long,
+ * <li>{@code 16}: the serialized packet, as produced by
+ * {@link controller_msgs.msg.dds.VideoPacketPubSubType}.
+ * </ul>
+ * </p>
+ * <p>
+ * Index file, {@code segment-<index>.vidx}: a header of {@link #INDEX_HEADER_SIZE} bytes
+ * <ul>
+ * <li>{@code 0}: {@link #INDEX_MAGIC}, long,
+ * <li>{@code 8}: {@link #VERSION}, int,
+ * <li>{@code 12}: index of the segment in the log, int,
+ * <li>{@code 16}: number of entries written so far, int,
+ * </ul>
+ * then one entry of {@link #INDEX_ENTRY_SIZE} bytes per record, in the order of the records:
+ * <ul>
+ * <li>{@code 0}: record time, long,
+ * <li>{@code 8}: sequence ID of the packet, unsigned int,
+ * <li>{@code 12}: video source of the packet, byte, then 3 reserved bytes,
+ * <li>{@code 16}: offset of the record in the data file, long,
+ * <li>{@code 24}: length of the serialized packet, int, then 4 reserved bytes.
+ * </ul>
+ * </p>
+ * <p>
+ * Record times are in nanoseconds since the epoch, in the
+ * {@link us.ihmc.videoacquisition.latency.VideoClock} of the recorder. They never decrease within a
+ * log.
+ * </p>
+ */
+public final class VideoLogFormat
+{
+   public static final long DATA_MAGIC = 0x31474F4C4F454456L; // "VDEOLOG1"
+   public static final long INDEX_MAGIC = 0x31584449474F4C56L; // "VLOGIDX1"
+   public static final int VERSION = 1;
+   public static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+   public static final int DATA_HEADER_SIZE = 256;
+   public static final int DATA_SIZE_OFFSET = 16;
+   private static final int TOPIC_OFFSET = 24;
+   public static final int MAX_TOPIC_LENGTH = DATA_HEADER_SIZE - TOPIC_OFFSET - 2;
+
+   public static final int RECORD_HEADER_SIZE = 16;
+   public static final int RECORD_ALIGNMENT = 8;
+
+   public static final int INDEX_HEADER_SIZE = 32;
+   public static final int INDEX_COUNT_OFFSET = 16;
+   public static final int INDEX_ENTRY_SIZE = 32;
+
+   public static final String DATA_EXTENSION = ".vlog";
+   public static final String INDEX_EXTENSION = ".vidx";
+
+   private VideoLogFormat()
+   {
+   }
+
+   public static File getDataFile(File directory, int segmentIndex)
+   {
+      return new File(directory, getSegmentName(segmentIndex) + DATA_EXTENSION);
+   }
+
+   public static File getIndexFile(File directory, int segmentIndex)
+   {
+      return new File(directory, getSegmentName(segmentIndex) + INDEX_EXTENSION);
+   }
+
+   /**
+    * @return the number of segments of the log in {@code directory}, segments being numbered from 0
+    *         without gaps.
+    */
+   public static int getSegmentCount(File directory)
+   {
+      int segmentCount = 0;
+      while (getDataFile(directory, segmentCount).isFile() && getIndexFile(directory, segmentCount).isFile())
+         segmentCount++;
+      return segmentCount;
+   }
+
+   private static String getSegmentName(int segmentIndex)
+   {
+      return String.format("segment-%06d", segmentIndex);
+   }
+
+   /**
+    * @return the size of a record holding a serialized packet of {@code length} bytes, padding
+    *         included.
+    */
+   public static int getRecordSize(int length)
+   {
+      int size = RECORD_HEADER_SIZE + length;
+      return (size + RECORD_ALIGNMENT - 1) / RECORD_ALIGNMENT * RECORD_ALIGNMENT;
+   }
+
+   static void writeDataHeader(ByteBuffer data, int segmentIndex, String topic)
+   {
+      byte[] topicBytes = topic.getBytes(StandardCharsets.UTF_8);
+      if (topicBytes.length > MAX_TOPIC_LENGTH)
+         throw new IllegalArgumentException("Topic name too long: " + topic);
+
+      data.putLong(0, DATA_MAGIC);
+      data.putInt(8, VERSION);
+      data.putInt(12, segmentIndex);
+      data.putLong(DATA_SIZE_OFFSET, DATA_HEADER_SIZE);
+      data.putShort(TOPIC_OFFSET, (short) topicBytes.length);
+      for (int i = 0; i < topicBytes.length; i++)
+         data.put(TOPIC_OFFSET + 2 + i, topicBytes[i]);
+   }
+
+   static void writeIndexHeader(ByteBuffer index, int segmentIndex)
+   {
+      index.putLong(0, INDEX_MAGIC);
+      index.putInt(8, VERSION);
+      index.putInt(12, segmentIndex);
+      index.putInt(INDEX_COUNT_OFFSET, 0);
+   }
+
+   /**
+    * @return whether {@code data} starts with a data header of a supported version.
+    */
+   static boolean isDataHeaderValid(ByteBuffer data)
+   {
+      return data.limit() >= DATA_HEADER_SIZE && data.getLong(0) == DATA_MAGIC && data.getInt(8) == VERSION;
+   }
+
+   static boolean isIndexHeaderValid(ByteBuffer index)
+   {
+      return index.limit() >= INDEX_HEADER_SIZE && index.getLong(0) == INDEX_MAGIC && index.getInt(8) == VERSION;
+   }
+
+   static String readTopic(ByteBuffer data)
+   {
+      int length = Math.min(data.getShort(TOPIC_OFFSET) & 0xFFFF, MAX_TOPIC_LENGTH);
+      byte[] topicBytes = new byte[length];
+      for (int i = 0; i < length; i++)
+         topicBytes[i] = data.get(TOPIC_OFFSET + 2 + i);
+      return new String(topicBytes, StandardCharsets.UTF_8);
+   }
+}
@@ -0,0 +1,307 @@
+package us.ihmc.videoacquisition.recording;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.LockSupport;
+
+import us.ihmc.ros2.ROS2Node;
+import us.ihmc.ros2.ROS2Publisher;
+
+/**
+ * Plays video logs back, publishing their packets again as they were recorded.
+ * <p>
+ * The packets are published in their serialized form, through {@link RawVideoPacketPubSubType}, so
+ * playing back costs one copy out of the mapped log and one into the outgoing payload, whatever the
+ * codec and the resolution. Several logs, e.g. one per camera, are played together in the order the
+ * packets were recorded.
+ * </p>
+ * <p>
+ * The packets are paced on their record times, divided by the speed factor. At
+ * {@link #MAXIMUM_SPEED} they are published as fast as possible, which measures how many packets
+ * per second the subscribers can take.
+ * </p>
+ * <p>
+ * When looping, the sequence IDs of each log and video source are shifted on every pass to carry
+ * on from the last one published, so the receivers see one continuous stream rather than old
+ * frames to drop. The other fields, the latency times included, are published as recorded.
+ * </p>
+ */
+public class VideoLogPlayer
+{
+   public static final double MAXIMUM_SPEED = Double.POSITIVE_INFINITY;
+
+   private final ROS2Node ros2Node;
+   private final List<VideoLogReader> readers = new ArrayList<>();
+   private final List<ROS2Publisher<RawVideoPacket>> publishers = new ArrayList<>();
+   private final Map<String, ROS2Publisher<RawVideoPacket>> topicPublishers = new HashMap<>();
+   private final List<SequenceIdShift> sequenceIdShifts = new ArrayList<>();
+   private final RawVideoPacket packet = new RawVideoPacket();
+
+   private final Thread thread;
+   private final CountDownLatch done = new CountDownLatch(1);
+   private volatile boolean running = false;
+   private volatile double speed = 1.0;
+   /** Set when the speed changes, to pace the next packets from where the playback is. */
+   private volatile boolean speedChanged = false;
+   private boolean loop = false;
+   private long startTime = Long.MIN_VALUE;
+
+   private volatile long publishedPacketCount = 0;
+   private volatile long publishedBytes = 0;
+   private volatile long playedTime = 0;
+   private long playbackStartNanos;
+
+   /**
+    * @param ros2Node the node to create the publishers with.
+    */
+   public VideoLogPlayer(ROS2Node ros2Node)
+   {
+      this.ros2Node = ros2Node;
+
+      thread = new Thread(this::run, "video-log-player");
+      thread.setDaemon(true);
+   }
+
+   /**
+    * Adds a log to play back on {@code topic}, e.g. the topic it was recorded from, see
+    * {@link VideoLogReader#getTopic()}. Logs can share a topic.
+    */
+   public void addLog(VideoLogReader reader, String topic)
+   {
+      ROS2Publisher<RawVideoPacket> publisher = topicPublishers.get(topic);
+      if (publisher == null)
+      {
+         publisher = ros2Node.createPublisher(new RawVideoPacketPubSubType(), topic);
+         topicPublishers.put(topic, publisher);
+      }
+
+      readers.add(reader);
+      publishers.add(publisher);
+      sequenceIdShifts.add(new SequenceIdShift());
+   }
+
+   /**
+    * @param speed the speed factor, 1.0 to play back in real time, {@link #MAXIMUM_SPEED} to play
+    *              back as fast as possible. Can be changed while playing back.
+    */
+   public void setSpeed(double speed)
+   {
+      if (!(speed > 0.0))
+         throw new IllegalArgumentException("Invalid speed: " + speed);
+      this.speed = speed;
+      speedChanged = true;
+   }
+
+   /**
+    * @param loop whether to start over once all the packets are published, carrying on the
+    *             sequence IDs from one pass to the next.
+    */
+   public void setLoop(boolean loop)
+   {
+      this.loop = loop;
+   }
+
+   /**
+    * @param startTime the record time to start playing back from, to be set before starting.
+    */
+   public void setStartTime(long startTime)
+   {
+      this.startTime = startTime;
+   }
+
+   /**
+    * @return the record time of the first packet of the logs.
+    */
+   public long getLogStartTime()
+   {
+      long logStartTime = Long.MAX_VALUE;
+      for (VideoLogReader reader : readers)
+         logStartTime = Math.min(logStartTime, reader.getStartTime());
+      return logStartTime;
+   }
+
+   public void start()
+   {
+      running = true;
+      thread.start();
+   }
+
+   public void stop()
+   {
+      running = false;
+      thread.interrupt();
+   }
+
+   /**
+    * Waits for the playback to end, never returns when looping.
+    */
+   public void waitUntilDone() throws InterruptedException
+   {
+      done.await();
+   }
+
+   private void run()
+   {
+      playbackStartNanos = System.nanoTime();
+      playedTime = Math.max(startTime, getLogStartTime());
+
+      do
+      {
+         for (VideoLogReader reader : readers)
+            reader.seek(startTime);
+         for (SequenceIdShift sequenceIdShift : sequenceIdShifts)
+            sequenceIdShift.startPass();
+         play();
+      }
+      while (running && loop);
+
+      done.countDown();
+   }
+
+   private void play()
+   {
+      long anchorNanos = System.nanoTime();
+      long anchorRecordTime = Long.MIN_VALUE;
+
+      while (running)
+      {
+         int next = getNextReader();
+         if (next == -1)
+            return;
+
+         VideoLogReader reader = readers.get(next);
+         long recordTime = reader.getNextRecordTime();
+
+         if (anchorRecordTime == Long.MIN_VALUE || speedChanged)
+         {
+            speedChanged = false;
+            anchorNanos = System.nanoTime();
+            anchorRecordTime = recordTime;
+         }
+
+         double speed = this.speed;
+         if (speed != MAXIMUM_SPEED)
+         {
+            long dueNanos = anchorNanos + (long) ((recordTime - anchorRecordTime) / speed);
+            long waitNanos;
+            while (running && !speedChanged && (waitNanos = dueNanos - System.nanoTime()) > 0)
+               LockSupport.parkNanos(waitNanos);
+            if (speedChanged)
+               continue;
+         }
+
+         reader.read(packet);
+         sequenceIdShifts.get(next).apply(packet);
+         publishers.get(next).publish(packet);
+
+         publishedPacketCount++;
+         publishedBytes += packet.getLength();
+         playedTime = recordTime;
+      }
+   }
+
+   /**
+    * Shifts the sequence IDs of the video sources of one log, so that each pass carries on from the
+    * last sequence ID published in the previous one.
+    */
+   private static class SequenceIdShift
+   {
+      /** Last sequence ID published of each video source, -1 if none yet. */
+      private final long[] lastSequenceIds = new long[256];
+      private final long[] shifts = new long[256];
+      /** Whether the shift of each video source was set for the current pass. */
+      private final boolean[] shiftSet = new boolean[256];
+
+      SequenceIdShift()
+      {
+         Arrays.fill(lastSequenceIds, -1L);
+      }
+
+      void startPass()
+      {
+         Arrays.fill(shiftSet, false);
+      }
+
+      void apply(RawVideoPacket packet)
+      {
+         if (!packet.isValid())
+            return;
+
+         int videoSource = packet.getVideoSource() & 0xFF;
+         long sequenceId = packet.getSequenceId();
+
+         if (!shiftSet[videoSource])
+         {
+            shiftSet[videoSource] = true;
+            if (lastSequenceIds[videoSource] >= 0)
+               shifts[videoSource] = lastSequenceIds[videoSource] + 1 - sequenceId;
+         }
+
+         if (shifts[videoSource] != 0)
+         {
+            // sequence_id is an uint32 on the wire.
+            sequenceId = (sequenceId + shifts[videoSource]) & 0xFFFFFFFFL;
+            packet.setSequenceId(sequenceId);
+         }
+
+         if (lastSequenceIds[videoSource] < 0 || (int) (sequenceId - lastSequenceIds[videoSource]) > 0)
+            lastSequenceIds[videoSource] = sequenceId;
+      }
+   }
+
+   /**
+    * @return the index of the reader whose next packet was recorded first, -1 when all are done.
+    */
+   private int getNextReader()
+   {
+      int next = -1;
+      long nextRecordTime = Long.MAX_VALUE;
+
+      for (int i = 0; i < readers.size(); i++)
+      {
+         VideoLogReader reader = readers.get(i);
+         if (reader.hasNext() && reader.getNextRecordTime() < nextRecordTime)
+         {
+            next = i;
+            nextRecordTime = reader.getNextRecordTime();
+         }
+      }
+
+      return next;
+   }
+
+   public long getPublishedPacketCount()
+   {
+      return publishedPacketCount;
+   }
+
+   public long getPublishedBytes()
+   {
+      return publishedBytes;
+   }
+
+   /**
+    * @return the record time of the last packet published.
+    */
+   public long getPlayedTime()
+   {
+      return playedTime;
+   }
+
+   public String getStatistics()
+   {
+      double elapsed = (System.nanoTime() - playbackStartNanos) * 1.0e-9;
+      long packetCount = publishedPacketCount;
+      long bytes = publishedBytes;
+      return String.format("Playback: %d packets, %.1f MB, %.1f packets/s, %.1f MB/s, at %.1f s in the log",
+                           packetCount,
+                           bytes * 1.0e-6,
+                           packetCount / elapsed,
+                           bytes * 1.0e-6 / elapsed,
+                           (playedTime - getLogStartTime()) * 1.0e-9);
+   }
+}
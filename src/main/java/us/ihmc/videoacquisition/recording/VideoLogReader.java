@@ -0,0 +1,325 @@
+package us.ihmc.videoacquisition.recording;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.List;
+
+import controller_msgs.msg.dds.VideoPacket;
+import controller_msgs.msg.dds.VideoPacketPubSubType;
+import us.ihmc.pubsub.common.SerializedPayload;
+
+/**
+ * Reads a video log written by a {@link VideoLogWriter}, see {@link VideoLogFormat}.
+ * <p>
+ * The segments are memory-mapped read-only, so reading a packet is a single copy out of the page
+ * cache and the operating system takes care of reading ahead. The reader is a cursor over the
+ * packets in the order they were recorded, which can be moved to any record time with
+ * {@link #seek(long)}, a binary search over the index.
+ * </p>
+ * <p>
+ * A segment left over by a crash is read up to its last complete record. An instance must not be
+ * used by several threads at once.
+ * </p>
+ */
+public class VideoLogReader
+{
+   private final File directory;
+   private final String topic;
+   private final List<Segment> segments = new ArrayList<>();
+   private final long packetCount;
+
+   private int segmentIndex = 0;
+   private int entryIndex = 0;
+
+   private final VideoPacketPubSubType pubSubType = new VideoPacketPubSubType();
+   /** Created on the first packet deserialized. */
+   private SerializedPayload payload = null;
+
+   public VideoLogReader(File directory) throws IOException
+   {
+      this.directory = directory;
+
+      int segmentCount = VideoLogFormat.getSegmentCount(directory);
+      String topic = null;
+      long packetCount = 0;
+
+      for (int i = 0; i < segmentCount; i++)
+      {
+         Segment segment = openSegment(i);
+         if (segment == null)
+         {
+            System.err.println("Skipping invalid segment " + VideoLogFormat.getDataFile(directory, i));
+            continue;
+         }
+         if (segment.entryCount == 0)
+            continue;
+
+         if (topic == null)
+            topic = VideoLogFormat.readTopic(segment.data);
+         segments.add(segment);
+         packetCount += segment.entryCount;
+      }
+
+      if (segments.isEmpty())
+         throw new IOException("No video log in " + directory);
+
+      this.topic = topic;
+      this.packetCount = packetCount;
+   }
+
+   private Segment openSegment(int segmentIndex) throws IOException
+   {
+      MappedByteBuffer data = map(VideoLogFormat.getDataFile(directory, segmentIndex));
+      MappedByteBuffer index = map(VideoLogFormat.getIndexFile(directory, segmentIndex));
+      if (!VideoLogFormat.isDataHeaderValid(data) || !VideoLogFormat.isIndexHeaderValid(index))
+         return null;
+
+      long size = Math.min(data.getLong(VideoLogFormat.DATA_SIZE_OFFSET), data.capacity());
+      int entryCount = Math.min(index.getInt(VideoLogFormat.INDEX_COUNT_OFFSET),
+                                (index.capacity() - VideoLogFormat.INDEX_HEADER_SIZE) / VideoLogFormat.INDEX_ENTRY_SIZE);
+
+      Segment segment = new Segment(data, index);
+      // Drop the entries of records that did not make it to the data file.
+      while (entryCount > 0 && segment.getRecordEnd(entryCount - 1) > size)
+         entryCount--;
+      segment.entryCount = Math.max(entryCount, 0);
+      return segment;
+   }
+
+   private static MappedByteBuffer map(File file) throws IOException
+   {
+      try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r"))
+      {
+         MappedByteBuffer buffer = randomAccessFile.getChannel().map(MapMode.READ_ONLY, 0, randomAccessFile.length());
+         buffer.order(VideoLogFormat.BYTE_ORDER);
+         return buffer;
+      }
+   }
+
+   /**
+    * Moves the cursor to the first packet recorded at or after {@code recordTime}, past the end if
+    * there is none.
+    */
+   public void seek(long recordTime)
+   {
+      int low = 0;
+      int high = segments.size();
+      // First segment whose last packet was recorded at or after recordTime.
+      while (low < high)
+      {
+         int middle = (low + high) >>> 1;
+         Segment segment = segments.get(middle);
+         if (segment.getRecordTime(segment.entryCount - 1) < recordTime)
+            low = middle + 1;
+         else
+            high = middle;
+      }
+
+      segmentIndex = low;
+      entryIndex = low < segments.size() ? segments.get(low).search(recordTime) : 0;
+   }
+
+   /**
+    * Moves the cursor back to the first packet.
+    */
+   public void rewind()
+   {
+      segmentIndex = 0;
+      entryIndex = 0;
+   }
+
+   public boolean hasNext()
+   {
+      return segmentIndex < segments.size();
+   }
+
+   /**
+    * @return the record time of the packet under the cursor.
+    */
+   public long getNextRecordTime()
+   {
+      return segments.get(segmentIndex).getRecordTime(entryIndex);
+   }
+
+   /**
+    * @return the video source of the packet under the cursor, read from the index.
+    */
+   public byte getNextVideoSource()
+   {
+      return segments.get(segmentIndex).getVideoSource(entryIndex);
+   }
+
+   /**
+    * Reads the packet under the cursor and moves the cursor to the next one.
+    *
+    * @return the record time of the packet.
+    */
+   public long read(RawVideoPacket packetToPack)
+   {
+      Segment segment = segments.get(segmentIndex);
+      long recordTime = segment.getRecordTime(entryIndex);
+      segment.read(entryIndex, packetToPack);
+      skip();
+      return recordTime;
+   }
+
+   /**
+    * Reads and deserializes the packet under the cursor, then moves the cursor to the next one.
+    *
+    * @return the record time of the packet.
+    */
+   public long read(VideoPacket packetToPack) throws IOException
+   {
+      if (payload == null)
+         payload = new SerializedPayload(pubSubType.getTypeSize());
+
+      Segment segment = segments.get(segmentIndex);
+      long recordTime = segment.getRecordTime(entryIndex);
+      segment.read(entryIndex, payload);
+      skip();
+      pubSubType.deserialize(payload, packetToPack);
+      return recordTime;
+   }
+
+   /**
+    * Moves the cursor to the next packet without reading the one under it.
+    */
+   public void skip()
+   {
+      if (++entryIndex == segments.get(segmentIndex).entryCount)
+      {
+         segmentIndex++;
+         entryIndex = 0;
+      }
+   }
+
+   public File getDirectory()
+   {
+      return directory;
+   }
+
+   /**
+    * @return the topic the packets were recorded from.
+    */
+   public String getTopic()
+   {
+      return topic;
+   }
+
+   public long getPacketCount()
+   {
+      return packetCount;
+   }
+
+   public long getStartTime()
+   {
+      return segments.get(0).getRecordTime(0);
+   }
+
+   public long getEndTime()
+   {
+      Segment lastSegment = segments.get(segments.size() - 1);
+      return lastSegment.getRecordTime(lastSegment.entryCount - 1);
+   }
+
+   private static class Segment
+   {
+      private static final int RECORD_TIME_OFFSET = 0;
+      private static final int VIDEO_SOURCE_OFFSET = 12;
+      private static final int OFFSET_OFFSET = 16;
+      private static final int LENGTH_OFFSET = 24;
+      private static final int RECORD_ENCAPSULATION_OFFSET = 4;
+
+      private final ByteBuffer data;
+      private final ByteBuffer index;
+      /** Used to read the packets, leaving the position of the data alone. */
+      private final ByteBuffer record;
+      private int entryCount;
+
+      Segment(ByteBuffer data, ByteBuffer index)
+      {
+         this.data = data;
+         this.index = index;
+         record = data.duplicate();
+      }
+
+      private int getEntryPosition(int entryIndex)
+      {
+         return VideoLogFormat.INDEX_HEADER_SIZE + entryIndex * VideoLogFormat.INDEX_ENTRY_SIZE;
+      }
+
+      long getRecordTime(int entryIndex)
+      {
+         return index.getLong(getEntryPosition(entryIndex) + RECORD_TIME_OFFSET);
+      }
+
+      byte getVideoSource(int entryIndex)
+      {
+         return index.get(getEntryPosition(entryIndex) + VIDEO_SOURCE_OFFSET);
+      }
+
+      long getRecordEnd(int entryIndex)
+      {
+         int position = getEntryPosition(entryIndex);
+         return index.getLong(position + OFFSET_OFFSET) + VideoLogFormat.getRecordSize(index.getInt(position + LENGTH_OFFSET));
+      }
+
+      /**
+       * @return the index of the first entry recorded at or after {@code recordTime}.
+       */
+      int search(long recordTime)
+      {
+         int low = 0;
+         int high = entryCount;
+         while (low < high)
+         {
+            int middle = (low + high) >>> 1;
+            if (getRecordTime(middle) < recordTime)
+               low = middle + 1;
+            else
+               high = middle;
+         }
+         return low;
+      }
+
+      void read(int entryIndex, RawVideoPacket packetToPack)
+      {
+         int length = index.getInt(getEntryPosition(entryIndex) + LENGTH_OFFSET);
+         short encapsulation = getRecord(entryIndex);
+         packetToPack.set(record, length, encapsulation);
+      }
+
+      void read(int entryIndex, SerializedPayload payloadToPack)
+      {
+         short encapsulation = getRecord(entryIndex);
+         ByteBuffer payloadData = payloadToPack.getData();
+         payloadData.clear();
+         payloadData.put(record);
+         payloadData.flip();
+         payloadToPack.setLength(payloadData.limit());
+         payloadToPack.setEncapsulation(encapsulation);
+      }
+
+      /**
+       * Frames the serialized packet of an entry with {@link #record}.
+       *
+       * @return the CDR encapsulation of the packet.
+       */
+      private short getRecord(int entryIndex)
+      {
+         int position = getEntryPosition(entryIndex);
+         int offset = (int) index.getLong(position + OFFSET_OFFSET);
+         int length = index.getInt(position + LENGTH_OFFSET);
+
+         record.clear();
+         record.position(offset + VideoLogFormat.RECORD_HEADER_SIZE);
+         record.limit(record.position() + length);
+         return data.getShort(offset + RECORD_ENCAPSULATION_OFFSET);
+      }
+   }
+}
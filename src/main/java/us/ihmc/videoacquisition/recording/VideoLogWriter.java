@@ -0,0 +1,381 @@
+package us.ihmc.videoacquisition.recording;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import controller_msgs.msg.dds.VideoPacket;
+import controller_msgs.msg.dds.VideoPacketPubSubType;
+import us.ihmc.commons.thread.ThreadTools;
+import us.ihmc.pubsub.common.SerializedPayload;
+
+/**
+ * Records the packets of one video topic into a video log, see {@link VideoLogFormat}.
+ * <p>
+ * The segments are memory-mapped and only ever appended to: writing a packet is a single copy of
+ * its serialized bytes into the page cache, plus an index entry, and never waits for the disk. The
+ * next segment is created and mapped in the background while the current one fills up, so that
+ * rotating does not stall the writer either. Finished segments are synced, according to the
+ * {@link SyncPolicy}, and trimmed to their content in the background.
+ * </p>
+ * <p>
+ * The settings have to be set before the first packet is written. The packets have to be written
+ * from a single thread.
+ * </p>
+ */
+public class VideoLogWriter
+{
+   public enum SyncPolicy
+   {
+      /** Leave writing the pages back to the operating system, the fastest. */
+      NONE,
+      /** Sync each segment to disk once full. */
+      ON_ROTATION,
+      /** Also sync the current segment periodically, bounding how much is lost on a power cut. */
+      PERIODIC
+   }
+
+   public static final long DEFAULT_SEGMENT_SIZE = 256L << 20;
+   public static final int DEFAULT_INDEX_CAPACITY = 1 << 16;
+   public static final long DEFAULT_SYNC_PERIOD_MILLIS = 1000;
+   private static final long MIN_SEGMENT_SIZE = 4L << 20;
+
+   private final File directory;
+   private final String topic;
+   private final ScheduledExecutorService executor;
+
+   private long segmentSize = DEFAULT_SEGMENT_SIZE;
+   private int indexCapacity = DEFAULT_INDEX_CAPACITY;
+   private SyncPolicy syncPolicy = SyncPolicy.ON_ROTATION;
+   private long syncPeriodMillis = DEFAULT_SYNC_PERIOD_MILLIS;
+
+   /** Written by the writer thread, read by the periodic sync. */
+   private volatile Segment segment = null;
+   private Future<Segment> nextSegment = null;
+   private int nextSegmentIndex;
+   private long lastRecordTime = Long.MIN_VALUE;
+   private boolean closed = false;
+
+   private final VideoPacketPubSubType pubSubType = new VideoPacketPubSubType();
+   private final SerializedPayload payload = new SerializedPayload(pubSubType.getTypeSize());
+
+   private volatile long writtenPacketCount = 0;
+   private volatile long writtenBytes = 0;
+   private volatile int segmentCount = 0;
+
+   /**
+    * @param directory where to write the segments, created if needed. When it already holds a log,
+    *                  the new segments are numbered after the existing ones.
+    * @param topic     the topic the packets are received on, saved in the segments.
+    */
+   public VideoLogWriter(File directory, String topic) throws IOException
+   {
+      if (!directory.isDirectory() && !directory.mkdirs())
+         throw new IOException("Could not create " + directory);
+
+      this.directory = directory;
+      this.topic = topic;
+      nextSegmentIndex = VideoLogFormat.getSegmentCount(directory);
+      executor = ThreadTools.newSingleDaemonThreadScheduledExecutor("video-log-" + directory.getName());
+   }
+
+   /**
+    * @param segmentSize the size of the data file of a segment, at most 2 GB.
+    */
+   public void setSegmentSize(long segmentSize)
+   {
+      if (segmentSize < MIN_SEGMENT_SIZE || segmentSize > Integer.MAX_VALUE)
+         throw new IllegalArgumentException("Segment size out of range: " + segmentSize);
+      this.segmentSize = segmentSize;
+   }
+
+   /**
+    * @param indexCapacity the number of packets after which a segment is rotated even if its data
+    *                      file is not full.
+    */
+   public void setIndexCapacity(int indexCapacity)
+   {
+      this.indexCapacity = indexCapacity;
+   }
+
+   /**
+    * @param syncPeriodMillis the period of the {@link SyncPolicy#PERIODIC} policy.
+    */
+   public void setSyncPolicy(SyncPolicy syncPolicy, long syncPeriodMillis)
+   {
+      this.syncPolicy = syncPolicy;
+      this.syncPeriodMillis = syncPeriodMillis;
+   }
+
+   /**
+    * @param recordTime the time the packet was received, in the
+    *                   {@link us.ihmc.videoacquisition.latency.VideoClock}.
+    */
+   public void write(RawVideoPacket packet, long recordTime) throws IOException
+   {
+      if (!packet.isValid())
+         return;
+
+      MappedByteBuffer data = beginRecord(packet.getLength(), packet.getEncapsulation(), recordTime);
+      data.put(packet.getData(), 0, packet.getLength());
+      endRecord(packet.getLength(), packet.getSequenceId(), packet.getVideoSource());
+   }
+
+   /**
+    * Serializes the packet once, straight to the bytes written in the log.
+    */
+   public void write(VideoPacket packet, long recordTime) throws IOException
+   {
+      pubSubType.serialize(packet, payload);
+      int length = payload.getLength();
+
+      MappedByteBuffer data = beginRecord(length, payload.getEncapsulation(), recordTime);
+      ByteBuffer serializedPacket = payload.getData();
+      serializedPacket.clear();
+      serializedPacket.limit(length);
+      data.put(serializedPacket);
+      endRecord(length, packet.getSequenceId(), packet.getVideoSource());
+   }
+
+   /**
+    * Makes room for a record, rotating the segment if needed, and writes its header.
+    *
+    * @return the data of the segment, positioned where the serialized packet goes.
+    */
+   private MappedByteBuffer beginRecord(int length, short encapsulation, long recordTime) throws IOException
+   {
+      if (closed)
+         throw new IOException("The log is closed");
+
+      Segment segment = this.segment;
+      if (segment == null || !segment.hasRoom(VideoLogFormat.getRecordSize(length)))
+         segment = rotate();
+
+      lastRecordTime = Math.max(lastRecordTime, recordTime);
+
+      MappedByteBuffer data = segment.data;
+      data.position(segment.size);
+      data.putInt(length);
+      data.putShort(encapsulation);
+      data.putShort((short) 0);
+      data.putLong(lastRecordTime);
+      return data;
+   }
+
+   private void endRecord(int length, long sequenceId, byte videoSource)
+   {
+      Segment segment = this.segment;
+      int recordSize = VideoLogFormat.getRecordSize(length);
+      int offset = segment.size;
+
+      ByteBuffer index = segment.index;
+      index.position(VideoLogFormat.INDEX_HEADER_SIZE + segment.entryCount * VideoLogFormat.INDEX_ENTRY_SIZE);
+      index.putLong(lastRecordTime);
+      index.putInt((int) sequenceId);
+      index.putInt(videoSource & 0xFF);
+      index.putLong(offset);
+      index.putInt(length);
+      index.putInt(0);
+
+      // Publish the record only once complete, for the readers of a log left over by a crash.
+      segment.size = offset + recordSize;
+      segment.entryCount++;
+      segment.data.putLong(VideoLogFormat.DATA_SIZE_OFFSET, segment.size);
+      index.putInt(VideoLogFormat.INDEX_COUNT_OFFSET, segment.entryCount);
+
+      writtenPacketCount++;
+      writtenBytes += recordSize;
+   }
+
+   private Segment rotate() throws IOException
+   {
+      if (segment == null && syncPolicy == SyncPolicy.PERIODIC)
+         executor.scheduleWithFixedDelay(this::syncCurrentSegment, syncPeriodMillis, syncPeriodMillis, TimeUnit.MILLISECONDS);
+
+      Segment finishedSegment = segment;
+      Segment newSegment;
+
+      if (nextSegment == null)
+      {
+         newSegment = createSegment(nextSegmentIndex++);
+      }
+      else
+      {
+         try
+         {
+            newSegment = nextSegment.get();
+         }
+         catch (InterruptedException | ExecutionException e)
+         {
+            throw new IOException("Could not create the next segment", e);
+         }
+      }
+
+      segment = newSegment;
+      segmentCount++;
+
+      int followingSegmentIndex = nextSegmentIndex++;
+      nextSegment = executor.submit(() -> createSegment(followingSegmentIndex));
+
+      if (finishedSegment != null)
+         executor.execute(() -> finishSegment(finishedSegment));
+
+      return newSegment;
+   }
+
+   private Segment createSegment(int segmentIndex) throws IOException
+   {
+      long indexSize = VideoLogFormat.INDEX_HEADER_SIZE + (long) indexCapacity * VideoLogFormat.INDEX_ENTRY_SIZE;
+      Segment segment = new Segment(segmentIndex);
+      segment.dataFile = new RandomAccessFile(VideoLogFormat.getDataFile(directory, segmentIndex), "rw");
+      segment.indexFile = new RandomAccessFile(VideoLogFormat.getIndexFile(directory, segmentIndex), "rw");
+      segment.data = map(segment.dataFile, segmentSize);
+      segment.index = map(segment.indexFile, indexSize);
+      segment.indexCapacity = indexCapacity;
+
+      VideoLogFormat.writeDataHeader(segment.data, segmentIndex, topic);
+      VideoLogFormat.writeIndexHeader(segment.index, segmentIndex);
+      segment.size = VideoLogFormat.DATA_HEADER_SIZE;
+      return segment;
+   }
+
+   private static MappedByteBuffer map(RandomAccessFile file, long size) throws IOException
+   {
+      file.setLength(size);
+      MappedByteBuffer buffer = file.getChannel().map(MapMode.READ_WRITE, 0, size);
+      buffer.order(VideoLogFormat.BYTE_ORDER);
+      return buffer;
+   }
+
+   /**
+    * Syncs the segment if required, then trims its files to their content.
+    */
+   private void finishSegment(Segment segment)
+   {
+      try
+      {
+         if (syncPolicy != SyncPolicy.NONE)
+         {
+            segment.data.force();
+            segment.index.force();
+         }
+
+         segment.dataFile.setLength(segment.size);
+         segment.indexFile.setLength(VideoLogFormat.INDEX_HEADER_SIZE + (long) segment.entryCount * VideoLogFormat.INDEX_ENTRY_SIZE);
+         segment.dataFile.close();
+         segment.indexFile.close();
+      }
+      catch (IOException e)
+      {
+         e.printStackTrace();
+      }
+   }
+
+   private void syncCurrentSegment()
+   {
+      Segment segment = this.segment;
+      if (segment != null)
+      {
+         segment.data.force();
+         segment.index.force();
+      }
+   }
+
+   /**
+    * Finishes the current segment and waits for the pending background work, to be called from the
+    * writer thread.
+    */
+   public void close() throws IOException
+   {
+      if (closed)
+         return;
+      closed = true;
+
+      if (segment != null)
+      {
+         Segment lastSegment = segment;
+         executor.execute(() -> finishSegment(lastSegment));
+      }
+
+      if (nextSegment != null)
+      {
+         // The next segment was prepared for nothing.
+         executor.execute(() ->
+         {
+            try
+            {
+               Segment unusedSegment = nextSegment.get();
+               unusedSegment.dataFile.close();
+               unusedSegment.indexFile.close();
+               VideoLogFormat.getDataFile(directory, unusedSegment.segmentIndex).delete();
+               VideoLogFormat.getIndexFile(directory, unusedSegment.segmentIndex).delete();
+            }
+            catch (InterruptedException | ExecutionException | IOException e)
+            {
+               e.printStackTrace();
+            }
+         });
+      }
+
+      executor.shutdown();
+      try
+      {
+         executor.awaitTermination(1, TimeUnit.MINUTES);
+      }
+      catch (InterruptedException e)
+      {
+         throw new IOException("Interrupted while finishing the log", e);
+      }
+   }
+
+   public File getDirectory()
+   {
+      return directory;
+   }
+
+   public long getWrittenPacketCount()
+   {
+      return writtenPacketCount;
+   }
+
+   public long getWrittenBytes()
+   {
+      return writtenBytes;
+   }
+
+   public String getStatistics()
+   {
+      return String.format("%s: %d packets, %.1f MB in %d segments", directory, writtenPacketCount, writtenBytes * 1.0e-6, segmentCount);
+   }
+
+   private static class Segment
+   {
+      private final int segmentIndex;
+      private RandomAccessFile dataFile;
+      private RandomAccessFile indexFile;
+      private MappedByteBuffer data;
+      private MappedByteBuffer index;
+      private int indexCapacity;
+
+      private int size;
+      private int entryCount;
+
+      Segment(int segmentIndex)
+      {
+         this.segmentIndex = segmentIndex;
+      }
+
+      boolean hasRoom(int recordSize)
+      {
+         return size + (long) recordSize <= data.capacity() && entryCount < indexCapacity;
+      }
+   }
+}
@@ -0,0 +1,39 @@
+package us.ihmc.videoacquisition.source;
+
+import java.io.IOException;
+
+import org.bytedeco.javacv.Frame;
+
+/**
+ * Provider of raw video frames for the {@link us.ihmc.videoacquisition.VideoManager}.
+ * <p>
+ * Frames are packed 8-bit BGR, as produced by the OpenCV and FFmpeg grabbers. The returned
+ * {@link Frame} may be reused by the source on the next call to {@link #grab()}.
+ * </p>
+ */
+public interface FrameSource
+{
+   void start() throws IOException;
+
+   default void restart() throws IOException
+   {
+      stop();
+      start();
+   }
+
+   void stop() throws IOException;
+
+   /**
+    * @return the next frame, or {@code null} if none is available at the moment.
+    */
+   Frame grab() throws IOException;
+
+   int getImageWidth();
+
+   int getImageHeight();
+
+   /**
+    * @return the rate in Hz at which this source should be polled.
+    */
+   double getFrameRate();
+}
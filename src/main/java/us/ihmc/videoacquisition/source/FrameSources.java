@@ -0,0 +1,64 @@
+package us.ihmc.videoacquisition.source;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Command line helpers shared by the publishers to create {@link FrameSource}s.
+ */
+public class FrameSources
+{
+   /**
+    * Parses the frame source option starting at {@code args[index]}, one of
+    * {@code --camera <device>}, {@code --synthetic <width>x<height>@<fps>} or
+    * {@code --replay <file or directory> [fps]}.
+    *
+    * @return the source, or {@code null} if {@code args[index]} is not a frame source option.
+    */
+   public static FrameSource parse(String[] args, int index) throws IOException
+   {
+      switch (args[index])
+      {
+         case "--camera":
+            return new OpenCVFrameSource(Integer.parseInt(args[index + 1]), 640, 480, 10.0);
+         case "--synthetic":
+         {
+            String[] resolutionAndRate = args[index + 1].split("@");
+            String[] resolution = resolutionAndRate[0].split("x");
+            double frameRate = resolutionAndRate.length > 1 ? Double.parseDouble(resolutionAndRate[1]) : 30.0;
+            return new SyntheticFrameSource(Integer.parseInt(resolution[0]), Integer.parseInt(resolution[1]), frameRate);
+         }
+         case "--replay":
+         {
+            File path = new File(args[index + 1]);
+            double frameRate = hasOptionalValue(args, index + 2) ? Double.parseDouble(args[index + 2]) : 0.0;
+            return new ReplayFrameSource(path, frameRate);
+         }
+         default:
+            return null;
+      }
+   }
+
+   /**
+    * @return the number of arguments taken by the frame source option starting at
+    *         {@code args[index]}, including the option itself.
+    */
+   public static int getArgumentCount(String[] args, int index)
+   {
+      switch (args[index])
+      {
+         case "--camera":
+         case "--synthetic":
+            return 2;
+         case "--replay":
+            return hasOptionalValue(args, index + 2) ? 3 : 2;
+         default:
+            return 0;
+      }
+   }
+
+   private static boolean hasOptionalValue(String[] args, int index)
+   {
+      return index < args.length && !args[index].startsWith("--");
+   }
+}
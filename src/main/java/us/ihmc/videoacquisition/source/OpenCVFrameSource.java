@@ -0,0 +1,65 @@
+package us.ihmc.videoacquisition.source;
+
+import java.io.IOException;
+
+import org.bytedeco.javacv.Frame;
+import org.bytedeco.javacv.OpenCVFrameGrabber;
+
+/**
+ * Camera attached to this machine, read through OpenCV.
+ */
+public class OpenCVFrameSource implements FrameSource
+{
+   private final OpenCVFrameGrabber grabber;
+   private final double frameRate;
+
+   public OpenCVFrameSource(int deviceNumber, int imageWidth, int imageHeight, double frameRate)
+   {
+      this.frameRate = frameRate;
+      grabber = new OpenCVFrameGrabber(deviceNumber);
+      grabber.setImageWidth(imageWidth);
+      grabber.setImageHeight(imageHeight);
+   }
+
+   @Override
+   public void start() throws IOException
+   {
+      grabber.start();
+   }
+
+   @Override
+   public void restart() throws IOException
+   {
+      grabber.restart();
+   }
+
+   @Override
+   public void stop() throws IOException
+   {
+      grabber.stop();
+   }
+
+   @Override
+   public Frame grab() throws IOException
+   {
+      return grabber.grab();
+   }
+
+   @Override
+   public int getImageWidth()
+   {
+      return grabber.getImageWidth();
+   }
+
+   @Override
+   public int getImageHeight()
+   {
+      return grabber.getImageHeight();
+   }
+
+   @Override
+   public double getFrameRate()
+   {
+      return frameRate;
+   }
+}
@@ -0,0 +1,178 @@
+package us.ihmc.videoacquisition.source;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.bytedeco.javacv.FFmpegFrameGrabber;
+import org.bytedeco.javacv.Frame;
+
+/**
+ * Replays a video file, or a directory of images, in a loop through FFmpeg.
+ * <p>
+ * A video file is streamed from disk and rewound when it reaches the end. The images of a
+ * directory are all decoded when the source starts and then cycled through in file name order, so
+ * replaying them does not involve any disk access or decoding.
+ * </p>
+ */
+public class ReplayFrameSource implements FrameSource
+{
+   public static final double DEFAULT_IMAGE_DIRECTORY_FRAME_RATE = 30.0;
+
+   private final File path;
+   private final double frameRate;
+
+   private FFmpegFrameGrabber videoGrabber;
+   private final List<Frame> images = new ArrayList<>();
+   private int imageIndex = 0;
+   private int imageWidth;
+   private int imageHeight;
+
+   /**
+    * @param path      video file or directory of images to replay.
+    * @param frameRate rate at which to replay the frames, or 0 to use the native rate of the video
+    *                  file ({@value #DEFAULT_IMAGE_DIRECTORY_FRAME_RATE} Hz for image directories).
+    */
+   public ReplayFrameSource(File path, double frameRate) throws IOException
+   {
+      if (!path.exists())
+         throw new IOException("Nothing to replay at " + path.getAbsolutePath());
+
+      this.path = path;
+
+      if (frameRate > 0.0)
+      {
+         this.frameRate = frameRate;
+      }
+      else if (path.isDirectory())
+      {
+         this.frameRate = DEFAULT_IMAGE_DIRECTORY_FRAME_RATE;
+      }
+      else
+      {
+         // Probe the file for its native frame rate.
+         FFmpegFrameGrabber probe = new FFmpegFrameGrabber(path);
+         probe.start();
+         this.frameRate = probe.getFrameRate() > 0.0 ? probe.getFrameRate() : DEFAULT_IMAGE_DIRECTORY_FRAME_RATE;
+         probe.stop();
+         probe.release();
+      }
+   }
+
+   @Override
+   public void start() throws IOException
+   {
+      if (path.isDirectory())
+      {
+         loadImages();
+      }
+      else
+      {
+         videoGrabber = new FFmpegFrameGrabber(path);
+         videoGrabber.start();
+         imageWidth = videoGrabber.getImageWidth();
+         imageHeight = videoGrabber.getImageHeight();
+      }
+   }
+
+   private void loadImages() throws IOException
+   {
+      File[] files = path.listFiles(File::isFile);
+      if (files == null || files.length == 0)
+         throw new IOException("No images in " + path.getAbsolutePath());
+      Arrays.sort(files);
+
+      images.clear();
+      imageIndex = 0;
+
+      for (File file : files)
+      {
+         FFmpegFrameGrabber imageGrabber = new FFmpegFrameGrabber(file);
+
+         try
+         {
+            imageGrabber.start();
+            Frame image = imageGrabber.grabImage();
+
+            if (image != null)
+               images.add(image.clone());
+            else
+               System.err.println("Skipping " + file.getName() + ": no image found.");
+         }
+         catch (IOException e)
+         {
+            System.err.println("Skipping " + file.getName() + ": " + e.getMessage());
+         }
+         finally
+         {
+            imageGrabber.stop();
+            imageGrabber.release();
+         }
+      }
+
+      if (images.isEmpty())
+         throw new IOException("None of the files in " + path.getAbsolutePath() + " could be decoded");
+
+      imageWidth = images.get(0).imageWidth;
+      imageHeight = images.get(0).imageHeight;
+   }
+
+   @Override
+   public void stop() throws IOException
+   {
+      if (videoGrabber != null)
+      {
+         videoGrabber.stop();
+         videoGrabber.release();
+         videoGrabber = null;
+      }
+
+      for (Frame image : images)
+         image.close();
+      images.clear();
+   }
+
+   @Override
+   public Frame grab() throws IOException
+   {
+      if (videoGrabber != null)
+      {
+         Frame frame = videoGrabber.grabImage();
+
+         if (frame == null)
+         { // End of the file, loop back to the beginning.
+            videoGrabber.restart();
+            frame = videoGrabber.grabImage();
+         }
+
+         return frame;
+      }
+
+      if (images.isEmpty())
+         return null;
+
+      Frame image = images.get(imageIndex);
+      imageIndex = (imageIndex + 1) % images.size();
+      return image;
+   }
+
+   @Override
+   public int getImageWidth()
+   {
+      return imageWidth;
+   }
+
+   @Override
+   public int getImageHeight()
+   {
+      return imageHeight;
+   }
+
+   @Override
+   public double getFrameRate()
+   {
+      return frameRate;
+   }
+}
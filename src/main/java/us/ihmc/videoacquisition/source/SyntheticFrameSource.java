@@ -0,0 +1,225 @@
+package us.ihmc.videoacquisition.source;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.bytedeco.javacv.Frame;
+
+/**
+ * Generates moving test patterns without any camera, e.g. to load-test the encode and publish path
+ * on a build server or at resolutions our cameras do not support yet.
+ * <p>
+ * The output is fully deterministic: frame {@code n} of two sources created with the same
+ * parameters is identical, noise included.
+ * </p>
+ */
+public class SyntheticFrameSource implements FrameSource
+{
+   public enum Pattern
+   {
+      /** Vertical color bars scrolling horizontally. */
+      COLOR_BARS,
+      /** Diagonal color gradient drifting over time. */
+      GRADIENT,
+      /** Black and white checkerboard moving diagonally. */
+      CHECKERBOARD
+   }
+
+   public static final int MAX_IMAGE_WIDTH = 4096;
+   public static final int MAX_IMAGE_HEIGHT = 2160;
+
+   // White, yellow, cyan, green, magenta, red, blue, black in BGR order.
+   private static final byte[][] COLOR_BARS_BGR = {{(byte) 255, (byte) 255, (byte) 255},
+                                                   {0, (byte) 255, (byte) 255},
+                                                   {(byte) 255, (byte) 255, 0},
+                                                   {0, (byte) 255, 0},
+                                                   {(byte) 255, 0, (byte) 255},
+                                                   {0, 0, (byte) 255},
+                                                   {(byte) 255, 0, 0},
+                                                   {0, 0, 0}};
+   private static final int CHECKER_SIZE_LOG2 = 5;
+
+   private final int imageWidth;
+   private final int imageHeight;
+   private final double frameRate;
+   private final Pattern pattern;
+   private final int noiseAmplitude;
+   private final long seed;
+
+   private final Frame frame;
+   private final byte[] row;
+   private long frameIndex = 0;
+   private boolean started = false;
+
+   public SyntheticFrameSource(int imageWidth, int imageHeight, double frameRate)
+   {
+      this(imageWidth, imageHeight, frameRate, Pattern.COLOR_BARS, 8, 0L);
+   }
+
+   /**
+    * @param noiseAmplitude maximum per-channel deviation of the uniform noise added on top of the
+    *                       pattern, 0 to disable.
+    * @param seed           seed of the noise generator.
+    */
+   public SyntheticFrameSource(int imageWidth, int imageHeight, double frameRate, Pattern pattern, int noiseAmplitude, long seed)
+   {
+      if (imageWidth < 2 || imageHeight < 2 || imageWidth > MAX_IMAGE_WIDTH || imageHeight > MAX_IMAGE_HEIGHT)
+         throw new IllegalArgumentException("Unsupported resolution: " + imageWidth + "x" + imageHeight);
+      if (frameRate <= 0.0)
+         throw new IllegalArgumentException("Frame rate must be positive, was: " + frameRate);
+
+      this.imageWidth = imageWidth;
+      this.imageHeight = imageHeight;
+      this.frameRate = frameRate;
+      this.pattern = pattern;
+      this.noiseAmplitude = Math.max(0, Math.min(127, noiseAmplitude));
+      this.seed = seed;
+
+      frame = new Frame(imageWidth, imageHeight, Frame.DEPTH_UBYTE, 3);
+      row = new byte[imageWidth * 3];
+   }
+
+   @Override
+   public void start()
+   {
+      frameIndex = 0;
+      started = true;
+   }
+
+   @Override
+   public void stop()
+   {
+      started = false;
+   }
+
+   @Override
+   public Frame grab()
+   {
+      if (!started)
+         return null;
+
+      renderFrame(frameIndex);
+      frame.timestamp = (long) (frameIndex * 1.0e6 / frameRate);
+      frameIndex++;
+      return frame;
+   }
+
+   private void renderFrame(long index)
+   {
+      ByteBuffer pixels = (ByteBuffer) frame.image[0];
+      int stride = frame.imageStride;
+
+      int boxSize = Math.max(2, imageHeight / 6);
+      int boxX = bounce(index * 7, imageWidth - boxSize);
+      int boxY = bounce(index * 5, imageHeight - boxSize);
+
+      int noiseState = (int) (seed ^ (seed >>> 32)) ^ (int) (index * 0x9E3779B9L);
+      if (noiseState == 0)
+         noiseState = 0x2545F491;
+
+      for (int y = 0; y < imageHeight; y++)
+      {
+         fillPatternRow(y, index);
+
+         if (y >= boxY && y < boxY + boxSize)
+            Arrays.fill(row, boxX * 3, (boxX + boxSize) * 3, (byte) 160);
+
+         if (noiseAmplitude > 0)
+            noiseState = addNoise(noiseState);
+
+         pixels.position(y * stride);
+         pixels.put(row, 0, row.length);
+      }
+
+      pixels.position(0);
+   }
+
+   private void fillPatternRow(int y, long index)
+   {
+      switch (pattern)
+      {
+         case COLOR_BARS:
+         {
+            int shift = (int) (index * 4 % imageWidth);
+            for (int x = 0; x < imageWidth; x++)
+            {
+               byte[] color = COLOR_BARS_BGR[(int) ((long) ((x + shift) % imageWidth) * COLOR_BARS_BGR.length / imageWidth)];
+               row[3 * x] = color[0];
+               row[3 * x + 1] = color[1];
+               row[3 * x + 2] = color[2];
+            }
+            break;
+         }
+         case GRADIENT:
+         {
+            int t = (int) (index & 0xFFFF);
+            for (int x = 0; x < imageWidth; x++)
+            {
+               row[3 * x] = (byte) ((x * 255 / imageWidth + 2 * t) & 0xFF);
+               row[3 * x + 1] = (byte) ((y * 255 / imageHeight + t) & 0xFF);
+               row[3 * x + 2] = (byte) (((x + y) * 255 / (imageWidth + imageHeight) - 3 * t) & 0xFF);
+            }
+            break;
+         }
+         case CHECKERBOARD:
+         {
+            int shift = (int) (index * 2 & 0x7FFFFFFF);
+            for (int x = 0; x < imageWidth; x++)
+            {
+               byte value = (((x + shift) >> CHECKER_SIZE_LOG2 ^ (y + shift) >> CHECKER_SIZE_LOG2) & 1) == 0 ? (byte) 255 : 0;
+               row[3 * x] = value;
+               row[3 * x + 1] = value;
+               row[3 * x + 2] = value;
+            }
+            break;
+         }
+         default:
+            throw new IllegalStateException("Unexpected pattern: " + pattern);
+      }
+   }
+
+   private int addNoise(int state)
+   {
+      int range = 2 * noiseAmplitude + 1;
+
+      for (int i = 0; i < row.length; i++)
+      {
+         // xorshift32
+         state ^= state << 13;
+         state ^= state >>> 17;
+         state ^= state << 5;
+
+         int value = (row[i] & 0xFF) + ((state >>> 8) % range) - noiseAmplitude;
+         row[i] = (byte) (value < 0 ? 0 : value > 255 ? 255 : value);
+      }
+
+      return state;
+   }
+
+   private static int bounce(long position, int range)
+   {
+      if (range <= 0)
+         return 0;
+      int period = 2 * range;
+      int p = (int) (position % period);
+      return p <= range ? p : period - p;
+   }
+
+   @Override
+   public int getImageWidth()
+   {
+      return imageWidth;
+   }
+
+   @Override
+   public int getImageHeight()
+   {
+      return imageHeight;
+   }
+
+   @Override
+   public double getFrameRate()
+   {
+      return frameRate;
+   }
+}
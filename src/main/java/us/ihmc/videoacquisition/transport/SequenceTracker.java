@@ -0,0 +1,407 @@
+package us.ihmc.videoacquisition.transport;
+
+/**
+ * Follows the sequence IDs of the frames of one video source to measure the quality of the link.
+ * <p>
+ * The publisher numbers the frames of each video source consecutively, so every sequence ID that
+ * does not make it to the receiver is a frame lost on the way, whether none of its fragments
+ * arrived or the frame was discarded incomplete. The state of the last {@value #WINDOW_SIZE}
+ * sequence IDs is kept in a sliding window: a frame arriving behind a more recent one is counted as
+ * reordered, and a frame is only counted as lost once it leaves the window without having been
+ * completed. Consecutive lost frames are counted as one burst: a few long bursts, as from a Wi-Fi
+ * dropout, do not call for the same response as many isolated losses.
+ * </p>
+ * <p>
+ * The loss rate over the window gives the current quality of the link. The link is considered
+ * degraded once it goes over the degraded threshold, and recovered once it gets back under the
+ * recovered threshold, the gap between the two keeping the state from flapping.
+ * </p>
+ * <p>
+ * A sequence ID more than {@value #WINDOW_SIZE} behind the most recent one cannot be told apart
+ * from a publisher that restarted, or a log played back again: the window is then started over from
+ * that sequence ID, see {@link #reset()}.
+ * </p>
+ * <p>
+ * Updated from the thread of the {@link VideoFrameAssembler}, the statistics can be read from any
+ * thread.
+ * </p>
+ */
+public class SequenceTracker
+{
+   public static final int WINDOW_SIZE = 256;
+   public static final double DEFAULT_DEGRADED_LOSS_RATE = 0.05;
+   public static final double DEFAULT_RECOVERED_LOSS_RATE = 0.01;
+   /** Number of sequence IDs to follow before judging the quality of the link. */
+   private static final int MIN_FRAME_COUNT = WINDOW_SIZE / 4;
+
+   private static final byte MISSING = 0;
+   private static final byte RECEIVED = 1;
+   private static final byte COMPLETED = 2;
+   private static final byte DISCARDED = 3;
+
+   public interface LinkQualityListener
+   {
+      /**
+       * Called when the link of the video source of the tracker becomes degraded or recovers, see
+       * {@link SequenceTracker#isLinkDegraded()}.
+       */
+      void linkQualityChanged(SequenceTracker tracker);
+   }
+
+   private final byte videoSource;
+   private final double degradedLossRate;
+   private final double recoveredLossRate;
+   private final LinkQualityListener listener;
+
+   private final byte[] states = new byte[WINDOW_SIZE];
+   /** Most recent sequence ID received, -1 if none yet. */
+   private long highestSequenceId = -1;
+   /** Number of sequence IDs in the window, up to {@link #WINDOW_SIZE}. */
+   private int windowCount = 0;
+   private int windowLostCount = 0;
+   private int currentBurstLength = 0;
+
+   private volatile boolean linkDegraded = false;
+   private volatile double windowLossRate = 0.0;
+   private volatile long completedFrameCount = 0;
+   private volatile long lostFrameCount = 0;
+   private volatile long reorderedFrameCount = 0;
+   private volatile long staleFrameCount = 0;
+   private volatile long duplicateFragmentCount = 0;
+   private volatile long burstCount = 0;
+   private volatile long burstFrameCount = 0;
+   private volatile int maxBurstLength = 0;
+   private volatile long streamRestartCount = 0;
+
+   /**
+    * @param degradedLossRate  loss rate over the window above which the link is considered degraded.
+    * @param recoveredLossRate loss rate over the window under which a degraded link is considered
+    *                          recovered.
+    * @param listener          notified when the link becomes degraded or recovers, may be
+    *                          {@code null}.
+    */
+   public SequenceTracker(byte videoSource, double degradedLossRate, double recoveredLossRate, LinkQualityListener listener)
+   {
+      this.videoSource = videoSource;
+      this.degradedLossRate = degradedLossRate;
+      this.recoveredLossRate = recoveredLossRate;
+      this.listener = listener;
+   }
+
+   /**
+    * To be called for every fragment received, with the sequence ID of its frame.
+    *
+    * @return {@code true} if the sequence ID jumped back by more than the window, in which case the
+    *         window was {@link #reset() reset} and restarted from it.
+    */
+   boolean packetReceived(long sequenceId)
+   {
+      if (highestSequenceId < 0)
+      {
+         startWindow(sequenceId);
+         return false;
+      }
+
+      // Sequence IDs are uint32 that may wrap around.
+      int advance = (int) (sequenceId - highestSequenceId);
+
+      if (advance < -WINDOW_SIZE)
+      {
+         reset();
+         startWindow(sequenceId);
+         return true;
+      }
+      else if (advance > 0)
+      {
+         advanceWindow(sequenceId, advance);
+      }
+      else if (-advance < windowCount)
+      {
+         if (states[index(sequenceId)] == MISSING)
+         {
+            states[index(sequenceId)] = RECEIVED;
+            windowLostCount--;
+            reorderedFrameCount++;
+            updateLinkQuality();
+         }
+      }
+      else
+      {
+         staleFrameCount++;
+      }
+
+      return false;
+   }
+
+   private void startWindow(long sequenceId)
+   {
+      highestSequenceId = sequenceId;
+      states[index(sequenceId)] = RECEIVED;
+      windowCount = 1;
+   }
+
+   /**
+    * Forgets the sequence IDs in the window, when the publisher started a new stream. The frames
+    * missing from the window are not counted as lost, the totals are kept.
+    */
+   void reset()
+   {
+      if (currentBurstLength > 0)
+         endBurst();
+
+      highestSequenceId = -1;
+      windowCount = 0;
+      windowLostCount = 0;
+      windowLossRate = 0.0;
+      streamRestartCount++;
+   }
+
+   void frameCompleted(long sequenceId)
+   {
+      if (isInWindow(sequenceId))
+         states[index(sequenceId)] = COMPLETED;
+      completedFrameCount++;
+   }
+
+   /**
+    * To be called when a frame is given up on before being completed.
+    */
+   void frameDiscarded(long sequenceId)
+   {
+      if (isInWindow(sequenceId) && states[index(sequenceId)] == RECEIVED)
+      {
+         states[index(sequenceId)] = DISCARDED;
+         windowLostCount++;
+         updateLinkQuality();
+      }
+   }
+
+   void duplicateFragmentReceived()
+   {
+      duplicateFragmentCount++;
+   }
+
+   /**
+    * @return whether the frame with the given sequence ID was completed. Frames that left the window
+    *         are reported as not completed.
+    */
+   boolean hasCompleted(long sequenceId)
+   {
+      return isInWindow(sequenceId) && states[index(sequenceId)] == COMPLETED;
+   }
+
+   private void advanceWindow(long sequenceId, int advance)
+   {
+      if (advance > WINDOW_SIZE)
+      {
+         // None of the sequence IDs between the window and the new one arrived.
+         for (int i = 0; i < windowCount; i++)
+            evict(states[index(highestSequenceId - windowCount + 1 + i)]);
+         int skippedCount = advance - WINDOW_SIZE;
+         lostFrameCount += skippedCount;
+         currentBurstLength += skippedCount;
+         maxBurstLength = Math.max(maxBurstLength, currentBurstLength);
+
+         windowCount = 0;
+         windowLostCount = 0;
+         highestSequenceId = sequenceId - WINDOW_SIZE;
+         advance = WINDOW_SIZE;
+      }
+
+      for (int i = 1; i <= advance; i++)
+      {
+         long nextSequenceId = highestSequenceId + i;
+         int index = index(nextSequenceId);
+
+         if (windowCount == WINDOW_SIZE)
+            evict(states[index]);
+         else
+            windowCount++;
+
+         if (i == advance)
+         {
+            states[index] = RECEIVED;
+         }
+         else
+         {
+            states[index] = MISSING;
+            windowLostCount++;
+         }
+      }
+
+      highestSequenceId = sequenceId;
+      updateLinkQuality();
+   }
+
+   /**
+    * Accounts for the oldest sequence ID of the window, about to be overwritten.
+    */
+   private void evict(byte state)
+   {
+      if (state == MISSING || state == DISCARDED)
+      {
+         windowLostCount--;
+         lostFrameCount++;
+         currentBurstLength++;
+         maxBurstLength = Math.max(maxBurstLength, currentBurstLength);
+      }
+      else if (currentBurstLength > 0)
+      {
+         endBurst();
+      }
+   }
+
+   private void endBurst()
+   {
+      burstCount++;
+      burstFrameCount += currentBurstLength;
+      currentBurstLength = 0;
+   }
+
+   private void updateLinkQuality()
+   {
+      windowLossRate = windowCount == 0 ? 0.0 : (double) windowLostCount / windowCount;
+
+      if (windowCount < MIN_FRAME_COUNT)
+         return;
+
+      boolean degraded = linkDegraded ? windowLossRate > recoveredLossRate : windowLossRate >= degradedLossRate;
+
+      if (degraded != linkDegraded)
+      {
+         linkDegraded = degraded;
+         if (listener != null)
+            listener.linkQualityChanged(this);
+      }
+   }
+
+   private boolean isInWindow(long sequenceId)
+   {
+      int age = (int) (highestSequenceId - sequenceId);
+      return highestSequenceId >= 0 && age >= 0 && age < windowCount;
+   }
+
+   private static int index(long sequenceId)
+   {
+      return (int) (sequenceId & (WINDOW_SIZE - 1));
+   }
+
+   public byte getVideoSource()
+   {
+      return videoSource;
+   }
+
+   /**
+    * @return whether the loss rate over the window went over the degraded threshold and has not yet
+    *         gone back under the recovered threshold.
+    */
+   public boolean isLinkDegraded()
+   {
+      return linkDegraded;
+   }
+
+   /**
+    * @return the fraction of the last {@value #WINDOW_SIZE} frames that are missing or were
+    *         discarded.
+    */
+   public double getWindowLossRate()
+   {
+      return windowLossRate;
+   }
+
+   /**
+    * @return the fraction of the frames lost over the frames completed or lost so far.
+    */
+   public double getLossRate()
+   {
+      long expected = completedFrameCount + lostFrameCount;
+      return expected == 0 ? 0.0 : (double) lostFrameCount / expected;
+   }
+
+   public long getCompletedFrameCount()
+   {
+      return completedFrameCount;
+   }
+
+   /**
+    * @return the number of frames that left the window without having been completed.
+    */
+   public long getLostFrameCount()
+   {
+      return lostFrameCount;
+   }
+
+   /**
+    * @return the number of frames whose first fragment arrived after a fragment of a more recent
+    *         frame.
+    */
+   public long getReorderedFrameCount()
+   {
+      return reorderedFrameCount;
+   }
+
+   /**
+    * @return the number of fragments of frames too old to be in the window anymore.
+    */
+   public long getStaleFrameCount()
+   {
+      return staleFrameCount;
+   }
+
+   /**
+    * @return the number of fragments received twice, or after their frame was completed.
+    */
+   public long getDuplicateFragmentCount()
+   {
+      return duplicateFragmentCount;
+   }
+
+   /**
+    * @return the number of times the window was started over, see {@link #reset()}.
+    */
+   public long getStreamRestartCount()
+   {
+      return streamRestartCount;
+   }
+
+   /**
+    * @return the number of runs of consecutive lost frames that ended.
+    */
+   public long getBurstCount()
+   {
+      return burstCount;
+   }
+
+   public int getMaxBurstLength()
+   {
+      return maxBurstLength;
+   }
+
+   /**
+    * @return the average number of consecutive frames lost in the bursts that ended.
+    */
+   public double getMeanBurstLength()
+   {
+      long burstCount = this.burstCount;
+      return burstCount == 0 ? 0.0 : (double) burstFrameCount / burstCount;
+   }
+
+   public String getStatistics()
+   {
+      return String.format("video source %d: %s, %.2f%% lost over last %d frames | %d completed, %d lost (%.2f%%), %d reordered, %d stale, %d duplicate fragments, %d restarts | %d bursts, mean %.1f, max %d",
+                           videoSource & 0xFF,
+                           linkDegraded ? "degraded" : "ok",
+                           100.0 * windowLossRate,
+                           WINDOW_SIZE,
+                           completedFrameCount,
+                           lostFrameCount,
+                           100.0 * getLossRate(),
+                           reorderedFrameCount,
+                           staleFrameCount,
+                           duplicateFragmentCount,
+                           streamRestartCount,
+                           burstCount,
+                           getMeanBurstLength(),
+                           maxBurstLength);
+   }
+}
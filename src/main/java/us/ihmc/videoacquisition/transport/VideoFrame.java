@@ -0,0 +1,197 @@
+package us.ihmc.videoacquisition.transport;
+
+import java.util.Arrays;
+
+/**
+ * Compressed frame put back together by a {@link VideoFrameAssembler} from its
+ * {@link controller_msgs.msg.dds.VideoPacket} fragments.
+ * <p>
+ * Frames are pooled by the assembler and preallocated to the largest frame it accepts: once done
+ * with a frame handed over by the assembler, call {@link #release()} to make it available for the
+ * next frames.
+ * </p>
+ */
+public class VideoFrame
+{
+   private final VideoFrameAssembler assembler;
+
+   private byte videoSource;
+   private byte codec;
+   private long sequenceId;
+   private long timestamp;
+   private long clockId;
+   private long captureTime;
+   private long encodeTime;
+   private long publishTime;
+   private final byte[] data;
+   private int size;
+
+   private final boolean[] receivedFragments;
+   private int fragmentCount;
+   private int receivedFragmentCount;
+   private long firstFragmentReceptionTime;
+   private boolean linkDegraded;
+   private boolean streamRestart;
+
+   VideoFrame(VideoFrameAssembler assembler, int maxSize, int maxFragmentCount)
+   {
+      this.assembler = assembler;
+      data = new byte[maxSize];
+      receivedFragments = new boolean[maxFragmentCount];
+   }
+
+   void start(byte videoSource, byte codec, long sequenceId, long timestamp, int size, int fragmentCount, long receptionTime)
+   {
+      this.videoSource = videoSource;
+      this.codec = codec;
+      this.sequenceId = sequenceId;
+      this.timestamp = timestamp;
+      this.size = size;
+      this.fragmentCount = fragmentCount;
+      receivedFragmentCount = 0;
+      firstFragmentReceptionTime = receptionTime;
+      linkDegraded = false;
+      streamRestart = false;
+      Arrays.fill(receivedFragments, 0, fragmentCount, false);
+   }
+
+   void setLatencyTimes(long clockId, long captureTime, long encodeTime, long publishTime)
+   {
+      this.clockId = clockId;
+      this.captureTime = captureTime;
+      this.encodeTime = encodeTime;
+      this.publishTime = publishTime;
+   }
+
+   void setLinkDegraded(boolean linkDegraded)
+   {
+      this.linkDegraded = linkDegraded;
+   }
+
+   void setStreamRestart(boolean streamRestart)
+   {
+      this.streamRestart = streamRestart;
+   }
+
+   boolean hasFragment(int fragmentIndex)
+   {
+      return receivedFragments[fragmentIndex];
+   }
+
+   void markFragmentReceived(int fragmentIndex)
+   {
+      receivedFragments[fragmentIndex] = true;
+      receivedFragmentCount++;
+   }
+
+   boolean isComplete()
+   {
+      return receivedFragmentCount == fragmentCount;
+   }
+
+   int getMissingFragmentCount()
+   {
+      return fragmentCount - receivedFragmentCount;
+   }
+
+   long getFirstFragmentReceptionTime()
+   {
+      return firstFragmentReceptionTime;
+   }
+
+   /**
+    * Hands this frame back to the pool of its assembler. The frame must not be used afterwards.
+    */
+   public void release()
+   {
+      assembler.release(this);
+   }
+
+   public byte getVideoSource()
+   {
+      return videoSource;
+   }
+
+   /**
+    * @return the compression of the frame, one of the {@code CODEC_} constants of
+    *         {@link controller_msgs.msg.dds.VideoPacket}.
+    */
+   public byte getCodec()
+   {
+      return codec;
+   }
+
+   public long getSequenceId()
+   {
+      return sequenceId;
+   }
+
+   public long getTimestamp()
+   {
+      return timestamp;
+   }
+
+   /**
+    * @return the ID of the clock the publisher stamped the latency times in, 0 if the publisher did
+    *         not stamp them, see {@link us.ihmc.videoacquisition.latency.VideoClock}.
+    */
+   public long getClockId()
+   {
+      return clockId;
+   }
+
+   /**
+    * @return the time in nanoseconds since the epoch at which the frame was grabbed, in the clock of
+    *         the publisher.
+    */
+   public long getCaptureTime()
+   {
+      return captureTime;
+   }
+
+   public long getEncodeTime()
+   {
+      return encodeTime;
+   }
+
+   public long getPublishTime()
+   {
+      return publishTime;
+   }
+
+   /**
+    * @return the buffer holding the frame in its first {@link #getSize()} bytes.
+    */
+   public byte[] getData()
+   {
+      return data;
+   }
+
+   public int getSize()
+   {
+      return size;
+   }
+
+   public int getFragmentCount()
+   {
+      return fragmentCount;
+   }
+
+   /**
+    * @return whether the link of the video source was degraded when the frame completed, see
+    *         {@link SequenceTracker#isLinkDegraded()}.
+    */
+   public boolean isLinkDegraded()
+   {
+      return linkDegraded;
+   }
+
+   /**
+    * @return whether the frame is the first completed one of a new stream of its video source, as
+    *         when the publisher restarted: it does not follow on from the frames received before.
+    */
+   public boolean isStreamRestart()
+   {
+      return streamRestart;
+   }
+}
@@ -0,0 +1,471 @@
+package us.ihmc.videoacquisition.transport;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.function.Consumer;
+
+import controller_msgs.msg.dds.VideoPacket;
+import us.ihmc.videoacquisition.pipeline.EncodedFrame;
+import us.ihmc.videoacquisition.pipeline.VideoPacketData;
+
+/**
+ * Puts back together the frames sent in several {@link VideoPacket}s, see
+ * {@link EncodedFrame#packFragment(int)}.
+ * <p>
+ * Fragments are identified by the video source and sequence ID of their frame, and are copied
+ * straight at their offset in a pooled {@link VideoFrame}, preallocated to hold the largest frame
+ * accepted: the fragments of larger frames are rejected before a frame is claimed for them.
+ * Several frames, from one or several video sources, can be assembled at once. A frame is
+ * discarded when it is still incomplete after the timeout, or when a more recent frame of the same
+ * video source completes first: for live video there is no point in waiting for an older frame.
+ * </p>
+ * <p>
+ * The sequence IDs of each video source are followed by a {@link SequenceTracker}, counting the
+ * frames lost, reordered and duplicated and telling when the link degrades. A change of the clock
+ * ID, or a jump back of the sequence IDs larger than the window of the tracker, is a publisher that
+ * restarted or a log played back again: the video source is then started over as a new stream,
+ * see {@link VideoFrame#isStreamRestart()}.
+ * </p>
+ * <p>
+ * {@link #handle(VideoPacket)} is expected to be called from a single thread, typically the
+ * subscription thread. Completed frames are passed to the frame consumer on that thread and can be
+ * released from any thread.
+ * </p>
+ */
+public class VideoFrameAssembler
+{
+   public static final long DEFAULT_TIMEOUT_MILLIS = 500;
+   public static final int DEFAULT_POOL_SIZE = 8;
+   private static final int MAX_FRAGMENT_COUNT = (EncodedFrame.MAX_FRAME_SIZE + VideoPacketData.MAX_SIZE - 1) / VideoPacketData.MAX_SIZE;
+
+   private final Consumer<VideoFrame> frameConsumer;
+   private final long timeoutNanos;
+   private final int poolSize;
+   private final int maxFrameSize;
+
+   private final ArrayBlockingQueue<VideoFrame> freeFrames;
+   private int allocatedFrameCount = 0;
+   private final VideoFrame[] pendingFrames;
+   private int pendingFrameCount = 0;
+   /** Sequence ID of the last completed frame of each video source, -1 if none yet. */
+   private final long[] lastCompletedSequenceIds = new long[256];
+   private final SequenceTracker[] sequenceTrackers = new SequenceTracker[256];
+   /** Clock ID of the publisher of each video source. */
+   private final long[] clockIds = new long[256];
+   /** Whether the next completed frame of each video source is the first of a new stream. */
+   private final boolean[] streamRestarts = new boolean[256];
+   private volatile double degradedLossRate = SequenceTracker.DEFAULT_DEGRADED_LOSS_RATE;
+   private volatile double recoveredLossRate = SequenceTracker.DEFAULT_RECOVERED_LOSS_RATE;
+   private volatile SequenceTracker.LinkQualityListener linkQualityListener = null;
+
+   private volatile long receivedFragmentCount = 0;
+   private volatile long duplicateFragmentCount = 0;
+   private volatile long lateFragmentCount = 0;
+   private volatile long droppedFragmentCount = 0;
+   private volatile long invalidFragmentCount = 0;
+   private volatile long oversizeFragmentCount = 0;
+   private volatile long lostFragmentCount = 0;
+   private volatile long completedFrameCount = 0;
+   private volatile long discardedFrameCount = 0;
+
+   public VideoFrameAssembler(Consumer<VideoFrame> frameConsumer)
+   {
+      this(frameConsumer, DEFAULT_TIMEOUT_MILLIS, DEFAULT_POOL_SIZE);
+   }
+
+   /**
+    * @param frameConsumer receives each completed frame, which it has to {@link VideoFrame#release()
+    *                      release} when done with it.
+    * @param timeoutMillis how long to wait for the missing fragments of a frame after receiving its
+    *                      first one.
+    * @param poolSize      maximum number of frames being assembled or held by the consumer.
+    */
+   public VideoFrameAssembler(Consumer<VideoFrame> frameConsumer, long timeoutMillis, int poolSize)
+   {
+      this(frameConsumer, timeoutMillis, poolSize, EncodedFrame.DEFAULT_MAX_FRAME_SIZE);
+   }
+
+   /**
+    * @param maxFrameSize size of the largest frame accepted, at most
+    *                     {@link EncodedFrame#MAX_FRAME_SIZE}. Each frame of the pool is allocated
+    *                     to this size.
+    */
+   public VideoFrameAssembler(Consumer<VideoFrame> frameConsumer, long timeoutMillis, int poolSize, int maxFrameSize)
+   {
+      if (maxFrameSize > EncodedFrame.MAX_FRAME_SIZE)
+         throw new IllegalArgumentException("The maximum frame size cannot exceed " + EncodedFrame.MAX_FRAME_SIZE + ", got " + maxFrameSize);
+
+      this.frameConsumer = frameConsumer;
+      this.timeoutNanos = timeoutMillis * 1000000L;
+      this.poolSize = poolSize;
+      this.maxFrameSize = maxFrameSize;
+
+      freeFrames = new ArrayBlockingQueue<>(poolSize);
+      pendingFrames = new VideoFrame[poolSize];
+      Arrays.fill(lastCompletedSequenceIds, -1L);
+   }
+
+   /**
+    * Sets the loss rates, over the last {@value SequenceTracker#WINDOW_SIZE} frames of a video
+    * source, at which its link is considered degraded and then recovered. Applies to the video
+    * sources not received yet.
+    */
+   public void setLinkQualityThresholds(double degradedLossRate, double recoveredLossRate)
+   {
+      this.degradedLossRate = degradedLossRate;
+      this.recoveredLossRate = recoveredLossRate;
+   }
+
+   /**
+    * @param linkQualityListener notified, on the thread calling {@link #handle(VideoPacket)}, when
+    *                            the link of a video source becomes degraded or recovers. Applies to
+    *                            the video sources not received yet.
+    */
+   public void setLinkQualityListener(SequenceTracker.LinkQualityListener linkQualityListener)
+   {
+      this.linkQualityListener = linkQualityListener;
+   }
+
+   public void handle(VideoPacket packet)
+   {
+      handle(packet, System.nanoTime());
+   }
+
+   /**
+    * @param receptionTime arrival time of the packet in nanoseconds, on the {@link System#nanoTime()}
+    *                      clock.
+    */
+   public void handle(VideoPacket packet, long receptionTime)
+   {
+      receivedFragmentCount++;
+      discardExpiredFrames(receptionTime);
+
+      int length = packet.getData().size();
+      int fragmentCount = Math.max(1, packet.getFragmentCount());
+      int fragmentIndex = fragmentCount == 1 ? 0 : packet.getFragmentIndex();
+      int fragmentOffset = fragmentCount == 1 ? 0 : packet.getFragmentOffset();
+      int frameSize = fragmentCount == 1 ? length : packet.getFrameSize();
+
+      if (frameSize > maxFrameSize)
+      {
+         oversizeFragmentCount++;
+         return;
+      }
+
+      if (fragmentCount > MAX_FRAGMENT_COUNT || fragmentIndex < 0 || fragmentIndex >= fragmentCount || fragmentOffset < 0 || fragmentOffset + length > frameSize)
+      {
+         invalidFragmentCount++;
+         return;
+      }
+
+      byte videoSource = packet.getVideoSource();
+      long sequenceId = packet.getSequenceId();
+      SequenceTracker sequenceTracker = sequenceTrackers[videoSource & 0xFF];
+
+      if (sequenceTracker == null)
+      {
+         sequenceTracker = new SequenceTracker(videoSource, degradedLossRate, recoveredLossRate, linkQualityListener);
+         sequenceTrackers[videoSource & 0xFF] = sequenceTracker;
+         clockIds[videoSource & 0xFF] = packet.getClockId();
+      }
+      else if (packet.getClockId() != clockIds[videoSource & 0xFF])
+      {
+         clockIds[videoSource & 0xFF] = packet.getClockId();
+         sequenceTracker.reset();
+         restartStream(videoSource);
+      }
+
+      if (sequenceTracker.packetReceived(sequenceId))
+         restartStream(videoSource);
+
+      long lastCompletedSequenceId = lastCompletedSequenceIds[videoSource & 0xFF];
+
+      // Sequence IDs are uint32 that may wrap around.
+      if (lastCompletedSequenceId >= 0 && (int) (sequenceId - lastCompletedSequenceId) <= 0)
+      {
+         if (sequenceTracker.hasCompleted(sequenceId))
+         {
+            duplicateFragmentCount++;
+            sequenceTracker.duplicateFragmentReceived();
+         }
+         else
+         {
+            lateFragmentCount++;
+            sequenceTracker.frameDiscarded(sequenceId);
+         }
+         return;
+      }
+
+      VideoFrame frame = findPendingFrame(videoSource, sequenceId);
+
+      if (frame == null)
+      {
+         frame = claimFrame();
+
+         if (frame == null)
+         {
+            droppedFragmentCount++;
+            sequenceTracker.frameDiscarded(sequenceId);
+            return;
+         }
+
+         frame.start(videoSource, packet.getCodec(), sequenceId, packet.getTimestamp(), frameSize, fragmentCount, receptionTime);
+         frame.setLatencyTimes(packet.getClockId(), packet.getCaptureTime(), packet.getEncodeTime(), packet.getPublishTime());
+         pendingFrames[pendingFrameCount++] = frame;
+      }
+      else if (frame.getFragmentCount() != fragmentCount || frame.getSize() != frameSize)
+      { // Does not fit the layout given by the first fragment, e.g. two publishers on one video source.
+         invalidFragmentCount++;
+         return;
+      }
+
+      if (frame.hasFragment(fragmentIndex))
+      {
+         duplicateFragmentCount++;
+         sequenceTracker.duplicateFragmentReceived();
+         return;
+      }
+
+      packet.getData().toArray(frame.getData(), 0, fragmentOffset, length);
+      frame.markFragmentReceived(fragmentIndex);
+
+      if (frame.isComplete())
+      {
+         removePendingFrame(frame);
+         lastCompletedSequenceIds[videoSource & 0xFF] = sequenceId;
+         sequenceTracker.frameCompleted(sequenceId);
+         discardOlderFrames(videoSource, sequenceId);
+         completedFrameCount++;
+         frame.setLinkDegraded(sequenceTracker.isLinkDegraded());
+         frame.setStreamRestart(streamRestarts[videoSource & 0xFF]);
+         streamRestarts[videoSource & 0xFF] = false;
+         frameConsumer.accept(frame);
+      }
+   }
+
+   /**
+    * Gives up on the frames of the previous stream of the video source, the sequence IDs of the new
+    * one are not related to them.
+    */
+   private void restartStream(byte videoSource)
+   {
+      lastCompletedSequenceIds[videoSource & 0xFF] = -1L;
+      streamRestarts[videoSource & 0xFF] = true;
+
+      for (int i = pendingFrameCount - 1; i >= 0; i--)
+      {
+         if (pendingFrames[i].getVideoSource() == videoSource)
+            discard(pendingFrames[i]);
+      }
+   }
+
+   void release(VideoFrame frame)
+   {
+      freeFrames.offer(frame);
+   }
+
+   private VideoFrame findPendingFrame(byte videoSource, long sequenceId)
+   {
+      for (int i = 0; i < pendingFrameCount; i++)
+      {
+         VideoFrame frame = pendingFrames[i];
+         if (frame.getVideoSource() == videoSource && frame.getSequenceId() == sequenceId)
+            return frame;
+      }
+
+      return null;
+   }
+
+   /**
+    * @return a free frame, or {@code null} if all the frames are held by the consumer.
+    */
+   private VideoFrame claimFrame()
+   {
+      VideoFrame frame = freeFrames.poll();
+      if (frame != null)
+         return frame;
+
+      if (allocatedFrameCount < poolSize)
+      {
+         allocatedFrameCount++;
+         return new VideoFrame(this, maxFrameSize, MAX_FRAGMENT_COUNT);
+      }
+
+      if (pendingFrameCount == 0)
+         return null;
+
+      // Give up on the frame that has been waiting the longest.
+      VideoFrame oldest = pendingFrames[0];
+      for (int i = 1; i < pendingFrameCount; i++)
+      {
+         if (pendingFrames[i].getFirstFragmentReceptionTime() < oldest.getFirstFragmentReceptionTime())
+            oldest = pendingFrames[i];
+      }
+
+      removePendingFrame(oldest);
+      countDiscardedFrame(oldest);
+      return oldest;
+   }
+
+   private void discardExpiredFrames(long now)
+   {
+      for (int i = pendingFrameCount - 1; i >= 0; i--)
+      {
+         VideoFrame frame = pendingFrames[i];
+         if (now - frame.getFirstFragmentReceptionTime() > timeoutNanos)
+            discard(frame);
+      }
+   }
+
+   private void discardOlderFrames(byte videoSource, long sequenceId)
+   {
+      for (int i = pendingFrameCount - 1; i >= 0; i--)
+      {
+         VideoFrame frame = pendingFrames[i];
+         if (frame.getVideoSource() == videoSource && (int) (sequenceId - frame.getSequenceId()) > 0)
+            discard(frame);
+      }
+   }
+
+   private void discard(VideoFrame frame)
+   {
+      removePendingFrame(frame);
+      countDiscardedFrame(frame);
+      freeFrames.offer(frame);
+   }
+
+   private void countDiscardedFrame(VideoFrame frame)
+   {
+      sequenceTrackers[frame.getVideoSource() & 0xFF].frameDiscarded(frame.getSequenceId());
+      discardedFrameCount++;
+      lostFragmentCount += frame.getMissingFragmentCount();
+   }
+
+   private void removePendingFrame(VideoFrame frame)
+   {
+      for (int i = 0; i < pendingFrameCount; i++)
+      {
+         if (pendingFrames[i] == frame)
+         {
+            pendingFrames[i] = pendingFrames[--pendingFrameCount];
+            pendingFrames[pendingFrameCount] = null;
+            return;
+         }
+      }
+   }
+
+   public long getReceivedFragmentCount()
+   {
+      return receivedFragmentCount;
+   }
+
+   /**
+    * @return the tracker of the sequence IDs of the given video source, {@code null} if nothing was
+    *         received from it yet.
+    */
+   public SequenceTracker getSequenceTracker(byte videoSource)
+   {
+      return sequenceTrackers[videoSource & 0xFF];
+   }
+
+   /**
+    * @return the trackers of the video sources received so far.
+    */
+   public List<SequenceTracker> getSequenceTrackers()
+   {
+      List<SequenceTracker> trackers = new ArrayList<>();
+      for (SequenceTracker sequenceTracker : sequenceTrackers)
+      {
+         if (sequenceTracker != null)
+            trackers.add(sequenceTracker);
+      }
+      return trackers;
+   }
+
+   /**
+    * @return the number of fragments received twice, or after their frame was completed.
+    */
+   public long getDuplicateFragmentCount()
+   {
+      return duplicateFragmentCount;
+   }
+
+   /**
+    * @return the number of fragments of frames given up on, received after a more recent frame of
+    *         the same video source was completed.
+    */
+   public long getLateFragmentCount()
+   {
+      return lateFragmentCount;
+   }
+
+   /**
+    * @return the number of fragments dropped because all the frames were held by the consumer.
+    */
+   public long getDroppedFragmentCount()
+   {
+      return droppedFragmentCount;
+   }
+
+   /**
+    * @return the number of fragments whose layout is inconsistent, in itself or with the first
+    *         fragment received of their frame.
+    */
+   public long getInvalidFragmentCount()
+   {
+      return invalidFragmentCount;
+   }
+
+   /**
+    * @return the number of fragments of frames larger than the maximum frame size, rejected.
+    */
+   public long getOversizeFragmentCount()
+   {
+      return oversizeFragmentCount;
+   }
+
+   /**
+    * @return the number of fragments that never arrived in the discarded frames.
+    */
+   public long getLostFragmentCount()
+   {
+      return lostFragmentCount;
+   }
+
+   public long getCompletedFrameCount()
+   {
+      return completedFrameCount;
+   }
+
+   public long getDiscardedFrameCount()
+   {
+      return discardedFrameCount;
+   }
+
+   /**
+    * @return the fraction of the fragments of the discarded frames that never arrived, over all the
+    *         fragments expected so far.
+    */
+   public double getFragmentLossRate()
+   {
+      long expected = receivedFragmentCount + lostFragmentCount;
+      return expected == 0 ? 0.0 : (double) lostFragmentCount / expected;
+   }
+
+   public String getStatistics()
+   {
+      return String.format("frames: %d completed, %d discarded | fragments: %d received, %d lost (%.2f%%), %d late, %d duplicate, %d dropped, %d invalid, %d oversize",
+                           completedFrameCount,
+                           discardedFrameCount,
+                           receivedFragmentCount,
+                           lostFragmentCount,
+                           100.0 * getFragmentLossRate(),
+                           lateFragmentCount,
+                           duplicateFragmentCount,
+                           droppedFragmentCount,
+                           invalidFragmentCount,
+                           oversizeFragmentCount);
+   }
+}
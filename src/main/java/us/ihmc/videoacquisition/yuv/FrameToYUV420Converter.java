@@ -0,0 +1,147 @@
+package us.ihmc.videoacquisition.yuv;
+
+import java.nio.ByteBuffer;
+
+import org.bytedeco.javacv.Frame;
+
+/**
+ * Converts packed BGR/BGRA frames, as produced by the OpenCV and FFmpeg grabbers, straight into
+ * planar YUV 4:2:0 without going through a {@link java.awt.image.BufferedImage}.
+ * <p>
+ * Uses the same BT.601 limited-range integer coefficients as libyuv, which the
+ * {@link us.ihmc.codecs.yuv.YUVPictureConverter} path relies on, so both paths produce the same
+ * planes up to rounding. Chroma is sampled from the average of each 2x2 block.
+ * </p>
+ * <p>
+ * An instance keeps its row buffers between calls and is not thread-safe.
+ * </p>
+ */
+public class FrameToYUV420Converter
+{
+   private byte[] bgrRow0 = new byte[0];
+   private byte[] bgrRow1 = new byte[0];
+   private byte[] yRow0 = new byte[0];
+   private byte[] yRow1 = new byte[0];
+   private byte[] uRow = new byte[0];
+   private byte[] vRow = new byte[0];
+
+   public void convert(Frame frame, YUV420Image yuvImageToPack)
+   {
+      if (frame.imageDepth != Frame.DEPTH_UBYTE)
+         throw new IllegalArgumentException("Only 8-bit frames are supported, depth was: " + frame.imageDepth);
+      if (frame.imageChannels != 3 && frame.imageChannels != 4)
+         throw new IllegalArgumentException("Only BGR and BGRA frames are supported, channels: " + frame.imageChannels);
+
+      // Another thread, e.g. the preview, may be reading the same frame: do not move its position.
+      ByteBuffer source = ((ByteBuffer) frame.image[0]).duplicate();
+      convert(source, frame.imageWidth, frame.imageHeight, frame.imageChannels, frame.imageStride, yuvImageToPack);
+   }
+
+   /**
+    * @param source      packed BGR or BGRA pixels, starting at index 0.
+    * @param pixelStride number of bytes per pixel, 3 for BGR and 4 for BGRA.
+    * @param rowStride   number of bytes per row.
+    */
+   public void convert(ByteBuffer source, int width, int height, int pixelStride, int rowStride, YUV420Image yuvImageToPack)
+   {
+      yuvImageToPack.reshape(width, height);
+      int chromaWidth = yuvImageToPack.getChromaWidth();
+      ensureRowCapacity(width * pixelStride, width, chromaWidth);
+
+      ByteBuffer yPlane = yuvImageToPack.getY();
+      ByteBuffer uPlane = yuvImageToPack.getU();
+      ByteBuffer vPlane = yuvImageToPack.getV();
+      int yStride = yuvImageToPack.getYStride();
+      int uStride = yuvImageToPack.getUStride();
+      int vStride = yuvImageToPack.getVStride();
+      int rowLength = width * pixelStride;
+
+      for (int row = 0; row < height; row += 2)
+      {
+         boolean hasSecondRow = row + 1 < height;
+
+         source.position(row * rowStride);
+         source.get(bgrRow0, 0, rowLength);
+         byte[] secondRow = bgrRow0;
+         if (hasSecondRow)
+         {
+            source.position((row + 1) * rowStride);
+            source.get(bgrRow1, 0, rowLength);
+            secondRow = bgrRow1;
+         }
+
+         for (int x = 0, i = 0; x < width; x++, i += pixelStride)
+         {
+            yRow0[x] = toY(bgrRow0[i] & 0xFF, bgrRow0[i + 1] & 0xFF, bgrRow0[i + 2] & 0xFF);
+            yRow1[x] = toY(secondRow[i] & 0xFF, secondRow[i + 1] & 0xFF, secondRow[i + 2] & 0xFF);
+         }
+
+         for (int cx = 0; cx < chromaWidth; cx++)
+         {
+            int i0 = 2 * cx * pixelStride;
+            int i1 = 2 * cx + 1 < width ? i0 + pixelStride : i0;
+
+            int b = ((bgrRow0[i0] & 0xFF) + (bgrRow0[i1] & 0xFF) + (secondRow[i0] & 0xFF) + (secondRow[i1] & 0xFF) + 2) >> 2;
+            int g = ((bgrRow0[i0 + 1] & 0xFF) + (bgrRow0[i1 + 1] & 0xFF) + (secondRow[i0 + 1] & 0xFF) + (secondRow[i1 + 1] & 0xFF) + 2) >> 2;
+            int r = ((bgrRow0[i0 + 2] & 0xFF) + (bgrRow0[i1 + 2] & 0xFF) + (secondRow[i0 + 2] & 0xFF) + (secondRow[i1 + 2] & 0xFF) + 2) >> 2;
+
+            uRow[cx] = toU(b, g, r);
+            vRow[cx] = toV(b, g, r);
+         }
+
+         yPlane.position(row * yStride);
+         yPlane.put(yRow0, 0, width);
+         if (hasSecondRow)
+         {
+            yPlane.position((row + 1) * yStride);
+            yPlane.put(yRow1, 0, width);
+         }
+
+         uPlane.position((row / 2) * uStride);
+         uPlane.put(uRow, 0, chromaWidth);
+         vPlane.position((row / 2) * vStride);
+         vPlane.put(vRow, 0, chromaWidth);
+      }
+
+      source.position(0);
+      yPlane.position(0);
+      uPlane.position(0);
+      vPlane.position(0);
+   }
+
+   private void ensureRowCapacity(int bgrRowLength, int width, int chromaWidth)
+   {
+      if (bgrRow0.length < bgrRowLength)
+      {
+         bgrRow0 = new byte[bgrRowLength];
+         bgrRow1 = new byte[bgrRowLength];
+      }
+
+      if (yRow0.length < width)
+      {
+         yRow0 = new byte[width];
+         yRow1 = new byte[width];
+      }
+
+      if (uRow.length < chromaWidth)
+      {
+         uRow = new byte[chromaWidth];
+         vRow = new byte[chromaWidth];
+      }
+   }
+
+   static byte toY(int b, int g, int r)
+   {
+      return (byte) ((66 * r + 129 * g + 25 * b + 0x1080) >> 8);
+   }
+
+   static byte toU(int b, int g, int r)
+   {
+      return (byte) ((112 * b - 74 * g - 38 * r + 0x8080) >> 8);
+   }
+
+   static byte toV(int b, int g, int r)
+   {
+      return (byte) ((112 * r - 94 * g - 18 * b + 0x8080) >> 8);
+   }
+}
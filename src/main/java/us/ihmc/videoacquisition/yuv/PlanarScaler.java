@@ -0,0 +1,366 @@
+package us.ihmc.videoacquisition.yuv;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Resamples 8-bit images, either planar {@link YUV420Image}s or packed multi-channel buffers such
+ * as BGR, into caller-owned destination buffers.
+ * <p>
+ * The filter is separable: each destination row is first accumulated vertically from the source
+ * rows it covers, then filtered horizontally, all in fixed-point arithmetic. Destination rows are
+ * split into bands that are processed in parallel on a {@link ForkJoinPool}.
+ * </p>
+ * <p>
+ * The filter tables are cached between calls, so an instance should be reused for a stream of
+ * same-sized frames. An instance must not be used by several threads at once.
+ * </p>
+ */
+public class PlanarScaler
+{
+   public enum Kernel
+   {
+      /**
+       * Area average: each destination pixel is the average of the source area it covers. Best
+       * quality for downscaling, no aliasing at any ratio.
+       */
+      BOX,
+      /**
+       * Bilinear interpolation between the two nearest source pixels in each direction. Cheaper,
+       * but aliases when downscaling by more than 2.
+       */
+      BILINEAR
+   }
+
+   private static final int WEIGHT_BITS = 12;
+   private static final int WEIGHT_ONE = 1 << WEIGHT_BITS;
+   /** Fractional bits kept between the vertical and the horizontal pass. */
+   private static final int INTERMEDIATE_BITS = 4;
+   private static final int MIN_ROWS_PER_BAND = 16;
+   private static final int TABLE_CACHE_SIZE = 8;
+
+   private final Kernel kernel;
+   private final ForkJoinPool pool;
+
+   private final FilterTable[] tableCache = new FilterTable[TABLE_CACHE_SIZE];
+   private int nextTableToEvict = 0;
+
+   private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+   public PlanarScaler(Kernel kernel)
+   {
+      this(kernel, ForkJoinPool.commonPool());
+   }
+
+   public PlanarScaler(Kernel kernel, ForkJoinPool pool)
+   {
+      this.kernel = kernel;
+      this.pool = pool;
+   }
+
+   /**
+    * Scales the three planes of {@code source} into {@code destination}, which is reshaped to the
+    * requested size.
+    */
+   public void scale(YUV420Image source, YUV420Image destination, int destinationWidth, int destinationHeight)
+   {
+      destination.reshape(destinationWidth, destinationHeight);
+
+      PlaneTask y = createTask(source.getY(), source.getWidth(), source.getHeight(), source.getYStride(), 1,
+                               destination.getY(), destination.getWidth(), destination.getHeight(), destination.getYStride());
+      PlaneTask u = createTask(source.getU(), source.getChromaWidth(), source.getChromaHeight(), source.getUStride(), 1,
+                               destination.getU(), destination.getChromaWidth(), destination.getChromaHeight(), destination.getUStride());
+      PlaneTask v = createTask(source.getV(), source.getChromaWidth(), source.getChromaHeight(), source.getVStride(), 1,
+                               destination.getV(), destination.getChromaWidth(), destination.getChromaHeight(), destination.getVStride());
+
+      pool.invoke(new RecursiveAction()
+      {
+         @Override
+         protected void compute()
+         {
+            ForkJoinTask.invokeAll(y, u, v);
+         }
+      });
+   }
+
+   /**
+    * Scales a packed image where each pixel has {@code channels} interleaved 8-bit samples, e.g. 3
+    * for BGR. Both buffers are addressed from index 0, their positions are ignored.
+    */
+   public void scale(ByteBuffer source,
+                     int sourceWidth,
+                     int sourceHeight,
+                     int sourceRowStride,
+                     int channels,
+                     ByteBuffer destination,
+                     int destinationWidth,
+                     int destinationHeight,
+                     int destinationRowStride)
+   {
+      pool.invoke(createTask(source,
+                             sourceWidth,
+                             sourceHeight,
+                             sourceRowStride,
+                             channels,
+                             destination,
+                             destinationWidth,
+                             destinationHeight,
+                             destinationRowStride));
+   }
+
+   private PlaneTask createTask(ByteBuffer source,
+                                int sourceWidth,
+                                int sourceHeight,
+                                int sourceRowStride,
+                                int channels,
+                                ByteBuffer destination,
+                                int destinationWidth,
+                                int destinationHeight,
+                                int destinationRowStride)
+   {
+      Plane plane = new Plane();
+      plane.source = source;
+      plane.sourceWidth = sourceWidth;
+      plane.sourceRowStride = sourceRowStride;
+      plane.channels = channels;
+      plane.destination = destination;
+      plane.destinationWidth = destinationWidth;
+      plane.destinationRowStride = destinationRowStride;
+      plane.horizontal = getFilterTable(sourceWidth, destinationWidth);
+      plane.vertical = getFilterTable(sourceHeight, destinationHeight);
+
+      int parallelism = Math.max(1, pool.getParallelism());
+      plane.rowsPerBand = Math.max(MIN_ROWS_PER_BAND, (destinationHeight + 2 * parallelism - 1) / (2 * parallelism));
+
+      return new PlaneTask(plane, 0, destinationHeight);
+   }
+
+   private FilterTable getFilterTable(int sourceSize, int destinationSize)
+   {
+      for (FilterTable table : tableCache)
+      {
+         if (table != null && table.sourceSize == sourceSize && table.destinationSize == destinationSize)
+            return table;
+      }
+
+      FilterTable table = new FilterTable(kernel, sourceSize, destinationSize);
+      tableCache[nextTableToEvict] = table;
+      nextTableToEvict = (nextTableToEvict + 1) % TABLE_CACHE_SIZE;
+      return table;
+   }
+
+   private static class Plane
+   {
+      ByteBuffer source;
+      int sourceWidth;
+      int sourceRowStride;
+      int channels;
+      ByteBuffer destination;
+      int destinationWidth;
+      int destinationRowStride;
+      FilterTable horizontal;
+      FilterTable vertical;
+      int rowsPerBand;
+   }
+
+   private static class Scratch
+   {
+      byte[] sourceRow = new byte[0];
+      int[] accumulator = new int[0];
+      byte[] destinationRow = new byte[0];
+
+      void ensureCapacity(int sourceRowLength, int destinationRowLength)
+      {
+         if (sourceRow.length < sourceRowLength)
+         {
+            sourceRow = new byte[sourceRowLength];
+            accumulator = new int[sourceRowLength];
+         }
+         if (destinationRow.length < destinationRowLength)
+            destinationRow = new byte[destinationRowLength];
+      }
+   }
+
+   @SuppressWarnings("serial")
+   private class PlaneTask extends RecursiveAction
+   {
+      private final Plane plane;
+      private final int startRow;
+      private final int endRow;
+
+      PlaneTask(Plane plane, int startRow, int endRow)
+      {
+         this.plane = plane;
+         this.startRow = startRow;
+         this.endRow = endRow;
+      }
+
+      @Override
+      protected void compute()
+      {
+         if (endRow - startRow > plane.rowsPerBand)
+         {
+            int middleRow = (startRow + endRow) >>> 1;
+            invokeAll(new PlaneTask(plane, startRow, middleRow), new PlaneTask(plane, middleRow, endRow));
+         }
+         else
+         {
+            scaleBand(plane, startRow, endRow, scratch.get());
+         }
+      }
+   }
+
+   private static void scaleBand(Plane plane, int startRow, int endRow, Scratch scratch)
+   {
+      int channels = plane.channels;
+      int sourceRowLength = plane.sourceWidth * channels;
+      int destinationRowLength = plane.destinationWidth * channels;
+      scratch.ensureCapacity(sourceRowLength, destinationRowLength);
+
+      byte[] sourceRow = scratch.sourceRow;
+      int[] accumulator = scratch.accumulator;
+      byte[] destinationRow = scratch.destinationRow;
+
+      // Each band gets its own view so the bands do not fight over the buffer positions.
+      ByteBuffer source = plane.source.duplicate();
+      ByteBuffer destination = plane.destination.duplicate();
+
+      FilterTable vertical = plane.vertical;
+      FilterTable horizontal = plane.horizontal;
+      int verticalShift = WEIGHT_BITS - INTERMEDIATE_BITS;
+      int horizontalShift = WEIGHT_BITS + INTERMEDIATE_BITS;
+      int horizontalRounding = 1 << (horizontalShift - 1);
+
+      for (int row = startRow; row < endRow; row++)
+      {
+         // Vertical pass, accumulated over the whole source width.
+         int tapOffset = row * vertical.maxTaps;
+         for (int tap = 0; tap < vertical.tapCounts[row]; tap++)
+         {
+            int weight = vertical.weights[tapOffset + tap];
+            source.position((vertical.starts[row] + tap) * plane.sourceRowStride);
+            source.get(sourceRow, 0, sourceRowLength);
+
+            if (tap == 0)
+            {
+               for (int i = 0; i < sourceRowLength; i++)
+                  accumulator[i] = (sourceRow[i] & 0xFF) * weight;
+            }
+            else
+            {
+               for (int i = 0; i < sourceRowLength; i++)
+                  accumulator[i] += (sourceRow[i] & 0xFF) * weight;
+            }
+         }
+
+         for (int i = 0; i < sourceRowLength; i++)
+            accumulator[i] = (accumulator[i] + (1 << (verticalShift - 1))) >> verticalShift;
+
+         // Horizontal pass.
+         for (int x = 0; x < plane.destinationWidth; x++)
+         {
+            int start = horizontal.starts[x] * channels;
+            int taps = horizontal.tapCounts[x];
+            int weightOffset = x * horizontal.maxTaps;
+
+            for (int c = 0; c < channels; c++)
+            {
+               int sum = horizontalRounding;
+               for (int tap = 0, i = start + c; tap < taps; tap++, i += channels)
+                  sum += accumulator[i] * horizontal.weights[weightOffset + tap];
+
+               int value = sum >> horizontalShift;
+               destinationRow[x * channels + c] = (byte) (value > 255 ? 255 : value);
+            }
+         }
+
+         destination.position(row * plane.destinationRowStride);
+         destination.put(destinationRow, 0, destinationRowLength);
+      }
+   }
+
+   /**
+    * One-dimensional resampling weights: destination sample {@code i} is the weighted sum of the
+    * {@code tapCounts[i]} source samples starting at {@code starts[i]}. Weights sum to
+    * {@link #WEIGHT_ONE}.
+    */
+   private static class FilterTable
+   {
+      final int sourceSize;
+      final int destinationSize;
+      final int maxTaps;
+      final int[] starts;
+      final int[] tapCounts;
+      final int[] weights;
+
+      FilterTable(Kernel kernel, int sourceSize, int destinationSize)
+      {
+         this.sourceSize = sourceSize;
+         this.destinationSize = destinationSize;
+
+         double scale = (double) sourceSize / destinationSize;
+         maxTaps = kernel == Kernel.BOX ? (int) Math.ceil(scale) + 1 : 2;
+         starts = new int[destinationSize];
+         tapCounts = new int[destinationSize];
+         weights = new int[destinationSize * maxTaps];
+         double[] rawWeights = new double[maxTaps];
+
+         for (int i = 0; i < destinationSize; i++)
+         {
+            int start;
+            int taps;
+
+            if (kernel == Kernel.BOX)
+            {
+               double from = i * scale;
+               double to = Math.min(sourceSize, (i + 1) * scale);
+               start = (int) Math.floor(from);
+               int end = Math.min(sourceSize, (int) Math.ceil(to));
+               taps = Math.max(1, end - start);
+
+               for (int tap = 0; tap < taps; tap++)
+               {
+                  double overlap = Math.min(to, start + tap + 1) - Math.max(from, start + tap);
+                  rawWeights[tap] = Math.max(0.0, overlap);
+               }
+            }
+            else
+            {
+               double center = (i + 0.5) * scale - 0.5;
+               center = Math.max(0.0, Math.min(sourceSize - 1, center));
+               start = Math.min((int) Math.floor(center), Math.max(0, sourceSize - 2));
+               double fraction = center - start;
+               taps = sourceSize > 1 ? 2 : 1;
+               rawWeights[0] = 1.0 - fraction;
+               rawWeights[1] = fraction;
+            }
+
+            starts[i] = start;
+            tapCounts[i] = taps;
+            normalize(rawWeights, taps, weights, i * maxTaps);
+         }
+      }
+
+      private static void normalize(double[] rawWeights, int taps, int[] weights, int offset)
+      {
+         double total = 0.0;
+         for (int tap = 0; tap < taps; tap++)
+            total += rawWeights[tap];
+
+         int sum = 0;
+         int largest = 0;
+         for (int tap = 0; tap < taps; tap++)
+         {
+            weights[offset + tap] = (int) Math.round(rawWeights[tap] / total * WEIGHT_ONE);
+            sum += weights[offset + tap];
+            if (weights[offset + tap] > weights[offset + largest])
+               largest = tap;
+         }
+
+         // Absorb the rounding error so a flat input stays exactly flat.
+         weights[offset + largest] += WEIGHT_ONE - sum;
+      }
+   }
+}
@@ -0,0 +1,232 @@
+package us.ihmc.videoacquisition.yuv;
+
+import java.nio.ByteBuffer;
+
+import us.ihmc.codecs.generated.YUVPicture;
+import us.ihmc.codecs.generated.YUVPicture.YUVSubsamplingType;
+
+/**
+ * Planar YUV 4:2:0 image backed by a single reusable direct buffer.
+ * <p>
+ * The chroma planes are half the width and half the height of the luma plane, rounded up. The
+ * backing memory only grows, so reshaping to the same or a smaller size does not allocate.
+ * </p>
+ */
+public class YUV420Image
+{
+   private static final boolean PICTURES_REFER_TO_BUFFERS = probePictureBuffers();
+
+   private int width;
+   private int height;
+   private int yStride;
+   private int uStride;
+   private int vStride;
+
+   private ByteBuffer data = ByteBuffer.allocateDirect(0);
+   private ByteBuffer y;
+   private ByteBuffer u;
+   private ByteBuffer v;
+   private YUVPicture picture;
+
+   public YUV420Image()
+   {
+      reshape(0, 0);
+   }
+
+   public YUV420Image(int width, int height)
+   {
+      reshape(width, height);
+   }
+
+   public void reshape(int width, int height)
+   {
+      reshape(width, height, width, getChromaWidth(width), getChromaWidth(width));
+   }
+
+   public void reshape(int width, int height, int yStride, int uStride, int vStride)
+   {
+      if (this.width == width && this.height == height && this.yStride == yStride && this.uStride == uStride && this.vStride == vStride
+            && y != null)
+         return;
+
+      if (picture != null)
+      {
+         picture.delete();
+         picture = null;
+      }
+
+      this.width = width;
+      this.height = height;
+      this.yStride = yStride;
+      this.uStride = uStride;
+      this.vStride = vStride;
+
+      int chromaHeight = getChromaHeight(height);
+      int ySize = yStride * height;
+      int uSize = uStride * chromaHeight;
+      int vSize = vStride * chromaHeight;
+
+      if (data.capacity() < ySize + uSize + vSize)
+         data = ByteBuffer.allocateDirect(ySize + uSize + vSize);
+
+      y = slice(0, ySize);
+      u = slice(ySize, uSize);
+      v = slice(ySize + uSize, vSize);
+   }
+
+   private ByteBuffer slice(int offset, int size)
+   {
+      ByteBuffer duplicate = data.duplicate();
+      duplicate.clear();
+      duplicate.position(offset);
+      duplicate.limit(offset + size);
+      return duplicate.slice();
+   }
+
+   /**
+    * Copies the planes of a native picture into this image.
+    */
+   public void set(YUVPicture picture)
+   {
+      if (picture.getSubsamplingType() != YUVSubsamplingType.YUV420)
+         throw new IllegalArgumentException("Expected a YUV420 picture, got: " + picture.getSubsamplingType());
+
+      reshape(picture.getWidth(), picture.getHeight(), picture.getYStride(), picture.getUStride(), picture.getVStride());
+      y.clear();
+      u.clear();
+      v.clear();
+      picture.getY(y);
+      picture.getU(u);
+      picture.getV(v);
+      y.clear();
+      u.clear();
+      v.clear();
+   }
+
+   /**
+    * Gets a native picture over the planes of this image, for handing them to the codecs. It is
+    * owned by this image and must not be deleted by the caller.
+    * <p>
+    * When native pictures refer to the buffers they are built over, see
+    * {@link #picturesReferToBuffers()}, the same picture is returned until the image is reshaped and
+    * always sees the current content of the planes. Otherwise a picture holding a copy of the
+    * planes is built on every call, valid until the next call.
+    * </p>
+    */
+   public YUVPicture getYUVPicture()
+   {
+      if (picture != null && PICTURES_REFER_TO_BUFFERS)
+         return picture;
+
+      if (picture != null)
+         picture.delete();
+
+      y.clear();
+      u.clear();
+      v.clear();
+      picture = new YUVPicture(YUVSubsamplingType.YUV420, width, height, yStride, uStride, vStride, y, u, v);
+      return picture;
+   }
+
+   /**
+    * Whether a {@link YUVPicture} built over direct buffers refers to them rather than copying
+    * them, in which case it can be kept and reused frame after frame.
+    * <p>
+    * The native library does not document it, so it is found out once by writing to a buffer after
+    * building a picture over it and reading the plane back from the picture.
+    * </p>
+    */
+   public static boolean picturesReferToBuffers()
+   {
+      return PICTURES_REFER_TO_BUFFERS;
+   }
+
+   private static boolean probePictureBuffers()
+   {
+      ByteBuffer y = ByteBuffer.allocateDirect(4);
+      ByteBuffer u = ByteBuffer.allocateDirect(1);
+      ByteBuffer v = ByteBuffer.allocateDirect(1);
+      YUVPicture probe = new YUVPicture(YUVSubsamplingType.YUV420, 2, 2, 2, 1, 1, y, u, v);
+
+      try
+      {
+         y.put(0, (byte) 0x5A);
+         ByteBuffer readBack = ByteBuffer.allocateDirect(4);
+         probe.getY(readBack);
+         return readBack.get(0) == (byte) 0x5A;
+      }
+      finally
+      {
+         probe.delete();
+      }
+   }
+
+   public static int getChromaWidth(int width)
+   {
+      return (width + 1) / 2;
+   }
+
+   public static int getChromaHeight(int height)
+   {
+      return (height + 1) / 2;
+   }
+
+   public int getWidth()
+   {
+      return width;
+   }
+
+   public int getHeight()
+   {
+      return height;
+   }
+
+   public int getChromaWidth()
+   {
+      return getChromaWidth(width);
+   }
+
+   public int getChromaHeight()
+   {
+      return getChromaHeight(height);
+   }
+
+   public int getYStride()
+   {
+      return yStride;
+   }
+
+   public int getUStride()
+   {
+      return uStride;
+   }
+
+   public int getVStride()
+   {
+      return vStride;
+   }
+
+   /**
+    * The luma plane. Its position is not meaningful: address rows from index 0 using the stride.
+    */
+   public ByteBuffer getY()
+   {
+      return y;
+   }
+
+   /**
+    * The blue-difference chroma plane, see {@link #getY()}.
+    */
+   public ByteBuffer getU()
+   {
+      return u;
+   }
+
+   /**
+    * The red-difference chroma plane, see {@link #getY()}.
+    */
+   public ByteBuffer getV()
+   {
+      return v;
+   }
+}
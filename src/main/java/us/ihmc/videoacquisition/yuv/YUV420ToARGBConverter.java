@@ -0,0 +1,115 @@
+package us.ihmc.videoacquisition.yuv;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Converts planar YUV 4:2:0 images into opaque 32-bit ARGB pixels, for display.
+ * <p>
+ * Uses the BT.601 limited-range integer coefficients of libyuv, the inverse of
+ * {@link FrameToYUV420Converter}. Since the pixels are opaque, the output is valid as both
+ * non-premultiplied and premultiplied ARGB.
+ * </p>
+ * <p>
+ * An instance keeps its row buffers between calls and is not thread-safe.
+ * </p>
+ */
+public class YUV420ToARGBConverter
+{
+   private byte[] yRow = new byte[0];
+   private byte[] uRow = new byte[0];
+   private byte[] vRow = new byte[0];
+   private int[] argbRow = new int[0];
+
+   /**
+    * @param argbToPack where to write the pixels, starting at index 0.
+    * @param rowStride  number of pixels per row in {@code argbToPack}.
+    */
+   public void convert(YUV420Image yuvImage, IntBuffer argbToPack, int rowStride)
+   {
+      int width = yuvImage.getWidth();
+      int height = yuvImage.getHeight();
+      ensureRowCapacity(width, yuvImage.getChromaWidth());
+      if (argbRow.length < width)
+         argbRow = new int[width];
+
+      for (int row = 0; row < height; row++)
+      {
+         convertRow(yuvImage, row, argbRow, 0);
+         argbToPack.position(row * rowStride);
+         argbToPack.put(argbRow, 0, width);
+      }
+
+      argbToPack.position(0);
+      resetPlanes(yuvImage);
+   }
+
+   /**
+    * @param argbToPack where to write the pixels.
+    * @param offset     index of the top-left pixel in {@code argbToPack}.
+    * @param rowStride  number of pixels per row in {@code argbToPack}.
+    */
+   public void convert(YUV420Image yuvImage, int[] argbToPack, int offset, int rowStride)
+   {
+      int height = yuvImage.getHeight();
+      ensureRowCapacity(yuvImage.getWidth(), yuvImage.getChromaWidth());
+
+      for (int row = 0; row < height; row++)
+         convertRow(yuvImage, row, argbToPack, offset + row * rowStride);
+
+      resetPlanes(yuvImage);
+   }
+
+   private void convertRow(YUV420Image yuvImage, int row, int[] argb, int offset)
+   {
+      int width = yuvImage.getWidth();
+      int chromaWidth = yuvImage.getChromaWidth();
+
+      ByteBuffer yPlane = yuvImage.getY();
+      ByteBuffer uPlane = yuvImage.getU();
+      ByteBuffer vPlane = yuvImage.getV();
+      yPlane.position(row * yuvImage.getYStride());
+      yPlane.get(yRow, 0, width);
+      uPlane.position((row / 2) * yuvImage.getUStride());
+      uPlane.get(uRow, 0, chromaWidth);
+      vPlane.position((row / 2) * yuvImage.getVStride());
+      vPlane.get(vRow, 0, chromaWidth);
+
+      for (int x = 0; x < width; x++)
+      {
+         int c = 298 * ((yRow[x] & 0xFF) - 16) + 128;
+         int d = (uRow[x >> 1] & 0xFF) - 128;
+         int e = (vRow[x >> 1] & 0xFF) - 128;
+
+         int r = clamp((c + 409 * e) >> 8);
+         int g = clamp((c - 100 * d - 208 * e) >> 8);
+         int b = clamp((c + 516 * d) >> 8);
+
+         argb[offset + x] = 0xFF000000 | (r << 16) | (g << 8) | b;
+      }
+   }
+
+   private static int clamp(int value)
+   {
+      return value < 0 ? 0 : (value > 255 ? 255 : value);
+   }
+
+   private void ensureRowCapacity(int width, int chromaWidth)
+   {
+      if (yRow.length < width)
+         yRow = new byte[width];
+
+      if (uRow.length < chromaWidth)
+      {
+         uRow = new byte[chromaWidth];
+         vRow = new byte[chromaWidth];
+      }
+   }
+
+   private static void resetPlanes(YUV420Image yuvImage)
+   {
+      yuvImage.getY().position(0);
+      yuvImage.getU().position(0);
+      yuvImage.getV().position(0);
+   }
+}
@@ -0,0 +1,236 @@
+package us.ihmc.videoacquisition.transport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class SequenceTrackerTest
+{
+   private static final long UINT32_MASK = 0xFFFFFFFFL;
+   private static final int WINDOW_SIZE = SequenceTracker.WINDOW_SIZE;
+
+   @Test
+   public void testWrapAround()
+   {
+      SequenceTracker tracker = createTracker();
+      long start = 0xFFFFFFF0L;
+
+      for (int i = 0; i < 32; i++)
+         receive(tracker, (start + i) & UINT32_MASK);
+
+      assertEquals(32, tracker.getCompletedFrameCount());
+      assertEquals(0, tracker.getLostFrameCount());
+      assertEquals(0, tracker.getStaleFrameCount());
+      assertEquals(0, tracker.getStreamRestartCount());
+      assertEquals(0.0, tracker.getWindowLossRate(), 0.0);
+      assertTrue(tracker.hasCompleted(0xFFFFFFFFL));
+      assertTrue(tracker.hasCompleted(0L));
+      assertTrue(tracker.hasCompleted(15L));
+   }
+
+   @Test
+   public void testLossAcrossWrapAround()
+   {
+      SequenceTracker tracker = createTracker();
+      long start = 0xFFFFFFF0L;
+      int frameCount = WINDOW_SIZE + 44;
+
+      for (int i = 0; i < frameCount; i++)
+      {
+         long sequenceId = (start + i) & UINT32_MASK;
+         if (sequenceId != 0xFFFFFFFFL && sequenceId != 0L)
+            receive(tracker, sequenceId);
+      }
+
+      assertEquals(frameCount - 2, tracker.getCompletedFrameCount());
+      assertEquals(2, tracker.getLostFrameCount());
+      assertEquals(1, tracker.getBurstCount());
+      assertEquals(2, tracker.getMaxBurstLength());
+      assertEquals(2.0 / frameCount, tracker.getLossRate(), 1.0e-9);
+      assertEquals(0.0, tracker.getWindowLossRate(), 0.0);
+   }
+
+   @Test
+   public void testJumpOverWindow()
+   {
+      SequenceTracker tracker = createTracker();
+
+      for (int i = 0; i < 10; i++)
+         receive(tracker, i);
+
+      // The IDs that cannot fit in the window are lost right away, the others once they leave it.
+      assertFalse(receive(tracker, 1010));
+      assertEquals(1000 - (WINDOW_SIZE - 1), tracker.getLostFrameCount());
+      assertEquals((WINDOW_SIZE - 1.0) / WINDOW_SIZE, tracker.getWindowLossRate(), 1.0e-9);
+
+      for (int i = 1011; i <= 1010 + WINDOW_SIZE; i++)
+         receive(tracker, i);
+
+      assertEquals(1000, tracker.getLostFrameCount());
+      assertEquals(1, tracker.getBurstCount());
+      assertEquals(1000, tracker.getMaxBurstLength());
+      assertEquals(1000.0, tracker.getMeanBurstLength(), 0.0);
+      assertEquals(0.0, tracker.getWindowLossRate(), 0.0);
+      assertEquals(0, tracker.getStreamRestartCount());
+   }
+
+   @Test
+   public void testBackwardJumpRestartsWindow()
+   {
+      SequenceTracker tracker = createTracker();
+
+      for (int i = 0; i < 1000; i++)
+         receive(tracker, i);
+
+      assertTrue(receive(tracker, 100));
+      assertEquals(1, tracker.getStreamRestartCount());
+      assertEquals(0, tracker.getStaleFrameCount());
+
+      for (int i = 101; i <= 400; i++)
+         receive(tracker, i);
+
+      assertEquals(0, tracker.getLostFrameCount());
+      assertEquals(0.0, tracker.getWindowLossRate(), 0.0);
+      assertTrue(tracker.hasCompleted(400));
+      assertFalse(tracker.hasCompleted(999));
+   }
+
+   @Test
+   public void testBackwardJumpAcrossWrapAround()
+   {
+      SequenceTracker tracker = createTracker();
+
+      for (int i = 0; i < 10; i++)
+         receive(tracker, i);
+
+      // Just behind 0 after wrapping around: a late frame, not a restart.
+      tracker.packetReceived(0xFFFFFFFEL);
+      assertEquals(1, tracker.getStaleFrameCount());
+      assertEquals(0, tracker.getStreamRestartCount());
+
+      assertTrue(receive(tracker, 0xFFFFF000L));
+      assertEquals(1, tracker.getStreamRestartCount());
+   }
+
+   @Test
+   public void testReorderedInsideWindow()
+   {
+      SequenceTracker tracker = createTracker();
+
+      for (int i = 0; i < 10; i++)
+      {
+         if (i != 5)
+            receive(tracker, i);
+      }
+
+      assertEquals(0.1, tracker.getWindowLossRate(), 1.0e-9);
+      assertFalse(receive(tracker, 5));
+      assertEquals(1, tracker.getReorderedFrameCount());
+      assertEquals(0.0, tracker.getWindowLossRate(), 0.0);
+
+      // More fragments of a frame already received are not reordered frames.
+      tracker.packetReceived(5);
+      tracker.packetReceived(9);
+      assertEquals(1, tracker.getReorderedFrameCount());
+
+      for (int i = 10; i < 2 * WINDOW_SIZE; i++)
+         receive(tracker, i);
+
+      assertEquals(0, tracker.getLostFrameCount());
+      assertEquals(0, tracker.getStaleFrameCount());
+   }
+
+   @Test
+   public void testStaleOutsideWindow()
+   {
+      SequenceTracker tracker = createTracker();
+
+      // Older than the first sequence ID while the window is filling up.
+      for (int i = 100; i < 110; i++)
+         receive(tracker, i);
+      assertFalse(tracker.packetReceived(50));
+      assertEquals(1, tracker.getStaleFrameCount());
+      assertEquals(0, tracker.getReorderedFrameCount());
+
+      // Exactly one window behind is still a late frame, one more is a restart.
+      tracker = createTracker();
+      for (int i = 0; i < 300; i++)
+         receive(tracker, i);
+      assertFalse(tracker.packetReceived(300 - 1 - WINDOW_SIZE));
+      assertEquals(1, tracker.getStaleFrameCount());
+      assertEquals(0, tracker.getStreamRestartCount());
+      assertTrue(tracker.packetReceived(300 - 2 - WINDOW_SIZE));
+      assertEquals(1, tracker.getStreamRestartCount());
+   }
+
+   @Test
+   public void testDiscardedFrameIsLost()
+   {
+      SequenceTracker tracker = createTracker();
+
+      for (int i = 0; i < 10; i++)
+      {
+         if (i == 3)
+            tracker.packetReceived(i);
+         else
+            receive(tracker, i);
+      }
+
+      assertEquals(0.0, tracker.getWindowLossRate(), 0.0);
+      tracker.frameDiscarded(3);
+      assertEquals(0.1, tracker.getWindowLossRate(), 1.0e-9);
+      // Discarding a completed frame has no effect.
+      tracker.frameDiscarded(4);
+      assertEquals(0.1, tracker.getWindowLossRate(), 1.0e-9);
+
+      for (int i = 10; i < 2 * WINDOW_SIZE; i++)
+         receive(tracker, i);
+
+      assertEquals(1, tracker.getLostFrameCount());
+      assertEquals(1, tracker.getBurstCount());
+   }
+
+   @Test
+   public void testLinkQualityHysteresis()
+   {
+      int[] changeCount = {0};
+      SequenceTracker tracker = new SequenceTracker((byte) 0, 0.05, 0.01, t -> changeCount[0]++);
+
+      for (int i = 0; i < 100; i++)
+         receive(tracker, i);
+      assertFalse(tracker.isLinkDegraded());
+
+      // One frame in ten lost.
+      for (int i = 100; i < 400; i++)
+      {
+         if (i % 10 != 0)
+            receive(tracker, i);
+      }
+      assertTrue(tracker.isLinkDegraded());
+      assertEquals(1, changeCount[0]);
+
+      for (int i = 400; i < 1000; i++)
+         receive(tracker, i);
+      assertFalse(tracker.isLinkDegraded());
+      assertEquals(2, changeCount[0]);
+   }
+
+   private static SequenceTracker createTracker()
+   {
+      return new SequenceTracker((byte) 0, SequenceTracker.DEFAULT_DEGRADED_LOSS_RATE, SequenceTracker.DEFAULT_RECOVERED_LOSS_RATE, null);
+   }
+
+   /**
+    * Receives the whole frame with the given sequence ID.
+    *
+    * @return whether the tracker restarted its window.
+    */
+   private static boolean receive(SequenceTracker tracker, long sequenceId)
+   {
+      boolean restarted = tracker.packetReceived(sequenceId);
+      tracker.frameCompleted(sequenceId);
+      return restarted;
+   }
+}
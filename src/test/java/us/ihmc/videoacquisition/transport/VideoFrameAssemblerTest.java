@@ -0,0 +1,206 @@
+package us.ihmc.videoacquisition.transport;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import controller_msgs.msg.dds.VideoPacket;
+
+public class VideoFrameAssemblerTest
+{
+   private static final long TIMEOUT_MILLIS = 100;
+   private static final long MILLIS = 1000000L;
+   private static final byte VIDEO_SOURCE = 3;
+   private static final int FRAGMENT_SIZE = 10;
+
+   private final List<byte[]> completedFrames = new ArrayList<>();
+   private final List<Long> completedSequenceIds = new ArrayList<>();
+   private final VideoPacket packet = new VideoPacket();
+
+   @Test
+   public void testFragmentsReassembledInAnyOrder()
+   {
+      VideoFrameAssembler assembler = createAssembler(4, 1024);
+      byte[] frame = createFrame(25);
+
+      handleFragment(assembler, 7, frame, 2, 0);
+      handleFragment(assembler, 7, frame, 0, 0);
+      assertTrue(completedFrames.isEmpty());
+      handleFragment(assembler, 7, frame, 1, 0);
+
+      assertEquals(1, completedFrames.size());
+      assertArrayEquals(frame, completedFrames.get(0));
+      assertEquals(7L, (long) completedSequenceIds.get(0));
+      assertEquals(1, assembler.getCompletedFrameCount());
+      assertEquals(3, assembler.getReceivedFragmentCount());
+   }
+
+   @Test
+   public void testInconsistentLayoutRejected()
+   {
+      VideoFrameAssembler assembler = createAssembler(4, 1024);
+      byte[] frame = createFrame(30);
+
+      // Index out of the fragment count.
+      setFragment(7, frame, 0);
+      packet.setFragmentIndex(3);
+      assembler.handle(packet, 0);
+      assertEquals(1, assembler.getInvalidFragmentCount());
+
+      // Past the end of the frame.
+      setFragment(7, frame, 2);
+      packet.setFragmentOffset(25);
+      assembler.handle(packet, 0);
+      assertEquals(2, assembler.getInvalidFragmentCount());
+
+      // Not matching the layout given by the first fragment of the frame.
+      handleFragment(assembler, 7, frame, 0, 0);
+      setFragment(7, frame, 1);
+      packet.setFragmentCount(4);
+      packet.setFrameSize(40);
+      assembler.handle(packet, 0);
+      assertEquals(3, assembler.getInvalidFragmentCount());
+
+      handleFragment(assembler, 7, frame, 1, 0);
+      handleFragment(assembler, 7, frame, 2, 0);
+      assertEquals(1, completedFrames.size());
+      assertArrayEquals(frame, completedFrames.get(0));
+   }
+
+   @Test
+   public void testOversizeFrameRejectedBeforeClaimingFrame()
+   {
+      VideoFrameAssembler assembler = createAssembler(1, 24);
+
+      handleFragment(assembler, 7, createFrame(25), 0, 0);
+      assertEquals(1, assembler.getOversizeFragmentCount());
+      assertEquals(0, assembler.getDroppedFragmentCount());
+      assertEquals(0, assembler.getDiscardedFrameCount());
+
+      // The only frame of the pool is still available.
+      byte[] frame = createFrame(24);
+      for (int i = 0; i < 3; i++)
+         handleFragment(assembler, 8, frame, i, 0);
+      assertEquals(1, completedFrames.size());
+      assertArrayEquals(frame, completedFrames.get(0));
+   }
+
+   @Test
+   public void testIncompleteFrameDiscardedAfterTimeout()
+   {
+      VideoFrameAssembler assembler = createAssembler(4, 1024);
+      byte[] frame = createFrame(30);
+
+      handleFragment(assembler, 7, frame, 0, 0);
+      handleFragment(assembler, 7, frame, 1, TIMEOUT_MILLIS * MILLIS);
+      assertEquals(0, assembler.getDiscardedFrameCount());
+
+      // Any packet arriving after the timeout discards the frame.
+      handleFragment(assembler, 8, frame, 0, (TIMEOUT_MILLIS + 1) * MILLIS);
+      assertEquals(1, assembler.getDiscardedFrameCount());
+      assertEquals(1, assembler.getLostFragmentCount());
+
+      // The last fragment of the discarded frame starts it over.
+      handleFragment(assembler, 7, frame, 2, (TIMEOUT_MILLIS + 2) * MILLIS);
+      assertTrue(completedFrames.isEmpty());
+   }
+
+   @Test
+   public void testDuplicateAndLateFragments()
+   {
+      VideoFrameAssembler assembler = createAssembler(4, 1024);
+      byte[] frame = createFrame(20);
+
+      handleFragment(assembler, 7, frame, 0, 0);
+      handleFragment(assembler, 7, frame, 0, 0);
+      assertEquals(1, assembler.getDuplicateFragmentCount());
+
+      handleFragment(assembler, 8, frame, 0, 0);
+      handleFragment(assembler, 8, frame, 1, 0);
+      assertEquals(1, completedFrames.size());
+      // The older frame is given up on once a more recent one completes.
+      assertEquals(1, assembler.getDiscardedFrameCount());
+
+      handleFragment(assembler, 8, frame, 1, 0);
+      assertEquals(2, assembler.getDuplicateFragmentCount());
+      handleFragment(assembler, 7, frame, 1, 0);
+      assertEquals(1, assembler.getLateFragmentCount());
+      handleFragment(assembler, 6, frame, 0, 0);
+      assertEquals(2, assembler.getLateFragmentCount());
+      assertEquals(1, completedFrames.size());
+   }
+
+   @Test
+   public void testSequenceIdWrapAround()
+   {
+      VideoFrameAssembler assembler = createAssembler(4, 1024);
+      byte[] frame = createFrame(20);
+      long[] sequenceIds = {0xFFFFFFFEL, 0xFFFFFFFFL, 0L, 1L};
+
+      for (long sequenceId : sequenceIds)
+      {
+         handleFragment(assembler, sequenceId, frame, 0, 0);
+         handleFragment(assembler, sequenceId, frame, 1, 0);
+      }
+
+      assertEquals(4, completedFrames.size());
+      assertEquals(0, assembler.getLateFragmentCount());
+      assertEquals(0, assembler.getDiscardedFrameCount());
+      assertEquals(0, assembler.getSequenceTracker(VIDEO_SOURCE).getStreamRestartCount());
+
+      // Fragments from before the wrap around are behind the last completed frame.
+      handleFragment(assembler, 0xFFFFFFFFL, frame, 1, 0);
+      assertEquals(1, assembler.getDuplicateFragmentCount());
+      handleFragment(assembler, 0xFFFFFFFDL, frame, 0, 0);
+      assertEquals(1, assembler.getLateFragmentCount());
+      assertEquals(4, completedFrames.size());
+   }
+
+   private VideoFrameAssembler createAssembler(int poolSize, int maxFrameSize)
+   {
+      return new VideoFrameAssembler(frame ->
+      {
+         completedFrames.add(Arrays.copyOf(frame.getData(), frame.getSize()));
+         completedSequenceIds.add(frame.getSequenceId());
+         frame.release();
+      }, TIMEOUT_MILLIS, poolSize, maxFrameSize);
+   }
+
+   private static byte[] createFrame(int size)
+   {
+      byte[] frame = new byte[size];
+      for (int i = 0; i < size; i++)
+         frame[i] = (byte) (31 * i + 7);
+      return frame;
+   }
+
+   private void handleFragment(VideoFrameAssembler assembler, long sequenceId, byte[] frame, int fragmentIndex, long receptionTime)
+   {
+      setFragment(sequenceId, frame, fragmentIndex);
+      assembler.handle(packet, receptionTime);
+   }
+
+   /**
+    * Lays out the given fragment of {@code frame}, split in fragments of {@value #FRAGMENT_SIZE}
+    * bytes, in the packet.
+    */
+   private void setFragment(long sequenceId, byte[] frame, int fragmentIndex)
+   {
+      int offset = fragmentIndex * FRAGMENT_SIZE;
+      packet.setVideoSource(VIDEO_SOURCE);
+      packet.setCodec(VideoPacket.CODEC_JPEG);
+      packet.setSequenceId(sequenceId);
+      packet.setFrameSize(frame.length);
+      packet.setFragmentCount((frame.length + FRAGMENT_SIZE - 1) / FRAGMENT_SIZE);
+      packet.setFragmentIndex(fragmentIndex);
+      packet.setFragmentOffset(offset);
+      packet.getData().resetQuick();
+      packet.getData().add(frame, offset, Math.max(0, Math.min(FRAGMENT_SIZE, frame.length - offset)));
+   }
+}